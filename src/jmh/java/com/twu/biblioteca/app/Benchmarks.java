@@ -0,0 +1,42 @@
+package com.twu.biblioteca.app;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs the benchmarks matching a pattern once for each thread count, with the GC profiler so every result comes with
+ * its gc.alloc.rate.norm, the bytes allocated per operation. Each run's results are also written to
+ * build/reports/jmh/threads-N.csv. Each benchmark is forked with a fixed heap, 6g unless given, which the largest
+ * catalogs need.
+ * Benchmarks [pattern] [threads,threads,...] [size,size,...] [heap]
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws Exception {
+        final String include = args.length > 0 ? args[0] : ".*";
+        final String[] threadCounts = (args.length > 1 ? args[1] : "1,2,4").split(",");
+        final String sizes = args.length > 2 ? args[2] : "";
+        final String heap = args.length > 3 ? args[3] : "6g";
+        final Path reports = Files.createDirectories(Paths.get("build", "reports", "jmh"));
+        for(final String threads : threadCounts) {
+            final ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .jvmArgsAppend("-Xms" + heap, "-Xmx" + heap)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.CSV)
+                    .result(reports.resolve("threads-" + threads.trim() + ".csv").toString());
+            if(!sizes.isEmpty())
+                options.param("size", sizes.split(","));
+            new Runner(options.build()).run();
+        }
+    }
+
+}
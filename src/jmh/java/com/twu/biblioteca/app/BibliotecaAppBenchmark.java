@@ -0,0 +1,39 @@
+package com.twu.biblioteca.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The app's side of a customer's requests: listing every book, which writes a line for each, and a checkout and
+ * return entered at the menu, which also parses the commands and writes the acknowledgements.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BibliotecaAppBenchmark {
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long listItems(CatalogState catalog, SessionState session) throws Exception {
+        session.app.listItems(catalog.library);
+        session.app.flush();
+        return session.output.written;
+    }
+
+    @Benchmark
+    public void executeCommand(SessionState session) throws Exception {
+        final int i = session.next();
+        session.menu.executeCommand(session.checkoutCommands[i]);
+        session.menu.executeCommand(session.returnCommands[i]);
+    }
+
+}
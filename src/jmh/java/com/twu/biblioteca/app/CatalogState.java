@@ -0,0 +1,42 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A library of the given number of books, one copy of each, shared by every thread of a benchmark, with its catalog
+ * either on the heap or in columns off it.
+ */
+@State(Scope.Benchmark)
+public class CatalogState {
+
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"heap", "columnar"})
+    String store;
+
+    Library<Book> library;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final List<Book> books = new ArrayList<>(size);
+        for(int i = 0; i < size; i++)
+            books.add(new Book(title(i), "Charles Dickens", 1860));
+        library = new Library<>(books, Book.class, "columnar".equals(store)
+                ? new ColumnarCatalogStore<>(Book.TYPE) : new HeapCatalogStore<Book>());
+        library.getItems();
+    }
+
+    static String title(int i) {
+        return String.format("Title %08d", i);
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking out a title, which is returned in the same operation so the catalog stays the same size, and walking
+ * every available title in order.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LibraryBenchmark {
+
+    @Benchmark
+    public void checkoutItemByTitle(CatalogState catalog, SessionState session) throws Exception {
+        final String title = session.titles[session.next()];
+        catalog.library.checkoutItemByTitle(title, session.customer);
+        catalog.library.returnItemByTitle(title, session.customer);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void getItems(CatalogState catalog, Blackhole blackhole) {
+        for(final CatalogEntry<Book> entry : catalog.library.getItems())
+            blackhole.consume(entry.getAvailableCopies());
+    }
+
+}
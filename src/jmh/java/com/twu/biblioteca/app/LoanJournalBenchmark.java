@@ -0,0 +1,101 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.helper.Clock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An acknowledged checkout and return for each journal durability, each waiting for the journal before it is
+ * acknowledged. Every thread lends a title of its own, so threads only meet in the journal, and the sampled times
+ * give the latency percentiles as well as the throughput.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoanJournalBenchmark {
+
+    /**
+     * A journal in a directory of its own over a small library, shared by every thread.
+     */
+    @State(Scope.Benchmark)
+    public static class JournalState {
+
+        private static final int TITLES = 256;
+
+        @Param({"PER_OP", "GROUP", "ASYNC"})
+        String durability;
+
+        Library<Book> library;
+        Customer customer;
+        LoanJournal journal;
+        private Path directory;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            final List<Book> books = new ArrayList<>(TITLES);
+            for(int i = 0; i < TITLES; i++)
+                books.add(new Book(CatalogState.title(i), "Charles Dickens", 1860));
+            library = new Library<>(books, Book.class);
+            final SecurityContext securityContext = new SecurityContext(Customer.getCustomers());
+            customer = securityContext.getCustomer(0);
+            directory = Files.createTempDirectory("journal");
+            journal = new LoanJournal(directory, LoanJournal.DEFAULT_SEGMENT_SIZE,
+                    LoanJournal.Durability.valueOf(durability), LoanJournal.DEFAULT_MAX_LATENCY_MICROS, Clock.SYSTEM,
+                    securityContext, library);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            journal.close();
+            try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for(final Path path : stream)
+                    Files.delete(path);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TitleState {
+
+        String title;
+
+        @Setup(Level.Trial)
+        public void setup(ThreadParams thread) {
+            title = CatalogState.title(thread.getThreadIndex());
+        }
+    }
+
+    @Benchmark
+    public void checkoutAndReturn(JournalState journal, TitleState session) throws Exception {
+        journal.library.checkoutItemByTitle(session.title, journal.customer);
+        journal.journal.awaitDurable();
+        journal.library.returnItemByTitle(session.title, journal.customer);
+        journal.journal.awaitDurable();
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a snapshot of the loans of a catalog with one book in ten out on loan, spread over a thousand readers, and
+ * restoring one at startup into a library with nothing lent yet. Each is timed once per iteration, as it is done
+ * once at a time.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoanSnapshotBenchmark {
+
+    /**
+     * The lent library, and a snapshot of it in a file for restoring from.
+     */
+    @State(Scope.Benchmark)
+    public static class LoansState {
+
+        private static final int LOAN_EVERY = 10;
+        private static final int READERS = 1000;
+
+        @Param({"100000", "1000000", "10000000"})
+        int size;
+
+        List<Book> books;
+        Set<Customer> readers;
+        SecurityContext securityContext;
+        Library<Book> library;
+        Path snapshot;
+        Path written;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            books = new ArrayList<>(size);
+            for(int i = 0; i < size; i++)
+                books.add(new Book(CatalogState.title(i), "Charles Dickens", 1860));
+            readers = new HashSet<>();
+            for(int i = 0; i < READERS; i++)
+                readers.add(new Customer("Reader", "Number " + i, "reader" + i + "@example.com", "Password1",
+                        String.format("%03d-%04d", i / 10000, i % 10000)));
+            securityContext = new SecurityContext(readers);
+            library = new Library<>(books, Book.class);
+            for(int i = 0; i < size; i += LOAN_EVERY) {
+                final Customer reader = securityContext.getCustomer(i / LOAN_EVERY % READERS);
+                library.checkoutItemByTitle(books.get(i).getTitle(), reader);
+            }
+            snapshot = Files.createTempFile("loans", ".snapshot");
+            LoanSnapshot.write(snapshot, 1, securityContext, library);
+            written = Files.createTempFile("loans", ".snapshot");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.delete(snapshot);
+            Files.delete(written);
+        }
+    }
+
+    /**
+     * A library of the same books with nothing lent, made afresh for each restore and not timed.
+     */
+    @State(Scope.Thread)
+    public static class RestoreState {
+
+        SecurityContext securityContext;
+        Library<Book> library;
+
+        @Setup(Level.Invocation)
+        public void setup(LoansState loans) {
+            library = null;
+            securityContext = new SecurityContext(loans.readers);
+            library = new Library<>(loans.books, Book.class);
+        }
+    }
+
+    @Benchmark
+    public void write(LoansState loans) throws IOException {
+        LoanSnapshot.write(loans.written, 1, loans.securityContext, loans.library);
+    }
+
+    @Benchmark
+    public long restore(LoansState loans, RestoreState restore) throws IOException {
+        return LoanSnapshot.restore(loans.snapshot, restore.securityContext, restore.library);
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.helper.Menu;
+import com.twu.biblioteca.helper.Option;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+
+/**
+ * One thread's customer, logged in to an app of its own over the shared library, with a sample of titles no other
+ * thread uses so that checkouts never collide. The app's output is read and dropped.
+ */
+@State(Scope.Thread)
+public class SessionState {
+
+    private static final int SAMPLE = 1024;
+
+    Customer customer;
+    Sink output;
+    BibliotecaApp app;
+    Menu<BibliotecaApp> menu;
+    String[] titles;
+    String[] checkoutCommands;
+    String[] returnCommands;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup(CatalogState catalog, ThreadParams thread) throws Exception {
+        final int index = thread.getThreadIndex();
+        final int threads = thread.getThreadCount();
+        final String libraryNumber = String.format("%03d-%04d", index / 10000, index % 10000);
+        customer = new Customer("Reader", "Number " + index, "reader" + index + "@example.com", "Password1", libraryNumber);
+        final SecurityContext securityContext = new SecurityContext(Collections.singleton(customer));
+        securityContext.login(libraryNumber, "Password1");
+        output = new Sink();
+        app = new BibliotecaApp(new Scanner(""), output, securityContext, catalog.library);
+        final List<Option<BibliotecaApp>> options = Arrays.<Option<BibliotecaApp>>asList(
+                new BibliotecaAppMenuOption.CheckoutOption(catalog.library),
+                new BibliotecaAppMenuOption.ReturnOption(catalog.library));
+        menu = new Menu<>(app, securityContext, options);
+
+        final Random random = new Random(index);
+        titles = new String[SAMPLE];
+        checkoutCommands = new String[SAMPLE];
+        returnCommands = new String[SAMPLE];
+        for(int i = 0; i < SAMPLE; i++) {
+            titles[i] = CatalogState.title(index + threads * random.nextInt(catalog.size / threads));
+            checkoutCommands[i] = "Checkout Book: " + titles[i];
+            returnCommands[i] = "Return Book: " + titles[i];
+        }
+    }
+
+    int next() {
+        final int current = next;
+        next = (current + 1) & (SAMPLE - 1);
+        return current;
+    }
+
+    /**
+     * Keeps the last byte of each write so the bytes written cannot be optimised away.
+     */
+    static final class Sink extends OutputStream {
+        long written;
+        byte last;
+
+        @Override
+        public void write(int b) {
+            written++;
+            last = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written += len;
+            if(len > 0)
+                last = b[off + len - 1];
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.twu.biblioteca.app;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in buckets that are linear within each power of two and logarithmic across them, as HdrHistogram
+ * does, so any value from a nanosecond to centuries is kept to within 1% in a fixed array of counts. Any number of
+ * threads can record into one at once.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(Long.MAX_VALUE) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        raiseMax(value);
+    }
+
+    /**
+     * Adds the values recorded by another histogram to this one, as if they had been recorded here.
+     */
+    void add(LatencyHistogram other) {
+        for(int i = 0; i < counts.length(); i++) {
+            final long recorded = other.counts.get(i);
+            if(recorded != 0)
+                counts.addAndGet(i, recorded);
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        raiseMax(other.max.get());
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    long getMean() {
+        final long recorded = count.get();
+        return recorded == 0 ? 0 : sum.get() / recorded;
+    }
+
+    /**
+     * The least value that the given percentage of the values recorded are no greater than, to within a bucket.
+     */
+    long getValueAtPercentile(double percentile) {
+        final long recorded = count.get();
+        if(recorded == 0) return 0;
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+        long seen = 0;
+        for(int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if(seen >= rank)
+                return Math.min(highestValueAt(i), max.get());
+        }
+        return max.get();
+    }
+
+    private void raiseMax(long value) {
+        for(long current = max.get(); value > current && !max.compareAndSet(current, value); current = max.get());
+    }
+
+    private static int indexOf(long value) {
+        if(value < HALF_SUB_BUCKETS << 1) return (int) value;
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    private static long highestValueAt(int index) {
+        if(index < HALF_SUB_BUCKETS << 1) return index;
+        final int shift = (index >>> (SUB_BUCKET_BITS - 1)) - 1;
+        final long subBucket = index - ((long) shift << (SUB_BUCKET_BITS - 1));
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+}
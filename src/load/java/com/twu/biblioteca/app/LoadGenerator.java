@@ -0,0 +1,423 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.domain.Movie;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives many app sessions at once, each logged in as its own customer, from synthetic or recorded command scripts,
+ * and reports the throughput and latency distribution of each kind of command the scripts issue.
+ *
+ * The load is open loop: every session issues its commands on a fixed schedule that together make up the target
+ * rate, whether or not the library keeps up. A command's latency is measured from when the schedule said it should
+ * start, not from when a thread got to it, so time spent queued behind a slow command counts against every command
+ * it held up, as it would for customers arriving at that rate. The service time, from when the command actually
+ * started, is reported beside it to show how much of the latency is queueing.
+ *
+ * Run with the load classpath: java com.twu.biblioteca.app.LoadGenerator [script]
+ * A recorded script has one command per line as typed at the menu, with a blank line between sessions; sessions
+ * take its scripts in turn and start again from the first when they run out. Without one, each session logs in,
+ * issues load.commands commands drawn from load.mix and logs out, over and over. Other settings are system
+ * properties: load.rate commands/sec, load.sessions, load.threads, load.warmup and load.seconds, and load.books
+ * for the size of the catalog.
+ */
+public class LoadGenerator {
+
+    private static final String PASSWORD = "Password1";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final Library<Book> books;
+    private final Set<Customer> customers;
+    private final Library<?>[] libraries;
+    private final DelayQueue<Session> schedule = new DelayQueue<>();
+    private final ConcurrentMap<String, CommandStats> stats = new ConcurrentHashMap<>();
+
+    LoadGenerator(Library<Book> books, Library<Movie> movies, Set<Customer> customers) {
+        this.books = books;
+        this.customers = customers;
+        this.libraries = new Library<?>[]{books, movies};
+    }
+
+    /**
+     * Runs the sessions at the rate given, in commands per second, measuring the commands scheduled from the end of
+     * the warmup until the end of the run, every one of which is carried out even if the library has fallen behind.
+     */
+    void run(List<Script> scripts, double rate, int threads, long warmupNanos, long measureNanos) throws Exception {
+        final long period = (long) (scripts.size() * TimeUnit.SECONDS.toNanos(1) / rate);
+        final long start = System.nanoTime();
+        final long measureFrom = start + warmupNanos;
+        final long end = measureFrom + measureNanos;
+        for(int i = 0; i < scripts.size(); i++)
+            schedule.add(new Session(scripts.get(i), start + period * i / scripts.size()));
+
+        final List<Thread> workers = new ArrayList<>();
+        for(int i = 0; i < threads; i++) {
+            final Thread worker = new Thread("load-" + i) {
+                @Override
+                public void run() {
+                    work(period, measureFrom, end);
+                }
+            };
+            worker.start();
+            workers.add(worker);
+        }
+        for(final Thread worker : workers)
+            worker.join();
+    }
+
+    private void work(long period, long measureFrom, long end) {
+        while(true) {
+            final Session session;
+            try {
+                session = schedule.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if(session == null) {
+                if(System.nanoTime() >= end) return;
+                continue;
+            }
+            final String command = session.script.next();
+            final String kind = session.script.kind();
+            final long started = System.nanoTime();
+            boolean failed = false;
+            try {
+                session.app.selectMenuOption(command);
+            } catch (Exception e) {
+                failed = true;
+            }
+            final long finished = System.nanoTime();
+            if(session.intended >= measureFrom)
+                statsFor(kind).record(finished - session.intended, finished - started, failed);
+            session.intended += period;
+            if(session.intended < end)
+                schedule.add(session);
+        }
+    }
+
+    private CommandStats statsFor(String kind) {
+        final CommandStats existing = stats.get(kind);
+        if(existing != null) return existing;
+        final CommandStats created = new CommandStats();
+        final CommandStats raced = stats.putIfAbsent(kind, created);
+        return raced == null ? created : raced;
+    }
+
+    void report(double seconds) {
+        System.out.println(String.format("%-16s %9s %9s %9s %9s %9s %9s %9s %9s %9s %9s %7s",
+                "Command", "Count", "Per sec", "Mean ms", "p50", "p90", "p99", "p99.9", "p99.99", "Max",
+                "p99 svc", "Errors"));
+        final CommandStats all = new CommandStats();
+        for(final Map.Entry<String, CommandStats> entry : new TreeMap<>(stats).entrySet()) {
+            report(entry.getKey(), entry.getValue(), seconds);
+            all.add(entry.getValue());
+        }
+        report("All", all, seconds);
+        System.out.println(String.format("Achieved %.1f commands/sec", all.latency.getCount() / seconds));
+    }
+
+    private static void report(String name, CommandStats command, double seconds) {
+        final LatencyHistogram latency = command.latency;
+        final StringBuilder line = new StringBuilder(String.format("%-16s %9d %9.1f %9s",
+                name, latency.getCount(), latency.getCount() / seconds, millis(latency.getMean())));
+        for(final double percentile : PERCENTILES)
+            line.append(String.format(" %9s", millis(latency.getValueAtPercentile(percentile))));
+        line.append(String.format(" %9s %9s %7d", millis(latency.getMax()),
+                millis(command.service.getValueAtPercentile(99)), command.errors.get()));
+        System.out.println(line);
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    Script syntheticScript(Customer customer, String libraryNumber, Map<String, Integer> mix, int commands, long seed) {
+        return new SyntheticScript(customer, libraryNumber, mix, commands, seed);
+    }
+
+    /**
+     * One session's commands, one at a time.
+     */
+    interface Script {
+        String next();
+
+        /**
+         * The kind of the command last returned by next, which its stats are kept under.
+         */
+        String kind();
+    }
+
+    /**
+     * Logs in, issues commands drawn at random in proportion to their weights in the mix, and logs out. Returns are
+     * of the customer's own loans, and are made checkouts while they have none.
+     */
+    private final class SyntheticScript implements Script {
+        private final Customer customer;
+        private final String login;
+        private final Map<String, Integer> mix;
+        private final int totalWeight;
+        private final int commands;
+        private final Random random;
+        private int remaining = -1;
+        private String kind;
+
+        SyntheticScript(Customer customer, String libraryNumber, Map<String, Integer> mix, int commands, long seed) {
+            this.customer = customer;
+            this.login = "Login: " + libraryNumber + " " + PASSWORD;
+            this.mix = mix;
+            int weights = 0;
+            for(final int weight : mix.values())
+                weights += weight;
+            this.totalWeight = weights;
+            this.commands = commands;
+            this.random = new Random(seed);
+        }
+
+        @Override
+        public String next() {
+            if(remaining < 0) {
+                remaining = commands;
+                kind = "login";
+                return login;
+            }
+            if(remaining-- == 0) {
+                kind = "logout";
+                return "Logout";
+            }
+            int pick = random.nextInt(totalWeight);
+            for(final Map.Entry<String, Integer> weight : mix.entrySet()) {
+                pick -= weight.getValue();
+                if(pick < 0) {
+                    kind = weight.getKey();
+                    return command(kind);
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public String kind() {
+            return kind;
+        }
+
+        private String command(String kind) {
+            final String name = books.getItemsName();
+            switch(kind) {
+                case "list": return "List " + name + "s";
+                case "page": return "List " + name + "s: next";
+                case "search": return "Search " + name + "s: " + randomTitle().substring(0, 10);
+                case "count": return "Count " + name + "s";
+                case "details": return "My Details";
+                case "return": return returnOrCheckout(name);
+                case "checkout": return "Checkout " + name + ": " + randomTitle();
+                default: throw new IllegalArgumentException("unknown command " + kind + " in the mix");
+            }
+        }
+
+        private String returnOrCheckout(String name) {
+            final List<CatalogEntry<Book>> loans = books.getLoans(customer);
+            if(loans.isEmpty()) {
+                kind = "checkout";
+                return "Checkout " + name + ": " + randomTitle();
+            }
+            return "Return " + name + ": " + loans.get(random.nextInt(loans.size())).getTitle();
+        }
+
+        private String randomTitle() {
+            return title(random.nextInt(books.size()));
+        }
+    }
+
+    /**
+     * Replays recorded sessions. A command's kind is its name, without any title or other argument, except that a
+     * listing given a page is told apart from a full listing.
+     */
+    private static final class RecordedScript implements Script {
+        private final List<List<String>> sessions;
+        private final int step;
+        private int session;
+        private int line;
+        private String kind;
+
+        RecordedScript(List<List<String>> sessions, int first, int step) {
+            this.sessions = sessions;
+            this.session = first % sessions.size();
+            this.step = step;
+        }
+
+        @Override
+        public String next() {
+            if(line == sessions.get(session).size()) {
+                session = (session + step) % sessions.size();
+                line = 0;
+            }
+            final String command = sessions.get(session).get(line++);
+            kind = kindOf(command);
+            return command;
+        }
+
+        @Override
+        public String kind() {
+            return kind;
+        }
+
+        private static String kindOf(String command) {
+            final int colon = command.indexOf(':');
+            if(colon < 0) return command.trim();
+            final String name = command.substring(0, colon).trim();
+            return name.startsWith("List ") ? name + " page" : name;
+        }
+    }
+
+    private final class Session implements Delayed {
+        private final Script script;
+        private final BibliotecaApp app;
+        private long intended;
+
+        Session(Script script, long intended) {
+            this.script = script;
+            this.app = new BibliotecaApp(new Scanner(""), DISCARD, new SecurityContext(customers), libraries);
+            this.intended = intended;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(intended - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(intended, ((Session) other).intended);
+        }
+    }
+
+    private static final class CommandStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram service = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+
+        void record(long latencyNanos, long serviceNanos, boolean failed) {
+            latency.record(latencyNanos);
+            service.record(serviceNanos);
+            if(failed)
+                errors.incrementAndGet();
+        }
+
+        void add(CommandStats other) {
+            latency.add(other.latency);
+            service.add(other.service);
+            errors.addAndGet(other.errors.get());
+        }
+    }
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static String title(int i) {
+        return String.format("Title %08d", i);
+    }
+
+    private static String libraryNumber(int i) {
+        return String.format("%03d-%04d", 900 + i / 10000, i % 10000);
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        final Map<String, Integer> weights = new TreeMap<>();
+        for(final String kind : mix.split(",")) {
+            final String[] parts = kind.split("=");
+            weights.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    private static List<List<String>> readScripts(String path) throws IOException {
+        final List<List<String>> sessions = new ArrayList<>();
+        List<String> session = new ArrayList<>();
+        for(final String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+            if(line.trim().isEmpty()) {
+                if(!session.isEmpty())
+                    sessions.add(session);
+                session = new ArrayList<>();
+            } else if(!line.startsWith("#")) {
+                session.add(line);
+            }
+        }
+        if(!session.isEmpty())
+            sessions.add(session);
+        if(sessions.isEmpty()) throw new IOException(path + " has no commands");
+        return sessions;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final double rate = Double.parseDouble(System.getProperty("load.rate", "1000"));
+        final int sessions = Integer.getInteger("load.sessions", 100);
+        final int threads = Integer.getInteger("load.threads", 4);
+        final int warmup = Integer.getInteger("load.warmup", 5);
+        final int seconds = Integer.getInteger("load.seconds", 30);
+        final int size = Integer.getInteger("load.books", 10000);
+
+        final List<Book> catalog = new ArrayList<>(size);
+        for(int i = 0; i < size; i++)
+            catalog.add(new Book(title(i), "Charles Dickens", 1860));
+        final Library<Book> books = new Library<>(catalog, Book.class);
+        books.addIndex(Book.AUTHOR);
+        books.setLoanLimit(Integer.getInteger("biblioteca.limit.books", BibliotecaApp.DEFAULT_BOOK_LIMIT));
+        final Library<Movie> movies = new Library<>(Movie.getMovies(), Movie.class);
+        movies.addIndex(Movie.DIRECTOR);
+        movies.setLoanLimit(Integer.getInteger("biblioteca.limit.movies", BibliotecaApp.DEFAULT_MOVIE_LIMIT));
+
+        final Set<Customer> customers = new HashSet<>(Customer.getCustomers());
+        final List<Customer> readers = new ArrayList<>();
+        for(int i = 0; i < sessions; i++) {
+            final Customer reader = new Customer("Reader", "Number " + i, "reader" + i + "@example.com", PASSWORD, libraryNumber(i));
+            readers.add(reader);
+            customers.add(reader);
+        }
+        final LoadGenerator generator = new LoadGenerator(books, movies, customers);
+
+        final List<Script> scripts = new ArrayList<>();
+        final List<List<String>> recorded = args.length == 1 ? readScripts(args[0]) : null;
+        final Map<String, Integer> mix =
+                parseMix(System.getProperty("load.mix", "list=1,page=10,search=10,count=2,details=5,checkout=20,return=20"));
+        for(int i = 0; i < sessions; i++)
+            scripts.add(recorded != null ? new RecordedScript(recorded, i, sessions)
+                    : generator.syntheticScript(readers.get(i), libraryNumber(i), mix,
+                            Integer.getInteger("load.commands", 20), i));
+
+        System.out.println("Driving " + sessions + " sessions at " + rate + " commands/sec on " + threads +
+                " threads for " + seconds + " s after a " + warmup + " s warmup, over " + size + " books");
+        final long started = System.nanoTime();
+        generator.run(scripts, rate, threads, TimeUnit.SECONDS.toNanos(warmup), TimeUnit.SECONDS.toNanos(seconds));
+        final double measured = (System.nanoTime() - started) / 1e9 - warmup;
+        generator.report(measured);
+        System.exit(0);
+    }
+
+}
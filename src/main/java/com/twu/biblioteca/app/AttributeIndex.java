@@ -0,0 +1,63 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.ItemAttribute;
+import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.helper.IntList;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A secondary index from the value of one item attribute, ignoring case, to the ids of the titles that have it.
+ * Entries are only added under the library's catalog lock, so each posting list has a single writer. An index starts
+ * out unfilled and is only filled when the library first looks something up by its attribute, unless the library has
+ * no titles yet, in which case it is kept up to date from the first title on.
+ */
+class AttributeIndex<T extends LibraryItem> {
+
+    private static final IntList NO_IDS = new IntList();
+
+    private final ItemAttribute<T> attribute;
+    private final Map<String, IntList> postings = new ConcurrentHashMap<>();
+    private volatile boolean filled;
+
+    AttributeIndex(ItemAttribute<T> attribute) {
+        if(attribute == null) throw new IllegalArgumentException("attribute cannot be null");
+        this.attribute = attribute;
+    }
+
+    ItemAttribute<T> getAttribute() {
+        return attribute;
+    }
+
+    boolean isFilled() {
+        return filled;
+    }
+
+    void setFilled() {
+        filled = true;
+    }
+
+    void add(int id, T item) {
+        final String value = attribute.getValue(item);
+        if(value == null) return;
+        final String key = key(value);
+        IntList ids = postings.get(key);
+        if(ids == null) {
+            ids = new IntList();
+            postings.put(key, ids);
+        }
+        ids.add(id);
+    }
+
+    IntList find(String value) {
+        if(value == null) return NO_IDS;
+        final IntList ids = postings.get(key(value));
+        return ids == null ? NO_IDS : ids;
+    }
+
+    private static String key(String value) {
+        return value.toLowerCase();
+    }
+
+}
@@ -2,57 +2,128 @@ package com.twu.biblioteca.app;
 
 import com.twu.biblioteca.domain.Book;
 import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.domain.ItemAttribute;
+import com.twu.biblioteca.domain.ItemType;
 import com.twu.biblioteca.domain.LibraryItem;
 import com.twu.biblioteca.domain.Movie;
+import com.twu.biblioteca.domain.Rated;
 import com.twu.biblioteca.exceptions.*;
+import com.twu.biblioteca.helper.Clock;
 import com.twu.biblioteca.helper.Menu;
 import com.twu.biblioteca.helper.Option;
 import com.twu.biblioteca.app.BibliotecaAppMenuOption.*;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 public class BibliotecaApp {
 
+    static final int SEARCH_RESULTS_LIMIT = 10;
+    static final int PAGE_SIZE = 20;
+    static final int SNAPSHOT_MINUTES = 10;
+    static final int DEFAULT_BOOK_LIMIT = 10;
+    static final int DEFAULT_MOVIE_LIMIT = 3;
+    static final int OUTPUT_BUFFER_SIZE = 8192;
+    private static final int LINE_CHUNK_SIZE = 1024;
+
     private final Scanner scanner;
     private final OutputStream outputStream;
+    private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer lineChars = CharBuffer.allocate(LINE_CHUNK_SIZE);
+    private final ByteBuffer outputBuffer = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
     private final Menu<BibliotecaApp> menu;
 
     private final SecurityContext securityContext;
+    private final Library<?>[] libraries;
+    private final Map<Library<?>, String> pageFirstTitles = new IdentityHashMap<>();
+    private final Map<Library<?>, String> pageLastTitles = new IdentityHashMap<>();
+    private final ReplicationFollower follower;
+    private LoanJournal journal;
 
     BibliotecaApp(Scanner scanner, OutputStream outputStream, SecurityContext securityContext, Library<?>... libraries) {
+        this(scanner, outputStream, securityContext, null, libraries);
+    }
+
+    /**
+     * An app for a read-only follower of another, which can only list, search and count its libraries and report
+     * how far behind the primary it is.
+     */
+    BibliotecaApp(Scanner scanner, OutputStream outputStream, SecurityContext securityContext, ReplicationFollower follower,
+                  Library<?>... libraries) {
         if (scanner == null) throw new IllegalArgumentException("scanner cannot be null");
         if (outputStream == null) throw new IllegalArgumentException("output stream cannot be null");
         if (securityContext == null) throw new IllegalArgumentException("securityContext cannot be null");
         this.scanner = scanner;
         this.outputStream = outputStream;
         this.securityContext = securityContext;
+        this.follower = follower;
+        this.libraries = libraries.clone();
 
         final List<Option<BibliotecaApp>> options = new ArrayList<>();
-        options.add(new BibliotecaAppMenuOption.LoginOption());
+        if(follower == null)
+            options.add(new BibliotecaAppMenuOption.LoginOption());
         for(Library<?> library : libraries) {
             options.add(new ListOption(library));
+            options.add(new SearchOption(library));
+            addListByOptions(options, library);
+            options.add(new CountOption(library));
+            if(follower != null) continue;
             options.add(new CheckoutOption(library));
             options.add(new ReturnOption(library));
+            options.add(new BatchCheckoutOption(library));
+            options.add(new BatchReturnOption(library));
+            options.add(new HoldOption(library));
+        }
+        if(follower == null) {
+            options.add(new MyDetailsOption());
+            options.add(new LogoutOption());
+        } else {
+            options.add(new ReplicationStatusOption());
         }
-        options.add(new MyDetailsOption());
-        options.add(new LogoutOption());
         options.add(new QuitOption());
 
         menu = new Menu<>(this, securityContext, options);
     }
 
+    private static <T extends LibraryItem> void addListByOptions(List<Option<BibliotecaApp>> options, Library<T> library) {
+        for(final ItemAttribute<T> attribute : library.getIndexes())
+            options.add(new ListByOption<>(library, attribute));
+    }
+
+    /**
+     * Has loans, returns and logins acknowledged only once the journal has them on disk.
+     */
+    void setJournal(LoanJournal journal) {
+        this.journal = journal;
+    }
+
     void run() throws Exception {
         displayWelcomeMessage();
         displayMenuOptions();
+        flush();
         while(scanner.hasNextLine())
             selectMenuOption(scanner.nextLine());
     }
 
     void login(String libraryNumber, String password) throws InvalidCredentialsException, IOException {
         securityContext.login(libraryNumber, password);
-        writeLine("Login Successful!");
+        acknowledge("Login Successful!");
         displayMenuOptions();
     }
 
@@ -81,20 +152,87 @@ public class BibliotecaApp {
             writeLine("You must be logged in to perform that task.");
         } catch (InvalidCredentialsException e) {
             writeLine("Login Failed! Please try again.");
+        } finally {
+            flush();
         }
     }
 
     <T extends LibraryItem> void listItems(Library<T> library) throws IOException {
-        final List<T> items = library.getItems();
-        writeLine(items.get(0).getCSVHeaders());
-        for (T item : items)
-            writeLine(item.getCSVRepresentation());
+        writeEntries(library, library.getItems());
+    }
+
+    <T extends LibraryItem> void listItemsPage(String page, Library<T> library) throws IOException, CommandNotFoundException {
+        if(!"first".equals(page) && !"next".equals(page) && !"prev".equals(page))
+            throw new CommandNotFoundException();
+        final boolean fromStart = "first".equals(page) || !pageFirstTitles.containsKey(library);
+        final List<CatalogEntry<T>> items;
+        if(fromStart)
+            items = library.getItemsAfter(null, PAGE_SIZE);
+        else if("next".equals(page))
+            items = library.getItemsAfter(pageLastTitles.get(library), PAGE_SIZE);
+        else
+            items = library.getItemsBefore(pageFirstTitles.get(library), PAGE_SIZE);
+
+        if(items.isEmpty() && !fromStart) {
+            writeLine("No more " + library.getItemsNameLowercase() + "s to list.");
+            return;
+        }
+        if(!items.isEmpty()) {
+            pageFirstTitles.put(library, items.get(0).getTitle());
+            pageLastTitles.put(library, items.get(items.size() - 1).getTitle());
+        }
+        writeEntries(library, items);
+    }
+
+    <T extends LibraryItem> void searchItems(String prefix, Library<T> library) throws IOException {
+        writeMatches(library.searchByTitle(prefix, SEARCH_RESULTS_LIMIT), "title", library);
+    }
+
+    <T extends LibraryItem> void listItemsBy(String value, ItemAttribute<T> attribute, Library<T> library) throws IOException {
+        writeMatches(library.findByAttribute(attribute, value), attribute.getName().toLowerCase(), library);
+    }
+
+    <T extends LibraryItem> void listItemsByYear(int from, int to, Library<T> library) throws IOException, CommandNotFoundException {
+        if(from > to) throw new CommandNotFoundException();
+        writeMatches(library.findByYear(from, to), "year", library);
+    }
+
+    <T extends LibraryItem> void listItemsByRating(int minimum, Library<T> library) throws IOException, CommandNotFoundException {
+        if(!library.isRated() || minimum < Rated.MIN_RATING || minimum > Rated.MAX_RATING)
+            throw new CommandNotFoundException();
+        writeMatches(library.findByRating(minimum), "rating", library);
+    }
+
+    <T extends LibraryItem> void listItemsMatching(String filter, Library<T> library) throws IOException, CommandNotFoundException {
+        writeMatches(library.findMatching(ItemFilter.parse(filter, library)), "filter", library);
+    }
+
+    <T extends LibraryItem> void countItems(String filter, Library<T> library) throws IOException, CommandNotFoundException {
+        if(filter == null)
+            writeLine("Available " + library.getItemsNameLowercase() + "s: " + library.countAvailable());
+        else
+            writeLine("Matching " + library.getItemsNameLowercase() + "s: " + library.countMatching(ItemFilter.parse(filter, library)));
+    }
+
+    private <T extends LibraryItem> void writeMatches(List<CatalogEntry<T>> matches, String matchedOn, Library<T> library) throws IOException {
+        if(matches.isEmpty())
+            writeLine("No " + library.getItemsNameLowercase() + "s match that " + matchedOn + ".");
+        else
+            writeEntries(library, matches);
+    }
+
+    private <T extends LibraryItem> void writeEntries(Library<T> library, Iterable<CatalogEntry<T>> entries) throws IOException {
+        writeLine(library.getCSVHeaders() + ", Available");
+        for (CatalogEntry<T> entry : entries)
+            writeLine(entry.getItem().getCSVRepresentation() + ", " + entry.getAvailableCopies() + "/" + entry.getTotalCopies());
     }
 
     void checkoutItem(String title, Library library) throws IOException, CustomerRequiredException {
         try {
             library.checkoutItemByTitle(title, securityContext.getLoggedInCustomer());
-            writeLine("Thank you! Enjoy the " + library.getItemsNameLowercase() + ".");
+            acknowledge("Thank you! Enjoy the " + library.getItemsNameLowercase() + ".");
+        } catch (LoanLimitExceededException e) {
+            writeLoanLimit(library);
         } catch (LibraryItemNotFoundException | LibraryItemNotAvailableException e) {
             writeLine("That " + library.getItemsNameLowercase() + " is not available.");
         }
@@ -102,15 +240,71 @@ public class BibliotecaApp {
 
     void returnItem(String title, Library library) throws IOException, CustomerRequiredException {
         try {
-            library.returnItemByTitle(title);
-            writeLine("Thank you for returning the " + library.getItemsNameLowercase() + ".");
+            library.returnItemByTitle(title, securityContext.getLoggedInCustomer());
+            acknowledge("Thank you for returning the " + library.getItemsNameLowercase() + ".");
         } catch (LibraryItemNotCheckedOutException | LibraryItemNotFoundException e) {
             writeLine("That is not a valid " + library.getItemsNameLowercase() + " to return.");
         }
     }
 
+    <T extends LibraryItem> void checkoutItems(String titles, Library<T> library) throws IOException, CustomerRequiredException, CommandNotFoundException {
+        try {
+            library.checkoutItemsByTitle(splitTitles(titles), securityContext.getLoggedInCustomer());
+            acknowledge("Thank you! Enjoy the " + library.getItemsNameLowercase() + "s.");
+        } catch (LoanLimitExceededException e) {
+            writeLoanLimit(library);
+        } catch (LibraryItemNotFoundException | LibraryItemNotAvailableException e) {
+            writeLine("Those " + library.getItemsNameLowercase() + "s are not all available.");
+        }
+    }
+
+    <T extends LibraryItem> void returnItems(String titles, Library<T> library) throws IOException, CustomerRequiredException, CommandNotFoundException {
+        try {
+            library.returnItemsByTitle(splitTitles(titles), securityContext.getLoggedInCustomer());
+            acknowledge("Thank you for returning the " + library.getItemsNameLowercase() + "s.");
+        } catch (LibraryItemNotCheckedOutException | LibraryItemNotFoundException e) {
+            writeLine("Those are not all valid " + library.getItemsNameLowercase() + "s to return.");
+        }
+    }
+
+    private static List<String> splitTitles(String titles) throws CommandNotFoundException {
+        if(titles == null) throw new CommandNotFoundException();
+        return Arrays.asList(titles.trim().split("\\s*\\|\\s*"));
+    }
+
+    void placeHold(String title, Library library) throws IOException, CustomerRequiredException {
+        try {
+            final int ahead = library.placeHoldByTitle(title, securityContext.getLoggedInCustomer());
+            acknowledge("Your hold has been placed. Holds ahead of yours: " + ahead + ".");
+        } catch (LibraryItemNotFoundException e) {
+            writeLine("That " + library.getItemsNameLowercase() + " is not in the library.");
+        } catch (LibraryItemAvailableException e) {
+            writeLine("That " + library.getItemsNameLowercase() + " is available to check out now.");
+        } catch (LoanLimitExceededException e) {
+            writeLoanLimit(library);
+        }
+    }
+
+    private void writeLoanLimit(Library<?> library) throws IOException {
+        writeLine("You cannot have more than " + library.getLoanLimit() + " " + library.getItemsNameLowercase() +
+                "s out or on hold at once.");
+    }
+
     void viewMyDetails() throws CustomerRequiredException, IOException {
-        writeLine(securityContext.getLoggedInCustomer().viewDetails());
+        final Customer customer = securityContext.getLoggedInCustomer();
+        writeLine(customer.viewDetails());
+        for(final Library<?> library : libraries)
+            for(final CatalogEntry<?> entry : library.getLoans(customer))
+                writeLine("Checked out " + library.getItemsNameLowercase() + ": " + entry.getItem().getCSVRepresentation());
+        for(final String notice : customer.takeNotices())
+            writeLine("Notice: " + notice);
+    }
+
+    void displayReplicationStatus() throws IOException {
+        if(!follower.isConnected())
+            writeLine("Not connected to the primary. Showing changes up to " + (follower.getNextSequence() - 1) + ".");
+        else
+            writeLine("Behind the primary by " + follower.getLagEvents() + " changes, " + follower.getLagMillis() + " ms.");
     }
 
     void quit() throws BibliotecaAppQuitException, IOException {
@@ -118,21 +312,148 @@ public class BibliotecaApp {
         throw new BibliotecaAppQuitException();
     }
 
+    private void acknowledge(String text) throws IOException {
+        if(journal != null)
+            journal.awaitDurable();
+        writeLine(text);
+    }
+
+    /**
+     * Encodes the line and its newline into the output buffer, byte for byte as getBytes would, and only writes to
+     * the output stream when the buffer fills. The rest is written by flush at the end of each command.
+     */
     private void writeLine(String text) throws IOException {
-        outputStream.write((text + "\n").getBytes());
+        for(int start = 0; start < text.length(); ) {
+            final int end = Math.min(text.length(), start + lineChars.remaining());
+            text.getChars(start, end, lineChars.array(), lineChars.position());
+            lineChars.position(lineChars.position() + end - start);
+            start = end;
+            if(!lineChars.hasRemaining())
+                encode(false);
+        }
+        lineChars.put('\n');
+        encode(true);
+        encoder.reset();
+    }
+
+    private void encode(boolean endOfLine) throws IOException {
+        lineChars.flip();
+        while(encoder.encode(lineChars, outputBuffer, endOfLine).isOverflow())
+            writeOutputBuffer();
+        if(endOfLine)
+            for(CoderResult result = encoder.flush(outputBuffer); result.isOverflow(); result = encoder.flush(outputBuffer))
+                writeOutputBuffer();
+        lineChars.compact();
+    }
+
+    private void writeOutputBuffer() throws IOException {
+        outputStream.write(outputBuffer.array(), 0, outputBuffer.position());
+        outputBuffer.clear();
+    }
+
+    /**
+     * Writes out whatever has been written since the last flush.
+     */
+    void flush() throws IOException {
+        if(outputBuffer.position() > 0)
+            writeOutputBuffer();
+        outputStream.flush();
     }
 
     public static void main(String[] args) throws Exception {
-        final Library<?> movieLibrary = new Library<>(Movie.getMovies(), Movie.class);
-        final Library<?> bookLibrary = new Library<>(Book.getBooks(), Book.class);
+        final Library<Movie> movieLibrary = args.length == 2
+                ? openLibrary(args[1], Movie.class, Movie.TYPE)
+                : new Library<>(Movie.getMovies(), Movie.class);
+        movieLibrary.addIndex(Movie.DIRECTOR);
+        movieLibrary.setLoanLimit(Integer.getInteger("biblioteca.limit.movies", DEFAULT_MOVIE_LIMIT));
+        final Library<Book> bookLibrary = args.length == 2
+                ? openLibrary(args[0], Book.class, Book.TYPE)
+                : new Library<>(Book.getBooks(), Book.class);
+        bookLibrary.addIndex(Book.AUTHOR);
+        bookLibrary.setLoanLimit(Integer.getInteger("biblioteca.limit.books", DEFAULT_BOOK_LIMIT));
         final SecurityContext securityContext = new SecurityContext(Customer.getCustomers());
-        final BibliotecaApp app =
-                new BibliotecaApp(new Scanner(System.in), System.out, securityContext, bookLibrary, movieLibrary);
+        final String primary = System.getProperty("biblioteca.follow");
+        if(primary == null)
+            runPrimary(securityContext, bookLibrary, movieLibrary);
+        else
+            runFollower(primary, securityContext, bookLibrary, movieLibrary);
+    }
+
+    private static void runPrimary(SecurityContext securityContext, Library<?>... libraries) throws Exception {
+        final LoanJournal journal = new LoanJournal(Paths.get(System.getProperty("biblioteca.journal", "journal")),
+                LoanJournal.DEFAULT_SEGMENT_SIZE,
+                LoanJournal.Durability.valueOf(System.getProperty("biblioteca.journal.durability", "GROUP")),
+                LoanJournal.DEFAULT_MAX_LATENCY_MICROS, Clock.SYSTEM, securityContext, libraries);
+        System.err.println("Replayed " + journal.getRecordsReplayed() + " journal records");
+        final String replicationPort = System.getProperty("biblioteca.replication.port");
+        final ReplicationServer replication = replicationPort == null ? null : new ReplicationServer(
+                new ServerSocket(Integer.parseInt(replicationPort)), journal, Clock.SYSTEM, securityContext, libraries);
+        final BibliotecaApp app = new BibliotecaApp(new Scanner(System.in), System.out, securityContext, libraries);
+        app.setJournal(journal);
+        final ScheduledExecutorService sweeper = startSweeper(libraries);
+        sweeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    journal.snapshot();
+                } catch (IOException e) {
+                    System.err.println("Could not snapshot the journal: " + e.getMessage());
+                }
+            }
+        }, SNAPSHOT_MINUTES, SNAPSHOT_MINUTES, TimeUnit.MINUTES);
         try {
             app.run();
         } catch (BibliotecaAppQuitException e) {
+            if(replication != null)
+                replication.close();
+            journal.snapshot();
+            journal.close();
             System.exit(0);
         }
     }
 
+    /**
+     * Runs as a read-only follower of the primary at host:port, starting from a copy of its state.
+     */
+    private static void runFollower(String primary, SecurityContext securityContext, Library<?>... libraries) throws Exception {
+        final int colon = primary.lastIndexOf(':');
+        final Socket socket = new Socket(primary.substring(0, colon), Integer.parseInt(primary.substring(colon + 1)));
+        final ReplicationFollower follower = new ReplicationFollower(socket, Clock.SYSTEM, securityContext, libraries);
+        System.err.println("Following " + primary + " from change " + follower.getNextSequence());
+        final Thread applier = new Thread(follower, "replication-follower");
+        applier.setDaemon(true);
+        applier.start();
+        startSweeper(libraries);
+        final BibliotecaApp app = new BibliotecaApp(new Scanner(System.in), System.out, securityContext, follower, libraries);
+        try {
+            app.run();
+        } catch (BibliotecaAppQuitException e) {
+            follower.close();
+            System.exit(0);
+        }
+    }
+
+    private static ScheduledExecutorService startSweeper(Library<?>... libraries) {
+        final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "loan-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        sweeper.scheduleWithFixedDelay(new LoanSweeper(libraries), 1, 1, TimeUnit.MINUTES);
+        return sweeper;
+    }
+
+    private static <T extends LibraryItem> Library<T> openLibrary(String path, Class<T> itemsClass, ItemType<T> type) throws IOException {
+        if(!path.endsWith(".csv"))
+            return new Library<>(Paths.get(path), itemsClass, type);
+        final CsvCatalogImporter<T> importer = new CsvCatalogImporter<>(type, itemsClass);
+        final Library<T> library = importer.importFrom(Paths.get(path));
+        System.err.println("Imported " + importer.getRowsImported() + " " + itemsClass.getSimpleName().toLowerCase() +
+                "s at " + importer.getRowsPerSecond() + " rows/sec");
+        return library;
+    }
+
 }
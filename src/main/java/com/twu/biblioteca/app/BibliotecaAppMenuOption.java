@@ -1,8 +1,12 @@
 package com.twu.biblioteca.app;
 
+import com.twu.biblioteca.domain.ItemAttribute;
+import com.twu.biblioteca.domain.LibraryItem;
 import com.twu.biblioteca.exceptions.CommandNotFoundException;
 import com.twu.biblioteca.helper.Option;
 
+import java.util.regex.Matcher;
+
 /**
  * Created by mwoodruf on 06/03/15.
  */
@@ -16,7 +20,60 @@ public class BibliotecaAppMenuOption {
         }
         @Override
         public void execute(BibliotecaApp target, String arg) throws Exception {
-            target.listItems(library);
+            if(arg == null) {
+                target.listItems(library);
+                return;
+            }
+            final Matcher years = ItemFilter.YEARS.matcher(arg);
+            final Matcher minimumRating = ItemFilter.MINIMUM_RATING.matcher(arg);
+            if(years.matches()) {
+                final int from = Integer.parseInt(years.group(1));
+                final int to = years.group(2) == null ? from : Integer.parseInt(years.group(2));
+                target.listItemsByYear(from, to, library);
+            } else if(minimumRating.matches())
+                target.listItemsByRating(Integer.parseInt(minimumRating.group(1)), library);
+            else if(arg.equals("first") || arg.equals("next") || arg.equals("prev"))
+                target.listItemsPage(arg, library);
+            else
+                target.listItemsMatching(arg, library);
+        }
+    }
+
+    static class CountOption extends Option<BibliotecaApp> {
+        private final Library<?> library;
+        CountOption(final Library<?> library) {
+            super("Count " + library.getItemsName() + "s", "<Filter>", null);
+            this.library = library;
+        }
+        @Override
+        public void execute(BibliotecaApp target, String arg) throws Exception {
+            target.countItems(arg, library);
+        }
+    }
+
+    static class SearchOption extends Option<BibliotecaApp> {
+        private final Library<?> library;
+        SearchOption(final Library<?> library) {
+            super("Search " + library.getItemsName() + "s", "<Title>", null);
+            this.library = library;
+        }
+        @Override
+        public void execute(BibliotecaApp target, String arg) throws Exception {
+            target.searchItems(arg, library);
+        }
+    }
+
+    static class ListByOption<T extends LibraryItem> extends Option<BibliotecaApp> {
+        private final Library<T> library;
+        private final ItemAttribute<T> attribute;
+        ListByOption(final Library<T> library, final ItemAttribute<T> attribute) {
+            super("List " + library.getItemsName() + "s by " + attribute.getName(), "<" + attribute.getName() + ">", null);
+            this.library = library;
+            this.attribute = attribute;
+        }
+        @Override
+        public void execute(BibliotecaApp target, String arg) throws Exception {
+            target.listItemsBy(arg, attribute, library);
         }
     }
 
@@ -44,6 +101,42 @@ public class BibliotecaAppMenuOption {
         }
     }
 
+    static class BatchCheckoutOption extends Option<BibliotecaApp> {
+        private final Library<?> library;
+        BatchCheckoutOption(final Library<?> library) {
+            super("Checkout " + library.getItemsName() + "s", "<Title> | <Title>", true);
+            this.library = library;
+        }
+        @Override
+        public void execute(BibliotecaApp target, String arg) throws Exception {
+            target.checkoutItems(arg, library);
+        }
+    }
+
+    static class BatchReturnOption extends Option<BibliotecaApp> {
+        private final Library<?> library;
+        BatchReturnOption(final Library<?> library) {
+            super("Return " + library.getItemsName() + "s", "<Title> | <Title>", true);
+            this.library = library;
+        }
+        @Override
+        public void execute(BibliotecaApp target, String arg) throws Exception {
+            target.returnItems(arg, library);
+        }
+    }
+
+    static class HoldOption extends Option<BibliotecaApp> {
+        private final Library<?> library;
+        HoldOption(final Library<?> library) {
+            super("Hold " + library.getItemsName(), "<Title>", true);
+            this.library = library;
+        }
+        @Override
+        public void execute(BibliotecaApp target, String arg) throws Exception {
+            target.placeHold(arg, library);
+        }
+    }
+
     static class MyDetailsOption extends Option<BibliotecaApp> {
         MyDetailsOption() {
             super("My Details", true);
@@ -54,6 +147,14 @@ public class BibliotecaAppMenuOption {
         }
     }
 
+    static class ReplicationStatusOption extends Option<BibliotecaApp> {
+        ReplicationStatusOption() { super("Replication Status", null); }
+        @Override
+        public void execute(BibliotecaApp target, String arg) throws Exception {
+            target.displayReplicationStatus();
+        }
+    }
+
     static class QuitOption extends Option<BibliotecaApp> {
         QuitOption() { super("Quit", null); }
         @Override
@@ -0,0 +1,555 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.exceptions.CustomerRequiredException;
+import com.twu.biblioteca.exceptions.LibraryItemNotAvailableException;
+import com.twu.biblioteca.exceptions.LibraryItemNotCheckedOutException;
+import com.twu.biblioteca.helper.TimingWheel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A title in a library together with every copy of it the library holds.
+ *
+ * Total and available copy counts are packed into one long so both change in a single compare-and-set. Free copies
+ * sit on a lock-free stack threaded through the copies themselves, with a version stamp in the head to rule out ABA,
+ * so checking out takes any free copy without scanning and without allocating. The title's own details are read from
+ * the library's catalog store by id, so an entry holds no item of its own.
+ *
+ * Customers waiting for the title queue on a lock-free FIFO queue of holds, made when the first hold is placed. A
+ * returned copy goes straight to the customer at the head of the queue without ever becoming available, and whenever
+ * a copy is on the shelf while holds are queued, whoever notices hands it to the head of the queue, so no copy is left
+ * waiting between the two. A hold that expires is only marked as such, and is skipped when it reaches the head of the
+ * queue.
+ *
+ * Every loan, return and hold is reported to a loan listener, which the library uses to keep due dates. A loan is
+ * reported with the borrower and due date it is made with, before the copy is handed over, so no listener hears of a
+ * loan's return before the loan itself and none has to read them back from a copy another session may be changing.
+ * A library restored from its journal sets its copies' borrowers directly and then rebuilds the counts and free list
+ * once.
+ */
+class CatalogEntry<T extends LibraryItem> {
+
+    private static final AtomicLongFieldUpdater<CatalogEntry> COPY_COUNTS =
+            AtomicLongFieldUpdater.newUpdater(CatalogEntry.class, "copyCounts");
+    private static final AtomicLongFieldUpdater<CatalogEntry> FREE_COPIES =
+            AtomicLongFieldUpdater.newUpdater(CatalogEntry.class, "freeCopies");
+    private static final AtomicIntegerFieldUpdater<CatalogEntry> HOLD_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(CatalogEntry.class, "holdCount");
+    private static final AtomicReferenceFieldUpdater<CatalogEntry, ConcurrentLinkedQueue> HOLDS =
+            AtomicReferenceFieldUpdater.newUpdater(CatalogEntry.class, ConcurrentLinkedQueue.class, "holds");
+    private static final Copy[] NO_COPIES = new Copy[0];
+    private static final int NO_COPY = -1;
+    private static final long AVAILABLE_MASK = 0xFFFFFFFFL;
+
+    private final CatalogStore<T> store;
+    private final int id;
+    private final AvailabilityListener<T> availabilityListener;
+    private final LoanListener<T> loanListener;
+    private final DueDates dueDates;
+    private volatile Copy[] copies = NO_COPIES;
+    private volatile long copyCounts;
+    private volatile long freeCopies = NO_COPY & AVAILABLE_MASK;
+    private volatile ConcurrentLinkedQueue<Hold> holds;
+    private volatile int holdCount;
+
+    CatalogEntry(T item, int copies, AvailabilityListener<T> availabilityListener) {
+        this(storeOf(item), 0, copies, availabilityListener);
+    }
+
+    CatalogEntry(CatalogStore<T> store, int id, int copies, AvailabilityListener<T> availabilityListener) {
+        this(store, id, copies, availabilityListener, CatalogEntry.<T>noLoanListener(), NEVER_DUE);
+    }
+
+    CatalogEntry(CatalogStore<T> store, int id, int copies, AvailabilityListener<T> availabilityListener,
+                 LoanListener<T> loanListener, DueDates dueDates) {
+        if(store == null) throw new IllegalArgumentException("store cannot be null");
+        if(id < 0 || id >= store.size()) throw new IllegalArgumentException("id is not in the store");
+        if(availabilityListener == null) throw new IllegalArgumentException("availabilityListener cannot be null");
+        if(loanListener == null) throw new IllegalArgumentException("loanListener cannot be null");
+        if(dueDates == null) throw new IllegalArgumentException("dueDates cannot be null");
+        this.store = store;
+        this.id = id;
+        this.availabilityListener = availabilityListener;
+        this.loanListener = loanListener;
+        this.dueDates = dueDates;
+        addCopies(copies);
+    }
+
+    private CatalogEntry(CatalogStore<T> store, int id) {
+        this.store = store;
+        this.id = id;
+        this.availabilityListener = noAvailabilityListener();
+        this.loanListener = noLoanListener();
+        this.dueDates = NEVER_DUE;
+        this.copyCounts = 1L << 32 | 1;
+    }
+
+    /**
+     * Stands in for a title with its one copy on the shelf that has no entry of its own yet, so a library can list it
+     * without making one. It answers what a reader asks of an entry but has no copy to lend, and must not be changed.
+     */
+    static <T extends LibraryItem> CatalogEntry<T> onShelf(CatalogStore<T> store, int id) {
+        if(store == null) throw new IllegalArgumentException("store cannot be null");
+        if(id < 0 || id >= store.size()) throw new IllegalArgumentException("id is not in the store");
+        return new CatalogEntry<>(store, id);
+    }
+
+    private static <T extends LibraryItem> CatalogStore<T> storeOf(T item) {
+        if(item == null) throw new IllegalArgumentException("item cannot be null");
+        final CatalogStore<T> store = new HeapCatalogStore<>();
+        store.add(item);
+        return store;
+    }
+
+    T getItem() {
+        return store.get(id);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    String getTitle() {
+        return store.getTitle(id);
+    }
+
+    boolean holds(T item) {
+        return store.holds(id, item);
+    }
+
+    int getTotalCopies() {
+        return (int) (copyCounts >>> 32);
+    }
+
+    int getAvailableCopies() {
+        return (int) (copyCounts & AVAILABLE_MASK);
+    }
+
+    boolean isAvailable() {
+        return getAvailableCopies() > 0;
+    }
+
+    boolean isCheckedOutBy(Customer customer) {
+        for(final Copy copy : copies)
+            if(copy.isCheckedOutBy(customer))
+                return true;
+        return false;
+    }
+
+    synchronized void addCopies(int count) {
+        if(count < 1) throw new IllegalArgumentException("copies must be at least 1");
+        final Copy[] current = copies;
+        final Copy[] grown = new Copy[current.length + count];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        for(int number = current.length; number < grown.length; number++)
+            grown[number] = new Copy(number);
+        copies = grown;
+        for(int number = current.length; number < grown.length; number++)
+            pushFreeCopy(grown[number]);
+        if((COPY_COUNTS.addAndGet(this, ((long) count << 32) + count) & AVAILABLE_MASK) == count)
+            availabilityListener.availabilityChanged(this);
+    }
+
+    Copy checkOut(Customer customer) throws CustomerRequiredException, LibraryItemNotAvailableException {
+        if(customer == null) throw new CustomerRequiredException();
+        final int available = reserveCopy();
+        if(available == 0) throw new LibraryItemNotAvailableException();
+        final Copy copy = popFreeCopy();
+        lend(copy, customer);
+        if(available == 1)
+            availabilityListener.availabilityChanged(this);
+        return copy;
+    }
+
+    Copy checkIn(Customer customer) throws LibraryItemNotCheckedOutException {
+        final Copy copy = claimReturn(customer);
+        completeReturn(copy, customer);
+        return copy;
+    }
+
+    /**
+     * Takes a copy back from the customer without yet making it available to others, so a batch return can claim
+     * every copy before committing to any of them. The copy must then be passed to either completeReturn or
+     * cancelReturn.
+     */
+    Copy claimReturn(Customer customer) throws LibraryItemNotCheckedOutException {
+        for(final Copy copy : copies)
+            if(copy.release(customer))
+                return copy;
+        throw new LibraryItemNotCheckedOutException();
+    }
+
+    void completeReturn(Copy copy, Customer customer) {
+        loanListener.returned(this, copy, customer);
+        final Customer holder = nextHolder();
+        if(holder != null) {
+            lend(copy, holder);
+            return;
+        }
+        pushFreeCopy(copy);
+        if((COPY_COUNTS.incrementAndGet(this) & AVAILABLE_MASK) == 1)
+            availabilityListener.availabilityChanged(this);
+        if(hasHolds())
+            fillHolds();
+    }
+
+    /**
+     * The customer who has the numbered copy, or null if it is on the shelf or there is no such copy.
+     */
+    Customer getBorrower(int number) {
+        final Copy[] copies = this.copies;
+        return number < 0 || number >= copies.length ? null : copies[number].borrower;
+    }
+
+    /**
+     * Puts a copy in a borrower's hands while the library is restored from its journal, before the entry is shared.
+     * The counts and free list are only put right by finishRestore.
+     */
+    boolean restoreLoan(int number, Customer borrower, long dueTime) {
+        final Copy[] copies = this.copies;
+        if(number < 0 || number >= copies.length) return false;
+        copies[number].lend(borrower, dueTime);
+        copies[number].setReminder(null);
+        return true;
+    }
+
+    boolean restoreReturn(int number, Customer customer) {
+        final Copy[] copies = this.copies;
+        if(number < 0 || number >= copies.length) return false;
+        if(copies[number].isCheckedOutBy(customer))
+            copies[number].borrower = null;
+        return true;
+    }
+
+    synchronized void finishRestore() {
+        final Copy[] copies = this.copies;
+        final boolean wasAvailable = isAvailable();
+        int free = 0;
+        int top = NO_COPY;
+        for(int number = copies.length - 1; number >= 0; number--) {
+            if(copies[number].borrower == null) {
+                copies[number].nextFree = top;
+                top = number;
+                free++;
+            }
+        }
+        freeCopies = nextHead(freeCopies, top);
+        copyCounts = ((long) copies.length << 32) | free;
+        if(wasAvailable != free > 0)
+            availabilityListener.availabilityChanged(this);
+    }
+
+    /**
+     * Passes each copy out on loan to the visitor while loans and returns carry on, so a copy lent or returned
+     * meanwhile may or may not be seen.
+     */
+    void visitLoans(LoanVisitor visitor) throws IOException {
+        for(final Copy copy : copies) {
+            final Customer borrower = copy.borrower;
+            if(borrower != null)
+                visitor.visit(id, copy.number, borrower, copy.dueTime);
+        }
+    }
+
+    List<Copy> getLentCopies() {
+        final List<Copy> lent = new ArrayList<>();
+        for(final Copy copy : copies)
+            if(copy.getBorrower() != null)
+                lent.add(copy);
+        return lent;
+    }
+
+    int getHoldCount() {
+        return holdCount;
+    }
+
+    /**
+     * Queues the customer for the next copy and returns how many holds were ahead of theirs. A customer may hold
+     * the same title more than once and will be given a copy for each hold.
+     */
+    int placeHold(Customer customer) throws CustomerRequiredException {
+        if(customer == null) throw new CustomerRequiredException();
+        final int ahead = HOLD_COUNT.getAndIncrement(this);
+        final Hold hold = new Hold(customer);
+        holds().offer(hold);
+        loanListener.held(this, hold);
+        if(isAvailable())
+            fillHolds();
+        return ahead;
+    }
+
+    /**
+     * Takes the hold out of the queue, unless it has already been given a copy.
+     */
+    boolean expireHold(Hold hold) {
+        if(!hold.settle(Hold.EXPIRED)) return false;
+        HOLD_COUNT.decrementAndGet(this);
+        loanListener.expired(this, hold);
+        return true;
+    }
+
+    private Customer nextHolder() {
+        final ConcurrentLinkedQueue<Hold> holds = this.holds;
+        if(holds == null) return null;
+        for(Hold hold; (hold = holds.poll()) != null;) {
+            if(hold.settle(Hold.FILLED)) {
+                HOLD_COUNT.decrementAndGet(this);
+                return hold.customer;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasHolds() {
+        final ConcurrentLinkedQueue<Hold> holds = this.holds;
+        return holds != null && !holds.isEmpty();
+    }
+
+    /**
+     * The queue of holds, which is only made when the first hold is placed, as most titles are never held.
+     */
+    private ConcurrentLinkedQueue<Hold> holds() {
+        final ConcurrentLinkedQueue<Hold> holds = this.holds;
+        if(holds != null) return holds;
+        HOLDS.compareAndSet(this, null, new ConcurrentLinkedQueue<Hold>());
+        return this.holds;
+    }
+
+    /**
+     * Lends copies on the shelf to queued customers, for a hold placed or a copy returned as the other happened.
+     */
+    private void fillHolds() {
+        while(hasHolds()) {
+            final int available = reserveCopy();
+            if(available == 0) return;
+            if(available == 1)
+                availabilityListener.availabilityChanged(this);
+            final Customer holder = nextHolder();
+            if(holder == null) {
+                if((COPY_COUNTS.incrementAndGet(this) & AVAILABLE_MASK) == 1)
+                    availabilityListener.availabilityChanged(this);
+                return;
+            }
+            lend(popFreeCopy(), holder);
+        }
+    }
+
+    void cancelReturn(Copy copy, Customer customer) {
+        copy.lend(customer, copy.dueTime);
+    }
+
+    /**
+     * Takes a copy off the shelf without lending it to anyone yet, so a batch checkout can secure every title before
+     * any loan is made. Nothing is told of the copy until it is passed to either completeCheckOut or cancelCheckOut.
+     */
+    Copy reserveCheckOut() throws LibraryItemNotAvailableException {
+        if(reserveCopy() == 0) throw new LibraryItemNotAvailableException();
+        return popFreeCopy();
+    }
+
+    void completeCheckOut(Copy copy, Customer customer) {
+        lend(copy, customer);
+        if(!isAvailable())
+            availabilityListener.availabilityChanged(this);
+    }
+
+    /**
+     * Puts a reserved copy back on the shelf, or in the hands of a customer who placed a hold on the title while it
+     * was reserved.
+     */
+    void cancelCheckOut(Copy copy) {
+        pushFreeCopy(copy);
+        if((COPY_COUNTS.incrementAndGet(this) & AVAILABLE_MASK) == 1)
+            availabilityListener.availabilityChanged(this);
+        if(hasHolds())
+            fillHolds();
+    }
+
+    /**
+     * Tells the listener of the loan and only then hands the copy over, so it cannot be returned before the loan is
+     * reported.
+     */
+    private void lend(Copy copy, Customer borrower) {
+        final long dueTime = dueDates.dueTime();
+        loanListener.lent(this, copy, borrower, dueTime);
+        copy.lend(borrower, dueTime);
+    }
+
+    private int reserveCopy() {
+        long counts;
+        do {
+            counts = copyCounts;
+            if((counts & AVAILABLE_MASK) == 0) return 0;
+        } while(!COPY_COUNTS.compareAndSet(this, counts, counts - 1));
+        return (int) (counts & AVAILABLE_MASK);
+    }
+
+    private Copy popFreeCopy() {
+        for(;;) {
+            final long head = freeCopies;
+            final int number = (int) head;
+            if(number == NO_COPY) throw new IllegalStateException("reserved copy missing from free list");
+            final Copy copy = copies[number];
+            if(FREE_COPIES.compareAndSet(this, head, nextHead(head, copy.nextFree)))
+                return copy;
+        }
+    }
+
+    private void pushFreeCopy(Copy copy) {
+        long head;
+        do {
+            head = freeCopies;
+            copy.nextFree = (int) head;
+        } while(!FREE_COPIES.compareAndSet(this, head, nextHead(head, copy.number)));
+    }
+
+    private static long nextHead(long head, int number) {
+        return (((head >>> 32) + 1) << 32) | (number & AVAILABLE_MASK);
+    }
+
+    interface AvailabilityListener<T extends LibraryItem> {
+        void availabilityChanged(CatalogEntry<T> entry);
+    }
+
+    /**
+     * Hears of each loan just before the copy is handed over, with the borrower and due date it is made with.
+     */
+    interface LoanListener<T extends LibraryItem> {
+        void lent(CatalogEntry<T> entry, Copy copy, Customer borrower, long dueTime);
+        void returned(CatalogEntry<T> entry, Copy copy, Customer customer);
+        void held(CatalogEntry<T> entry, Hold hold);
+        void expired(CatalogEntry<T> entry, Hold hold);
+    }
+
+    interface DueDates {
+        /**
+         * When a copy lent now is due back.
+         */
+        long dueTime();
+    }
+
+    interface LoanVisitor {
+        void visit(int id, int copyNumber, Customer borrower, long dueTime) throws IOException;
+    }
+
+    private static final LoanListener<?> NO_LOAN_LISTENER = new LoanListener<LibraryItem>() {
+        @Override
+        public void lent(CatalogEntry<LibraryItem> entry, Copy copy, Customer borrower, long dueTime) {}
+        @Override
+        public void returned(CatalogEntry<LibraryItem> entry, Copy copy, Customer customer) {}
+        @Override
+        public void held(CatalogEntry<LibraryItem> entry, Hold hold) {}
+        @Override
+        public void expired(CatalogEntry<LibraryItem> entry, Hold hold) {}
+    };
+
+    @SuppressWarnings("unchecked")
+    private static <T extends LibraryItem> LoanListener<T> noLoanListener() {
+        return (LoanListener<T>) NO_LOAN_LISTENER;
+    }
+
+    private static final DueDates NEVER_DUE = new DueDates() {
+        @Override
+        public long dueTime() {
+            return Long.MAX_VALUE;
+        }
+    };
+
+    private static final AvailabilityListener<?> NO_AVAILABILITY_LISTENER = new AvailabilityListener<LibraryItem>() {
+        @Override
+        public void availabilityChanged(CatalogEntry<LibraryItem> entry) {}
+    };
+
+    @SuppressWarnings("unchecked")
+    private static <T extends LibraryItem> AvailabilityListener<T> noAvailabilityListener() {
+        return (AvailabilityListener<T>) NO_AVAILABILITY_LISTENER;
+    }
+
+    static final class Hold {
+
+        private static final AtomicIntegerFieldUpdater<Hold> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Hold.class, "state");
+        private static final int WAITING = 0;
+        private static final int FILLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Customer customer;
+        private volatile int state = WAITING;
+
+        private Hold(Customer customer) {
+            this.customer = customer;
+        }
+
+        Customer getCustomer() {
+            return customer;
+        }
+
+        boolean isWaiting() {
+            return state == WAITING;
+        }
+
+        private boolean settle(int outcome) {
+            return STATE.compareAndSet(this, WAITING, outcome);
+        }
+    }
+
+    static final class Copy {
+
+        private static final AtomicReferenceFieldUpdater<Copy, Customer> BORROWER =
+                AtomicReferenceFieldUpdater.newUpdater(Copy.class, Customer.class, "borrower");
+
+        private final int number;
+        private volatile Customer borrower;
+        private volatile long dueTime;
+        private volatile TimingWheel.Timeout<?> reminder;
+        private int nextFree = NO_COPY;
+
+        private Copy(int number) {
+            this.number = number;
+        }
+
+        int getNumber() {
+            return number;
+        }
+
+        Customer getBorrower() {
+            return borrower;
+        }
+
+        long getDueTime() {
+            return dueTime;
+        }
+
+        TimingWheel.Timeout<?> getReminder() {
+            return reminder;
+        }
+
+        void setReminder(TimingWheel.Timeout<?> reminder) {
+            this.reminder = reminder;
+        }
+
+        boolean isCheckedOutBy(Customer customer) {
+            final Customer borrower = this.borrower;
+            return borrower != null && borrower.equals(customer);
+        }
+
+        private void lend(Customer customer, long dueTime) {
+            this.dueTime = dueTime;
+            borrower = customer;
+        }
+
+        private boolean release(Customer customer) {
+            final Customer borrower = this.borrower;
+            return borrower != null && borrower.equals(customer) && BORROWER.compareAndSet(this, borrower, null);
+        }
+    }
+
+}
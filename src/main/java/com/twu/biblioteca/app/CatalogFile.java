@@ -0,0 +1,177 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.ItemType;
+import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.helper.StringDictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A catalog saved as the columns of a columnar catalog store, so that loading one is a matter of mapping the file
+ * rather than reading it. All numbers are big-endian. The file is laid out as:
+ *
+ * <pre>
+ * int magic, int version, int items, int dictionary size
+ * int[dictionary size] dictionary string ends, UTF-8 dictionary strings
+ * int[items] title ends, UTF-8 titles
+ * int[items] creator codes, short[items] years, byte[items] ratings, int[items] copies
+ * </pre>
+ *
+ * Items are written in title order, one per title, with equal titles counted as copies of the first.
+ */
+final class CatalogFile<T extends LibraryItem> {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x42494243;
+    private static final int VERSION = 2;
+    private static final int HEADER_LENGTH = 16;
+
+    private final ColumnarCatalogStore<T> store;
+    private final ByteBuffer copies;
+
+    private CatalogFile(ColumnarCatalogStore<T> store, ByteBuffer copies) {
+        this.store = store;
+        this.copies = copies;
+    }
+
+    ColumnarCatalogStore<T> getStore() {
+        return store;
+    }
+
+    int getCopies(int id) {
+        return copies.getInt(id * 4);
+    }
+
+    static <T extends LibraryItem> void write(Path path, Collection<T> items, ItemType<T> type) throws IOException {
+        if(items == null) throw new IllegalArgumentException("items cannot be null");
+        final List<T> sortedItems = new ArrayList<>(items);
+        Collections.sort(sortedItems, new Comparator<T>() {
+            @Override
+            public int compare(T first, T second) {
+                return first.getTitle().compareTo(second.getTitle());
+            }
+        });
+
+        final ColumnarCatalogStore<T> store = new ColumnarCatalogStore<>(type);
+        final List<Integer> copies = new ArrayList<>();
+        for(final T item : sortedItems) {
+            final int last = store.size() - 1;
+            if(last >= 0 && store.getTitle(last).equals(item.getTitle()))
+                copies.set(last, copies.get(last) + 1);
+            else {
+                store.add(item);
+                copies.add(1);
+            }
+        }
+
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final StringDictionary dictionary = store.getDictionary();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC).putInt(VERSION).putInt(store.size()).putInt(dictionary.size()).flip();
+            writeFully(channel, header);
+            writeDictionary(channel, dictionary);
+            writeFully(channel, store.getTitleEnds());
+            writeFully(channel, store.getTitles());
+            writeFully(channel, store.getCreators());
+            writeFully(channel, store.getYears());
+            writeFully(channel, store.getRatings());
+            final ByteBuffer copyCounts = ByteBuffer.allocate(copies.size() * 4);
+            for(final int count : copies)
+                copyCounts.putInt(count);
+            copyCounts.flip();
+            writeFully(channel, copyCounts);
+            channel.force(true);
+        }
+    }
+
+    private static void writeDictionary(FileChannel channel, StringDictionary dictionary) throws IOException {
+        final byte[][] values = new byte[dictionary.size()][];
+        final ByteBuffer ends = ByteBuffer.allocate(values.length * 4);
+        int end = 0;
+        for(int code = 0; code < values.length; code++) {
+            values[code] = dictionary.decode(code).getBytes(UTF_8);
+            end += values[code].length;
+            ends.putInt(end);
+        }
+        ends.flip();
+        writeFully(channel, ends);
+        for(final byte[] value : values)
+            writeFully(channel, ByteBuffer.wrap(value));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Maps the file's columns without reading them, apart from the dictionary which is small and decoded up front.
+     */
+    static <T extends LibraryItem> CatalogFile<T> map(Path path, ItemType<T> type) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final Mapper mapper = new Mapper(channel);
+            final ByteBuffer header = mapper.map(HEADER_LENGTH);
+            if(header.getInt(0) != MAGIC) throw new IOException(path + " is not a catalog file");
+            if(header.getInt(4) != VERSION) throw new IOException(path + " is catalog version " + header.getInt(4));
+            final int items = header.getInt(8);
+            final int dictionarySize = header.getInt(12);
+
+            final ByteBuffer dictionaryEnds = mapper.map(dictionarySize * 4L);
+            final ByteBuffer dictionaryValues = mapper.map(lastEnd(dictionaryEnds, dictionarySize));
+            final StringDictionary dictionary = new StringDictionary();
+            for(int code = 0, start = 0; code < dictionarySize; code++) {
+                final int end = dictionaryEnds.getInt(code * 4);
+                final byte[] value = new byte[end - start];
+                dictionaryValues.position(start);
+                dictionaryValues.get(value);
+                dictionary.encode(new String(value, UTF_8));
+                start = end;
+            }
+
+            final ByteBuffer titleEnds = mapper.map(items * 4L);
+            final ByteBuffer titles = mapper.map(lastEnd(titleEnds, items));
+            final ByteBuffer creators = mapper.map(items * 4L);
+            final ByteBuffer years = mapper.map(items * 2L);
+            final ByteBuffer ratings = mapper.map(items);
+            final ByteBuffer copies = mapper.map(items * 4L);
+            return new CatalogFile<>(
+                    new ColumnarCatalogStore<>(type, dictionary, items, titleEnds, titles, creators, years, ratings),
+                    copies);
+        }
+    }
+
+    private static long lastEnd(ByteBuffer ends, int count) {
+        return count == 0 ? 0 : ends.getInt((count - 1) * 4);
+    }
+
+    private static class Mapper {
+        private final FileChannel channel;
+        private final long length;
+        private long position;
+
+        Mapper(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.length = channel.size();
+        }
+
+        ByteBuffer map(long size) throws IOException {
+            if(size < 0 || size > Integer.MAX_VALUE || position + size > length)
+                throw new IOException("catalog file is truncated or corrupt");
+            final ByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            position += size;
+            return section;
+        }
+    }
+
+}
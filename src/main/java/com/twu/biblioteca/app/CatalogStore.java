@@ -0,0 +1,47 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.LibraryItem;
+
+/**
+ * Holds the catalog data of a library's titles by id. Items are appended from one thread at a time, under the
+ * library's catalog lock, and an id is only read once the library has published it. Titles, years and ratings can be
+ * read and compared by id, so the library's indexes need not make an item to find out.
+ */
+interface CatalogStore<T extends LibraryItem> {
+
+    /**
+     * Appends the item and returns the id it is stored under, which is the number of items stored before it.
+     */
+    int add(T item);
+
+    T get(int id);
+
+    String getTitle(int id);
+
+    boolean hasTitle(int id, String title);
+
+    /**
+     * Compares the titles stored under two ids as String.compareTo would.
+     */
+    int compareTitles(int first, int second);
+
+    /**
+     * Compares the titles stored under two ids as String.CASE_INSENSITIVE_ORDER would.
+     */
+    int compareTitlesIgnoringCase(int first, int second);
+
+    short getYear(int id);
+
+    /**
+     * The rating of the item stored under the id, or 0 if it has none.
+     */
+    int getRating(int id);
+
+    /**
+     * Whether the item is the one stored under its id, rather than an equal item from somewhere else.
+     */
+    boolean holds(int id, T item);
+
+    int size();
+
+}
@@ -0,0 +1,238 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.ItemType;
+import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.helper.StringDictionary;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Keeps catalog data off the heap in one direct buffer per field, so a large catalog costs the collector a handful of
+ * buffers rather than several objects per item. Titles are stored as UTF-8 bytes end to end with the offset each one
+ * ends at; creators repeat across items, so they go through a dictionary and only their codes are stored. Years
+ * and ratings are stored as they are, in two bytes and one.
+ * Items are made again from their columns when asked for, and are never kept, so two calls for one id give equal
+ * but distinct items; titles are compared in place, so ordering them does not make strings while they are ASCII.
+ */
+class ColumnarCatalogStore<T extends LibraryItem> implements CatalogStore<T> {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int INITIAL_ITEMS = 1024;
+
+    private final ItemType<T> type;
+    private final StringDictionary dictionary;
+    private volatile ByteBuffer titleEnds;
+    private volatile ByteBuffer titles;
+    private volatile ByteBuffer creators;
+    private volatile ByteBuffer years;
+    private volatile ByteBuffer ratings;
+    private volatile int size;
+
+    ColumnarCatalogStore(ItemType<T> type) {
+        this(type, new StringDictionary(), 0,
+                ByteBuffer.allocateDirect(INITIAL_ITEMS * 4),
+                ByteBuffer.allocateDirect(INITIAL_ITEMS * 32),
+                ByteBuffer.allocateDirect(INITIAL_ITEMS * 4),
+                ByteBuffer.allocateDirect(INITIAL_ITEMS * 2),
+                ByteBuffer.allocateDirect(INITIAL_ITEMS));
+    }
+
+    /**
+     * A store over columns that already hold {@code size} items, such as ones mapped from a catalog file. The columns
+     * are only read until an item is added, which first copies each column into a larger direct buffer.
+     */
+    ColumnarCatalogStore(ItemType<T> type, StringDictionary dictionary, int size, ByteBuffer titleEnds,
+                         ByteBuffer titles, ByteBuffer creators, ByteBuffer years, ByteBuffer ratings) {
+        if(type == null) throw new IllegalArgumentException("type cannot be null");
+        if(dictionary == null) throw new IllegalArgumentException("dictionary cannot be null");
+        this.type = type;
+        this.dictionary = dictionary;
+        this.titleEnds = titleEnds;
+        this.titles = titles;
+        this.creators = creators;
+        this.years = years;
+        this.ratings = ratings;
+        this.size = size;
+    }
+
+    @Override
+    public int add(T item) {
+        if(item == null) throw new IllegalArgumentException("item cannot be null");
+        final int id = size;
+        final byte[] title = item.getTitle().getBytes(UTF_8);
+        final int titleStart = titleStart(id);
+        final int titleEnd = titleStart + title.length;
+        if(titleEnd < titleStart) throw new IllegalStateException("catalog titles exceed 2GB");
+
+        titles = ensureCapacity(titles, titleEnd);
+        final ByteBuffer titleWriter = titles.duplicate();
+        titleWriter.position(titleStart);
+        titleWriter.put(title);
+
+        titleEnds = ensureCapacity(titleEnds, (id + 1) * 4);
+        titleEnds.putInt(id * 4, titleEnd);
+        creators = ensureCapacity(creators, (id + 1) * 4);
+        creators.putInt(id * 4, dictionary.encode(type.getCreator(item)));
+        years = ensureCapacity(years, (id + 1) * 2);
+        years.putShort(id * 2, item.getYear());
+        ratings = ensureCapacity(ratings, id + 1);
+        ratings.put(id, (byte) type.getRating(item));
+
+        size = id + 1;
+        return id;
+    }
+
+    @Override
+    public T get(int id) {
+        checkId(id);
+        return type.create(readTitle(id),
+                dictionary.decode(creators.getInt(id * 4)),
+                years.getShort(id * 2),
+                ratings.get(id));
+    }
+
+    @Override
+    public String getTitle(int id) {
+        checkId(id);
+        return readTitle(id);
+    }
+
+    @Override
+    public boolean hasTitle(int id, String title) {
+        if(id < 0 || id >= size) return false;
+        final int start = titleStart(id);
+        final int end = titleEnds.getInt(id * 4);
+        if(end - start < title.length()) return false;
+        for(int i = 0; i < title.length(); i++) {
+            final byte b = titles.get(start + i);
+            if(b < 0) return readTitle(id).equals(title);
+            if(b != title.charAt(i)) return false;
+        }
+        return end - start == title.length();
+    }
+
+    @Override
+    public int compareTitles(int first, int second) {
+        return compare(first, second, false);
+    }
+
+    @Override
+    public int compareTitlesIgnoringCase(int first, int second) {
+        return compare(first, second, true);
+    }
+
+    @Override
+    public short getYear(int id) {
+        checkId(id);
+        return years.getShort(id * 2);
+    }
+
+    @Override
+    public int getRating(int id) {
+        checkId(id);
+        return ratings.get(id);
+    }
+
+    @Override
+    public boolean holds(int id, T item) {
+        return hasTitle(id, item.getTitle());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+    ByteBuffer getTitleEnds() {
+        return column(titleEnds, size * 4);
+    }
+
+    ByteBuffer getTitles() {
+        return column(titles, titleStart(size));
+    }
+
+    ByteBuffer getCreators() {
+        return column(creators, size * 4);
+    }
+
+    ByteBuffer getYears() {
+        return column(years, size * 2);
+    }
+
+    ByteBuffer getRatings() {
+        return column(ratings, size);
+    }
+
+    private static ByteBuffer column(ByteBuffer column, int length) {
+        final ByteBuffer used = column.asReadOnlyBuffer();
+        used.clear();
+        used.limit(length);
+        return used;
+    }
+
+    /**
+     * Compares two titles a byte at a time while both are ASCII, where bytes order as the chars of the strings do,
+     * and only decodes them from the first byte that is not.
+     */
+    private int compare(int first, int second, boolean ignoringCase) {
+        checkId(first);
+        checkId(second);
+        final int firstStart = titleStart(first);
+        final int firstLength = titleEnds.getInt(first * 4) - firstStart;
+        final int secondStart = titleStart(second);
+        final int secondLength = titleEnds.getInt(second * 4) - secondStart;
+        for(int i = 0; i < Math.min(firstLength, secondLength); i++) {
+            byte a = titles.get(firstStart + i);
+            byte b = titles.get(secondStart + i);
+            if(a < 0 || b < 0) {
+                final String firstTitle = readTitle(first);
+                final String secondTitle = readTitle(second);
+                return ignoringCase ? String.CASE_INSENSITIVE_ORDER.compare(firstTitle, secondTitle)
+                        : firstTitle.compareTo(secondTitle);
+            }
+            if(ignoringCase) {
+                a = lowerCase(a);
+                b = lowerCase(b);
+            }
+            if(a != b) return a - b;
+        }
+        return firstLength - secondLength;
+    }
+
+    private static byte lowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private String readTitle(int id) {
+        final int start = titleStart(id);
+        final byte[] title = new byte[titleEnds.getInt(id * 4) - start];
+        final ByteBuffer reader = titles.duplicate();
+        reader.position(start);
+        reader.get(title);
+        return new String(title, UTF_8);
+    }
+
+    private int titleStart(int id) {
+        return id == 0 ? 0 : titleEnds.getInt((id - 1) * 4);
+    }
+
+    private void checkId(int id) {
+        if(id < 0 || id >= size) throw new IndexOutOfBoundsException("id " + id + " of " + size);
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer column, int capacity) {
+        if(capacity <= column.capacity()) return column;
+        int grown = Math.max(column.capacity(), 16);
+        while(grown < capacity)
+            grown = grown > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : grown * 2;
+        final ByteBuffer source = column.duplicate();
+        source.clear();
+        return ByteBuffer.allocateDirect(grown).put(source);
+    }
+
+}
@@ -0,0 +1,246 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.ItemType;
+import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.helper.ConsistentHashRing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads a library from a CSV export in the same columns the library lists, with or without the header line. Fields
+ * may be quoted to hold commas, and a movie's rating may be "Unrated".
+ *
+ * The file is read a chunk at a time, cut at the last line break, and each chunk is parsed on a fork-join pool, split
+ * at line breaks until the pieces are small. Chunks are added to the library in file order as they finish, and no
+ * more than a fixed number are read ahead of the oldest unfinished one, so memory in use is bounded by the chunk size
+ * whatever the size of the file. An importer for one partition of a catalog keeps only the titles the partition
+ * owns, so the partition's heap only ever holds its own share.
+ */
+class CsvCatalogImporter<T extends LibraryItem> {
+
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int SEQUENTIAL_PARSE_SIZE = 1 << 16;
+
+    private final ItemType<T> type;
+    private final Class<T> itemsClass;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+    private final int columns;
+    private ConsistentHashRing ring;
+    private String partition;
+    private long rowsImported;
+    private long elapsedNanos;
+
+    CsvCatalogImporter(ItemType<T> type, Class<T> itemsClass) {
+        this(type, itemsClass, null, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * An importer that parses on the given pool, which stays the caller's to shut down. Without a pool, each import
+     * starts a pool of its own and shuts it down when it is done.
+     */
+    CsvCatalogImporter(ItemType<T> type, Class<T> itemsClass, ForkJoinPool pool, int chunkSize, int maxChunksInFlight) {
+        if(type == null) throw new IllegalArgumentException("type cannot be null");
+        if(itemsClass == null) throw new IllegalArgumentException("itemsClass cannot be null");
+        if(chunkSize < 1) throw new IllegalArgumentException("chunkSize must be at least 1");
+        if(maxChunksInFlight < 1) throw new IllegalArgumentException("maxChunksInFlight must be at least 1");
+        this.type = type;
+        this.itemsClass = itemsClass;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = maxChunksInFlight;
+        this.columns = type.getCSVHeaders().split(",").length;
+    }
+
+    /**
+     * Imports only the titles the ring gives to the named partition from now on.
+     */
+    CsvCatalogImporter<T> onlyPartition(String partition, ConsistentHashRing ring) {
+        if(partition == null) throw new IllegalArgumentException("partition cannot be null");
+        if(ring == null) throw new IllegalArgumentException("ring cannot be null");
+        this.partition = partition;
+        this.ring = ring;
+        return this;
+    }
+
+    Library<T> importFrom(Path path) throws IOException {
+        return importFrom(path, new HeapCatalogStore<T>());
+    }
+
+    Library<T> importFrom(Path path, CatalogStore<T> store) throws IOException {
+        final long start = System.nanoTime();
+        final Library<T> library = new Library<>(itemsClass, store);
+        final ForkJoinPool pool = this.pool == null ? new ForkJoinPool() : this.pool;
+        final Deque<ForkJoinTask<List<T>>> inFlight = new ArrayDeque<>();
+        long rows = 0;
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+            long chunkOffset = 0;
+            boolean firstChunk = true;
+            boolean endOfFile = false;
+            while(!endOfFile) {
+                endOfFile = channel.read(buffer) < 0;
+                final int end = endOfFile ? buffer.position() : lastLineBreak(buffer) + 1;
+                if(end == 0 && !endOfFile) {
+                    if(buffer.hasRemaining()) continue;
+                    throw new IOException("row at byte " + chunkOffset + " is longer than the chunk size");
+                }
+                final byte[] chunk = Arrays.copyOf(buffer.array(), end);
+                buffer.flip().position(end);
+                buffer.compact();
+
+                final int from = firstChunk ? skipHeader(chunk) : 0;
+                firstChunk = false;
+                inFlight.addLast(pool.submit(new ParseTask(chunk, from, chunk.length, chunkOffset)));
+                chunkOffset += end;
+                if(inFlight.size() == maxChunksInFlight)
+                    rows += addItems(library, inFlight.removeFirst());
+            }
+            while(!inFlight.isEmpty())
+                rows += addItems(library, inFlight.removeFirst());
+        } finally {
+            for(final ForkJoinTask<List<T>> task : inFlight)
+                task.cancel(false);
+            if(pool != this.pool)
+                pool.shutdown();
+        }
+        if(rows == 0) throw new IOException(path + " has no " + itemsClass.getSimpleName().toLowerCase() + "s");
+        rowsImported = rows;
+        elapsedNanos = System.nanoTime() - start;
+        return library;
+    }
+
+    long getRowsImported() {
+        return rowsImported;
+    }
+
+    long getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rowsImported * 1000000000L / elapsedNanos;
+    }
+
+    private int addItems(Library<T> library, ForkJoinTask<List<T>> task) throws IOException {
+        final List<T> items;
+        try {
+            items = task.join();
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        for(final T item : items)
+            if(ring == null || ring.nodeFor(item.getTitle()).equals(partition))
+                library.addItem(item);
+        return items.size();
+    }
+
+    private int skipHeader(byte[] chunk) {
+        final int lineEnd = lineEnd(chunk, 0, chunk.length);
+        final String firstLine = new String(chunk, 0, lineEnd, UTF_8).trim();
+        return firstLine.equals(type.getCSVHeaders()) ? Math.min(lineEnd + 1, chunk.length) : 0;
+    }
+
+    private static int lastLineBreak(ByteBuffer buffer) {
+        final byte[] bytes = buffer.array();
+        for(int i = buffer.position() - 1; i >= 0; i--)
+            if(bytes[i] == '\n')
+                return i;
+        return -1;
+    }
+
+    private static int lineEnd(byte[] chunk, int from, int to) {
+        for(int i = from; i < to; i++)
+            if(chunk[i] == '\n')
+                return i;
+        return to;
+    }
+
+    private T parseRow(String line, long offset) {
+        final List<String> fields = parseFields(line);
+        if(fields.size() != columns)
+            throw new IllegalArgumentException("row at byte " + offset + " has " + fields.size() + " fields, not " + columns);
+        final String rating = columns > 3 ? fields.get(3) : "";
+        try {
+            return type.create(fields.get(0), fields.get(1), Integer.parseInt(fields.get(2)),
+                    rating.isEmpty() || rating.equals("Unrated") ? 0 : Integer.parseInt(rating));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("row at byte " + offset + " is invalid: " + e.getMessage(), e);
+        }
+    }
+
+    static List<String> parseFields(String line) {
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for(int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if(quoted) {
+                if(c != '"') field.append(c);
+                else if(i + 1 < line.length() && line.charAt(i + 1) == '"') field.append(line.charAt(++i));
+                else quoted = false;
+            } else if(c == '"' && field.toString().trim().isEmpty()) {
+                field.setLength(0);
+                quoted = true;
+            } else if(c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else field.append(c);
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private class ParseTask extends RecursiveTask<List<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] chunk;
+        private final int from;
+        private final int to;
+        private final long chunkOffset;
+
+        ParseTask(byte[] chunk, int from, int to, long chunkOffset) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.chunkOffset = chunkOffset;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if(to - from > SEQUENTIAL_PARSE_SIZE) {
+                final int middle = lineEnd(chunk, from + (to - from) / 2, to);
+                if(middle < to) {
+                    final ParseTask first = new ParseTask(chunk, from, middle + 1, chunkOffset);
+                    first.fork();
+                    final List<T> second = new ParseTask(chunk, middle + 1, to, chunkOffset).compute();
+                    final List<T> items = first.join();
+                    items.addAll(second);
+                    return items;
+                }
+            }
+            final List<T> items = new ArrayList<>();
+            for(int start = from; start < to;) {
+                final int end = lineEnd(chunk, start, to);
+                final String line = new String(chunk, start, end - start, UTF_8).trim();
+                if(!line.isEmpty())
+                    items.add(parseRow(line, chunkOffset + start));
+                start = end + 1;
+            }
+            return items;
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.domain.Rated;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the items themselves on the heap, so the item handed back for an id is the one that was added.
+ */
+class HeapCatalogStore<T extends LibraryItem> implements CatalogStore<T> {
+
+    private volatile LibraryItem[] items = new LibraryItem[16];
+    private volatile int size;
+
+    @Override
+    public int add(T item) {
+        if(item == null) throw new IllegalArgumentException("item cannot be null");
+        final int id = size;
+        if(id == items.length)
+            items = Arrays.copyOf(items, id * 2);
+        items[id] = item;
+        size = id + 1;
+        return id;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        if(id < 0 || id >= size) throw new IndexOutOfBoundsException("id " + id + " of " + size);
+        return (T) items[id];
+    }
+
+    @Override
+    public String getTitle(int id) {
+        return get(id).getTitle();
+    }
+
+    @Override
+    public boolean hasTitle(int id, String title) {
+        return get(id).getTitle().equals(title);
+    }
+
+    @Override
+    public int compareTitles(int first, int second) {
+        return get(first).getTitle().compareTo(get(second).getTitle());
+    }
+
+    @Override
+    public int compareTitlesIgnoringCase(int first, int second) {
+        return String.CASE_INSENSITIVE_ORDER.compare(get(first).getTitle(), get(second).getTitle());
+    }
+
+    @Override
+    public short getYear(int id) {
+        return get(id).getYear();
+    }
+
+    @Override
+    public int getRating(int id) {
+        final T item = get(id);
+        return item instanceof Rated ? ((Rated) item).getRating() : 0;
+    }
+
+    @Override
+    public boolean holds(int id, T item) {
+        return id >= 0 && id < size && items[id] == item;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Customer;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An index from each customer to the copies they have out, held per customer as one array of title ids packed with
+ * copy numbers. The library keeps it from its own loan listener, in the same call as each checkout and return, so a
+ * customer's holdings are up to date by the time their checkout or return completes. A loan is added with the
+ * borrower it was reported with, before the copy is handed over, so it is always added before it can be removed.
+ * Each customer's array is replaced whole under that customer's own lock, so reading it takes no lock and costs time
+ * in proportion to the customer's loans rather than to the size of the catalog.
+ */
+class HoldingsIndex {
+
+    private static final long[] NONE = new long[0];
+
+    private final ConcurrentMap<Customer, Holdings> holdings = new ConcurrentHashMap<>();
+
+    void add(Customer customer, int id, int copyNumber) {
+        if(customer == null) throw new IllegalArgumentException("customer cannot be null");
+        holdingsOf(customer).add(pack(id, copyNumber));
+    }
+
+    void remove(Customer customer, int id, int copyNumber) {
+        final Holdings existing = holdings.get(customer);
+        if(existing != null)
+            existing.remove(pack(id, copyNumber));
+    }
+
+    /**
+     * The ids of the titles the customer has out, once for each copy, in the order they were lent.
+     */
+    int[] find(Customer customer) {
+        final Holdings existing = customer == null ? null : holdings.get(customer);
+        final long[] loans = existing == null ? NONE : existing.loans;
+        final int[] ids = new int[loans.length];
+        for(int i = 0; i < loans.length; i++)
+            ids[i] = (int) (loans[i] >>> 32);
+        return ids;
+    }
+
+    private Holdings holdingsOf(Customer customer) {
+        final Holdings existing = holdings.get(customer);
+        if(existing != null) return existing;
+        final Holdings created = new Holdings();
+        final Holdings raced = holdings.putIfAbsent(customer, created);
+        return raced == null ? created : raced;
+    }
+
+    private static long pack(int id, int copyNumber) {
+        return ((long) id << 32) | (copyNumber & 0xFFFFFFFFL);
+    }
+
+    private static final class Holdings {
+        private volatile long[] loans = NONE;
+
+        synchronized void add(long loan) {
+            final long[] grown = Arrays.copyOf(loans, loans.length + 1);
+            grown[grown.length - 1] = loan;
+            loans = grown;
+        }
+
+        synchronized void remove(long loan) {
+            final long[] current = loans;
+            for(int i = 0; i < current.length; i++) {
+                if(current[i] != loan) continue;
+                final long[] shrunk = new long[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, shrunk.length - i);
+                loans = shrunk;
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.ItemAttribute;
+import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.domain.Rated;
+import com.twu.biblioteca.exceptions.CommandNotFoundException;
+import com.twu.biblioteca.helper.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A filter over the titles of a library, made of clauses joined by "and" and "or", with "and" binding tighter.
+ * A word "and" or "or" only joins two clauses when the words before it make a whole clause and the word after it
+ * starts one, so a value such as "author Barnes and Noble" keeps its "and".
+ * A clause is one of "available", "year 1830" or "year 1830-1860", "rating >= 8" for rated items, or the name of an
+ * indexed attribute followed by a value, such as "author Charles Dickens". Each clause selects a bitmap of title ids
+ * from the library's indexes, and the clauses are combined by intersecting and merging those bitmaps.
+ */
+abstract class ItemFilter<T extends LibraryItem> {
+
+    static final Pattern YEARS = Pattern.compile("year (\\d{1,4})(?:-(\\d{1,4}))?");
+    static final Pattern MINIMUM_RATING = Pattern.compile("rating >= (\\d{1,2})");
+    private static final Pattern WORD = Pattern.compile("\\S+");
+
+    abstract RoaringBitmap select(Library<T> library);
+
+    static <T extends LibraryItem> ItemFilter<T> parse(String text, Library<T> library) throws CommandNotFoundException {
+        if(text == null) throw new CommandNotFoundException();
+        final List<ItemFilter<T>> alternatives = new ArrayList<>();
+        List<ItemFilter<T>> clauses = new ArrayList<>();
+        final Matcher word = WORD.matcher(text);
+        int clauseStart = 0;
+        while(word.find()) {
+            final String connective = word.group();
+            if(!connective.equals("and") && !connective.equals("or")) continue;
+            if(!startsClause(text.substring(word.end()).trim(), library)) continue;
+            final ItemFilter<T> clause = parseClause(text.substring(clauseStart, word.start()).trim(), library);
+            if(clause == null) continue;
+            clauses.add(clause);
+            if(connective.equals("or")) {
+                alternatives.add(all(clauses));
+                clauses = new ArrayList<>();
+            }
+            clauseStart = word.end();
+        }
+        final ItemFilter<T> last = parseClause(text.substring(clauseStart).trim(), library);
+        if(last == null) throw new CommandNotFoundException();
+        clauses.add(last);
+        alternatives.add(all(clauses));
+        return alternatives.size() == 1 ? alternatives.get(0) : new Any<>(alternatives);
+    }
+
+    private static <T extends LibraryItem> ItemFilter<T> all(List<ItemFilter<T>> clauses) {
+        return clauses.size() == 1 ? clauses.get(0) : new All<>(clauses);
+    }
+
+    /**
+     * Whether the text opens with the word a clause starts with, which is what makes an "and" or "or" before it a
+     * connective rather than part of a value.
+     */
+    private static <T extends LibraryItem> boolean startsClause(String text, Library<T> library) {
+        final String first = text.split("\\s+", 2)[0];
+        if(first.equals("available") || first.equals("year") || first.equals("rating"))
+            return true;
+        for(final ItemAttribute<T> attribute : library.getIndexes())
+            if((text.toLowerCase() + " ").startsWith(attribute.getName().toLowerCase() + " "))
+                return true;
+        return false;
+    }
+
+    /**
+     * The filter for one clause, or null if the text is not a clause.
+     */
+    private static <T extends LibraryItem> ItemFilter<T> parseClause(String clause, Library<T> library) {
+        if(clause.equals("available"))
+            return new Available<>();
+        final Matcher years = YEARS.matcher(clause);
+        if(years.matches()) {
+            final int from = Integer.parseInt(years.group(1));
+            final int to = years.group(2) == null ? from : Integer.parseInt(years.group(2));
+            return from > to ? null : new Years<T>(from, to);
+        }
+        final Matcher minimumRating = MINIMUM_RATING.matcher(clause);
+        if(minimumRating.matches()) {
+            final int minimum = Integer.parseInt(minimumRating.group(1));
+            if(!library.isRated() || minimum < Rated.MIN_RATING || minimum > Rated.MAX_RATING)
+                return null;
+            return new MinimumRating<>(minimum);
+        }
+        for(final ItemAttribute<T> attribute : library.getIndexes()) {
+            final String name = attribute.getName().toLowerCase() + " ";
+            if(clause.toLowerCase().startsWith(name) && clause.length() > name.length())
+                return new Matching<>(attribute, clause.substring(name.length()).trim());
+        }
+        return null;
+    }
+
+    private static class Available<T extends LibraryItem> extends ItemFilter<T> {
+        @Override
+        RoaringBitmap select(Library<T> library) {
+            return library.selectAvailable();
+        }
+    }
+
+    private static class Years<T extends LibraryItem> extends ItemFilter<T> {
+        private final int from;
+        private final int to;
+
+        Years(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        RoaringBitmap select(Library<T> library) {
+            return library.selectByYear(from, to);
+        }
+    }
+
+    private static class MinimumRating<T extends LibraryItem> extends ItemFilter<T> {
+        private final int minimum;
+
+        MinimumRating(int minimum) {
+            this.minimum = minimum;
+        }
+
+        @Override
+        RoaringBitmap select(Library<T> library) {
+            return library.selectByRating(minimum);
+        }
+    }
+
+    private static class Matching<T extends LibraryItem> extends ItemFilter<T> {
+        private final ItemAttribute<T> attribute;
+        private final String value;
+
+        Matching(ItemAttribute<T> attribute, String value) {
+            this.attribute = attribute;
+            this.value = value;
+        }
+
+        @Override
+        RoaringBitmap select(Library<T> library) {
+            return library.selectByAttribute(attribute, value);
+        }
+    }
+
+    private static class All<T extends LibraryItem> extends ItemFilter<T> {
+        private final List<ItemFilter<T>> filters;
+
+        All(List<ItemFilter<T>> filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        RoaringBitmap select(Library<T> library) {
+            RoaringBitmap selected = filters.get(0).select(library);
+            for(int i = 1; i < filters.size() && !selected.isEmpty(); i++)
+                selected = RoaringBitmap.and(selected, filters.get(i).select(library));
+            return selected;
+        }
+    }
+
+    private static class Any<T extends LibraryItem> extends ItemFilter<T> {
+        private final List<ItemFilter<T>> filters;
+
+        Any(List<ItemFilter<T>> filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        RoaringBitmap select(Library<T> library) {
+            RoaringBitmap selected = filters.get(0).select(library);
+            for(int i = 1; i < filters.size(); i++)
+                selected = RoaringBitmap.or(selected, filters.get(i).select(library));
+            return selected;
+        }
+    }
+
+}
@@ -1,66 +1,811 @@
 package com.twu.biblioteca.app;
 
 import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.domain.ItemAttribute;
+import com.twu.biblioteca.domain.ItemType;
 import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.domain.Rated;
 import com.twu.biblioteca.exceptions.CustomerRequiredException;
+import com.twu.biblioteca.exceptions.LibraryItemAvailableException;
 import com.twu.biblioteca.exceptions.LibraryItemNotAvailableException;
 import com.twu.biblioteca.exceptions.LibraryItemNotCheckedOutException;
 import com.twu.biblioteca.exceptions.LibraryItemNotFoundException;
+import com.twu.biblioteca.exceptions.LoanLimitExceededException;
+import com.twu.biblioteca.helper.Clock;
+import com.twu.biblioteca.helper.IntList;
+import com.twu.biblioteca.helper.RoaringBitmap;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Created by Matt on 23/02/15.
+ *
+ * Each title is given the next id when it is added, and every index is keyed by id, so the indexes cost a few ints
+ * and bits a title rather than objects of their own; a title's details are read from the catalog store. Items
+ * carry no id of their own, so one item can be in any number of libraries, and membership is a title lookup plus a
+ * check that the item is the one held. Titles are found by a hash of their text, and kept in two sorted arrays of
+ * ids, one in title order and one ignoring case that answers prefix searches with one binary search and a short walk.
+ * A title's copies are counted by a catalog entry, which is only made when a title is first looked up to be lent,
+ * returned or held, or is added with more than one copy; until then a title has one copy on the shelf. Copies change
+ * hands by compare-and-set, so checking out and returning take no lock and a library can be shared by any number of
+ * sessions. The ids of available titles are kept in a compressed bitmap that checkout and return keep up to date,
+ * which counts them for free and can be intersected or merged with bitmaps drawn from the other indexes to answer a
+ * filter. The title order also marks available titles with a bit per place under a summary of which words hold any,
+ * so listing steps from one available title to the next without reading those out on loan, and available titles can
+ * be read a page at a time either side of a title, which costs one binary search plus the page. A listed title with
+ * no entry yet is read through a small stand-in made for it, so listing allocates one object a title it returns.
+ * Secondary indexes can be added for any item attribute, and answer lookups in time proportional to the matches.
+ * Every title is also indexed by year in a sorted index for range lookups, and rated titles by rating in a bitset
+ * per rating.
+ * Adding to the catalog is serialised, but never blocks checkouts. The items' own details live in a catalog store,
+ * which is on the heap by default or can be a columnar store off the heap for very large catalogs. A library can also
+ * be opened straight from a catalog file, which is mapped rather than read; its titles are only indexed when the
+ * library is first used.
+ * Loans are given due dates and holds an expiry on a timing wheel, which a sweep turns into notices for customers.
+ * Each customer's loans are indexed as they are made and returned, so what a customer has out is found without
+ * looking at any other title. A limit on the copies each customer may have at once is kept by a counter per customer,
+ * reserved before a copy is taken.
  */
 public class Library<T extends LibraryItem> {
 
-    private final List<T> items = new ArrayList<>();
-    private final Map<String, T> itemsTitleMap = new HashMap<>();
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private static final Comparator<CatalogEntry<?>> ID_ORDER = new Comparator<CatalogEntry<?>>() {
+        @Override
+        public int compare(CatalogEntry<?> first, CatalogEntry<?> second) {
+            return Integer.compare(first.getId(), second.getId());
+        }
+    };
+
+    private final Object catalogLock = new Object();
+    private final CatalogStore<T> store;
+    private volatile CatalogFile<T> unindexedCatalog;
+    private final Object entriesLock = new Object();
+    private volatile AtomicReferenceArray<CatalogEntry<T>>[] entries = newChunks(0);
+    private volatile int size;
+    private final TitleIndex titleIndex;
+    private final TitleOrder titleOrder;
+    private final TitleOrder searchOrder;
+    private volatile String csvHeaders;
+    private final List<AttributeIndex<T>> attributeIndexes = new CopyOnWriteArrayList<>();
+    private final YearIndex yearIndex = new YearIndex();
+    private final RatingIndex ratingIndex = new RatingIndex();
+    private final RoaringBitmap availableIds = new RoaringBitmap();
+    private final HoldingsIndex holdingsIndex = new HoldingsIndex();
+    private final LoanQuota quota = new LoanQuota();
+    private final Collection<CatalogEntry<T>> availableEntries = new AbstractCollection<CatalogEntry<T>>() {
+        @Override
+        public Iterator<CatalogEntry<T>> iterator() {
+            return new AvailableEntries(titleOrder.snapshot());
+        }
+        @Override
+        public int size() {
+            return availableIds.getCardinality();
+        }
+    };
+    private final CatalogEntry.AvailabilityListener<T> availabilityListener = new CatalogEntry.AvailabilityListener<T>() {
+        @Override
+        public void availabilityChanged(CatalogEntry<T> entry) {
+            updateAvailability(entry);
+        }
+    };
+    private final CatalogEntry.LoanListener<T> loanListener = new CatalogEntry.LoanListener<T>() {
+        @Override
+        public void lent(CatalogEntry<T> entry, CatalogEntry.Copy copy, Customer borrower, long dueTime) {
+            holdingsIndex.add(borrower, entry.getId(), copy.getNumber());
+            loanTimer.lent(entry, copy, borrower, dueTime);
+            final CatalogEntry.LoanListener<T>[] listeners = loanListeners;
+            for(int i = 0; i < listeners.length; i++)
+                listeners[i].lent(entry, copy, borrower, dueTime);
+        }
+        @Override
+        public void returned(CatalogEntry<T> entry, CatalogEntry.Copy copy, Customer customer) {
+            holdingsIndex.remove(customer, entry.getId(), copy.getNumber());
+            quota.release(customer, 1);
+            loanTimer.returned(entry, copy, customer);
+            final CatalogEntry.LoanListener<T>[] listeners = loanListeners;
+            for(int i = 0; i < listeners.length; i++)
+                listeners[i].returned(entry, copy, customer);
+        }
+        @Override
+        public void held(CatalogEntry<T> entry, CatalogEntry.Hold hold) {
+            loanTimer.held(entry, hold);
+            final CatalogEntry.LoanListener<T>[] listeners = loanListeners;
+            for(int i = 0; i < listeners.length; i++)
+                listeners[i].held(entry, hold);
+        }
+        @Override
+        public void expired(CatalogEntry<T> entry, CatalogEntry.Hold hold) {
+            quota.release(hold.getCustomer(), 1);
+            loanTimer.expired(entry, hold);
+            final CatalogEntry.LoanListener<T>[] listeners = loanListeners;
+            for(int i = 0; i < listeners.length; i++)
+                listeners[i].expired(entry, hold);
+        }
+    };
+    private final CatalogEntry.DueDates dueDates = new CatalogEntry.DueDates() {
+        @Override
+        public long dueTime() {
+            return loanTimer.dueTime();
+        }
+    };
+    private volatile CatalogEntry.LoanListener<T>[] loanListeners = newLoanListeners(0);
+    private final BitSet restoredIds = new BitSet();
+    private volatile LoanTimer<T> loanTimer =
+            new LoanTimer<>(Clock.SYSTEM, LoanTimer.DEFAULT_LOAN_PERIOD, LoanTimer.DEFAULT_HOLD_PERIOD);
     private final Class<T> itemsClass;
 
-    public Library(Set<T> items, Class<T> itemsClass) {
+    public Library(Collection<T> items, Class<T> itemsClass) {
+        this(items, itemsClass, new HeapCatalogStore<T>());
+    }
+
+    Library(Collection<T> items, Class<T> itemsClass, CatalogStore<T> store) {
+        this(itemsClass, store);
         if(items == null || items.isEmpty()) throw new IllegalArgumentException("items cannot be null or empty");
+        final List<T> sortedItems = new ArrayList<>(items);
+        Collections.sort(sortedItems);
+        for(final T item : sortedItems)
+            addItem(item);
+    }
+
+    /**
+     * An empty library for a loader to add to, which must add at least one item before the library is used.
+     */
+    Library(Class<T> itemsClass, CatalogStore<T> store) {
+        this(itemsClass, checkUnused(store), 0);
+    }
+
+    private Library(Class<T> itemsClass, CatalogStore<T> store, int expected) {
         if(itemsClass == null) throw new IllegalArgumentException("itemsClass cannot be null");
         this.itemsClass = itemsClass;
-        this.items.addAll(items);
-        Collections.sort(this.items);
-        for(final T item : items)
-            itemsTitleMap.put(item.getTitle(), item);
+        this.store = store;
+        this.titleIndex = new TitleIndex(store, expected);
+        this.titleOrder = new TitleOrder(new TitleOrder.IdComparator() {
+            @Override
+            public int compare(int first, int second) {
+                return Library.this.store.compareTitles(first, second);
+            }
+        }, expected, new TitleOrder.Marks() {
+            @Override
+            public boolean isMarked(int id) {
+                return availableIds.contains(id);
+            }
+        });
+        this.searchOrder = new TitleOrder(new TitleOrder.IdComparator() {
+            @Override
+            public int compare(int first, int second) {
+                final int order = Library.this.store.compareTitlesIgnoringCase(first, second);
+                return order != 0 ? order : Library.this.store.compareTitles(first, second);
+            }
+        }, expected);
+    }
+
+    private static <T extends LibraryItem> CatalogStore<T> checkUnused(CatalogStore<T> store) {
+        if(store == null || store.size() > 0) throw new IllegalArgumentException("store cannot be null or in use");
+        return store;
+    }
+
+    public Library(Path catalogFile, Class<T> itemsClass, ItemType<T> type) throws IOException {
+        this(CatalogFile.map(catalogFile, type), itemsClass);
+    }
+
+    private Library(CatalogFile<T> catalog, Class<T> itemsClass) {
+        this(itemsClass, catalog.getStore(), catalog.getStore().size());
+        if(store.size() == 0) throw new IllegalArgumentException("catalog cannot be empty");
+        this.entries = newChunks((store.size() >> CHUNK_BITS) + 1);
+        this.unindexedCatalog = catalog;
+    }
+
+    private void ensureIndexed() {
+        if(unindexedCatalog == null) return;
+        synchronized (catalogLock) {
+            indexCatalog();
+        }
+    }
+
+    boolean isIndexed() {
+        return unindexedCatalog == null;
+    }
+
+    private void indexCatalog() {
+        final CatalogFile<T> catalog = unindexedCatalog;
+        if(catalog == null) return;
+        for(int id = size; id < store.size(); id++)
+            index(id, store.getTitle(id), catalog.getCopies(id));
+        unindexedCatalog = null;
+    }
+
+    public void addItem(T item) {
+        addItem(item, 1);
+    }
+
+    public void addItem(T item, int copies) {
+        if(item == null) throw new IllegalArgumentException("item cannot be null");
+        synchronized (catalogLock) {
+            indexCatalog();
+            final int existing = titleIndex.find(item.getTitle());
+            if(existing >= 0) {
+                entry(existing).addCopies(copies);
+                return;
+            }
+            if(copies < 1) throw new IllegalArgumentException("copies must be at least 1");
+            index(store.add(item), item.getTitle(), copies);
+        }
+    }
+
+    /**
+     * Indexes a title the store has just been given. Only a title with other than one copy needs an entry yet; it is
+     * installed before the id is published, and the id is marked available here rather than by the entry, before
+     * the title can be found to be lent.
+     */
+    private void index(int id, String title, int copies) {
+        if(copies != 1)
+            chunk(id).set(id & CHUNK_MASK, newEntry(id, copies));
+        availableIds.add(id);
+        titleOrder.add(id);
+        searchOrder.add(id);
+        titleIndex.add(id, title);
+        T item = null;
+        for(final AttributeIndex<T> index : attributeIndexes)
+            if(index.isFilled()) {
+                if(item == null)
+                    item = store.get(id);
+                index.add(id, item);
+            }
+        yearIndex.add(id, store.getYear(id));
+        ratingIndex.add(id, store.getRating(id));
+        size = id + 1;
+    }
+
+    /**
+     * Adds an index on the attribute, which is only filled when titles are first looked up by it, so adding one at
+     * startup does not index a catalog that has not been used yet.
+     */
+    public void addIndex(ItemAttribute<T> attribute) {
+        final AttributeIndex<T> index = new AttributeIndex<>(attribute);
+        synchronized (catalogLock) {
+            if(size == 0)
+                index.setFilled();
+            attributeIndexes.add(index);
+        }
+    }
+
+    private void fill(AttributeIndex<T> index) {
+        synchronized (catalogLock) {
+            if(index.isFilled()) return;
+            indexCatalog();
+            for(int id = 0; id < size; id++)
+                index.add(id, store.get(id));
+            index.setFilled();
+        }
+    }
+
+    List<ItemAttribute<T>> getIndexes() {
+        final List<ItemAttribute<T>> attributes = new ArrayList<>();
+        for(final AttributeIndex<T> index : attributeIndexes)
+            attributes.add(index.getAttribute());
+        return attributes;
+    }
+
+    List<CatalogEntry<T>> findByAttribute(ItemAttribute<T> attribute, String value) {
+        ensureIndexed();
+        final IntList ids = findIndex(attribute).find(value);
+        final int[] matches = new int[ids.size()];
+        for(int i = 0; i < matches.length; i++)
+            matches[i] = ids.get(i);
+        return entriesInTitleOrder(matches);
+    }
+
+    List<CatalogEntry<T>> findByYear(int from, int to) {
+        ensureIndexed();
+        return entriesFor(yearIndex.find(from, to));
+    }
+
+    boolean isRated() {
+        return Rated.class.isAssignableFrom(itemsClass);
+    }
+
+    List<CatalogEntry<T>> findByRating(int minimum) {
+        ensureIndexed();
+        return entriesFor(ratingIndex.find(minimum));
+    }
+
+    private List<CatalogEntry<T>> entriesFor(List<Integer> ids) {
+        final List<CatalogEntry<T>> matches = new ArrayList<>(ids.size());
+        for(final int id : ids)
+            matches.add(peek(id));
+        return matches;
+    }
+
+    private List<CatalogEntry<T>> entriesInTitleOrder(int[] ids) {
+        TitleOrder.sort(ids, ids.length, new TitleOrder.IdComparator() {
+            @Override
+            public int compare(int first, int second) {
+                return store.compareTitles(first, second);
+            }
+        });
+        final List<CatalogEntry<T>> matches = new ArrayList<>(ids.length);
+        for(final int id : ids)
+            matches.add(peek(id));
+        return matches;
+    }
+
+    int countAvailable() {
+        ensureIndexed();
+        return availableIds.getCardinality();
+    }
+
+    int countMatching(ItemFilter<T> filter) {
+        ensureIndexed();
+        return filter.select(this).getCardinality();
+    }
+
+    List<CatalogEntry<T>> findMatching(ItemFilter<T> filter) {
+        ensureIndexed();
+        return entriesInTitleOrder(filter.select(this).toArray());
+    }
+
+    /**
+     * The live bitmap of available ids, which callers must only read.
+     */
+    RoaringBitmap selectAvailable() {
+        return availableIds;
+    }
+
+    RoaringBitmap selectByAttribute(ItemAttribute<T> attribute, String value) {
+        final IntList ids = findIndex(attribute).find(value);
+        final RoaringBitmap selected = new RoaringBitmap();
+        final int count = ids.size();
+        for(int i = 0; i < count; i++)
+            selected.add(ids.get(i));
+        return selected;
+    }
+
+    RoaringBitmap selectByYear(int from, int to) {
+        return bitmapOf(yearIndex.find(from, to));
+    }
+
+    RoaringBitmap selectByRating(int minimum) {
+        return bitmapOf(ratingIndex.find(minimum));
+    }
+
+    private static RoaringBitmap bitmapOf(List<Integer> ids) {
+        final RoaringBitmap selected = new RoaringBitmap();
+        for(final int id : ids)
+            selected.add(id);
+        return selected;
+    }
+
+    private AttributeIndex<T> findIndex(ItemAttribute<T> attribute) {
+        for(final AttributeIndex<T> index : attributeIndexes)
+            if(index.getAttribute() == attribute) {
+                if(!index.isFilled())
+                    fill(index);
+                return index;
+            }
+        throw new IllegalArgumentException(getItemsNameLowercase() + "s are not indexed by " + attribute.getName());
+    }
+
+    /**
+     * A live view of the available titles in title order, which callers must only read.
+     */
+    Collection<CatalogEntry<T>> getItems() {
+        ensureIndexed();
+        return availableEntries;
+    }
+
+    List<CatalogEntry<T>> getItemsAfter(String title, int limit) {
+        ensureIndexed();
+        final TitleOrder.Snapshot order = titleOrder.snapshot();
+        final List<CatalogEntry<T>> items = new ArrayList<>(limit);
+        final int start = title == null ? 0 : order.firstAfter(probe(title));
+        for(int i = order.nextMarked(start); i < order.size() && items.size() < limit; i = order.nextMarked(i + 1))
+            items.add(peek(order.get(i)));
+        return items;
+    }
+
+    List<CatalogEntry<T>> getItemsBefore(String title, int limit) {
+        ensureIndexed();
+        final TitleOrder.Snapshot order = titleOrder.snapshot();
+        final List<CatalogEntry<T>> items = new ArrayList<>(limit);
+        final int end = title == null ? order.size() : order.firstAtOrAfter(probe(title));
+        for(int i = order.previousMarked(end - 1); i >= 0 && items.size() < limit; i = order.previousMarked(i - 1))
+            items.add(peek(order.get(i)));
+        Collections.reverse(items);
+        return items;
+    }
+
+    private TitleOrder.Probe probe(final String title) {
+        return new TitleOrder.Probe() {
+            @Override
+            public int compareTo(int id) {
+                return store.getTitle(id).compareTo(title);
+            }
+        };
     }
 
-    List<T> getItems() {
-        final List<T> availableItems = new ArrayList<>();
-        for(final T item : items)
-            if (item.isAvailable())
-                availableItems.add(item);
-        return availableItems;
+    String getCSVHeaders() {
+        String headers = csvHeaders;
+        if(headers == null)
+            csvHeaders = headers = store.get(0).getCSVHeaders();
+        return headers;
+    }
+
+    int size() {
+        ensureIndexed();
+        return size;
+    }
+
+    CatalogEntry<T> findEntryByTitle(String title) {
+        final int id = findId(title);
+        return id < 0 ? null : entry(id);
+    }
+
+    private int findId(String title) {
+        ensureIndexed();
+        final int size = this.size;
+        if(title == null) return -1;
+        final int id = titleIndex.find(title);
+        return id < size ? id : -1;
+    }
+
+    CatalogEntry<T> findEntryById(int id) {
+        ensureIndexed();
+        return id < 0 || id >= size ? null : entry(id);
+    }
+
+    List<CatalogEntry<T>> searchByTitle(String prefix, int limit) {
+        ensureIndexed();
+        final String start = prefix == null ? "" : prefix;
+        final TitleOrder.Snapshot order = searchOrder.snapshot();
+        final List<CatalogEntry<T>> matches = new ArrayList<>();
+        for(int i = order.firstAtOrAfter(new TitleOrder.Probe() {
+            @Override
+            public int compareTo(int id) {
+                return String.CASE_INSENSITIVE_ORDER.compare(store.getTitle(id), start);
+            }
+        }); i < order.size() && matches.size() < limit; i++) {
+            final int id = order.get(i);
+            if(!store.getTitle(id).regionMatches(true, 0, start, 0, start.length())) break;
+            matches.add(peek(id));
+        }
+        return matches;
     }
 
     T findItemByTitle(String title) {
-        return itemsTitleMap.get(title);
+        final int id = findId(title);
+        return id < 0 ? null : store.get(id);
     }
 
     void checkoutItemByTitle(String title, Customer checkedOutBy) throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
-        checkoutItem(findItemByTitle(title), checkedOutBy);
+        checkOut(findEntry(title), checkedOutBy);
     }
 
-    void returnItemByTitle(String title) throws LibraryItemNotFoundException, LibraryItemNotCheckedOutException {
-        returnItem(findItemByTitle(title));
+    void returnItemByTitle(String title, Customer returnedBy) throws LibraryItemNotFoundException, LibraryItemNotCheckedOutException {
+        findEntry(title).checkIn(returnedBy);
     }
 
-    void returnItem(T item) throws LibraryItemNotFoundException, LibraryItemNotCheckedOutException {
-        verifyItemExists(item);
-        item.checkIn();
+    void returnItem(T item, Customer returnedBy) throws LibraryItemNotFoundException, LibraryItemNotCheckedOutException {
+        verifyItemExists(item).checkIn(returnedBy);
     }
 
-    void verifyItemExists(T item) throws LibraryItemNotFoundException {
-        if(item == null || !items.contains(item))
-            throw new LibraryItemNotFoundException();
+    CatalogEntry<T> verifyItemExists(T item) throws LibraryItemNotFoundException {
+        if(item == null) throw new LibraryItemNotFoundException();
+        final int id = findId(item.getTitle());
+        if(id < 0 || !store.holds(id, item)) throw new LibraryItemNotFoundException();
+        return entry(id);
     }
 
     void checkoutItem(T item, Customer checkedOutBy) throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
-        verifyItemExists(item);
-        item.checkOut(checkedOutBy);
+        checkOut(verifyItemExists(item), checkedOutBy);
+    }
+
+    private void checkOut(CatalogEntry<T> entry, Customer checkedOutBy) throws LibraryItemNotAvailableException, CustomerRequiredException {
+        if(checkedOutBy == null) throw new CustomerRequiredException();
+        if(!quota.reserve(checkedOutBy, 1)) throw new LoanLimitExceededException();
+        try {
+            entry.checkOut(checkedOutBy);
+        } catch (LibraryItemNotAvailableException e) {
+            quota.release(checkedOutBy, 1);
+            throw e;
+        }
+    }
+
+    /**
+     * Sets how many copies each customer may have out or on hold at once, from now on.
+     */
+    void setLoanLimit(int limit) {
+        quota.setLimit(limit);
+    }
+
+    int getLoanLimit() {
+        return quota.getLimit();
+    }
+
+    int countLoans(Customer customer) {
+        return quota.count(customer);
+    }
+
+    /**
+     * Sets the clock and periods for loans and holds made from now on.
+     */
+    void setLoanPolicy(Clock clock, long loanPeriod, long holdPeriod) {
+        loanTimer = new LoanTimer<>(clock, loanPeriod, holdPeriod);
+    }
+
+    List<LoanNotice> sweepDueDates() {
+        return loanTimer.sweep();
+    }
+
+    /**
+     * Adds a listener told of every loan, return and hold after the library's own due dates are kept.
+     */
+    void addLoanListener(CatalogEntry.LoanListener<T> listener) {
+        if(listener == null) throw new IllegalArgumentException("listener cannot be null");
+        synchronized (catalogLock) {
+            final CatalogEntry.LoanListener<T>[] listeners = Arrays.copyOf(loanListeners, loanListeners.length + 1);
+            listeners[listeners.length - 1] = listener;
+            loanListeners = listeners;
+        }
+    }
+
+    /**
+     * Replays a loan from the journal. Restoring must be done before the library is shared, by the one thread
+     * applying a primary's changes to a read-only follower, or by a partition for titles it is being handed and does
+     * not serve yet, and be followed by finishRestore; records for titles or copies the library no longer has are
+     * ignored.
+     */
+    void restoreLoan(int id, int copyNumber, Customer borrower, long dueTime) {
+        ensureIndexed();
+        if(id < 0 || id >= size) return;
+        final CatalogEntry<T> entry = entry(id);
+        final Customer previous = entry.getBorrower(copyNumber);
+        if(!entry.restoreLoan(copyNumber, borrower, dueTime)) return;
+        restoredIds.set(id);
+        if(previous != null && previous.equals(borrower)) return;
+        if(previous != null) {
+            holdingsIndex.remove(previous, id, copyNumber);
+            quota.release(previous, 1);
+        }
+        if(borrower != null) {
+            holdingsIndex.add(borrower, id, copyNumber);
+            quota.take(borrower, 1);
+        }
+    }
+
+    void restoreReturn(int id, int copyNumber, Customer returnedBy) {
+        ensureIndexed();
+        if(id < 0 || id >= size) return;
+        final CatalogEntry<T> entry = entry(id);
+        final Customer previous = entry.getBorrower(copyNumber);
+        if(!entry.restoreReturn(copyNumber, returnedBy)) return;
+        restoredIds.set(id);
+        if(previous != null && previous.equals(returnedBy)) {
+            holdingsIndex.remove(previous, id, copyNumber);
+            quota.release(previous, 1);
+        }
+    }
+
+    /**
+     * The titles the customer has out, once for each copy, in the order they were lent.
+     */
+    List<CatalogEntry<T>> getLoans(Customer customer) {
+        final int[] ids = holdingsIndex.find(customer);
+        final List<CatalogEntry<T>> loans = new ArrayList<>(ids.length);
+        for(final int id : ids)
+            loans.add(entry(id));
+        return loans;
+    }
+
+    /**
+     * Passes every copy out on loan to the visitor, title by title in id order, without holding up loans and returns.
+     * Only titles with an entry can have a copy out, and a catalog not yet indexed has nothing out on loan.
+     */
+    void visitLoans(CatalogEntry.LoanVisitor visitor) throws IOException {
+        for(final AtomicReferenceArray<CatalogEntry<T>> chunk : entries) {
+            if(chunk == null) continue;
+            for(int i = 0; i < chunk.length(); i++) {
+                final CatalogEntry<T> entry = chunk.get(i);
+                if(entry != null)
+                    entry.visitLoans(visitor);
+            }
+        }
+    }
+
+    /**
+     * Finishes the restored titles in id order, which for a catalog added in title order keeps the availability
+     * index's updates close together.
+     */
+    void finishRestore() {
+        for(int id = restoredIds.nextSetBit(0); id >= 0; id = restoredIds.nextSetBit(id + 1)) {
+            final CatalogEntry<T> entry = entry(id);
+            entry.finishRestore();
+            for(final CatalogEntry.Copy copy : entry.getLentCopies())
+                loanTimer.restored(entry, copy, copy.getBorrower(), copy.getDueTime());
+        }
+        restoredIds.clear();
+    }
+
+    int placeHoldByTitle(String title, Customer heldBy) throws LibraryItemNotFoundException, LibraryItemAvailableException, CustomerRequiredException, LoanLimitExceededException {
+        if(heldBy == null) throw new CustomerRequiredException();
+        final CatalogEntry<T> entry = findEntry(title);
+        if(entry.isAvailable()) throw new LibraryItemAvailableException();
+        if(!quota.reserve(heldBy, 1)) throw new LoanLimitExceededException();
+        return entry.placeHold(heldBy);
+    }
+
+    /**
+     * Checks out one copy of each title, or none of them. Copies are reserved in id order and put back if any title
+     * turns out to be unavailable, so no lock is held and concurrent batches cannot deadlock; a title named twice
+     * takes two copies. No copy is lent, and no listener told of a loan, until every title has been reserved.
+     */
+    void checkoutItemsByTitle(List<String> titles, Customer checkedOutBy) throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
+        if(checkedOutBy == null) throw new CustomerRequiredException();
+        final List<CatalogEntry<T>> batch = findEntriesInIdOrder(titles);
+        if(!quota.reserve(checkedOutBy, batch.size())) throw new LoanLimitExceededException();
+        final List<CatalogEntry.Copy> reserved = new ArrayList<>(batch.size());
+        try {
+            for(final CatalogEntry<T> entry : batch)
+                reserved.add(entry.reserveCheckOut());
+        } catch (LibraryItemNotAvailableException e) {
+            quota.release(checkedOutBy, batch.size());
+            for(int i = 0; i < reserved.size(); i++)
+                batch.get(i).cancelCheckOut(reserved.get(i));
+            throw e;
+        }
+        for(int i = 0; i < reserved.size(); i++)
+            batch.get(i).completeCheckOut(reserved.get(i), checkedOutBy);
+    }
+
+    /**
+     * Returns one copy of each title, or none of them. Every copy is claimed from the customer before any is put
+     * back on the shelf, and the claims are undone if the customer does not have one of the titles.
+     */
+    void returnItemsByTitle(List<String> titles, Customer returnedBy) throws LibraryItemNotFoundException, LibraryItemNotCheckedOutException {
+        final List<CatalogEntry<T>> batch = findEntriesInIdOrder(titles);
+        final List<CatalogEntry.Copy> claimed = new ArrayList<>(batch.size());
+        try {
+            for(final CatalogEntry<T> entry : batch)
+                claimed.add(entry.claimReturn(returnedBy));
+        } catch (LibraryItemNotCheckedOutException e) {
+            for(int i = 0; i < claimed.size(); i++)
+                batch.get(i).cancelReturn(claimed.get(i), returnedBy);
+            throw e;
+        }
+        for(int i = 0; i < claimed.size(); i++)
+            batch.get(i).completeReturn(claimed.get(i), returnedBy);
+    }
+
+    private List<CatalogEntry<T>> findEntriesInIdOrder(List<String> titles) throws LibraryItemNotFoundException {
+        if(titles == null || titles.isEmpty()) throw new LibraryItemNotFoundException();
+        final List<CatalogEntry<T>> batch = new ArrayList<>(titles.size());
+        for(final String title : titles)
+            batch.add(findEntry(title));
+        Collections.sort(batch, ID_ORDER);
+        return batch;
+    }
+
+    private CatalogEntry<T> findEntry(String title) throws LibraryItemNotFoundException {
+        final CatalogEntry<T> entry = findEntryByTitle(title);
+        if(entry == null) throw new LibraryItemNotFoundException();
+        return entry;
+    }
+
+    /**
+     * Keeps the bitmap, and the title order's marks, in step with an entry's copies. An entry that lost the race to be
+     * installed for its title, or is not installed yet, is ignored, as its title's availability is still the one
+     * recorded when it was indexed.
+     */
+    private void updateAvailability(CatalogEntry<T> entry) {
+        if(made(entry.getId()) != entry) return;
+        boolean available;
+        do {
+            available = entry.isAvailable();
+            if(available)
+                availableIds.add(entry.getId());
+            else
+                availableIds.remove(entry.getId());
+            titleOrder.mark(entry.getId(), available);
+        } while(available != entry.isAvailable());
+    }
+
+    /**
+     * The title's entry, made with its one copy the first time it is asked for. Entries are kept in chunks of ids
+     * that are only allocated once an entry in them is made, and are installed by compare-and-set, so a title
+     * looked up by two callers at once still has one entry.
+     */
+    private CatalogEntry<T> entry(int id) {
+        final AtomicReferenceArray<CatalogEntry<T>> chunk = chunk(id);
+        final CatalogEntry<T> made = chunk.get(id & CHUNK_MASK);
+        if(made != null) return made;
+        final CatalogEntry<T> entry = newEntry(id, 1);
+        return chunk.compareAndSet(id & CHUNK_MASK, null, entry) ? entry : chunk.get(id & CHUNK_MASK);
+    }
+
+    private CatalogEntry<T> made(int id) {
+        final AtomicReferenceArray<CatalogEntry<T>>[] chunks = entries;
+        final int index = id >>> CHUNK_BITS;
+        if(index >= chunks.length || chunks[index] == null) return null;
+        return chunks[index].get(id & CHUNK_MASK);
+    }
+
+    /**
+     * The title's entry if it has been made, or else a stand-in for its one copy on the shelf, which is not kept.
+     */
+    private CatalogEntry<T> peek(int id) {
+        final CatalogEntry<T> made = made(id);
+        return made != null ? made : CatalogEntry.onShelf(store, id);
+    }
+
+    private CatalogEntry<T> newEntry(int id, int copies) {
+        return new CatalogEntry<>(store, id, copies, availabilityListener, loanListener, dueDates);
+    }
+
+    private AtomicReferenceArray<CatalogEntry<T>> chunk(int id) {
+        final int index = id >>> CHUNK_BITS;
+        final AtomicReferenceArray<CatalogEntry<T>>[] chunks = entries;
+        if(index < chunks.length && chunks[index] != null) return chunks[index];
+        synchronized (entriesLock) {
+            AtomicReferenceArray<CatalogEntry<T>>[] grown = entries;
+            if(index < grown.length && grown[index] != null) return grown[index];
+            grown = Arrays.copyOf(grown, Math.max(grown.length, index + 1));
+            grown[index] = new AtomicReferenceArray<>(1 << CHUNK_BITS);
+            entries = grown;
+            return grown[index];
+        }
+    }
+
+    /**
+     * How many titles have an entry made for them.
+     */
+    int countEntries() {
+        int count = 0;
+        for(final AtomicReferenceArray<CatalogEntry<T>> chunk : entries) {
+            if(chunk == null) continue;
+            for(int i = 0; i < chunk.length(); i++)
+                if(chunk.get(i) != null)
+                    count++;
+        }
+        return count;
+    }
+
+    /**
+     * Walks a snapshot of the title order from one title marked available to the next.
+     */
+    private final class AvailableEntries implements Iterator<CatalogEntry<T>> {
+        private final TitleOrder.Snapshot order;
+        private int index = -1;
+
+        AvailableEntries(TitleOrder.Snapshot order) {
+            this.order = order;
+            advance();
+        }
+
+        private void advance() {
+            index = order.nextMarked(index + 1);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < order.size();
+        }
+
+        @Override
+        public CatalogEntry<T> next() {
+            if(!hasNext()) throw new NoSuchElementException();
+            final CatalogEntry<T> entry = peek(order.get(index));
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
     }
 
     public Class<T> getItemsClass() {
@@ -74,4 +819,14 @@ public class Library<T extends LibraryItem> {
     public String getItemsNameLowercase() {
         return getItemsName().toLowerCase();
     }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends LibraryItem> CatalogEntry.LoanListener<T>[] newLoanListeners(int length) {
+        return new CatalogEntry.LoanListener[length];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends LibraryItem> AtomicReferenceArray<CatalogEntry<T>>[] newChunks(int length) {
+        return new AtomicReferenceArray[length];
+    }
 }
@@ -0,0 +1,637 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.helper.Clock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An append-only record of every loan, return and login, kept so that the libraries can be put back as they were
+ * when the application next starts. Records are a fixed 40 bytes and are written straight into memory-mapped segment
+ * files, which the operating system writes out even if the process is killed. Each record has its own sequence
+ * number and checksum:
+ *
+ * <pre>
+ * int checksum, byte type, byte library, short unused, long sequence, long time,
+ * int customer id, int title id, int copy number, int unused
+ * </pre>
+ *
+ * A segment starts with a 16-byte header of magic, version and the sequence of its first record, and is named after
+ * that sequence. Appending claims a sequence number with one atomic increment and writes the record where that
+ * number falls, so appends take no lock and allocate nothing; only mapping the next segment does. As appenders can
+ * finish out of order, each then marks its sequence written, and the journal keeps the highest sequence up to which
+ * every record is written. Forcing only counts as making the records up to that mark durable, so no command is
+ * acknowledged while an earlier record, which a crash could lose, is still being written.
+ *
+ * Opening a journal replays it into the libraries: every record that is whole is applied in sequence order, passing
+ * over any that were never written or fail their checksum, and the journal carries on after the last. A loan record
+ * names the copy and its borrower and a return record names the copy and who returned it, so replaying one twice
+ * leaves the library as it was. Records are matched to titles by id, so the libraries must be opened from the same
+ * catalogs each time.
+ *
+ * A snapshot of every loan can be taken while the journal is in use. Opening the journal restores the newest whole
+ * snapshot and replays only the records from the sequence it was taken at, and taking one deletes the segments no
+ * snapshot still needs.
+ *
+ * How soon a record reaches the disk depends on the journal's durability. PER_OP forces the segment after every
+ * record. GROUP leaves forcing to a commit thread: a thread that has appended calls awaitDurable before acknowledging
+ * the command, and the commit thread gathers waiting threads into a batch, then forces once for the whole batch. A
+ * batch is closed once it is as big as the last one or its first waiter has waited the maximum latency, so a lone
+ * session is not kept waiting for company while busy ones share each force. ASYNC acknowledges at once and forces in
+ * the background every maximum latency, so a crash can lose that much.
+ */
+final class LoanJournal implements Closeable {
+
+    enum Durability { PER_OP, GROUP, ASYNC }
+
+    static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    static final long DEFAULT_MAX_LATENCY_MICROS = 1000;
+    static final int MAX_BATCH = 256;
+    static final int MAX_UNWRITTEN = 4096;
+    private static final long WRITTEN_POLL_NANOS = 10000;
+
+    private static final int MAGIC = 0x424A524E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 40;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    static final byte LOAN = 1;
+    static final byte RETURN = 2;
+    private static final byte LOGIN = 3;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int recordsPerSegment;
+    private final Durability durability;
+    private final long maxLatencyNanos;
+    private final Clock clock;
+    private final SecurityContext securityContext;
+    private final Library<?>[] libraries;
+    private final AtomicLong nextSequence = new AtomicLong(1);
+    private final AtomicLong writtenUpTo = new AtomicLong();
+    private final AtomicLongArray written = new AtomicLongArray(MAX_UNWRITTEN);
+    private final Object segmentLock = new Object();
+    private final Object forceLock = new Object();
+    private final Object snapshotLock = new Object();
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final Condition batchReady = commitLock.newCondition();
+    private final Condition batchForced = commitLock.newCondition();
+    private final ThreadLocal<long[]> unacknowledged = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+    private final long firstSequence;
+    private final long recordsReplayed;
+    private final Thread committer;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile long forcedUpTo;
+    private int firstUnforcedSegment;
+    private long forces;
+    private long openBatch;
+    private long forcedBatch = -1;
+    private long batchOpened;
+    private int batchWaiters;
+    private int lastBatchSize = 1;
+    private boolean closed;
+
+    LoanJournal(Path directory, Clock clock, SecurityContext securityContext, Library<?>... libraries) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, clock, securityContext, libraries);
+    }
+
+    LoanJournal(Path directory, int segmentSize, Clock clock, SecurityContext securityContext, Library<?>... libraries) throws IOException {
+        this(directory, segmentSize, Durability.GROUP, DEFAULT_MAX_LATENCY_MICROS, clock, securityContext, libraries);
+    }
+
+    LoanJournal(Path directory, int segmentSize, Durability durability, long maxLatencyMicros, final Clock clock,
+                SecurityContext securityContext, Library<?>... libraries) throws IOException {
+        if(directory == null) throw new IllegalArgumentException("directory cannot be null");
+        if(segmentSize < HEADER_SIZE + RECORD_SIZE) throw new IllegalArgumentException("segmentSize is too small");
+        if(durability == null) throw new IllegalArgumentException("durability cannot be null");
+        if(maxLatencyMicros < 1) throw new IllegalArgumentException("maxLatencyMicros must be at least 1");
+        if(clock == null) throw new IllegalArgumentException("clock cannot be null");
+        if(securityContext == null) throw new IllegalArgumentException("securityContext cannot be null");
+        if(libraries == null || libraries.length == 0 || libraries.length > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("libraries must number between 1 and " + Byte.MAX_VALUE);
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.recordsPerSegment = (segmentSize - HEADER_SIZE) / RECORD_SIZE;
+        this.durability = durability;
+        this.maxLatencyNanos = TimeUnit.MICROSECONDS.toNanos(maxLatencyMicros);
+        this.clock = clock;
+        this.securityContext = securityContext;
+        this.libraries = libraries.clone();
+
+        Files.createDirectories(directory);
+        recordsReplayed = replay();
+        firstSequence = nextSequence.get();
+        writtenUpTo.set(firstSequence - 1);
+        forcedUpTo = firstSequence - 1;
+        deleteSegmentsFrom(firstSequence);
+        for(int code = 0; code < libraries.length; code++)
+            record(libraries[code], code);
+        securityContext.addLoginListener(new SecurityContext.LoginListener() {
+            @Override
+            public void loggedIn(Customer customer) {
+                append(LOGIN, 0, customer, -1, -1, clock.currentTimeMillis());
+            }
+        });
+        if(durability == Durability.PER_OP) {
+            committer = null;
+            return;
+        }
+        committer = new Thread("journal-commit") {
+            @Override
+            public void run() {
+                try {
+                    if(LoanJournal.this.durability == Durability.GROUP)
+                        commitBatches();
+                    else
+                        commitPeriodically();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    long getRecordsReplayed() {
+        return recordsReplayed;
+    }
+
+    /**
+     * The sequence number the next record will be given.
+     */
+    long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * How many times the journal has been forced to disk, which under group commit is far fewer than the records
+     * written.
+     */
+    long getForces() {
+        synchronized (forceLock) {
+            return forces;
+        }
+    }
+
+    /**
+     * Waits until every record up to the last the calling thread has appended is on disk, so the command that wrote
+     * them can be acknowledged. That includes records other threads claimed before it and are still writing. Under
+     * ASYNC nothing is waited for.
+     */
+    void awaitDurable() throws IOException {
+        if(durability == Durability.ASYNC) return;
+        final long[] unacknowledged = this.unacknowledged.get();
+        final long sequence = unacknowledged[0];
+        if(sequence == 0) return;
+        unacknowledged[0] = 0;
+        awaitWritten(sequence);
+        if(durability == Durability.PER_OP) {
+            if(forcedUpTo < sequence)
+                force();
+            return;
+        }
+        commitLock.lock();
+        try {
+            if(closed) {
+                force();
+                return;
+            }
+            final long batch = openBatch;
+            if(batchWaiters++ == 0) {
+                batchOpened = System.nanoTime();
+                batchReady.signal();
+            } else if(batchWaiters >= Math.min(lastBatchSize, MAX_BATCH)) {
+                batchReady.signal();
+            }
+            while(forcedBatch < batch)
+                batchForced.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for the journal");
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private void awaitWritten(long sequence) throws InterruptedIOException {
+        while(writtenUpTo.get() < sequence) {
+            LockSupport.parkNanos(WRITTEN_POLL_NANOS);
+            if(Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for the journal");
+            }
+        }
+    }
+
+    /**
+     * The highest sequence up to which every record has been written, though not necessarily forced.
+     */
+    long getWrittenUpTo() {
+        return writtenUpTo.get();
+    }
+
+    private void commitBatches() throws InterruptedException {
+        while(true) {
+            final long batch;
+            commitLock.lock();
+            try {
+                while(batchWaiters == 0) {
+                    if(closed) return;
+                    batchReady.await();
+                }
+                final int expected = Math.min(lastBatchSize, MAX_BATCH);
+                long remaining;
+                while(!closed && batchWaiters < expected && (remaining = batchOpened + maxLatencyNanos - System.nanoTime()) > 0)
+                    batchReady.awaitNanos(remaining);
+                batch = openBatch++;
+                lastBatchSize = batchWaiters;
+                batchWaiters = 0;
+            } finally {
+                commitLock.unlock();
+            }
+            force();
+            commitLock.lock();
+            try {
+                forcedBatch = batch;
+                batchForced.signalAll();
+            } finally {
+                commitLock.unlock();
+            }
+        }
+    }
+
+    private void commitPeriodically() throws InterruptedException {
+        long forcedSequence = firstSequence - 1;
+        while(true) {
+            commitLock.lock();
+            try {
+                if(closed) return;
+                batchReady.awaitNanos(maxLatencyNanos);
+            } finally {
+                commitLock.unlock();
+            }
+            final long sequence = writtenUpTo.get();
+            if(sequence != forcedSequence) {
+                force();
+                forcedSequence = sequence;
+            }
+        }
+    }
+
+    /**
+     * Forces the segments written since the last force, making every record up to the written mark as it was beforehand
+     * durable. A segment before the one holding the record after the mark is wholly written, so is never forced again.
+     */
+    private void force() {
+        synchronized (forceLock) {
+            final long durable = writtenUpTo.get();
+            final MappedByteBuffer[] segments = this.segments;
+            for(int i = firstUnforcedSegment; i < segments.length; i++)
+                segments[i].force();
+            firstUnforcedSegment = (int) ((durable + 1 - firstSequence) / recordsPerSegment);
+            forcedUpTo = durable;
+            forces++;
+        }
+    }
+
+    private <T extends LibraryItem> void record(Library<T> library, final int code) {
+        library.addLoanListener(new CatalogEntry.LoanListener<T>() {
+            @Override
+            public void lent(CatalogEntry<T> entry, CatalogEntry.Copy copy, Customer borrower, long dueTime) {
+                append(LOAN, code, borrower, entry.getId(), copy.getNumber(), dueTime);
+            }
+            @Override
+            public void returned(CatalogEntry<T> entry, CatalogEntry.Copy copy, Customer customer) {
+                append(RETURN, code, customer, entry.getId(), copy.getNumber(), clock.currentTimeMillis());
+            }
+            @Override
+            public void held(CatalogEntry<T> entry, CatalogEntry.Hold hold) {}
+            @Override
+            public void expired(CatalogEntry<T> entry, CatalogEntry.Hold hold) {}
+        });
+    }
+
+    private void append(byte type, int library, Customer customer, int id, int copyNumber, long time) {
+        final int customerId = securityContext.getCustomerId(customer);
+        if(customerId < 0) return;
+        write(nextSequence.getAndIncrement(), type, library, customerId, id, copyNumber, time);
+    }
+
+    /**
+     * Claims a sequence for a login record as an append would, but leaves writing it to the task returned, as if the
+     * appender stalled in between.
+     */
+    Runnable claimLogin(Customer customer) {
+        final int customerId = securityContext.getCustomerId(customer);
+        final long sequence = nextSequence.getAndIncrement();
+        final long time = clock.currentTimeMillis();
+        return new Runnable() {
+            @Override
+            public void run() {
+                write(sequence, LOGIN, 0, customerId, -1, -1, time);
+            }
+        };
+    }
+
+    private void write(long sequence, byte type, int library, int customerId, int id, int copyNumber, long time) {
+        final long index = sequence - firstSequence;
+        final MappedByteBuffer segment = segment((int) (index / recordsPerSegment));
+        final int offset = HEADER_SIZE + (int) (index % recordsPerSegment) * RECORD_SIZE;
+        final int kind = (type << 24) | (library << 16);
+        segment.putInt(offset + 4, kind);
+        segment.putLong(offset + 8, sequence);
+        segment.putLong(offset + 16, time);
+        segment.putInt(offset + 24, customerId);
+        segment.putInt(offset + 28, id);
+        segment.putInt(offset + 32, copyNumber);
+        segment.putInt(offset, checksum(kind, sequence, time, customerId, id, copyNumber));
+        markWritten(sequence);
+        if(durability == Durability.PER_OP && forcedUpTo < sequence && writtenUpTo.get() >= sequence)
+            force();
+        if(durability != Durability.ASYNC)
+            unacknowledged.get()[0] = sequence;
+    }
+
+    /**
+     * Marks the sequence written and moves the written mark past it and every sequence after it already marked. A
+     * sequence shares its slot with those MAX_UNWRITTEN either side, so one that far ahead of the mark waits for the
+     * mark to catch up before taking the slot.
+     */
+    private void markWritten(long sequence) {
+        while(sequence - writtenUpTo.get() > MAX_UNWRITTEN)
+            LockSupport.parkNanos(WRITTEN_POLL_NANOS);
+        written.set((int) (sequence % MAX_UNWRITTEN), sequence);
+        for(long mark = writtenUpTo.get(); written.get((int) ((mark + 1) % MAX_UNWRITTEN)) == mark + 1; mark = writtenUpTo.get())
+            writtenUpTo.compareAndSet(mark, mark + 1);
+    }
+
+    private MappedByteBuffer segment(int number) {
+        final MappedByteBuffer[] segments = this.segments;
+        if(number < segments.length) return segments[number];
+        synchronized (segmentLock) {
+            if(number < this.segments.length) return this.segments[number];
+            final MappedByteBuffer[] grown = Arrays.copyOf(this.segments, number + 1);
+            for(int i = this.segments.length; i < grown.length; i++)
+                grown[i] = createSegment(firstSequence + (long) i * recordsPerSegment);
+            this.segments = grown;
+            return grown[number];
+        }
+    }
+
+    /**
+     * A segment already named for this sequence can only be one with no whole record, as replay would otherwise have
+     * carried on past it, so it is safe to start it again.
+     */
+    private MappedByteBuffer createSegment(long first) {
+        final Path path = directory.resolve(name(first, SEGMENT_SUFFIX));
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            segment.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, first);
+            return segment;
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot create journal segment " + path, e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of every loan as of the next sequence, so the next time the journal is opened it need only be
+     * replayed from there. Loans and returns carry on while it is taken. The journal is forced before the snapshot is
+     * renamed into place, so the snapshot holds nothing the journal could lose. Only the newest two snapshots are
+     * kept, the older in case the newer is found corrupt, along with the segments needed to replay from the older.
+     */
+    void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            final long sequence = nextSequence.get();
+            final Path path = directory.resolve(name(sequence, SNAPSHOT_SUFFIX));
+            final Path temporary = directory.resolve(name(sequence, SNAPSHOT_SUFFIX + ".tmp"));
+            LoanSnapshot.write(temporary, sequence, securityContext, libraries);
+            force();
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            final List<Path> snapshots = paths(SNAPSHOT_SUFFIX);
+            if(snapshots.size() < 2) return;
+            final Path kept = snapshots.get(snapshots.size() - 2);
+            for(final Path older : snapshots.subList(0, snapshots.size() - 2))
+                Files.delete(older);
+            final List<Path> segmentPaths = paths(SEGMENT_SUFFIX);
+            final int needed = startingSegment(segmentPaths, sequenceOf(kept));
+            for(final Path unneeded : segmentPaths.subList(0, needed))
+                Files.delete(unneeded);
+        }
+    }
+
+    /**
+     * Replays each segment from the snapshot's sequence on, each only up to where the next begins, since a later
+     * segment for the same sequences was started after the earlier one's last whole record and holds the records
+     * that count.
+     */
+    private long replay() throws IOException {
+        nextSequence.set(restoreSnapshot());
+        final List<Path> segmentPaths = paths(SEGMENT_SUFFIX);
+        long replayed = 0;
+        final int start = startingSegment(segmentPaths, nextSequence.get());
+        for(int i = start; i < segmentPaths.size(); i++) {
+            try (final FileChannel channel = FileChannel.open(segmentPaths.get(i), StandardOpenOption.READ)) {
+                if(channel.size() < HEADER_SIZE) continue;
+                final ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if(segment.getInt(0) != MAGIC || segment.getInt(4) != VERSION) continue;
+                final long first = segment.getLong(8);
+                if(first != sequenceOf(segmentPaths.get(i))) continue;
+                final long until = i + 1 < segmentPaths.size() ? sequenceOf(segmentPaths.get(i + 1)) : Long.MAX_VALUE;
+                replayed += replaySegment(segment, first, until);
+            }
+        }
+        for(final Library<?> library : libraries)
+            library.finishRestore();
+        return replayed;
+    }
+
+    /**
+     * Restores the newest snapshot that is whole and returns the sequence to replay from, or the first sequence if
+     * there is none.
+     */
+    private long restoreSnapshot() throws IOException {
+        final List<Path> snapshots = paths(SNAPSHOT_SUFFIX);
+        for(int i = snapshots.size() - 1; i >= 0; i--) {
+            final long sequence = LoanSnapshot.restore(snapshots.get(i), securityContext, libraries);
+            if(sequence >= 0) return sequence;
+        }
+        return 1;
+    }
+
+    /**
+     * The last segment starting at or before the sequence. A later segment for the same sequences can only have been
+     * started after replay stopped short in an earlier one, so the later one holds the records that count.
+     */
+    private static int startingSegment(List<Path> segmentPaths, long sequence) {
+        int start = 0;
+        for(int i = 0; i < segmentPaths.size(); i++)
+            if(sequenceOf(segmentPaths.get(i)) <= sequence)
+                start = i;
+        return start;
+    }
+
+    /**
+     * Applies the whole records in the segment from the next sequence up to the one given, passing over any missing or
+     * corrupt, and moves the next sequence past the last applied.
+     */
+    private long replaySegment(ByteBuffer segment, long first, long until) {
+        long replayed = 0;
+        final long last = Math.min(until, first + (segment.limit() - HEADER_SIZE) / RECORD_SIZE);
+        for(long sequence = Math.max(first, nextSequence.get()); sequence < last; sequence++) {
+            final int offset = HEADER_SIZE + (int) (sequence - first) * RECORD_SIZE;
+            if(!isRecord(segment, offset, sequence)) continue;
+            apply(segment, offset, securityContext, libraries);
+            nextSequence.set(sequence + 1);
+            replayed++;
+        }
+        return replayed;
+    }
+
+    /**
+     * Deletes the segments starting at or after the sequence, which replay has found to hold no whole record, so
+     * that none is left to be replayed over the records written from there on.
+     */
+    private void deleteSegmentsFrom(long sequence) throws IOException {
+        for(final Path path : paths(SEGMENT_SUFFIX))
+            if(sequenceOf(path) >= sequence)
+                Files.delete(path);
+    }
+
+    /**
+     * Copies the records from the given sequence on into the buffer, as many as it has room for and are below the
+     * written mark, and returns how many were copied. The sequence must be one appended since the journal was opened.
+     */
+    int readRecords(long from, ByteBuffer records) {
+        if(from < firstSequence) throw new IllegalArgumentException("sequence " + from + " is before this journal was opened");
+        int read = 0;
+        for(long sequence = from; records.remaining() >= RECORD_SIZE && sequence <= writtenUpTo.get(); sequence++) {
+            final long index = sequence - firstSequence;
+            final MappedByteBuffer[] segments = this.segments;
+            final int number = (int) (index / recordsPerSegment);
+            if(number >= segments.length) break;
+            final ByteBuffer segment = segments[number].duplicate();
+            final int offset = HEADER_SIZE + (int) (index % recordsPerSegment) * RECORD_SIZE;
+            if(!isRecord(segment, offset, sequence)) break;
+            segment.limit(offset + RECORD_SIZE).position(offset);
+            records.put(segment);
+            read++;
+        }
+        return read;
+    }
+
+    /**
+     * Whether the buffer holds a whole record with the given sequence at the offset.
+     */
+    static boolean isRecord(ByteBuffer records, int offset, long sequence) {
+        if(offset + RECORD_SIZE > records.limit() || records.getLong(offset + 8) != sequence) return false;
+        return records.getInt(offset) == checksum(records.getInt(offset + 4), sequence, records.getLong(offset + 16),
+                records.getInt(offset + 24), records.getInt(offset + 28), records.getInt(offset + 32));
+    }
+
+    /**
+     * Restores the record at the offset into the libraries, which must be finished afterwards.
+     */
+    static void apply(ByteBuffer records, int offset, SecurityContext securityContext, Library<?>[] libraries) {
+        final int kind = records.getInt(offset + 4);
+        final byte type = (byte) (kind >>> 24);
+        final int library = (kind >>> 16) & 0xFF;
+        final Customer customer = securityContext.getCustomer(records.getInt(offset + 24));
+        if(customer == null || library >= libraries.length) return;
+        final int id = records.getInt(offset + 28);
+        final int copyNumber = records.getInt(offset + 32);
+        if(type == LOAN)
+            libraries[library].restoreLoan(id, copyNumber, customer, records.getLong(offset + 16));
+        else if(type == RETURN)
+            libraries[library].restoreReturn(id, copyNumber, customer);
+    }
+
+    private List<Path> paths(String suffix) throws IOException {
+        final List<Path> paths = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for(final Path path : stream)
+                paths.add(path);
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static String name(long sequence, String suffix) {
+        return String.format("%019d", sequence) + suffix;
+    }
+
+    private static long sequenceOf(Path path) {
+        final String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+    private static int checksum(int kind, long sequence, long time, int customerId, int id, int copyNumber) {
+        long hash = mix(0x9E3779B97F4A7C15L ^ kind);
+        hash = mix(hash ^ sequence);
+        hash = mix(hash ^ time);
+        hash = mix(hash ^ (((long) customerId << 32) | (id & 0xFFFFFFFFL)));
+        hash = mix(hash ^ copyNumber);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    /**
+     * Stops the commit thread once it has forced the batch it is gathering, then forces everything appended so far.
+     */
+    @Override
+    public void close() {
+        commitLock.lock();
+        try {
+            closed = true;
+            batchReady.signal();
+        } finally {
+            commitLock.unlock();
+        }
+        if(committer != null) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (forceLock) {
+            firstUnforcedSegment = 0;
+        }
+        force();
+    }
+
+}
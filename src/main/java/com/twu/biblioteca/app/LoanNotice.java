@@ -0,0 +1,28 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Customer;
+
+/**
+ * A message for a customer about one of their loans or holds.
+ */
+final class LoanNotice {
+
+    private final Customer customer;
+    private final String message;
+
+    LoanNotice(Customer customer, String message) {
+        if(customer == null) throw new IllegalArgumentException("customer cannot be null");
+        if(message == null) throw new IllegalArgumentException("message cannot be null");
+        this.customer = customer;
+        this.message = message;
+    }
+
+    Customer getCustomer() {
+        return customer;
+    }
+
+    String getMessage() {
+        return message;
+    }
+
+}
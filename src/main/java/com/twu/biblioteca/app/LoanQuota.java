@@ -0,0 +1,70 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Customer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the copies each customer may have from a library at once, counting holds still waiting for a copy. Every
+ * customer has one atomic counter, which a checkout or hold raises by compare-and-set before it takes a copy or joins
+ * the queue, and lowers again if that then fails; a return or an expired hold lowers it too. A burst of checkouts
+ * from one customer therefore cannot take them past the limit, and the check costs the same however much they have.
+ * Lowering the limit leaves loans already made alone.
+ */
+class LoanQuota {
+
+    static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final ConcurrentMap<Customer, AtomicInteger> counts = new ConcurrentHashMap<>();
+    private volatile int limit = UNLIMITED;
+
+    int getLimit() {
+        return limit;
+    }
+
+    void setLimit(int limit) {
+        if(limit < 0) throw new IllegalArgumentException("limit cannot be negative");
+        this.limit = limit;
+    }
+
+    /**
+     * Takes the copies from the customer's allowance, or nothing if they would go over it.
+     */
+    boolean reserve(Customer customer, int copies) {
+        final AtomicInteger count = countOf(customer);
+        for(;;) {
+            final int current = count.get();
+            if(copies > limit - current) return false;
+            if(count.compareAndSet(current, current + copies)) return true;
+        }
+    }
+
+    /**
+     * Counts copies the customer already has, whatever the limit, for loans restored from the journal.
+     */
+    void take(Customer customer, int copies) {
+        countOf(customer).addAndGet(copies);
+    }
+
+    void release(Customer customer, int copies) {
+        final AtomicInteger count = counts.get(customer);
+        if(count != null)
+            count.addAndGet(-copies);
+    }
+
+    int count(Customer customer) {
+        final AtomicInteger count = customer == null ? null : counts.get(customer);
+        return count == null ? 0 : count.get();
+    }
+
+    private AtomicInteger countOf(Customer customer) {
+        final AtomicInteger existing = counts.get(customer);
+        if(existing != null) return existing;
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger raced = counts.putIfAbsent(customer, created);
+        return raced == null ? created : raced;
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Customer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Every copy out on loan across the libraries, written as of a journal sequence so the journal need only be replayed
+ * from there. The file is a header of magic, version, sequence and library count, then for each library its loans as
+ * 20-byte records and a -1 to end them, then a CRC32 of everything before it:
+ *
+ * <pre>
+ * int title id, int copy number, int customer id, long due time
+ * </pre>
+ *
+ * The loans are read while loans and returns carry on, so a snapshot is fuzzy: a copy lent or returned while it was
+ * taken may or may not be in it. Every such change is in the journal from the snapshot's sequence on, and replaying
+ * a loan or return over a state that already has it changes nothing, so the snapshot and the rest of the journal
+ * together always come to the state the journal alone would.
+ */
+final class LoanSnapshot {
+
+    private static final int MAGIC = 0x42534E50;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int RECORD_SIZE = 20;
+    private static final int END = -1;
+    private static final int BUFFER_SIZE = 64 << 10;
+
+    private LoanSnapshot() {}
+
+    /**
+     * Writes the snapshot and forces it to disk; it is left to the caller to rename it into place.
+     */
+    static void write(Path path, long sequence, SecurityContext securityContext, Library<?>... libraries) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(channel, sequence, securityContext, libraries);
+            channel.force(true);
+        }
+    }
+
+    static void write(final WritableByteChannel channel, long sequence, final SecurityContext securityContext,
+                      Library<?>... libraries) throws IOException {
+        final CRC32 checksum = new CRC32();
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(sequence).putInt(libraries.length);
+        for(final Library<?> library : libraries) {
+            library.visitLoans(new CatalogEntry.LoanVisitor() {
+                @Override
+                public void visit(int id, int copyNumber, Customer borrower, long dueTime) throws IOException {
+                    final int customerId = securityContext.getCustomerId(borrower);
+                    if(customerId < 0) return;
+                    if(buffer.remaining() < RECORD_SIZE)
+                        flush(channel, buffer, checksum);
+                    buffer.putInt(id).putInt(copyNumber).putInt(customerId).putLong(dueTime);
+                }
+            });
+            if(buffer.remaining() < 4)
+                flush(channel, buffer, checksum);
+            buffer.putInt(END);
+        }
+        flush(channel, buffer, checksum);
+        buffer.putInt((int) checksum.getValue());
+        buffer.flip();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private static void flush(WritableByteChannel channel, ByteBuffer buffer, CRC32 checksum) throws IOException {
+        checksum.update(buffer.array(), 0, buffer.position());
+        buffer.flip();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Restores the snapshot's loans into the libraries and returns the journal sequence to replay from, or -1 if the
+     * snapshot is not whole or was taken of other libraries, in which case nothing is restored. The libraries must
+     * still be restored from the journal and finished.
+     */
+    static long restore(Path path, SecurityContext securityContext, Library<?>... libraries) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) return -1;
+            return restore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), securityContext, libraries);
+        }
+    }
+
+    static long restore(ByteBuffer snapshot, SecurityContext securityContext, Library<?>... libraries) {
+        if(snapshot.limit() < HEADER_SIZE + 4) return -1;
+        if(snapshot.getInt(0) != MAGIC || snapshot.getInt(4) != VERSION || snapshot.getInt(16) != libraries.length)
+            return -1;
+        final int end = snapshot.limit() - 4;
+        if(snapshot.getInt(end) != checksum(snapshot, end)) return -1;
+        int offset = HEADER_SIZE;
+        for(final Library<?> library : libraries) {
+            for(int id; (id = snapshot.getInt(offset)) != END; offset += RECORD_SIZE) {
+                final Customer borrower = securityContext.getCustomer(snapshot.getInt(offset + 8));
+                if(borrower != null)
+                    library.restoreLoan(id, snapshot.getInt(offset + 4), borrower, snapshot.getLong(offset + 12));
+            }
+            offset += 4;
+        }
+        return snapshot.getLong(8);
+    }
+
+    private static int checksum(ByteBuffer snapshot, int end) {
+        final CRC32 checksum = new CRC32();
+        final byte[] chunk = new byte[BUFFER_SIZE];
+        final ByteBuffer reader = snapshot.duplicate();
+        reader.position(0);
+        for(int position = 0; position < end; position += chunk.length) {
+            final int length = Math.min(chunk.length, end - position);
+            reader.get(chunk, 0, length);
+            checksum.update(chunk, 0, length);
+        }
+        return (int) checksum.getValue();
+    }
+
+}
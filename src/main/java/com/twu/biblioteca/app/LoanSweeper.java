@@ -0,0 +1,26 @@
+package com.twu.biblioteca.app;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sweeps the due dates of each library and posts the notices to their customers, to be run now and then on a
+ * single background thread.
+ */
+class LoanSweeper implements Runnable {
+
+    private final List<Library<?>> libraries;
+
+    LoanSweeper(Library<?>... libraries) {
+        if(libraries == null) throw new IllegalArgumentException("libraries cannot be null");
+        this.libraries = Arrays.asList(libraries);
+    }
+
+    @Override
+    public void run() {
+        for(final Library<?> library : libraries)
+            for(final LoanNotice notice : library.sweepDueDates())
+                notice.getCustomer().addNotice(notice.getMessage());
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.helper.Clock;
+import com.twu.biblioteca.helper.TimingWheel;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Gives each loan a due date and each hold an expiry, and turns those that pass into notices when swept. Every loan
+ * and hold puts one event on a timing wheel, which is cancelled if the copy comes back first, so a sweep only ever
+ * touches the events that have come due and never walks the loans themselves.
+ *
+ * A loan is scheduled before its copy is handed over, and can end before its event comes due, so an overdue event
+ * checks the copy is still out with the same borrower and due date before it makes a notice.
+ */
+class LoanTimer<T extends LibraryItem> implements CatalogEntry.LoanListener<T>, CatalogEntry.DueDates {
+
+    static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    static final long DEFAULT_LOAN_PERIOD = 21 * DAY_MILLIS;
+    static final long DEFAULT_HOLD_PERIOD = 14 * DAY_MILLIS;
+
+    private static final long TICK_MILLIS = 60 * 1000;
+
+    private final TimingWheel<Expiry> wheel = new TimingWheel<>(TICK_MILLIS);
+    private final Clock clock;
+    private final long loanPeriod;
+    private final long holdPeriod;
+
+    LoanTimer(Clock clock, long loanPeriod, long holdPeriod) {
+        if(clock == null) throw new IllegalArgumentException("clock cannot be null");
+        if(loanPeriod < 1) throw new IllegalArgumentException("loanPeriod must be at least 1");
+        if(holdPeriod < 1) throw new IllegalArgumentException("holdPeriod must be at least 1");
+        this.clock = clock;
+        this.loanPeriod = loanPeriod;
+        this.holdPeriod = holdPeriod;
+    }
+
+    @Override
+    public long dueTime() {
+        return clock.currentTimeMillis() + loanPeriod;
+    }
+
+    @Override
+    public void lent(CatalogEntry<T> entry, CatalogEntry.Copy copy, Customer borrower, long dueTime) {
+        copy.setReminder(wheel.schedule(new Overdue(entry, copy, borrower, dueTime), dueTime));
+    }
+
+    /**
+     * Schedules the reminder for a loan restored from the journal, which already has its borrower and due date, in
+     * place of any it had before.
+     */
+    void restored(CatalogEntry<T> entry, CatalogEntry.Copy copy, Customer borrower, long dueTime) {
+        final TimingWheel.Timeout<?> reminder = copy.getReminder();
+        if(reminder != null)
+            reminder.cancel();
+        copy.setReminder(wheel.schedule(new Overdue(entry, copy, borrower, dueTime), dueTime));
+    }
+
+    @Override
+    public void returned(CatalogEntry<T> entry, CatalogEntry.Copy copy, Customer customer) {
+        final TimingWheel.Timeout<?> reminder = copy.getReminder();
+        if(reminder != null)
+            reminder.cancel();
+    }
+
+    @Override
+    public void held(CatalogEntry<T> entry, CatalogEntry.Hold hold) {
+        wheel.schedule(new HoldExpiry(entry, hold), clock.currentTimeMillis() + holdPeriod);
+    }
+
+    @Override
+    public void expired(CatalogEntry<T> entry, CatalogEntry.Hold hold) {}
+
+    /**
+     * The notices for every loan and hold that has come due since the last sweep. Sweeps are serialised, but loans
+     * and holds carry on while one runs.
+     */
+    synchronized List<LoanNotice> sweep() {
+        final List<LoanNotice> notices = new ArrayList<>();
+        for(final Expiry expiry : wheel.advance(clock.currentTimeMillis())) {
+            final LoanNotice notice = expiry.expire();
+            if(notice != null)
+                notices.add(notice);
+        }
+        return notices;
+    }
+
+    private static String formatDate(long time) {
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(time));
+    }
+
+    private interface Expiry {
+        LoanNotice expire();
+    }
+
+    private class Overdue implements Expiry {
+        private final CatalogEntry<T> entry;
+        private final CatalogEntry.Copy copy;
+        private final Customer borrower;
+        private final long dueTime;
+
+        Overdue(CatalogEntry<T> entry, CatalogEntry.Copy copy, Customer borrower, long dueTime) {
+            this.entry = entry;
+            this.copy = copy;
+            this.borrower = borrower;
+            this.dueTime = dueTime;
+        }
+
+        @Override
+        public LoanNotice expire() {
+            if(copy.getBorrower() != borrower || copy.getDueTime() != dueTime) return null;
+            return new LoanNotice(borrower, entry.getTitle() + " was due back on " + formatDate(dueTime) + " and is overdue.");
+        }
+    }
+
+    private class HoldExpiry implements Expiry {
+        private final CatalogEntry<T> entry;
+        private final CatalogEntry.Hold hold;
+
+        HoldExpiry(CatalogEntry<T> entry, CatalogEntry.Hold hold) {
+            this.entry = entry;
+            this.hold = hold;
+        }
+
+        @Override
+        public LoanNotice expire() {
+            if(!entry.expireHold(hold)) return null;
+            return new LoanNotice(hold.getCustomer(), "Your hold on " + entry.getTitle() + " has expired.");
+        }
+    }
+
+}
@@ -0,0 +1,294 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.domain.ItemType;
+import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.exceptions.CustomerRequiredException;
+import com.twu.biblioteca.exceptions.LibraryItemNotAvailableException;
+import com.twu.biblioteca.exceptions.LibraryItemNotCheckedOutException;
+import com.twu.biblioteca.exceptions.LibraryItemNotFoundException;
+import com.twu.biblioteca.helper.ConsistentHashRing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Checks out, returns and lists the titles of a catalog split by title across partition servers, as a library would.
+ * A consistent hash ring of the partitions' names says which partition owns a title, so a checkout or return is one
+ * request to one partition. A listing asks every partition for its available titles at once and merges the sorted
+ * streams as they arrive, always passing on the least title at the head of any of them, so it holds one title per
+ * partition however large the catalog. Connections to each partition are pooled, and any number of threads can use
+ * the router at once.
+ *
+ * Adding a partition, which must already be serving its share under the new set of names, gives it about 1/N of the
+ * titles: the existing partitions hand over the loans of those titles to it before the router starts sending it
+ * their requests, and requests wait while that happens. Membership must only be changed through one router.
+ */
+final class PartitionRouter<T extends LibraryItem> implements Closeable {
+
+    private static final Comparator<Listing> TITLE_ORDER = new Comparator<Listing>() {
+        @Override
+        public int compare(Listing first, Listing second) {
+            return first.title.compareTo(second.title);
+        }
+    };
+
+    private final ItemType<T> type;
+    private final SecurityContext securityContext;
+    private final ConsistentHashRing ring = new ConsistentHashRing(ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock membershipLock = new ReentrantReadWriteLock();
+
+    PartitionRouter(ItemType<T> type, SecurityContext securityContext, Map<String, InetSocketAddress> partitions) {
+        if(type == null) throw new IllegalArgumentException("type cannot be null");
+        if(securityContext == null) throw new IllegalArgumentException("securityContext cannot be null");
+        if(partitions == null || partitions.isEmpty()) throw new IllegalArgumentException("partitions cannot be null or empty");
+        this.type = type;
+        this.securityContext = securityContext;
+        for(final Map.Entry<String, InetSocketAddress> partition : partitions.entrySet()) {
+            ring.add(partition.getKey());
+            this.partitions.put(partition.getKey(), new Partition(partition.getValue()));
+        }
+    }
+
+    String getPartitionFor(String title) {
+        return ring.nodeFor(title);
+    }
+
+    List<String> getPartitions() {
+        return ring.getNodes();
+    }
+
+    void checkoutItemByTitle(String title, Customer checkedOutBy) throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException, IOException {
+        switch(send(PartitionServer.CHECKOUT, title, checkedOutBy)) {
+            case PartitionServer.OK: return;
+            case PartitionServer.NOT_AVAILABLE: throw new LibraryItemNotAvailableException();
+            case PartitionServer.CUSTOMER_REQUIRED: throw new CustomerRequiredException();
+            default: throw new LibraryItemNotFoundException();
+        }
+    }
+
+    void returnItemByTitle(String title, Customer returnedBy) throws LibraryItemNotFoundException, LibraryItemNotCheckedOutException, IOException {
+        switch(send(PartitionServer.RETURN, title, returnedBy)) {
+            case PartitionServer.OK: return;
+            case PartitionServer.NOT_CHECKED_OUT: throw new LibraryItemNotCheckedOutException();
+            default: throw new LibraryItemNotFoundException();
+        }
+    }
+
+    private byte send(byte operation, String title, Customer customer) throws LibraryItemNotFoundException, IOException {
+        if(title == null) throw new LibraryItemNotFoundException();
+        membershipLock.readLock().lock();
+        try {
+            final Partition partition = partitions.get(ring.nodeFor(title));
+            final Connection connection = partition.borrow();
+            try {
+                connection.output.writeByte(operation);
+                connection.output.writeUTF(title);
+                connection.output.writeInt(customer == null ? -1 : securityContext.getCustomerId(customer));
+                connection.output.flush();
+                final byte status = connection.input.readByte();
+                partition.release(connection);
+                return status;
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+        } finally {
+            membershipLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes every available title of every partition to the visitor in title order.
+     */
+    void visitAvailable(ItemVisitor<T> visitor) throws IOException {
+        membershipLock.readLock().lock();
+        final List<Listing> listings = new ArrayList<>();
+        try {
+            for(final Partition partition : partitions.values()) {
+                final Listing listing = new Listing(partition, partition.borrow());
+                listings.add(listing);
+                listing.connection.output.writeByte(PartitionServer.LIST);
+                listing.connection.output.flush();
+            }
+            final PriorityQueue<Listing> heads = new PriorityQueue<>(listings.size(), TITLE_ORDER);
+            for(final Listing listing : listings)
+                if(listing.next())
+                    heads.add(listing);
+            while(!heads.isEmpty()) {
+                final Listing least = heads.poll();
+                visitor.visit(type.create(least.title, least.creator, least.year, least.rating),
+                        least.availableCopies, least.totalCopies);
+                if(least.next())
+                    heads.add(least);
+            }
+            for(final Listing listing : listings)
+                listing.partition.release(listing.connection);
+            listings.clear();
+        } finally {
+            for(final Listing listing : listings)
+                listing.connection.close();
+            membershipLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a partition already serving its share of the catalog under the current names and its own, and returns the
+     * number of loans handed over to it. If this fails part way the partitions that have handed off must be
+     * restarted under the old names.
+     */
+    int addPartition(String name, InetSocketAddress address) throws IOException {
+        if(name == null || address == null) throw new IllegalArgumentException("name and address cannot be null");
+        membershipLock.writeLock().lock();
+        try {
+            if(partitions.containsKey(name)) throw new IllegalArgumentException(name + " is already a partition");
+            final List<String> names = ring.getNodes();
+            names.add(name);
+            final Partition joining = new Partition(address);
+            final Connection adopter = joining.borrow();
+            int handedOff = 0;
+            try {
+                adopter.output.writeByte(PartitionServer.ADOPT);
+                for(final Partition partition : partitions.values())
+                    handedOff += handOff(partition, names, adopter.output);
+                adopter.output.writeByte(PartitionServer.END);
+                adopter.output.flush();
+                if(adopter.input.readByte() != PartitionServer.OK) throw new IOException(name + " did not adopt its loans");
+            } finally {
+                adopter.close();
+            }
+            ring.add(name);
+            partitions.put(name, joining);
+            return handedOff;
+        } finally {
+            membershipLock.writeLock().unlock();
+        }
+    }
+
+    private static int handOff(Partition partition, List<String> names, DataOutputStream adopter) throws IOException {
+        final Connection connection = partition.borrow();
+        try {
+            connection.output.writeByte(PartitionServer.HAND_OFF);
+            connection.output.writeInt(names.size());
+            for(final String name : names)
+                connection.output.writeUTF(name);
+            connection.output.flush();
+            int loans = 0;
+            while(connection.input.readByte() == PartitionServer.MORE) {
+                adopter.writeByte(PartitionServer.MORE);
+                adopter.writeUTF(connection.input.readUTF());
+                adopter.writeInt(connection.input.readInt());
+                adopter.writeInt(connection.input.readInt());
+                adopter.writeLong(connection.input.readLong());
+                loans++;
+            }
+            partition.release(connection);
+            return loans;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        for(final Partition partition : partitions.values())
+            partition.close();
+    }
+
+    interface ItemVisitor<T extends LibraryItem> {
+        void visit(T item, int availableCopies, int totalCopies) throws IOException;
+    }
+
+    private static final class Partition {
+        private final InetSocketAddress address;
+        private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+        Partition(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        Connection borrow() throws IOException {
+            final Connection connection = idle.poll();
+            return connection != null ? connection : new Connection(new Socket(address.getAddress(), address.getPort()));
+        }
+
+        void release(Connection connection) {
+            idle.add(connection);
+        }
+
+        void close() {
+            for(Connection connection = idle.poll(); connection != null; connection = idle.poll())
+                connection.close();
+        }
+    }
+
+    private static final class Connection implements Closeable {
+        private final Socket socket;
+        private final DataInputStream input;
+        private final DataOutputStream output;
+
+        Connection(Socket socket) throws IOException {
+            socket.setTcpNoDelay(true);
+            this.socket = socket;
+            this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing more can be done with it
+            }
+        }
+    }
+
+    /**
+     * One partition's listing, read a title ahead.
+     */
+    private static final class Listing {
+        private final Partition partition;
+        private final Connection connection;
+        private String title;
+        private String creator;
+        private int year;
+        private int rating;
+        private int availableCopies;
+        private int totalCopies;
+
+        Listing(Partition partition, Connection connection) {
+            this.partition = partition;
+            this.connection = connection;
+        }
+
+        boolean next() throws IOException {
+            final DataInputStream input = connection.input;
+            if(input.readByte() != PartitionServer.MORE) return false;
+            title = input.readUTF();
+            creator = input.readUTF();
+            year = input.readShort();
+            rating = input.readByte();
+            availableCopies = input.readInt();
+            totalCopies = input.readInt();
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,303 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.domain.ItemType;
+import com.twu.biblioteca.domain.LibraryItem;
+import com.twu.biblioteca.domain.Movie;
+import com.twu.biblioteca.exceptions.CustomerRequiredException;
+import com.twu.biblioteca.exceptions.LibraryItemNotAvailableException;
+import com.twu.biblioteca.exceptions.LibraryItemNotCheckedOutException;
+import com.twu.biblioteca.exceptions.LibraryItemNotFoundException;
+import com.twu.biblioteca.helper.ConsistentHashRing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Serves one partition of a catalog that is split by title across processes, for a partition router to send
+ * requests to over TCP. Every partition is started with the names of all of them, and holds only the titles a
+ * consistent hash ring of those names gives it.
+ *
+ * Requests are a one byte operation followed by its arguments, and each connection is served by its own thread, one
+ * request at a time. A checkout or return is answered with a status byte. A listing streams the partition's available
+ * titles in title order, each preceded by a MORE byte and the whole ended by an END byte, so the router can merge the
+ * partitions' listings without holding any of them. When a partition joins, each existing partition is handed the new
+ * names, stops serving the titles it no longer owns and streams out their loans, which the joining partition adopts.
+ */
+final class PartitionServer<T extends LibraryItem> implements Closeable {
+
+    static final byte CHECKOUT = 1;
+    static final byte RETURN = 2;
+    static final byte LIST = 3;
+    static final byte HAND_OFF = 4;
+    static final byte ADOPT = 5;
+
+    static final byte OK = 0;
+    static final byte NOT_FOUND = 1;
+    static final byte NOT_AVAILABLE = 2;
+    static final byte NOT_CHECKED_OUT = 3;
+    static final byte CUSTOMER_REQUIRED = 4;
+
+    static final byte END = 0;
+    static final byte MORE = 1;
+
+    private final ServerSocket serverSocket;
+    private final String name;
+    private final ItemType<T> type;
+    private final SecurityContext securityContext;
+    private final Library<T> library;
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private volatile ConsistentHashRing ring;
+    private volatile boolean closed;
+
+    PartitionServer(ServerSocket serverSocket, String name, ConsistentHashRing ring, ItemType<T> type,
+                    SecurityContext securityContext, Library<T> library) {
+        if(serverSocket == null) throw new IllegalArgumentException("serverSocket cannot be null");
+        if(name == null) throw new IllegalArgumentException("name cannot be null");
+        if(ring == null || !ring.getNodes().contains(name)) throw new IllegalArgumentException("ring cannot be null or without " + name);
+        if(type == null) throw new IllegalArgumentException("type cannot be null");
+        if(securityContext == null) throw new IllegalArgumentException("securityContext cannot be null");
+        if(library == null) throw new IllegalArgumentException("library cannot be null");
+        this.serverSocket = serverSocket;
+        this.name = name;
+        this.ring = ring;
+        this.type = type;
+        this.securityContext = securityContext;
+        this.library = library;
+
+        final Thread acceptor = new Thread("partition-accept") {
+            @Override
+            public void run() {
+                accept();
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * The items of a whole catalog that the ring gives to the named partition.
+     */
+    static <T extends LibraryItem> List<T> owned(Collection<T> items, ConsistentHashRing ring, String name) {
+        final List<T> owned = new ArrayList<>();
+        for(final T item : items)
+            if(ring.nodeFor(item.getTitle()).equals(name))
+                owned.add(item);
+        return owned;
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private boolean owns(String title) {
+        return ring.nodeFor(title).equals(name);
+    }
+
+    private void accept() {
+        while(!closed) {
+            final Socket connection;
+            try {
+                connection = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            connections.add(connection);
+            final Thread handler = new Thread("partition-" + connection.getRemoteSocketAddress()) {
+                @Override
+                public void run() {
+                    try {
+                        serve(connection);
+                    } catch (IOException e) {
+                        // the router has gone, and will connect again when it needs to
+                    } finally {
+                        connections.remove(connection);
+                        close(connection);
+                    }
+                }
+            };
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+    private void serve(Socket connection) throws IOException {
+        connection.setTcpNoDelay(true);
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 64 << 10));
+        while(!closed) {
+            final int operation = input.read();
+            if(operation < 0) return;
+            switch(operation) {
+                case CHECKOUT:
+                    output.writeByte(checkout(input.readUTF(), customer(input.readInt())));
+                    break;
+                case RETURN:
+                    output.writeByte(checkIn(input.readUTF(), customer(input.readInt())));
+                    break;
+                case LIST:
+                    list(output);
+                    break;
+                case HAND_OFF:
+                    handOff(input, output);
+                    break;
+                case ADOPT:
+                    adopt(input);
+                    output.writeByte(OK);
+                    break;
+                default:
+                    throw new IOException("unknown operation " + operation);
+            }
+            output.flush();
+        }
+    }
+
+    private Customer customer(int id) {
+        return securityContext.getCustomer(id);
+    }
+
+    private byte checkout(String title, Customer customer) {
+        if(!owns(title)) return NOT_FOUND;
+        try {
+            library.checkoutItemByTitle(title, customer);
+            return OK;
+        } catch (LibraryItemNotFoundException e) {
+            return NOT_FOUND;
+        } catch (LibraryItemNotAvailableException e) {
+            return NOT_AVAILABLE;
+        } catch (CustomerRequiredException e) {
+            return CUSTOMER_REQUIRED;
+        }
+    }
+
+    private byte checkIn(String title, Customer customer) {
+        if(!owns(title)) return NOT_FOUND;
+        try {
+            library.returnItemByTitle(title, customer);
+            return OK;
+        } catch (LibraryItemNotFoundException e) {
+            return NOT_FOUND;
+        } catch (LibraryItemNotCheckedOutException e) {
+            return NOT_CHECKED_OUT;
+        }
+    }
+
+    private void list(DataOutputStream output) throws IOException {
+        for(final CatalogEntry<T> entry : library.getItems()) {
+            final String title = entry.getTitle();
+            if(!owns(title)) continue;
+            final T item = entry.getItem();
+            output.writeByte(MORE);
+            output.writeUTF(title);
+            output.writeUTF(type.getCreator(item));
+            output.writeShort(item.getYear());
+            output.writeByte(type.getRating(item));
+            output.writeInt(entry.getAvailableCopies());
+            output.writeInt(entry.getTotalCopies());
+        }
+        output.writeByte(END);
+    }
+
+    /**
+     * Takes the new set of partitions, after which the titles now given to another are no longer served, and streams
+     * out every loan of those titles.
+     */
+    private void handOff(DataInputStream input, final DataOutputStream output) throws IOException {
+        final String[] names = new String[input.readInt()];
+        for(int i = 0; i < names.length; i++)
+            names[i] = input.readUTF();
+        ring = new ConsistentHashRing(ring.getVirtualNodes(), Arrays.asList(names));
+        library.visitLoans(new CatalogEntry.LoanVisitor() {
+            @Override
+            public void visit(int id, int copyNumber, Customer borrower, long dueTime) throws IOException {
+                final String title = library.findEntryById(id).getTitle();
+                if(owns(title)) return;
+                output.writeByte(MORE);
+                output.writeUTF(title);
+                output.writeInt(copyNumber);
+                output.writeInt(securityContext.getCustomerId(borrower));
+                output.writeLong(dueTime);
+            }
+        });
+        output.writeByte(END);
+    }
+
+    private void adopt(DataInputStream input) throws IOException {
+        while(input.readByte() == MORE) {
+            final CatalogEntry<T> entry = library.findEntryByTitle(input.readUTF());
+            final int copyNumber = input.readInt();
+            final Customer borrower = customer(input.readInt());
+            final long dueTime = input.readLong();
+            if(entry != null && borrower != null)
+                library.restoreLoan(entry.getId(), copyNumber, borrower, dueTime);
+        }
+        library.finishRestore();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        close(serverSocket);
+        for(final Socket connection : connections)
+            close(connection);
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing more can be done with it
+        }
+    }
+
+    /**
+     * Runs one partition until its standard input is closed:
+     * PartitionServer port name name,name,... books|movies [catalog.csv]
+     * The port may be 0 for any free port; the one taken is printed once the partition is serving.
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length < 4 || args.length > 5 || !(args[3].equals("books") || args[3].equals("movies"))) {
+            System.err.println("Usage: PartitionServer port name name,name,... books|movies [catalog.csv]");
+            System.exit(1);
+        }
+        final ServerSocket serverSocket = new ServerSocket(Integer.parseInt(args[0]));
+        final ConsistentHashRing ring =
+                new ConsistentHashRing(ConsistentHashRing.DEFAULT_VIRTUAL_NODES, Arrays.asList(args[2].split(",")));
+        final String catalog = args.length == 5 ? args[4] : null;
+        final PartitionServer<?> server = args[3].equals("books")
+                ? start(serverSocket, args[1], ring, Book.class, Book.TYPE, Book.getBooks(), catalog)
+                : start(serverSocket, args[1], ring, Movie.class, Movie.TYPE, Movie.getMovies(), catalog);
+        while(System.in.read() >= 0);
+        server.close();
+        System.exit(0);
+    }
+
+    private static <T extends LibraryItem> PartitionServer<T> start(ServerSocket serverSocket, String name,
+                                                                    ConsistentHashRing ring, Class<T> itemsClass,
+                                                                    ItemType<T> type, Collection<T> items,
+                                                                    String catalog) throws IOException {
+        final Library<T> library = catalog == null
+                ? new Library<>(owned(items, ring, name), itemsClass)
+                : new CsvCatalogImporter<>(type, itemsClass).onlyPartition(name, ring).importFrom(Paths.get(catalog));
+        if(library.size() == 0) throw new IOException("partition " + name + " owns none of the catalog");
+        final PartitionServer<T> server =
+                new PartitionServer<>(serverSocket, name, ring, type, new SecurityContext(Customer.getCustomers()), library);
+        System.out.println("Partition " + name + " serving " + library.size() + " " + library.getItemsNameLowercase() +
+                "s on port " + server.getPort());
+        return server;
+    }
+
+}
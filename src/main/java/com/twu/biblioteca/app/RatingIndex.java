@@ -0,0 +1,47 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Rated;
+import com.twu.biblioteca.helper.IdBitSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An index from rating to the ids of the titles with it, held as one bitset per rating. A minimum rating is answered
+ * by walking the words of each bucket at or above it, so the cost grows with the number of titles divided by 64
+ * rather than with the number of rated titles. Entries are only added under the library's catalog lock.
+ */
+class RatingIndex {
+
+    private final IdBitSet[] buckets = new IdBitSet[Rated.MAX_RATING - Rated.MIN_RATING + 1];
+
+    RatingIndex() {
+        for(int i = 0; i < buckets.length; i++)
+            buckets[i] = new IdBitSet();
+    }
+
+    void add(int id, int rating) {
+        if(rating < Rated.MIN_RATING || rating > Rated.MAX_RATING) return;
+        buckets[rating - Rated.MIN_RATING].set(id);
+    }
+
+    /**
+     * The ids of titles rated {@code minimum} or more, highest rating first and then in the order they were added.
+     */
+    List<Integer> find(int minimum) {
+        final List<Integer> matches = new ArrayList<>();
+        for(int rating = Rated.MAX_RATING; rating >= Math.max(minimum, Rated.MIN_RATING); rating--) {
+            final IdBitSet bucket = buckets[rating - Rated.MIN_RATING];
+            final int words = bucket.getWordCount();
+            for(int index = 0; index < words; index++) {
+                long word = bucket.getWord(index);
+                while(word != 0) {
+                    matches.add(index * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+        return matches;
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.helper.Clock;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Keeps a read-only copy of a primary's libraries up to date from its replication stream. Connecting checks that the
+ * libraries were opened from the same catalogs as the primary's and restores the snapshot the primary sends, so a
+ * new follower needs nothing but the catalogs. Running then applies each frame of records as it arrives, from one
+ * thread, while other threads read the libraries.
+ *
+ * Lag is taken from each frame: in events, as the primary's next sequence less the follower's, and in milliseconds,
+ * as the time from the primary sending the frame to the follower having applied it, by the two processes' clocks.
+ */
+final class ReplicationFollower implements Runnable, Closeable {
+
+    private final Socket socket;
+    private final DataInputStream input;
+    private final Clock clock;
+    private final SecurityContext securityContext;
+    private final Library<?>[] libraries;
+    private final ByteBuffer records = ByteBuffer.allocate(ReplicationServer.FRAME_RECORDS * LoanJournal.RECORD_SIZE);
+    private volatile long nextSequence;
+    private volatile long primarySequence;
+    private volatile long lagMillis;
+    private volatile boolean connected = true;
+
+    ReplicationFollower(Socket socket, Clock clock, SecurityContext securityContext, Library<?>... libraries) throws IOException {
+        if(socket == null) throw new IllegalArgumentException("socket cannot be null");
+        if(clock == null) throw new IllegalArgumentException("clock cannot be null");
+        if(securityContext == null) throw new IllegalArgumentException("securityContext cannot be null");
+        if(libraries == null || libraries.length == 0) throw new IllegalArgumentException("libraries cannot be null or empty");
+        this.socket = socket;
+        this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 << 10));
+        this.clock = clock;
+        this.securityContext = securityContext;
+        this.libraries = libraries.clone();
+
+        if(input.readInt() != ReplicationServer.MAGIC || input.readInt() != ReplicationServer.VERSION)
+            throw new IOException("not a replication stream");
+        if(input.readInt() != libraries.length)
+            throw new IOException("the primary has a different number of libraries");
+        for(final Library<?> library : libraries)
+            if(input.readInt() != library.size())
+                throw new IOException("the primary's " + library.getItemsNameLowercase() + " catalog is not this one");
+
+        final byte[] snapshot = new byte[input.readInt()];
+        input.readFully(snapshot);
+        final long sequence = LoanSnapshot.restore(ByteBuffer.wrap(snapshot), securityContext, libraries);
+        if(sequence < 0) throw new IOException("the primary's snapshot is corrupt");
+        for(final Library<?> library : libraries)
+            library.finishRestore();
+        nextSequence = sequence;
+        primarySequence = sequence;
+    }
+
+    /**
+     * Applies frames until the primary goes away or the follower is closed.
+     */
+    @Override
+    public void run() {
+        try {
+            while(true)
+                applyFrame();
+        } catch (IOException e) {
+            connected = false;
+        }
+    }
+
+    private void applyFrame() throws IOException {
+        final int count = input.readInt();
+        final long sentTime = input.readLong();
+        final long headSequence = input.readLong();
+        if(count < 0 || count > ReplicationServer.FRAME_RECORDS) throw new IOException("frame of " + count + " records");
+        records.clear();
+        input.readFully(records.array(), 0, count * LoanJournal.RECORD_SIZE);
+        long sequence = nextSequence;
+        for(int i = 0; i < count; i++, sequence++) {
+            final int offset = i * LoanJournal.RECORD_SIZE;
+            if(!LoanJournal.isRecord(records, offset, sequence)) throw new IOException("record " + sequence + " is missing");
+            LoanJournal.apply(records, offset, securityContext, libraries);
+        }
+        for(final Library<?> library : libraries)
+            library.finishRestore();
+        nextSequence = sequence;
+        primarySequence = headSequence;
+        lagMillis = Math.max(0, clock.currentTimeMillis() - sentTime);
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * The sequence of the next record the follower will apply.
+     */
+    long getNextSequence() {
+        return nextSequence;
+    }
+
+    long getLagEvents() {
+        return Math.max(0, primarySequence - nextSequence);
+    }
+
+    long getLagMillis() {
+        return lagMillis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        connected = false;
+        socket.close();
+    }
+
+}
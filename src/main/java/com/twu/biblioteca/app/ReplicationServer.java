@@ -0,0 +1,156 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.helper.Clock;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streams a primary's loans and returns to read-only followers over TCP. A follower that connects is sent the size
+ * of each library, so it can check it was opened from the same catalogs, then a snapshot of every loan, then every
+ * journal record from the snapshot's sequence on. Records go in frames of up to FRAME_RECORDS, each stamped with the
+ * primary's time and next sequence so the follower can tell how far behind it is; when there is nothing new an empty
+ * frame is sent every HEARTBEAT_MILLIS. Each follower is served by its own thread, which tails the journal's segments
+ * rather than being handed records by the appenders, so a slow follower never holds up a checkout.
+ */
+final class ReplicationServer implements Closeable {
+
+    static final int MAGIC = 0x42524550;
+    static final int VERSION = 1;
+    static final int FRAME_RECORDS = 1024;
+    static final long HEARTBEAT_MILLIS = 100;
+
+    private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final ServerSocket serverSocket;
+    private final LoanJournal journal;
+    private final Clock clock;
+    private final SecurityContext securityContext;
+    private final Library<?>[] libraries;
+    private final List<Socket> followers = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    ReplicationServer(ServerSocket serverSocket, LoanJournal journal, Clock clock, SecurityContext securityContext, Library<?>... libraries) {
+        if(serverSocket == null) throw new IllegalArgumentException("serverSocket cannot be null");
+        if(journal == null) throw new IllegalArgumentException("journal cannot be null");
+        if(clock == null) throw new IllegalArgumentException("clock cannot be null");
+        if(securityContext == null) throw new IllegalArgumentException("securityContext cannot be null");
+        if(libraries == null || libraries.length == 0) throw new IllegalArgumentException("libraries cannot be null or empty");
+        this.serverSocket = serverSocket;
+        this.journal = journal;
+        this.clock = clock;
+        this.securityContext = securityContext;
+        this.libraries = libraries.clone();
+
+        final Thread acceptor = new Thread("replication-accept") {
+            @Override
+            public void run() {
+                accept();
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getFollowerCount() {
+        return followers.size();
+    }
+
+    private void accept() {
+        while(!closed) {
+            final Socket follower;
+            try {
+                follower = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            followers.add(follower);
+            final Thread sender = new Thread("replication-" + follower.getRemoteSocketAddress()) {
+                @Override
+                public void run() {
+                    try {
+                        serve(follower);
+                    } catch (IOException e) {
+                        // the follower has gone, and can bootstrap again when it comes back
+                    } finally {
+                        followers.remove(follower);
+                        close(follower);
+                    }
+                }
+            };
+            sender.setDaemon(true);
+            sender.start();
+        }
+    }
+
+    private void serve(Socket follower) throws IOException {
+        follower.setTcpNoDelay(true);
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(follower.getOutputStream(), 64 << 10));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(libraries.length);
+        for(final Library<?> library : libraries)
+            output.writeInt(library.size());
+
+        long next = journal.getNextSequence();
+        final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        LoanSnapshot.write(Channels.newChannel(snapshot), next, securityContext, libraries);
+        output.writeInt(snapshot.size());
+        snapshot.writeTo(output);
+        output.flush();
+
+        final ByteBuffer records = ByteBuffer.allocate(FRAME_RECORDS * LoanJournal.RECORD_SIZE);
+        long lastSent = clock.currentTimeMillis();
+        while(!closed) {
+            records.clear();
+            final int count = journal.readRecords(next, records);
+            final long now = clock.currentTimeMillis();
+            if(count == 0 && now - lastSent < HEARTBEAT_MILLIS) {
+                LockSupport.parkNanos(POLL_NANOS);
+                continue;
+            }
+            output.writeInt(count);
+            output.writeLong(now);
+            output.writeLong(journal.getNextSequence());
+            output.write(records.array(), 0, records.position());
+            output.flush();
+            next += count;
+            lastSent = now;
+        }
+    }
+
+    /**
+     * Stops accepting followers and disconnects those there are.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        close(serverSocket);
+        for(final Socket follower : followers)
+            close(follower);
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing more can be done with it
+        }
+    }
+
+}
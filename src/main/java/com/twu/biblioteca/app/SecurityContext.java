@@ -6,9 +6,14 @@ import com.twu.biblioteca.exceptions.InvalidCredentialsException;
 import com.twu.biblioteca.helper.SecurityStatus;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Created by Matt on 27/02/15.
@@ -17,10 +22,42 @@ public class SecurityContext implements SecurityStatus {
 
     private Customer customer;
     private Map<String, Customer> customers = new HashMap<>();
+    private final List<Customer> customersById = new ArrayList<>();
+    private final Map<Customer, Integer> customerIds = new HashMap<>();
+    private final List<LoginListener> loginListeners = new CopyOnWriteArrayList<>();
 
+    /**
+     * Customers are numbered in library number order, so the same customers always get the same ids.
+     */
     public SecurityContext(Set<Customer> customers) {
         for(final Customer customer : customers)
             this.customers.put(customer.getLibraryNumber(), customer);
+        customersById.addAll(customers);
+        Collections.sort(customersById, new Comparator<Customer>() {
+            @Override
+            public int compare(Customer first, Customer second) {
+                return first.getLibraryNumber().compareTo(second.getLibraryNumber());
+            }
+        });
+        for(int id = 0; id < customersById.size(); id++)
+            customerIds.put(customersById.get(id), id);
+    }
+
+    /**
+     * The customer's id, or -1 for a customer this context does not know.
+     */
+    int getCustomerId(Customer customer) {
+        final Integer id = customerIds.get(customer);
+        return id == null ? -1 : id;
+    }
+
+    Customer getCustomer(int id) {
+        return id < 0 || id >= customersById.size() ? null : customersById.get(id);
+    }
+
+    void addLoginListener(LoginListener listener) {
+        if(listener == null) throw new IllegalArgumentException("listener cannot be null");
+        loginListeners.add(listener);
     }
 
     @Override
@@ -45,10 +82,16 @@ public class SecurityContext implements SecurityStatus {
 
     void login(String libraryNumber, String password) throws InvalidCredentialsException, IOException {
         setCustomer(customers.get(libraryNumber), password);
+        for(final LoginListener listener : loginListeners)
+            listener.loggedIn(customer);
     }
 
     public Customer getLoggedInCustomer() throws CustomerRequiredException {
         verifyCustomerIsLoggedIn();
         return customer;
     }
+
+    interface LoginListener {
+        void loggedIn(Customer customer);
+    }
 }
@@ -0,0 +1,80 @@
+package com.twu.biblioteca.app;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Finds a title's id by hashing, without keeping the title. Each slot of an open-addressed table packs a title's hash
+ * with its id, and a candidate whose hash matches is confirmed against the catalog store, so the index costs eight
+ * bytes a slot however long the titles are. Ids are only added under the library's catalog lock; a full table is
+ * rehashed into one twice the size, from the hashes it already holds, and published whole, so lookups take no lock.
+ */
+class TitleIndex {
+
+    private static final int INITIAL_SLOTS = 16;
+    private static final long EMPTY = 0;
+
+    private final CatalogStore<?> store;
+    private volatile AtomicLongArray slots;
+    private int size;
+
+    TitleIndex(CatalogStore<?> store, int expected) {
+        if(store == null) throw new IllegalArgumentException("store cannot be null");
+        this.store = store;
+        int capacity = INITIAL_SLOTS;
+        while(capacity < expected + expected / 3 + 1 && capacity < 1 << 30)
+            capacity <<= 1;
+        this.slots = new AtomicLongArray(capacity);
+    }
+
+    void add(int id, String title) {
+        if((size + 1) * 4L > slots.length() * 3L)
+            slots = rehash(slots, slots.length() * 2);
+        insert(slots, pack(title.hashCode(), id));
+        size++;
+    }
+
+    /**
+     * The id of the title, or -1 if no title added so far has it.
+     */
+    int find(String title) {
+        final int hash = title.hashCode();
+        final AtomicLongArray slots = this.slots;
+        final int mask = slots.length() - 1;
+        for(int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            final long packed = slots.get(slot);
+            if(packed == EMPTY) return -1;
+            if((int) (packed >>> 32) == hash && store.hasTitle(idOf(packed), title)) return idOf(packed);
+        }
+    }
+
+    private static AtomicLongArray rehash(AtomicLongArray slots, int capacity) {
+        final AtomicLongArray grown = new AtomicLongArray(capacity);
+        for(int slot = 0; slot < slots.length(); slot++) {
+            final long packed = slots.get(slot);
+            if(packed != EMPTY)
+                insert(grown, packed);
+        }
+        return grown;
+    }
+
+    private static void insert(AtomicLongArray slots, long packed) {
+        final int mask = slots.length() - 1;
+        int slot = spread((int) (packed >>> 32)) & mask;
+        while(slots.get(slot) != EMPTY)
+            slot = (slot + 1) & mask;
+        slots.set(slot, packed);
+    }
+
+    private static long pack(int hash, int id) {
+        return (long) hash << 32 | (id + 1L);
+    }
+
+    private static int idOf(long packed) {
+        return (int) packed - 1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+
+}
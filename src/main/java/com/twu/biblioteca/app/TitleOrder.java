@@ -0,0 +1,262 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.helper.SummaryBitSet;
+
+/**
+ * The ids of a library's titles kept sorted by a comparison of their titles in the catalog store, four bytes a title.
+ * Titles are nearly always added in order, by a library built from sorted items or a catalog file, and those are
+ * appended in place. Any that arrive out of order are set aside and merged in by the next reader, so a run of them
+ * costs one sort. Readers take a snapshot, whose order is never changed once published, and only lock to merge.
+ *
+ * An order can also mark titles, such as those on the shelf, with a bit per place in the order under a summary of
+ * which words hold any, so the marked titles either side of a place are found without reading the unmarked ones.
+ * Marks are set without locking by whoever keeps the set they mirror, after changing it. A merge, or an append that
+ * outgrows the arrays, builds a new snapshot and marks it from that set before publishing it, while marks made
+ * meanwhile go to both; a snapshot replaced that way keeps the marks it had.
+ */
+class TitleOrder {
+
+    interface IdComparator {
+        int compare(int first, int second);
+    }
+
+    /**
+     * Compares a title, by id, with the one being searched for.
+     */
+    interface Probe {
+        int compareTo(int id);
+    }
+
+    /**
+     * The set an order's marks mirror.
+     */
+    interface Marks {
+        boolean isMarked(int id);
+    }
+
+    static final class Snapshot {
+        private final int[] ids;
+        private final int size;
+        private final int[] indexes;
+        private final SummaryBitSet marked;
+
+        private Snapshot(int[] ids, int size, int[] indexes, SummaryBitSet marked) {
+            this.ids = ids;
+            this.size = size;
+            this.indexes = indexes;
+            this.marked = marked;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            if(index < 0 || index >= size) throw new IndexOutOfBoundsException("index " + index + " of " + size);
+            return ids[index];
+        }
+
+        /**
+         * The index of the first title the probe does not place before the one searched for, or size if none.
+         */
+        int firstAtOrAfter(Probe probe) {
+            return search(probe, 0);
+        }
+
+        /**
+         * The index of the first title the probe places after the one searched for, or size if none.
+         */
+        int firstAfter(Probe probe) {
+            return search(probe, 1);
+        }
+
+        /**
+         * The index of the first marked title at or after {@code from}, or size if none.
+         */
+        int nextMarked(int from) {
+            final int index = from < size ? marked.nextSetBit(Math.max(from, 0)) : -1;
+            return index < 0 || index >= size ? size : index;
+        }
+
+        /**
+         * The index of the last marked title at or before {@code from}, or -1 if none.
+         */
+        int previousMarked(int from) {
+            return marked.previousSetBit(Math.min(from, size - 1));
+        }
+
+        private int indexOf(int id) {
+            if(id >= indexes.length) return -1;
+            final int index = indexes[id];
+            return index < size && ids[index] == id ? index : -1;
+        }
+
+        private void mark(int id, boolean mark) {
+            final int index = indexOf(id);
+            if(index < 0) return;
+            if(mark)
+                marked.set(index);
+            else
+                marked.clear(index);
+        }
+
+        private int search(Probe probe, int least) {
+            int low = 0;
+            int high = size;
+            while(low < high) {
+                final int middle = (low + high) >>> 1;
+                if(probe.compareTo(ids[middle]) < least)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+    }
+
+    private final IdComparator comparator;
+    private final Marks marks;
+    private volatile Snapshot snapshot;
+    private volatile Snapshot building;
+    private int[] pending = new int[0];
+    private int pendingSize;
+    private volatile boolean unmerged;
+
+    TitleOrder(IdComparator comparator, int expected) {
+        this(comparator, expected, null);
+    }
+
+    TitleOrder(IdComparator comparator, int expected, Marks marks) {
+        if(comparator == null) throw new IllegalArgumentException("comparator cannot be null");
+        this.comparator = comparator;
+        this.marks = marks;
+        final int capacity = Math.max(expected, 16);
+        this.snapshot = marks == null
+                ? new Snapshot(new int[capacity], 0, null, null)
+                : new Snapshot(new int[capacity], 0, new int[capacity], new SummaryBitSet(capacity));
+    }
+
+    synchronized void add(int id) {
+        final Snapshot current = snapshot;
+        if(current.size > 0 && comparator.compare(current.ids[current.size - 1], id) > 0) {
+            if(pendingSize == pending.length)
+                pending = grow(pending, pendingSize + 1);
+            pending[pendingSize++] = id;
+            unmerged = true;
+            return;
+        }
+        if(current.size == current.ids.length || marks != null && id >= current.indexes.length) {
+            final int[] ids = grow(current.ids, current.size + 1);
+            ids[current.size] = id;
+            publish(ids, current.size + 1);
+            return;
+        }
+        current.ids[current.size] = id;
+        if(marks != null)
+            current.indexes[id] = current.size;
+        final Snapshot appended = new Snapshot(current.ids, current.size + 1, current.indexes, current.marked);
+        snapshot = appended;
+        if(marks != null)
+            mirror(appended, id);
+    }
+
+    /**
+     * Marks or unmarks a title, in the snapshot readers are given and in any being built. The caller has already
+     * changed the set the marks mirror, and must mark the title again if that changes before this returns.
+     */
+    void mark(int id, boolean mark) {
+        final Snapshot next = building;
+        if(next != null)
+            next.mark(id, mark);
+        snapshot.mark(id, mark);
+    }
+
+    Snapshot snapshot() {
+        if(unmerged)
+            merge();
+        return snapshot;
+    }
+
+    private synchronized void merge() {
+        if(!unmerged) return;
+        final Snapshot current = snapshot;
+        sort(pending, pendingSize, comparator);
+        final int size = current.size + pendingSize;
+        final int[] merged = new int[size + size / 2];
+        int from = 0;
+        int set = 0;
+        for(int i = 0; i < size; i++) {
+            if(set == pendingSize || from < current.size && comparator.compare(current.ids[from], pending[set]) <= 0)
+                merged[i] = current.ids[from++];
+            else
+                merged[i] = pending[set++];
+        }
+        pending = new int[0];
+        pendingSize = 0;
+        publish(merged, size);
+        unmerged = false;
+    }
+
+    /**
+     * Publishes a snapshot of new arrays, marked first. It is announced as being built before any mark is read, so
+     * a mark made after it has read that title's goes to it as well.
+     */
+    private void publish(int[] ids, int size) {
+        if(marks == null) {
+            snapshot = new Snapshot(ids, size, null, null);
+            return;
+        }
+        int length = ids.length;
+        for(int i = 0; i < size; i++)
+            length = Math.max(length, ids[i] + 1);
+        final int[] indexes = new int[length];
+        for(int i = 0; i < size; i++)
+            indexes[ids[i]] = i;
+        final Snapshot next = new Snapshot(ids, size, indexes, new SummaryBitSet(ids.length));
+        building = next;
+        for(int i = 0; i < size; i++)
+            mirror(next, ids[i]);
+        snapshot = next;
+        building = null;
+    }
+
+    private void mirror(Snapshot target, int id) {
+        boolean mark;
+        do {
+            mark = marks.isMarked(id);
+            target.mark(id, mark);
+        } while(mark != marks.isMarked(id));
+    }
+
+    /**
+     * Sorts the first {@code size} ids by the comparator, stably, for results drawn from other indexes as well.
+     */
+    static void sort(int[] ids, int size, IdComparator comparator) {
+        if(size < 2) return;
+        final int[] work = new int[size];
+        System.arraycopy(ids, 0, work, 0, size);
+        mergeSort(work, ids, 0, size, comparator);
+    }
+
+    private static void mergeSort(int[] source, int[] target, int from, int to, IdComparator comparator) {
+        if(to - from < 2) return;
+        final int middle = (from + to) >>> 1;
+        mergeSort(target, source, from, middle, comparator);
+        mergeSort(target, source, middle, to, comparator);
+        int left = from;
+        int right = middle;
+        for(int i = from; i < to; i++) {
+            if(right == to || left < middle && comparator.compare(source[left], source[right]) <= 0)
+                target[i] = source[left++];
+            else
+                target[i] = source[right++];
+        }
+    }
+
+    private static int[] grow(int[] ids, int capacity) {
+        final int[] grown = new int[Math.max(capacity, Math.max(16, ids.length * 2))];
+        System.arraycopy(ids, 0, grown, 0, ids.length);
+        return grown;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.helper.IntList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A sorted index from year to the ids of the titles from that year, so a range of years is found with one seek and a
+ * walk over the matches. Entries are only added under the library's catalog lock, so each posting list has a single
+ * writer.
+ */
+class YearIndex {
+
+    private final ConcurrentSkipListMap<Short, IntList> postings = new ConcurrentSkipListMap<>();
+
+    void add(int id, short year) {
+        IntList ids = postings.get(year);
+        if(ids == null) {
+            ids = new IntList();
+            postings.put(year, ids);
+        }
+        ids.add(id);
+    }
+
+    /**
+     * The ids of titles from {@code from} to {@code to} inclusive, in year order and then in the order they were added.
+     */
+    List<Integer> find(int from, int to) {
+        final List<Integer> matches = new ArrayList<>();
+        if(from > to || to < Short.MIN_VALUE || from > Short.MAX_VALUE) return matches;
+        final short first = (short) Math.max(from, Short.MIN_VALUE);
+        final short last = (short) Math.min(to, Short.MAX_VALUE);
+        for(final IntList ids : postings.subMap(first, true, last, true).values()) {
+            final int count = ids.size();
+            for(int i = 0; i < count; i++)
+                matches.add(ids.get(i));
+        }
+        return matches;
+    }
+
+}
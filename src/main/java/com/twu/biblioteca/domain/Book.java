@@ -11,7 +11,37 @@ public class Book extends LibraryItem<Book> {
     private final String author;
     private static final String CSV_HEADERS = "Title, Author, Year";
 
-    public Book(String title, String author, String year) {
+    public static final ItemAttribute<Book> AUTHOR = new ItemAttribute<Book>() {
+        @Override
+        public String getName() {
+            return "Author";
+        }
+        @Override
+        public String getValue(Book book) {
+            return book.getAuthor();
+        }
+    };
+
+    public static final ItemType<Book> TYPE = new ItemType<Book>() {
+        @Override
+        public String getCSVHeaders() {
+            return CSV_HEADERS;
+        }
+        @Override
+        public String getCreator(Book book) {
+            return book.getAuthor();
+        }
+        @Override
+        public int getRating(Book book) {
+            return 0;
+        }
+        @Override
+        public Book create(String title, String author, int year, int rating) {
+            return new Book(title, author, year);
+        }
+    };
+
+    public Book(String title, String author, int year) {
         super(title, year);
         if(author == null || author.isEmpty()) throw new IllegalArgumentException("author cannot be null or empty");
         this.author = author;
@@ -53,9 +83,9 @@ public class Book extends LibraryItem<Book> {
 
     public static Set<Book> getBooks() {
         final Set<Book> books = new HashSet<>();
-        books.add(new Book("Great Expectations", "Charles Dickens", "1860"));
-        books.add(new Book("The Pickwick Papers", "Charles Dickens", "1837"));
-        books.add(new Book("Bleak House", "Charles Dickens", "1853"));
+        books.add(new Book("Great Expectations", "Charles Dickens", 1860));
+        books.add(new Book("The Pickwick Papers", "Charles Dickens", 1837));
+        books.add(new Book("Bleak House", "Charles Dickens", 1853));
         return books;
     }
 
@@ -2,8 +2,11 @@ package com.twu.biblioteca.domain;
 
 import com.twu.biblioteca.exceptions.InvalidCredentialsException;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Created by Matt on 24/02/15.
@@ -16,6 +19,7 @@ public class Customer {
     private final String password;
     private final String libraryNumber;
     private final String phoneNumber;
+    private final ConcurrentLinkedQueue<String> notices = new ConcurrentLinkedQueue<>();
 
     public Customer(final String firstName, final String lastName, final String emailAddress,
                     final String password, final String libraryNumber, final String phoneNumber) {
@@ -62,6 +66,21 @@ public class Customer {
         return phoneNumber;
     }
 
+    public void addNotice(String notice) {
+        if(notice == null) throw new IllegalArgumentException("notice cannot be null");
+        notices.offer(notice);
+    }
+
+    /**
+     * The notices posted since they were last taken, oldest first.
+     */
+    public List<String> takeNotices() {
+        final List<String> taken = new ArrayList<>();
+        for(String notice; (notice = notices.poll()) != null;)
+            taken.add(notice);
+        return taken;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
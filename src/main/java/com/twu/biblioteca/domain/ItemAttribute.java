@@ -0,0 +1,12 @@
+package com.twu.biblioteca.domain;
+
+/**
+ * A named attribute of a library item that a library can index, such as a book's author.
+ */
+public interface ItemAttribute<T extends LibraryItem> {
+
+    String getName();
+
+    String getValue(T item);
+
+}
@@ -0,0 +1,20 @@
+package com.twu.biblioteca.domain;
+
+/**
+ * Describes how a kind of library item breaks down into the fields a catalog store keeps for every item: a title, a
+ * creator, a year and a rating, and how an item is made again from them.
+ */
+public interface ItemType<T extends LibraryItem> {
+
+    String getCSVHeaders();
+
+    String getCreator(T item);
+
+    /**
+     * The item's rating, or 0 if it has none.
+     */
+    int getRating(T item);
+
+    T create(String title, String creator, int year, int rating);
+
+}
@@ -1,61 +1,31 @@
 package com.twu.biblioteca.domain;
 
-import com.twu.biblioteca.exceptions.CustomerRequiredException;
-import com.twu.biblioteca.exceptions.LibraryItemNotAvailableException;
-import com.twu.biblioteca.exceptions.LibraryItemNotCheckedOutException;
-
 /**
  * Created by Matt on 24/02/15.
  */
 public abstract class LibraryItem<T extends LibraryItem> implements Comparable<T> {
 
+    public static final int MIN_YEAR = 1;
+    public static final int MAX_YEAR = 9999;
+
     private final String title;
-    private final String year;
-    private Customer checkedOutBy;
+    private final short year;
 
-    LibraryItem(final String title, final String year) {
+    LibraryItem(final String title, final int year) {
         if(title == null || title.isEmpty()) throw new IllegalArgumentException("title cannot be null or empty");
-        if(year == null || year.isEmpty()) throw new IllegalArgumentException("year cannot be null or empty");
+        if(year < MIN_YEAR || year > MAX_YEAR) throw new IllegalArgumentException("year must be between " + MIN_YEAR + " and " + MAX_YEAR);
         this.title = title;
-        this.year = year;
+        this.year = (short) year;
     }
 
     public String getTitle() {
         return title;
     }
 
-    public String getYear() {
+    public short getYear() {
         return year;
     }
 
-    public boolean isCheckedOut() {
-        return checkedOutBy != null;
-    }
-
-    public boolean isAvailable() {
-        return !isCheckedOut();
-    }
-
-    public void checkOut(Customer checkedOutBy) throws LibraryItemNotAvailableException, CustomerRequiredException {
-        if(checkedOutBy == null) throw new CustomerRequiredException();
-        if(isCheckedOut()) throw new LibraryItemNotAvailableException();
-        this.checkedOutBy = checkedOutBy;
-    }
-
-    public Customer getCheckedOutBy() throws LibraryItemNotCheckedOutException {
-        verifyItemIsCheckedOut();
-        return checkedOutBy;
-    }
-
-    private void verifyItemIsCheckedOut() throws LibraryItemNotCheckedOutException {
-        if(isAvailable()) throw new LibraryItemNotCheckedOutException();
-    }
-
-    public void checkIn() throws LibraryItemNotCheckedOutException {
-        verifyItemIsCheckedOut();
-        checkedOutBy = null;
-    }
-
     @Override
     public int compareTo(T o) {
         return this.getTitle().compareTo(o.getTitle());
@@ -68,9 +38,8 @@ public abstract class LibraryItem<T extends LibraryItem> implements Comparable<T
 
         LibraryItem that = (LibraryItem) o;
 
-        if (checkedOutBy != null ? !checkedOutBy.equals(that.checkedOutBy) : that.checkedOutBy != null) return false;
         if (!title.equals(that.title)) return false;
-        if (!year.equals(that.year)) return false;
+        if (year != that.year) return false;
 
         return true;
     }
@@ -78,8 +47,7 @@ public abstract class LibraryItem<T extends LibraryItem> implements Comparable<T
     @Override
     public int hashCode() {
         int result = title.hashCode();
-        result = 31 * result + year.hashCode();
-        result = 31 * result + (checkedOutBy != null ? checkedOutBy.hashCode() : 0);
+        result = 31 * result + year;
         return result;
     }
 
@@ -6,34 +6,73 @@ import java.util.Set;
 /**
  * Created by Matt on 24/02/15.
  */
-public class Movie extends LibraryItem<Movie> {
+public class Movie extends LibraryItem<Movie> implements Rated {
+
+    public static final int UNRATED = 0;
 
     private final String director;
-    private final Integer rating;
+    private final byte rating;
     private static final String CSV_HEADERS = "Title, Director, Year, Rating";
 
-    public Movie(final String title, final String year,
-                 final String director, final Integer rating) {
+    public static final ItemAttribute<Movie> DIRECTOR = new ItemAttribute<Movie>() {
+        @Override
+        public String getName() {
+            return "Director";
+        }
+        @Override
+        public String getValue(Movie movie) {
+            return movie.getDirector();
+        }
+    };
+
+    public static final ItemType<Movie> TYPE = new ItemType<Movie>() {
+        @Override
+        public String getCSVHeaders() {
+            return CSV_HEADERS;
+        }
+        @Override
+        public String getCreator(Movie movie) {
+            return movie.getDirector();
+        }
+        @Override
+        public int getRating(Movie movie) {
+            return movie.getRating();
+        }
+        @Override
+        public Movie create(String title, String director, int year, int rating) {
+            return new Movie(title, year, director, rating);
+        }
+    };
+
+    public Movie(final String title, final int year,
+                 final String director, final int rating) {
         super(title, year);
         if(director == null || director.isEmpty()) throw new IllegalArgumentException("director cannot be null or empty");
-        if(rating != null && (rating < 1 || rating > 10)) throw new IllegalArgumentException("rating must be between 1 and 10");
+        if(rating != UNRATED && (rating < MIN_RATING || rating > MAX_RATING))
+            throw new IllegalArgumentException("rating must be between " + MIN_RATING + " and " + MAX_RATING);
         this.director = director;
-        this.rating = rating;
+        this.rating = (byte) rating;
     }
 
     public String getDirector() {
         return director;
     }
 
-    public Integer getRating() {
+    @Override
+    public boolean isRated() {
+        return rating != UNRATED;
+    }
+
+    @Override
+    public byte getRating() {
         return rating;
     }
 
-    public static Movie createUnratedMovie(String title, String year, String director) {
-        return new Movie(title, year, director, null);
+    public static Movie createUnratedMovie(String title, int year, String director) {
+        return new Movie(title, year, director, UNRATED);
     }
 
-    public static Movie createRatedMovie(String title, String year, String director, int rating) {
+    public static Movie createRatedMovie(String title, int year, String director, int rating) {
         return new Movie(title, year, director, rating);
     }
 
@@ -46,7 +85,7 @@ public class Movie extends LibraryItem<Movie> {
         Movie movie = (Movie) o;
 
         if (!director.equals(movie.director)) return false;
-        if (rating != null ? !rating.equals(movie.rating) : movie.rating != null) return false;
+        if (rating != movie.rating) return false;
 
         return true;
     }
@@ -55,13 +94,13 @@ public class Movie extends LibraryItem<Movie> {
     public int hashCode() {
         int result = super.hashCode();
         result = 31 * result + director.hashCode();
-        result = 31 * result + (rating != null ? rating.hashCode() : 0);
+        result = 31 * result + rating;
         return result;
     }
 
     @Override
     public String getCSVRepresentation() {
-        return getTitle() + ", " + director + ", " + getYear() + ", " + (rating == null ? "Unrated" : rating);
+        return getTitle() + ", " + director + ", " + getYear() + ", " + (isRated() ? rating : "Unrated");
     }
 
     @Override
@@ -71,9 +110,9 @@ public class Movie extends LibraryItem<Movie> {
 
     public static Set<Movie> getMovies() {
         final Set<Movie> movies = new HashSet<>();
-        movies.add(Movie.createRatedMovie("Pulp Fiction", "1994", "Quentin Tarantino", 9));
-        movies.add(Movie.createRatedMovie("Reservoir Dogs", "1992", "Quentin Tarantino", 8));
-        movies.add(Movie.createUnratedMovie("Kill Bill", "2003", "Quentin Tarantino"));
+        movies.add(Movie.createRatedMovie("Pulp Fiction", 1994, "Quentin Tarantino", 9));
+        movies.add(Movie.createRatedMovie("Reservoir Dogs", 1992, "Quentin Tarantino", 8));
+        movies.add(Movie.createUnratedMovie("Kill Bill", 2003, "Quentin Tarantino"));
         return movies;
     }
 
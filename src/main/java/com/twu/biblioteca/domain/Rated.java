@@ -0,0 +1,18 @@
+package com.twu.biblioteca.domain;
+
+/**
+ * A library item that may have been given a rating from 1 to 10.
+ */
+public interface Rated {
+
+    int MIN_RATING = 1;
+    int MAX_RATING = 10;
+
+    boolean isRated();
+
+    /**
+     * The item's rating, or 0 if it has none.
+     */
+    byte getRating();
+
+}
@@ -0,0 +1,7 @@
+package com.twu.biblioteca.exceptions;
+
+/**
+ * Thrown when a hold is placed on an item that can be checked out straight away.
+ */
+public class LibraryItemAvailableException extends Exception {
+}
@@ -0,0 +1,7 @@
+package com.twu.biblioteca.exceptions;
+
+/**
+ * The customer already has as many copies out, or on hold, as the library allows them.
+ */
+public class LoanLimitExceededException extends LibraryItemNotAvailableException {
+}
@@ -0,0 +1,18 @@
+package com.twu.biblioteca.helper;
+
+/**
+ * The time in milliseconds since the epoch, so that anything that depends on the time can be tested against a
+ * clock the test controls.
+ */
+public interface Clock {
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    long currentTimeMillis();
+
+}
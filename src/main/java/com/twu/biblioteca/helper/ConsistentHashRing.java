@@ -0,0 +1,144 @@
+package com.twu.biblioteca.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Assigns keys to named nodes by consistent hashing. Each node is placed at a number of points round a ring of 64-bit
+ * hashes, and a key belongs to the node at the first point at or after the key's own hash. Adding a node therefore
+ * only takes the keys that fall just before its points, about 1/N of them, and leaves every other key where it was.
+ * The more points each node has, the more evenly the keys are spread.
+ *
+ * The points are kept in one sorted array, replaced whole when a node joins or leaves, so any number of threads can
+ * look keys up without locking. Every ring built with the same points per node from the same nodes agrees on where
+ * each key goes.
+ */
+public class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int virtualNodes;
+    private volatile Points points = new Points(new long[0], new String[0]);
+
+    public ConsistentHashRing(int virtualNodes) {
+        if(virtualNodes < 1) throw new IllegalArgumentException("virtualNodes must be at least 1");
+        this.virtualNodes = virtualNodes;
+    }
+
+    public ConsistentHashRing(int virtualNodes, Collection<String> nodes) {
+        this(virtualNodes);
+        if(nodes == null) throw new IllegalArgumentException("nodes cannot be null");
+        for(final String node : nodes)
+            add(node);
+    }
+
+    public synchronized void add(String node) {
+        if(node == null || node.isEmpty()) throw new IllegalArgumentException("node cannot be null or empty");
+        final Points current = points;
+        if(current.contains(node)) throw new IllegalArgumentException(node + " is already on the ring");
+        final int length = current.hashes.length;
+        final long[] hashes = Arrays.copyOf(current.hashes, length + virtualNodes);
+        final String[] owners = Arrays.copyOf(current.owners, length + virtualNodes);
+        for(int i = 0; i < virtualNodes; i++) {
+            hashes[length + i] = hash(node + "#" + i);
+            owners[length + i] = node;
+        }
+        points = Points.sorted(hashes, owners);
+    }
+
+    public synchronized void remove(String node) {
+        final Points current = points;
+        if(!current.contains(node)) throw new IllegalArgumentException(node + " is not on the ring");
+        final int length = current.hashes.length - virtualNodes;
+        final long[] hashes = new long[length];
+        final String[] owners = new String[length];
+        for(int i = 0, j = 0; i < current.hashes.length; i++) {
+            if(current.owners[i].equals(node)) continue;
+            hashes[j] = current.hashes[i];
+            owners[j++] = current.owners[i];
+        }
+        points = new Points(hashes, owners);
+    }
+
+    public List<String> getNodes() {
+        final List<String> nodes = new ArrayList<>();
+        for(final String owner : points.owners)
+            if(!nodes.contains(owner))
+                nodes.add(owner);
+        Collections.sort(nodes);
+        return nodes;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public String nodeFor(String key) {
+        if(key == null) throw new IllegalArgumentException("key cannot be null");
+        final Points current = points;
+        if(current.hashes.length == 0) throw new IllegalStateException("the ring has no nodes");
+        int index = Arrays.binarySearch(current.hashes, hash(key));
+        if(index < 0) index = -index - 1;
+        return current.owners[index == current.hashes.length ? 0 : index];
+    }
+
+    /**
+     * FNV-1a over the key's characters, finished with MurmurHash3's mixer so that keys differing only in their last
+     * characters still land far apart.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Points {
+        final long[] hashes;
+        final String[] owners;
+
+        Points(long[] hashes, String[] owners) {
+            this.hashes = hashes;
+            this.owners = owners;
+        }
+
+        boolean contains(String node) {
+            for(final String owner : owners)
+                if(owner.equals(node))
+                    return true;
+            return false;
+        }
+
+        static Points sorted(final long[] hashes, final String[] owners) {
+            final Integer[] order = new Integer[hashes.length];
+            for(int i = 0; i < order.length; i++)
+                order[i] = i;
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer first, Integer second) {
+                    final int byHash = Long.compare(hashes[first], hashes[second]);
+                    return byHash != 0 ? byHash : owners[first].compareTo(owners[second]);
+                }
+            });
+            final long[] sortedHashes = new long[hashes.length];
+            final String[] sortedOwners = new String[owners.length];
+            for(int i = 0; i < order.length; i++) {
+                sortedHashes[i] = hashes[order[i]];
+                sortedOwners[i] = owners[order[i]];
+            }
+            return new Points(sortedHashes, sortedOwners);
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.twu.biblioteca.helper;
+
+/**
+ * A growable set of small non-negative ints held one bit each. Bits are set from one thread at a time, while any
+ * number of threads can read without locking; a reader sees every bit set before it learnt of the id it asks about.
+ */
+public class IdBitSet {
+
+    private volatile long[] words = new long[1];
+
+    public void set(int id) {
+        if(id < 0) throw new IllegalArgumentException("id cannot be negative");
+        long[] words = this.words;
+        final int index = id >>> 6;
+        if(index >= words.length) {
+            final long[] grown = new long[Math.max(index + 1, words.length * 2)];
+            System.arraycopy(words, 0, grown, 0, words.length);
+            this.words = words = grown;
+        }
+        words[index] |= 1L << id;
+        this.words = words;
+    }
+
+    public boolean get(int id) {
+        final long[] words = this.words;
+        final int index = id >>> 6;
+        return id >= 0 && index < words.length && (words[index] & (1L << id)) != 0;
+    }
+
+    /**
+     * The bits for ids {@code index * 64} to {@code index * 64 + 63}, lowest id in the lowest bit.
+     */
+    public long getWord(int index) {
+        final long[] words = this.words;
+        return index < words.length ? words[index] : 0;
+    }
+
+    public int getWordCount() {
+        return words.length;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.twu.biblioteca.helper;
+
+/**
+ * A growable list of primitive ints. Appends must come from one thread at a time, while any number of threads can
+ * read without locking: a value is written before the size that covers it is published.
+ */
+public class IntList {
+
+    private volatile int[] values;
+    private volatile int size;
+
+    public IntList() {
+        this(4);
+    }
+
+    public IntList(int capacity) {
+        if(capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+        values = new int[capacity];
+    }
+
+    public void add(int value) {
+        int[] values = this.values;
+        final int size = this.size;
+        if(size == values.length) {
+            final int[] grown = new int[size * 2];
+            System.arraycopy(values, 0, grown, 0, size);
+            this.values = values = grown;
+        }
+        values[size] = value;
+        this.size = size + 1;
+    }
+
+    public int get(int index) {
+        if(index < 0 || index >= size) throw new IndexOutOfBoundsException("index " + index + " of " + size);
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+}
@@ -0,0 +1,369 @@
+package com.twu.biblioteca.helper;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A compressed set of non-negative ints in the style of a Roaring bitmap. Ids are grouped by their upper 16 bits and
+ * each group is held in a container: a sorted array of the lower 16 bits while the group has at most 4096 members,
+ * and a 65536-bit bitmap once it has more. Bitmap containers are never turned back into arrays.
+ *
+ * Any number of threads can add and remove ids without locking. Array containers are never changed in place but
+ * replaced by compare-and-set, while bitmap containers change one word at a time by compare-and-set. Only making
+ * room for a new group of ids takes a lock. The cardinality is kept as ids come and go, so counting costs nothing.
+ */
+public class RoaringBitmap {
+
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private volatile Slot[] slots = new Slot[0];
+    private final AtomicInteger cardinality = new AtomicInteger();
+
+    public boolean add(int id) {
+        if(id < 0) throw new IllegalArgumentException("id cannot be negative");
+        final Slot slot = slotFor(id >>> 16, true);
+        final char low = (char) id;
+        for(;;) {
+            final Container container = slot.container;
+            if(container instanceof BitmapContainer) {
+                if(!((BitmapContainer) container).add(low)) return false;
+                break;
+            }
+            final ArrayContainer array = (ArrayContainer) container;
+            final int index = array.indexOf(low);
+            if(index >= 0) return false;
+            final Container added = array.size() < ARRAY_LIMIT ? array.insert(-index - 1, low) : array.toBitmap(low);
+            if(slot.compareAndSet(array, added)) break;
+        }
+        cardinality.incrementAndGet();
+        return true;
+    }
+
+    public boolean remove(int id) {
+        final Slot slot = slotFor(id >>> 16, false);
+        if(id < 0 || slot == null) return false;
+        final char low = (char) id;
+        for(;;) {
+            final Container container = slot.container;
+            if(container instanceof BitmapContainer) {
+                if(!((BitmapContainer) container).remove(low)) return false;
+                break;
+            }
+            final ArrayContainer array = (ArrayContainer) container;
+            final int index = array.indexOf(low);
+            if(index < 0) return false;
+            if(slot.compareAndSet(array, array.delete(index))) break;
+        }
+        cardinality.decrementAndGet();
+        return true;
+    }
+
+    public boolean contains(int id) {
+        final Slot slot = slotFor(id >>> 16, false);
+        return id >= 0 && slot != null && slot.container.contains((char) id);
+    }
+
+    public int getCardinality() {
+        return cardinality.get();
+    }
+
+    public boolean isEmpty() {
+        return getCardinality() == 0;
+    }
+
+    /**
+     * The ids in ascending order. Ids added or removed while this runs may or may not be included.
+     */
+    public int[] toArray() {
+        final Slot[] slots = this.slots;
+        int[] ids = new int[getCardinality()];
+        int size = 0;
+        for(int high = 0; high < slots.length; high++) {
+            final Container container = slots[high].container;
+            if(size + container.cardinality() > ids.length)
+                ids = Arrays.copyOf(ids, size + container.cardinality());
+            size = container.copyTo(ids, size, high << 16);
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    public static RoaringBitmap and(RoaringBitmap first, RoaringBitmap second) {
+        final Slot[] firstSlots = first.slots;
+        final Slot[] secondSlots = second.slots;
+        final RoaringBitmap result = new RoaringBitmap();
+        final Slot[] slots = newSlots(Math.min(firstSlots.length, secondSlots.length));
+        for(int high = 0; high < slots.length; high++)
+            result.cardinality.addAndGet(set(slots, high, firstSlots[high].container.and(secondSlots[high].container)));
+        result.slots = slots;
+        return result;
+    }
+
+    public static RoaringBitmap or(RoaringBitmap first, RoaringBitmap second) {
+        final Slot[] firstSlots = first.slots;
+        final Slot[] secondSlots = second.slots;
+        final RoaringBitmap result = new RoaringBitmap();
+        final Slot[] slots = newSlots(Math.max(firstSlots.length, secondSlots.length));
+        for(int high = 0; high < slots.length; high++) {
+            final Container container;
+            if(high >= firstSlots.length) container = secondSlots[high].container.copy();
+            else if(high >= secondSlots.length) container = firstSlots[high].container.copy();
+            else container = firstSlots[high].container.or(secondSlots[high].container);
+            result.cardinality.addAndGet(set(slots, high, container));
+        }
+        result.slots = slots;
+        return result;
+    }
+
+    private static int set(Slot[] slots, int high, Container container) {
+        slots[high].container = container;
+        return container.cardinality();
+    }
+
+    private Slot slotFor(int high, boolean create) {
+        final Slot[] slots = this.slots;
+        if(high < slots.length) return slots[high];
+        return create ? growTo(high) : null;
+    }
+
+    private synchronized Slot growTo(int high) {
+        final Slot[] slots = this.slots;
+        if(high < slots.length) return slots[high];
+        final Slot[] grown = Arrays.copyOf(slots, Math.max(high + 1, slots.length * 2));
+        for(int i = slots.length; i < grown.length; i++)
+            grown[i] = new Slot();
+        this.slots = grown;
+        return grown[high];
+    }
+
+    private static Slot[] newSlots(int length) {
+        final Slot[] slots = new Slot[length];
+        for(int i = 0; i < length; i++)
+            slots[i] = new Slot();
+        return slots;
+    }
+
+    private static final class Slot {
+        private static final AtomicReferenceFieldUpdater<Slot, Container> CONTAINER =
+                AtomicReferenceFieldUpdater.newUpdater(Slot.class, Container.class, "container");
+
+        private volatile Container container = ArrayContainer.EMPTY;
+
+        boolean compareAndSet(Container expected, Container container) {
+            return CONTAINER.compareAndSet(this, expected, container);
+        }
+    }
+
+    private interface Container {
+        boolean contains(char value);
+        int cardinality();
+        int copyTo(int[] ids, int offset, int base);
+        Container and(Container other);
+        Container or(Container other);
+        Container copy();
+    }
+
+    private static final class ArrayContainer implements Container {
+        static final ArrayContainer EMPTY = new ArrayContainer(new char[0]);
+
+        private final char[] values;
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        int size() {
+            return values.length;
+        }
+
+        int indexOf(char value) {
+            return Arrays.binarySearch(values, value);
+        }
+
+        ArrayContainer insert(int index, char value) {
+            final char[] inserted = new char[values.length + 1];
+            System.arraycopy(values, 0, inserted, 0, index);
+            inserted[index] = value;
+            System.arraycopy(values, index, inserted, index + 1, values.length - index);
+            return new ArrayContainer(inserted);
+        }
+
+        ArrayContainer delete(int index) {
+            final char[] deleted = new char[values.length - 1];
+            System.arraycopy(values, 0, deleted, 0, index);
+            System.arraycopy(values, index + 1, deleted, index, values.length - index - 1);
+            return new ArrayContainer(deleted);
+        }
+
+        BitmapContainer toBitmap(char value) {
+            final BitmapContainer bitmap = new BitmapContainer();
+            for(final char member : values)
+                bitmap.add(member);
+            bitmap.add(value);
+            return bitmap;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return indexOf(value) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        public int copyTo(int[] ids, int offset, int base) {
+            for(final char value : values)
+                ids[offset++] = base | value;
+            return offset;
+        }
+
+        @Override
+        public Container and(Container other) {
+            final char[] matches = new char[values.length];
+            int size = 0;
+            for(final char value : values)
+                if(other.contains(value))
+                    matches[size++] = value;
+            return new ArrayContainer(Arrays.copyOf(matches, size));
+        }
+
+        @Override
+        public Container or(Container other) {
+            if(other instanceof BitmapContainer) return other.or(this);
+            final char[] others = ((ArrayContainer) other).values;
+            final char[] merged = new char[values.length + others.length];
+            int i = 0, j = 0, size = 0;
+            while(i < values.length || j < others.length) {
+                if(j == others.length || (i < values.length && values[i] < others[j])) merged[size++] = values[i++];
+                else if(i == values.length || others[j] < values[i]) merged[size++] = others[j++];
+                else {
+                    merged[size++] = values[i++];
+                    j++;
+                }
+            }
+            if(size <= ARRAY_LIMIT) return new ArrayContainer(Arrays.copyOf(merged, size));
+            final BitmapContainer bitmap = new BitmapContainer();
+            for(int k = 0; k < size; k++)
+                bitmap.add(merged[k]);
+            return bitmap;
+        }
+
+        @Override
+        public Container copy() {
+            return this;
+        }
+    }
+
+    private static final class BitmapContainer implements Container {
+        private final AtomicLongArray words = new AtomicLongArray(BITMAP_WORDS);
+        private final AtomicInteger cardinality = new AtomicInteger();
+
+        boolean add(char value) {
+            final int index = value >>> 6;
+            final long bit = 1L << value;
+            long word;
+            do {
+                word = words.get(index);
+                if((word & bit) != 0) return false;
+            } while(!words.compareAndSet(index, word, word | bit));
+            cardinality.incrementAndGet();
+            return true;
+        }
+
+        boolean remove(char value) {
+            final int index = value >>> 6;
+            final long bit = 1L << value;
+            long word;
+            do {
+                word = words.get(index);
+                if((word & bit) == 0) return false;
+            } while(!words.compareAndSet(index, word, word & ~bit));
+            cardinality.decrementAndGet();
+            return true;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return (words.get(value >>> 6) & (1L << value)) != 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality.get();
+        }
+
+        @Override
+        public int copyTo(int[] ids, int offset, int base) {
+            for(int index = 0; index < BITMAP_WORDS; index++) {
+                long word = words.get(index);
+                while(word != 0 && offset < ids.length) {
+                    ids[offset++] = base | (index << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        public Container and(Container other) {
+            if(other instanceof ArrayContainer) return other.and(this);
+            final BitmapContainer others = (BitmapContainer) other;
+            final BitmapContainer result = new BitmapContainer();
+            int count = 0;
+            for(int index = 0; index < BITMAP_WORDS; index++) {
+                final long word = words.get(index) & others.words.get(index);
+                result.words.set(index, word);
+                count += Long.bitCount(word);
+            }
+            result.cardinality.set(count);
+            return count <= ARRAY_LIMIT ? result.toArray() : result;
+        }
+
+        @Override
+        public Container or(Container other) {
+            final BitmapContainer result = copy();
+            if(other instanceof ArrayContainer) {
+                for(final char value : ((ArrayContainer) other).values)
+                    result.add(value);
+                return result;
+            }
+            final BitmapContainer others = (BitmapContainer) other;
+            int count = 0;
+            for(int index = 0; index < BITMAP_WORDS; index++) {
+                final long word = result.words.get(index) | others.words.get(index);
+                result.words.set(index, word);
+                count += Long.bitCount(word);
+            }
+            result.cardinality.set(count);
+            return result;
+        }
+
+        @Override
+        public BitmapContainer copy() {
+            final BitmapContainer copy = new BitmapContainer();
+            int count = 0;
+            for(int index = 0; index < BITMAP_WORDS; index++) {
+                final long word = words.get(index);
+                copy.words.set(index, word);
+                count += Long.bitCount(word);
+            }
+            copy.cardinality.set(count);
+            return copy;
+        }
+
+        private ArrayContainer toArray() {
+            final int[] ids = new int[cardinality()];
+            final int size = copyTo(ids, 0, 0);
+            final char[] values = new char[size];
+            for(int i = 0; i < size; i++)
+                values[i] = (char) ids[i];
+            return new ArrayContainer(values);
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.twu.biblioteca.helper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives each distinct string a small int code, so that a value repeated across many records is held once and each
+ * record only stores its code. Codes are handed out from one thread at a time, while any number of threads can
+ * decode without locking.
+ */
+public class StringDictionary {
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private volatile int size;
+
+    public int encode(String value) {
+        if(value == null) throw new IllegalArgumentException("value cannot be null");
+        final Integer existing = codes.get(value);
+        if(existing != null) return existing;
+        String[] values = this.values;
+        final int code = size;
+        if(code == values.length) {
+            final String[] grown = new String[code * 2];
+            System.arraycopy(values, 0, grown, 0, code);
+            this.values = values = grown;
+        }
+        values[code] = value;
+        size = code + 1;
+        codes.put(value, code);
+        return code;
+    }
+
+    public String decode(int code) {
+        if(code < 0 || code >= size) throw new IndexOutOfBoundsException("code " + code + " of " + size);
+        return values[code];
+    }
+
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.twu.biblioteca.helper;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size set of non-negative ints held one bit each, under levels of summary bits that say which words below
+ * them have any bit set, so the next or previous set bit is found in a few reads however many clear bits lie between.
+ * Any number of threads can set and clear bits without locking: words change by compare-and-set, and a word that is
+ * emptied clears its summary bit and then sets it again if the word was refilled meanwhile. A summary bit can be left
+ * set over an empty word for a moment, which only costs a search one more read.
+ */
+public class SummaryBitSet {
+
+    private final int capacity;
+    private final AtomicLongArray[] levels;
+
+    public SummaryBitSet(int capacity) {
+        if(capacity < 0) throw new IllegalArgumentException("capacity cannot be negative");
+        this.capacity = capacity;
+        int count = 0;
+        for(int bits = capacity; ; bits = wordsFor(bits)) {
+            count++;
+            if(wordsFor(bits) == 1) break;
+        }
+        levels = new AtomicLongArray[count];
+        int bits = capacity;
+        for(int level = 0; level < count; level++) {
+            levels[level] = new AtomicLongArray(wordsFor(bits));
+            bits = wordsFor(bits);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public void set(int index) {
+        check(index);
+        set(0, index);
+    }
+
+    public void clear(int index) {
+        check(index);
+        clear(0, index);
+    }
+
+    public boolean get(int index) {
+        check(index);
+        return (levels[0].get(index >>> 6) & 1L << index) != 0;
+    }
+
+    /**
+     * The first set bit at or after {@code from}, or -1 if there is none.
+     */
+    public int nextSetBit(int from) {
+        if(from < 0) throw new IndexOutOfBoundsException("index " + from + " is negative");
+        if(from >= capacity) return -1;
+        return next(0, from);
+    }
+
+    /**
+     * The last set bit at or before {@code from}, or -1 if there is none.
+     */
+    public int previousSetBit(int from) {
+        if(from < 0 || capacity == 0) return -1;
+        return previous(0, Math.min(from, capacity - 1));
+    }
+
+    private void set(int level, int index) {
+        for(; level < levels.length; level++) {
+            final AtomicLongArray words = levels[level];
+            final int word = index >>> 6;
+            final long bit = 1L << index;
+            long old;
+            do {
+                old = words.get(word);
+                if((old & bit) != 0) return;
+            } while(!words.compareAndSet(word, old, old | bit));
+            if(old != 0) return;
+            index = word;
+        }
+    }
+
+    private void clear(int level, int index) {
+        final AtomicLongArray words = levels[level];
+        final int word = index >>> 6;
+        final long bit = 1L << index;
+        long old;
+        do {
+            old = words.get(word);
+            if((old & bit) == 0) return;
+        } while(!words.compareAndSet(word, old, old & ~bit));
+        if((old & ~bit) != 0 || level + 1 == levels.length) return;
+        clear(level + 1, word);
+        if(words.get(word) != 0)
+            set(level + 1, word);
+    }
+
+    private int next(int level, int from) {
+        final AtomicLongArray words = levels[level];
+        int word = from >>> 6;
+        long bits = words.get(word) & -1L << from;
+        while(bits == 0) {
+            if(level + 1 == levels.length) {
+                if(++word == words.length()) return -1;
+            } else {
+                if(word + 1 >= words.length()) return -1;
+                word = next(level + 1, word + 1);
+                if(word < 0) return -1;
+            }
+            bits = words.get(word);
+        }
+        return word << 6 | Long.numberOfTrailingZeros(bits);
+    }
+
+    private int previous(int level, int from) {
+        final AtomicLongArray words = levels[level];
+        int word = from >>> 6;
+        long bits = words.get(word) & -1L >>> 63 - (from & 63);
+        while(bits == 0) {
+            if(word == 0) return -1;
+            word = level + 1 == levels.length ? word - 1 : previous(level + 1, word - 1);
+            if(word < 0) return -1;
+            bits = words.get(word);
+        }
+        return word << 6 | 63 - Long.numberOfLeadingZeros(bits);
+    }
+
+    private void check(int index) {
+        if(index < 0 || index >= capacity) throw new IndexOutOfBoundsException("index " + index + " of " + capacity);
+    }
+
+    private static int wordsFor(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+}
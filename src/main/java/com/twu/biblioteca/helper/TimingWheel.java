@@ -0,0 +1,156 @@
+package com.twu.biblioteca.helper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Events due at a time in the future, held in a hierarchical timing wheel. There are four wheels of 64 slots, the
+ * first a tick per slot and each of the others 64 times coarser than the one before, so the wheels span 64^4 ticks
+ * and anything further off waits in the last slot it can reach. An event sits in the slot of its due tick on the
+ * finest wheel that can hold it, and is moved down a wheel each time the wheel beneath comes round to it, so
+ * scheduling, cancelling and firing an event each cost a constant amount of work however many are waiting.
+ *
+ * Any thread can schedule or cancel an event without locking: new events go to a lock-free inbox and are only put
+ * in the wheels by advance, and cancelled events are dropped when their slot comes round. Only one thread at a time
+ * may call advance.
+ */
+public class TimingWheel<E> {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int WHEELS = 4;
+    private static final long SPAN = 1L << (WHEEL_BITS * WHEELS);
+
+    private final long tickMillis;
+    private final ConcurrentLinkedQueue<Timeout<E>> inbox = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<Timeout<E>>[] slots = newSlots();
+    private long currentTick = Long.MIN_VALUE;
+    private int waiting;
+
+    public TimingWheel(long tickMillis) {
+        if(tickMillis < 1) throw new IllegalArgumentException("tickMillis must be at least 1");
+        this.tickMillis = tickMillis;
+    }
+
+    public Timeout<E> schedule(E event, long dueTime) {
+        if(event == null) throw new IllegalArgumentException("event cannot be null");
+        final Timeout<E> timeout = new Timeout<>(event, dueTime);
+        inbox.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Turns the wheels up to the given time and returns the events that have come due.
+     * An event fires at most one tick after its due time and never before it.
+     */
+    public List<E> advance(long now) {
+        final long nowTick = floorDiv(now, tickMillis);
+        if(currentTick == Long.MIN_VALUE) currentTick = nowTick;
+        final List<E> due = new ArrayList<>();
+        for(Timeout<E> timeout; (timeout = inbox.poll()) != null;)
+            place(timeout, due);
+        while(currentTick < nowTick) {
+            if(waiting == 0) {
+                currentTick = nowTick;
+                break;
+            }
+            currentTick++;
+            for(int wheel = 1; wheel < WHEELS && (currentTick & ((1L << (WHEEL_BITS * wheel)) - 1)) == 0; wheel++)
+                cascade(slot(wheel, currentTick), due);
+            final ArrayDeque<Timeout<E>> slot = slot(0, currentTick);
+            for(Timeout<E> timeout; (timeout = slot.poll()) != null;) {
+                waiting--;
+                if(timeout.fire()) due.add(timeout.event);
+            }
+        }
+        return due;
+    }
+
+    private void cascade(ArrayDeque<Timeout<E>> slot, List<E> due) {
+        final int count = slot.size();
+        for(int i = 0; i < count; i++) {
+            waiting--;
+            place(slot.poll(), due);
+        }
+    }
+
+    private void place(Timeout<E> timeout, List<E> due) {
+        if(timeout.isCancelled()) return;
+        final long dueTick = -floorDiv(-timeout.dueTime, tickMillis);
+        final long delta = dueTick - currentTick;
+        if(delta <= 0) {
+            if(timeout.fire()) due.add(timeout.event);
+            return;
+        }
+        final long tick = delta < SPAN ? dueTick : currentTick + SPAN - 1;
+        final long reach = tick - currentTick;
+        int wheel = 0;
+        while(wheel < WHEELS - 1 && reach >= 1L << (WHEEL_BITS * (wheel + 1)))
+            wheel++;
+        slot(wheel, tick).add(timeout);
+        waiting++;
+    }
+
+    private static long floorDiv(long dividend, long divisor) {
+        final long quotient = dividend / divisor;
+        return quotient * divisor > dividend ? quotient - 1 : quotient;
+    }
+
+    private ArrayDeque<Timeout<E>> slot(int wheel, long tick) {
+        return slots[wheel * WHEEL_SIZE + (int) ((tick >>> (WHEEL_BITS * wheel)) & WHEEL_MASK)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> ArrayDeque<Timeout<E>>[] newSlots() {
+        final ArrayDeque<Timeout<E>>[] slots = new ArrayDeque[WHEELS * WHEEL_SIZE];
+        for(int i = 0; i < slots.length; i++)
+            slots[i] = new ArrayDeque<>();
+        return slots;
+    }
+
+    public static final class Timeout<E> {
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+        private static final int WAITING = 0;
+        private static final int FIRED = 1;
+        private static final int CANCELLED = 2;
+
+        private final E event;
+        private final long dueTime;
+        private volatile int state = WAITING;
+
+        private Timeout(E event, long dueTime) {
+            this.event = event;
+            this.dueTime = dueTime;
+        }
+
+        public E getEvent() {
+            return event;
+        }
+
+        public long getDueTime() {
+            return dueTime;
+        }
+
+        /**
+         * Stops the event from firing, unless it already has.
+         */
+        public boolean cancel() {
+            return STATE.compareAndSet(this, WAITING, CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        private boolean fire() {
+            return STATE.compareAndSet(this, WAITING, FIRED);
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.twu.biblioteca.app;
 
+import com.twu.biblioteca.domain.Book;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -22,12 +23,15 @@ public class BibliotecaAppMenuOptionTests {
     private BibliotecaApp target;
     @Mock
     private Library<?> library;
+    @Mock
+    private Library<Book> bookLibrary;
 
     @Before
     public void setup() {
         initMocks(this);
 
         when(library.getItemsName()).thenReturn("Book");
+        when(bookLibrary.getItemsName()).thenReturn("Book");
     }
 
     @Test
@@ -36,6 +40,38 @@ public class BibliotecaAppMenuOptionTests {
         verify(target, times(1)).listItems(library);
     }
 
+    @Test
+    public void testListOptionWithPageCallsListItemsPage() throws Exception {
+        new ListOption(library).execute(target, "next");
+        verify(target, times(1)).listItemsPage("next", library);
+        verify(target, times(0)).listItems(library);
+    }
+
+    @Test
+    public void testListOptionWithYearRangeCallsListItemsByYear() throws Exception {
+        new ListOption(library).execute(target, "year 1830-1860");
+        verify(target, times(1)).listItemsByYear(1830, 1860, library);
+    }
+
+    @Test
+    public void testListOptionWithOneYearCallsListItemsByYear() throws Exception {
+        new ListOption(library).execute(target, "year 1860");
+        verify(target, times(1)).listItemsByYear(1860, 1860, library);
+    }
+
+    @Test
+    public void testListOptionWithMinimumRatingCallsListItemsByRating() throws Exception {
+        new ListOption(library).execute(target, "rating >= 8");
+        verify(target, times(1)).listItemsByRating(8, library);
+    }
+
+    @Test
+    public void testListOptionWithFilterCallsListItemsMatching() throws Exception {
+        new ListOption(library).execute(target, "author charles dickens and available");
+        verify(target, times(1)).listItemsMatching("author charles dickens and available", library);
+        verify(target, times(0)).listItemsPage("author charles dickens and available", library);
+    }
+
     @Test
     public void testListOptionHasCorrectCommandAndDisplay() throws Exception {
         assertThat(new ListOption(library).getCommand(), is("List Books"));
@@ -48,6 +84,114 @@ public class BibliotecaAppMenuOptionTests {
         assertThat(new ListOption(library).isDisplayForLoginStatus(true), is(true));
     }
 
+    @Test
+    public void testSearchOptionCallsSearchItems() throws Exception {
+        new SearchOption(library).execute(target, "Great");
+        verify(target, times(1)).searchItems("Great", library);
+    }
+
+    @Test
+    public void testSearchOptionHasCorrectCommandAndDisplay() throws Exception {
+        assertThat(new SearchOption(library).getCommand(), is("Search Books"));
+        assertThat(new SearchOption(library).getDisplay(), is("Search Books: <Title>"));
+    }
+
+    @Test
+    public void testSearchOptionDisplaysCorrectlyForLoginStatus() {
+        assertThat(new SearchOption(library).isDisplayForLoginStatus(false), is(true));
+        assertThat(new SearchOption(library).isDisplayForLoginStatus(true), is(true));
+    }
+
+    @Test
+    public void testListByOptionCallsListItemsBy() throws Exception {
+        new ListByOption<>(bookLibrary, Book.AUTHOR).execute(target, "Charles Dickens");
+        verify(target, times(1)).listItemsBy("Charles Dickens", Book.AUTHOR, bookLibrary);
+    }
+
+    @Test
+    public void testListByOptionHasCorrectCommandAndDisplay() throws Exception {
+        assertThat(new ListByOption<>(bookLibrary, Book.AUTHOR).getCommand(), is("List Books by Author"));
+        assertThat(new ListByOption<>(bookLibrary, Book.AUTHOR).getDisplay(), is("List Books by Author: <Author>"));
+    }
+
+    @Test
+    public void testListByOptionDisplaysCorrectlyForLoginStatus() {
+        assertThat(new ListByOption<>(bookLibrary, Book.AUTHOR).isDisplayForLoginStatus(false), is(true));
+        assertThat(new ListByOption<>(bookLibrary, Book.AUTHOR).isDisplayForLoginStatus(true), is(true));
+    }
+
+    @Test
+    public void testCountOptionCallsCountItems() throws Exception {
+        new CountOption(library).execute(target, "available");
+        verify(target, times(1)).countItems("available", library);
+    }
+
+    @Test
+    public void testCountOptionHasCorrectCommandAndDisplay() throws Exception {
+        assertThat(new CountOption(library).getCommand(), is("Count Books"));
+        assertThat(new CountOption(library).getDisplay(), is("Count Books: <Filter>"));
+    }
+
+    @Test
+    public void testCountOptionDisplaysCorrectlyForLoginStatus() {
+        assertThat(new CountOption(library).isDisplayForLoginStatus(false), is(true));
+        assertThat(new CountOption(library).isDisplayForLoginStatus(true), is(true));
+    }
+
+    @Test
+    public void testBatchCheckoutOptionCallsCheckoutItems() throws Exception {
+        new BatchCheckoutOption(library).execute(target, "Great Expectations | Bleak House");
+        verify(target, times(1)).checkoutItems("Great Expectations | Bleak House", library);
+    }
+
+    @Test
+    public void testBatchCheckoutOptionHasCorrectCommandAndDisplay() throws Exception {
+        assertThat(new BatchCheckoutOption(library).getCommand(), is("Checkout Books"));
+        assertThat(new BatchCheckoutOption(library).getDisplay(), is("Checkout Books: <Title> | <Title>"));
+    }
+
+    @Test
+    public void testBatchCheckoutOptionDisplaysCorrectlyForLoginStatus() {
+        assertThat(new BatchCheckoutOption(library).isDisplayForLoginStatus(false), is(false));
+        assertThat(new BatchCheckoutOption(library).isDisplayForLoginStatus(true), is(true));
+    }
+
+    @Test
+    public void testBatchReturnOptionCallsReturnItems() throws Exception {
+        new BatchReturnOption(library).execute(target, "Great Expectations | Bleak House");
+        verify(target, times(1)).returnItems("Great Expectations | Bleak House", library);
+    }
+
+    @Test
+    public void testBatchReturnOptionHasCorrectCommandAndDisplay() throws Exception {
+        assertThat(new BatchReturnOption(library).getCommand(), is("Return Books"));
+        assertThat(new BatchReturnOption(library).getDisplay(), is("Return Books: <Title> | <Title>"));
+    }
+
+    @Test
+    public void testBatchReturnOptionDisplaysCorrectlyForLoginStatus() {
+        assertThat(new BatchReturnOption(library).isDisplayForLoginStatus(false), is(false));
+        assertThat(new BatchReturnOption(library).isDisplayForLoginStatus(true), is(true));
+    }
+
+    @Test
+    public void testHoldOptionCallsPlaceHold() throws Exception {
+        new HoldOption(library).execute(target, "Great Expectations");
+        verify(target, times(1)).placeHold("Great Expectations", library);
+    }
+
+    @Test
+    public void testHoldOptionHasCorrectCommandAndDisplay() throws Exception {
+        assertThat(new HoldOption(library).getCommand(), is("Hold Book"));
+        assertThat(new HoldOption(library).getDisplay(), is("Hold Book: <Title>"));
+    }
+
+    @Test
+    public void testHoldOptionDisplaysCorrectlyForLoginStatus() {
+        assertThat(new HoldOption(library).isDisplayForLoginStatus(false), is(false));
+        assertThat(new HoldOption(library).isDisplayForLoginStatus(true), is(true));
+    }
+
     @Test
     public void testCheckoutOptionCallsCheckoutItem() throws Exception {
         new CheckoutOption(library).execute(target, "Great Expectations");
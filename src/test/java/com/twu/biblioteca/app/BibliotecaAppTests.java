@@ -17,6 +17,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
@@ -41,8 +42,8 @@ public class BibliotecaAppTests {
     @Mock
     private SecurityContext securityContext;
 
-    private List<Book> books;
-    private List<Movie> movies;
+    private List<CatalogEntry<Book>> books;
+    private List<CatalogEntry<Movie>> movies;
 
     @Before
     public void setup() throws Exception {
@@ -59,12 +60,14 @@ public class BibliotecaAppTests {
         when(pickwickPapers.getCSVRepresentation()).thenReturn("The Pickwick Papers, Charles Dickens, 1837");
 
         books = new ArrayList<>();
-        books.add(greatExpectations);
-        books.add(pickwickPapers);
+        books.add(new CatalogEntry<>(greatExpectations, 1, mock(CatalogEntry.AvailabilityListener.class)));
+        books.add(new CatalogEntry<>(pickwickPapers, 2, mock(CatalogEntry.AvailabilityListener.class)));
 
         when(bookLibrary.getItemsName()).thenReturn("Book");
         when(bookLibrary.getItemsNameLowercase()).thenReturn("book");
         when(bookLibrary.getItems()).thenReturn(books);
+        when(bookLibrary.getCSVHeaders()).thenReturn("Title, Author, Year");
+        when(bookLibrary.getIndexes()).thenReturn(Arrays.asList(Book.AUTHOR));
 
         final Movie killBill = mock(Movie.class);
         when(killBill.getTitle()).thenReturn("Kill Bill");
@@ -77,14 +80,16 @@ public class BibliotecaAppTests {
         when(pulpFiction.getCSVRepresentation()).thenReturn("Pulp Fiction, Quentin Tarantino, 1994, 9");
 
         movies = new ArrayList<>();
-        movies.add(killBill);
-        movies.add(pulpFiction);
+        movies.add(new CatalogEntry<>(killBill, 1, mock(CatalogEntry.AvailabilityListener.class)));
+        movies.add(new CatalogEntry<>(pulpFiction, 1, mock(CatalogEntry.AvailabilityListener.class)));
 
         outputStream = new ByteArrayOutputStream();
 
         when(movieLibrary.getItemsName()).thenReturn("Movie");
         when(movieLibrary.getItemsNameLowercase()).thenReturn("movie");
         when(movieLibrary.getItems()).thenReturn(movies);
+        when(movieLibrary.getCSVHeaders()).thenReturn("Title, Director, Year, Rating");
+        when(movieLibrary.getIndexes()).thenReturn(Arrays.asList(Movie.DIRECTOR));
 
         when(customer.viewDetails()).thenReturn("Name: Charles Dickens\nEmail Address: charles@example.com\nPhone: 07712345678");
 
@@ -207,6 +212,152 @@ public class BibliotecaAppTests {
         assertThatBookListIsDisplayedWithAllBooks();
     }
 
+    @Test
+    public void testCustomerSelectsFirstPageOfBooks() throws Exception {
+        when(bookLibrary.getItemsAfter(null, BibliotecaApp.PAGE_SIZE)).thenReturn(books);
+        app.selectMenuOption("List Books: first");
+        assertThatBookListIsDisplayedWithAllBooks();
+    }
+
+    @Test
+    public void testNextPageStartsAfterTheLastTitleShown() throws Exception {
+        when(bookLibrary.getItemsAfter(null, BibliotecaApp.PAGE_SIZE)).thenReturn(books.subList(0, 1));
+        when(bookLibrary.getItemsAfter("Great Expectations", BibliotecaApp.PAGE_SIZE)).thenReturn(books.subList(1, 2));
+        app.selectMenuOption("List Books: first");
+        app.selectMenuOption("List Books: next");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Title, Author, Year, Available"));
+        assertThat(scanner.nextLine(), is("Great Expectations, Charles Dickens, 1860, 1/1"));
+        assertThat(scanner.nextLine(), is("Title, Author, Year, Available"));
+        assertThat(scanner.nextLine(), is("The Pickwick Papers, Charles Dickens, 1837, 2/2"));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testPreviousPageEndsBeforeTheFirstTitleShown() throws Exception {
+        when(bookLibrary.getItemsAfter(null, BibliotecaApp.PAGE_SIZE)).thenReturn(books.subList(1, 2));
+        when(bookLibrary.getItemsBefore("The Pickwick Papers", BibliotecaApp.PAGE_SIZE)).thenReturn(books.subList(0, 1));
+        app.selectMenuOption("List Books: next");
+        app.selectMenuOption("List Books: prev");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Title, Author, Year, Available"));
+        assertThat(scanner.nextLine(), is("The Pickwick Papers, Charles Dickens, 1837, 2/2"));
+        assertThat(scanner.nextLine(), is("Title, Author, Year, Available"));
+        assertThat(scanner.nextLine(), is("Great Expectations, Charles Dickens, 1860, 1/1"));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testNextPageAfterTheLastPage() throws Exception {
+        when(bookLibrary.getItemsAfter(null, BibliotecaApp.PAGE_SIZE)).thenReturn(books);
+        when(bookLibrary.getItemsAfter("The Pickwick Papers", BibliotecaApp.PAGE_SIZE)).thenReturn(new ArrayList<CatalogEntry<Book>>());
+        app.selectMenuOption("List Books: first");
+        app.selectMenuOption("List Books: next");
+
+        final Scanner scanner = getOutputScanner();
+        assertThatBookListIsDisplayedWithAllBooks(scanner);
+        assertThat(scanner.nextLine(), is("No more books to list."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testInvalidPageOfBooks() throws Exception {
+        app.selectMenuOption("List Books: last");
+        assertThatCustomerSeesUnrecognisedOptionMessage();
+    }
+
+    @Test
+    public void testCustomerSelectsBooksFromARangeOfYears() throws Exception {
+        when(bookLibrary.findByYear(1830, 1860)).thenReturn(books);
+        app.selectMenuOption("List Books: year 1830-1860");
+        assertThatBookListIsDisplayedWithAllBooks();
+    }
+
+    @Test
+    public void testBooksFromARangeOfYearsWithNoMatches() throws Exception {
+        when(bookLibrary.findByYear(1900, 1910)).thenReturn(new ArrayList<CatalogEntry<Book>>());
+        app.selectMenuOption("List Books: year 1900-1910");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("No books match that year."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testBackwardsRangeOfYears() throws Exception {
+        app.selectMenuOption("List Books: year 1860-1830");
+        assertThatCustomerSeesUnrecognisedOptionMessage();
+    }
+
+    @Test
+    public void testCustomerSelectsMoviesWithAMinimumRating() throws Exception {
+        when(movieLibrary.isRated()).thenReturn(true);
+        when(movieLibrary.findByRating(8)).thenReturn(movies);
+        app.selectMenuOption("List Movies: rating >= 8");
+
+        final Scanner scanner = getOutputScanner();
+        assertThatMovieListIsDisplayedWithAllMovies(scanner);
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testMinimumRatingOutOfRange() throws Exception {
+        when(movieLibrary.isRated()).thenReturn(true);
+        app.selectMenuOption("List Movies: rating >= 11");
+        assertThatCustomerSeesUnrecognisedOptionMessage();
+    }
+
+    @Test
+    public void testBooksCannotBeListedByRating() throws Exception {
+        app.selectMenuOption("List Books: rating >= 8");
+        assertThatCustomerSeesUnrecognisedOptionMessage();
+    }
+
+    @Test
+    public void testCustomerSelectsBooksMatchingAFilter() throws Exception {
+        when(bookLibrary.findMatching(any(ItemFilter.class))).thenReturn(books);
+        app.selectMenuOption("List Books: author Charles Dickens and available");
+        assertThatBookListIsDisplayedWithAllBooks();
+    }
+
+    @Test
+    public void testBooksMatchingAFilterWithNoMatches() throws Exception {
+        when(bookLibrary.findMatching(any(ItemFilter.class))).thenReturn(new ArrayList<CatalogEntry<Book>>());
+        app.selectMenuOption("List Books: year 1900 and available");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("No books match that filter."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testInvalidFilter() throws Exception {
+        app.selectMenuOption("List Books: publisher Chapman and Hall");
+        assertThatCustomerSeesUnrecognisedOptionMessage();
+    }
+
+    @Test
+    public void testCustomerCountsAvailableBooks() throws Exception {
+        when(bookLibrary.countAvailable()).thenReturn(2);
+        app.selectMenuOption("Count Books");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Available books: 2"));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testCustomerCountsBooksMatchingAFilter() throws Exception {
+        when(bookLibrary.countMatching(any(ItemFilter.class))).thenReturn(1);
+        app.selectMenuOption("Count Books: year 1837");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Matching books: 1"));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
     @Test
     public void testInvalidMenuOptionMessage() throws Exception {
         app.selectMenuOption("Invalid Option");
@@ -217,14 +368,14 @@ public class BibliotecaAppTests {
     public void testCustomerSelectsReturnItemOptionSuccessfully() throws Exception {
         stubCustomer();
         app.selectMenuOption("Return Book: Great Expectations");
-        verify(bookLibrary, times(1)).returnItemByTitle("Great Expectations");
+        verify(bookLibrary, times(1)).returnItemByTitle("Great Expectations", customer);
         assertThatCustomerSeesReturnBookSuccessMessage();
     }
 
     @Test
     public void testCustomerAttemptsToReturnAnItemWhilstNotLoggedIn() throws Exception {
         app.selectMenuOption("Return Book: Great Expectations");
-        verify(bookLibrary, times(0)).returnItemByTitle("Great Expectations");
+        verify(bookLibrary, times(0)).returnItemByTitle("Great Expectations", customer);
         assertThatCustomerSeesAccessDeniedMessage();
     }
 
@@ -293,6 +444,36 @@ public class BibliotecaAppTests {
         assertThatCustomersDetailsAreDisplayed();
     }
 
+    @Test
+    public void testMyDetailsShowsNotices() throws CustomerRequiredException, InvalidCredentialsException, IOException {
+        stubCustomer();
+        when(customer.takeNotices()).thenReturn(Arrays.asList("Your hold on Great Expectations has expired."));
+        app.viewMyDetails();
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Name: Charles Dickens"));
+        assertThat(scanner.nextLine(), is("Email Address: charles@example.com"));
+        assertThat(scanner.nextLine(), is("Phone: 07712345678"));
+        assertThat(scanner.nextLine(), is("Notice: Your hold on Great Expectations has expired."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testMyDetailsShowsLoansFromEveryLibrary() throws CustomerRequiredException, InvalidCredentialsException, IOException {
+        stubCustomer();
+        when(bookLibrary.getLoans(customer)).thenReturn(books.subList(0, 1));
+        when(movieLibrary.getLoans(customer)).thenReturn(movies.subList(1, 2));
+        app.viewMyDetails();
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Name: Charles Dickens"));
+        assertThat(scanner.nextLine(), is("Email Address: charles@example.com"));
+        assertThat(scanner.nextLine(), is("Phone: 07712345678"));
+        assertThat(scanner.nextLine(), is("Checked out book: Great Expectations, Charles Dickens, 1860"));
+        assertThat(scanner.nextLine(), is("Checked out movie: Pulp Fiction, Quentin Tarantino, 1994, 9"));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
     /*
      * List Items
      */
@@ -314,6 +495,55 @@ public class BibliotecaAppTests {
         assertThat(scanner.hasNextLine(), is(false));
     }
 
+    /*
+     * Search Items
+     */
+
+    @Test
+    public void testCustomerSelectsSearchBooksOption() throws Exception {
+        when(bookLibrary.searchByTitle("great", BibliotecaApp.SEARCH_RESULTS_LIMIT)).thenReturn(books.subList(0, 1));
+        app.selectMenuOption("Search Books: great");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Title, Author, Year, Available"));
+        assertThat(scanner.nextLine(), is("Great Expectations, Charles Dickens, 1860, 1/1"));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testSearchWithNoMatches() throws Exception {
+        when(bookLibrary.searchByTitle("Hard", BibliotecaApp.SEARCH_RESULTS_LIMIT)).thenReturn(new ArrayList<CatalogEntry<Book>>());
+        app.searchItems("Hard", bookLibrary);
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("No books match that title."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    /*
+     * List Items By Attribute
+     */
+
+    @Test
+    public void testCustomerSelectsListMoviesByDirectorOption() throws Exception {
+        when(movieLibrary.findByAttribute(Movie.DIRECTOR, "Quentin Tarantino")).thenReturn(movies);
+        app.selectMenuOption("List Movies by Director: Quentin Tarantino");
+
+        final Scanner scanner = getOutputScanner();
+        assertThatMovieListIsDisplayedWithAllMovies(scanner);
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testListItemsByAttributeWithNoMatches() throws Exception {
+        when(bookLibrary.findByAttribute(Book.AUTHOR, "Jane Austen")).thenReturn(new ArrayList<CatalogEntry<Book>>());
+        app.listItemsBy("Jane Austen", Book.AUTHOR, bookLibrary);
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("No books match that author."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
     @Test
     public void testNullMenuOptionMessage() throws Exception {
         app.selectMenuOption(null);
@@ -356,6 +586,16 @@ public class BibliotecaAppTests {
         assertThatCustomerSeesBookNotAvailableMessage();
     }
 
+    @Test
+    public void testCustomerChecksOutAnItemOverTheirLimit() throws Exception {
+        stubCustomer();
+        doThrow(new LoanLimitExceededException()).when(bookLibrary).checkoutItemByTitle(anyString(), eq(customer));
+        when(bookLibrary.getLoanLimit()).thenReturn(10);
+        app.checkoutItem("Great Expectations", bookLibrary);
+        app.flush();
+        assertThat(outputStream.toString(), is("You cannot have more than 10 books out or on hold at once.\n"));
+    }
+
     /*
      * Return Item
      */
@@ -364,25 +604,111 @@ public class BibliotecaAppTests {
     public void testCustomerReturnsAnItemSuccessfully() throws LibraryItemNotFoundException, IOException, InvalidCredentialsException, CustomerRequiredException, LibraryItemNotAvailableException, LibraryItemNotCheckedOutException {
         stubCustomer();
         app.returnItem("Great Expectations", bookLibrary);
-        verify(bookLibrary, times(1)).returnItemByTitle("Great Expectations");
+        verify(bookLibrary, times(1)).returnItemByTitle("Great Expectations", customer);
         assertThatCustomerSeesReturnBookSuccessMessage();
     }
 
     @Test
     public void testCustomerReturnsAnItemThatHasntBeenCheckedOut() throws IOException, CustomerRequiredException, InvalidCredentialsException, LibraryItemNotCheckedOutException, LibraryItemNotFoundException {
         stubCustomer();
-        doThrow(new LibraryItemNotCheckedOutException()).when(bookLibrary).returnItemByTitle("Great Expectations");
+        doThrow(new LibraryItemNotCheckedOutException()).when(bookLibrary).returnItemByTitle("Great Expectations", customer);
         app.returnItem("Great Expectations", bookLibrary);
-        verify(bookLibrary, times(1)).returnItemByTitle("Great Expectations");
+        verify(bookLibrary, times(1)).returnItemByTitle("Great Expectations", customer);
         assertThatCustomerSeesInvalidBookReturnMessage();
     }
 
+    @Test
+    public void testCustomerChecksOutSeveralBooksAtOnce() throws Exception {
+        stubCustomer();
+        app.selectMenuOption("Checkout Books: Great Expectations | The Pickwick Papers");
+        verify(bookLibrary, times(1)).checkoutItemsByTitle(Arrays.asList("Great Expectations", "The Pickwick Papers"), customer);
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Thank you! Enjoy the books."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testCustomerChecksOutSeveralBooksWhenOneIsUnavailable() throws Exception {
+        stubCustomer();
+        doThrow(new LibraryItemNotAvailableException()).when(bookLibrary)
+                .checkoutItemsByTitle(Arrays.asList("Great Expectations", "The Pickwick Papers"), customer);
+        app.selectMenuOption("Checkout Books: Great Expectations|The Pickwick Papers");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Those books are not all available."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testCustomerReturnsSeveralBooksAtOnce() throws Exception {
+        stubCustomer();
+        app.selectMenuOption("Return Books: Great Expectations | The Pickwick Papers");
+        verify(bookLibrary, times(1)).returnItemsByTitle(Arrays.asList("Great Expectations", "The Pickwick Papers"), customer);
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Thank you for returning the books."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testCustomerReturnsSeveralBooksWhenOneWasNotCheckedOut() throws Exception {
+        stubCustomer();
+        doThrow(new LibraryItemNotCheckedOutException()).when(bookLibrary)
+                .returnItemsByTitle(Arrays.asList("Great Expectations", "The Pickwick Papers"), customer);
+        app.selectMenuOption("Return Books: Great Expectations | The Pickwick Papers");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Those are not all valid books to return."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testCustomerPlacesAHold() throws Exception {
+        stubCustomer();
+        when(bookLibrary.placeHoldByTitle("Great Expectations", customer)).thenReturn(2);
+        app.selectMenuOption("Hold Book: Great Expectations");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("Your hold has been placed. Holds ahead of yours: 2."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testCustomerPlacesAHoldOnAnAvailableBook() throws Exception {
+        stubCustomer();
+        when(bookLibrary.placeHoldByTitle("Great Expectations", customer)).thenThrow(new LibraryItemAvailableException());
+        app.selectMenuOption("Hold Book: Great Expectations");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("That book is available to check out now."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testCustomerPlacesAHoldOnAMissingBook() throws Exception {
+        stubCustomer();
+        when(bookLibrary.placeHoldByTitle("Hard Times", customer)).thenThrow(new LibraryItemNotFoundException());
+        app.selectMenuOption("Hold Book: Hard Times");
+
+        final Scanner scanner = getOutputScanner();
+        assertThat(scanner.nextLine(), is("That book is not in the library."));
+        assertThat(scanner.hasNextLine(), is(false));
+    }
+
+    @Test
+    public void testBatchCheckoutNeedsTitles() throws Exception {
+        stubCustomer();
+        app.selectMenuOption("Checkout Books");
+        assertThatCustomerSeesUnrecognisedOptionMessage();
+    }
+
     @Test
     public void testCustomerReturnsAnItemThatDoesntExist() throws IOException, CustomerRequiredException, InvalidCredentialsException, LibraryItemNotCheckedOutException, LibraryItemNotFoundException {
         stubCustomer();
-        doThrow(new LibraryItemNotFoundException()).when(bookLibrary).returnItemByTitle("Hard Times");
+        doThrow(new LibraryItemNotFoundException()).when(bookLibrary).returnItemByTitle("Hard Times", customer);
         app.returnItem("Hard Times", bookLibrary);
-        verify(bookLibrary, times(1)).returnItemByTitle("Hard Times");
+        verify(bookLibrary, times(1)).returnItemByTitle("Hard Times", customer);
         assertThatCustomerSeesInvalidBookReturnMessage();
     }
 
@@ -407,6 +733,53 @@ public class BibliotecaAppTests {
         assertThat(scanner.hasNextLine(), is(false));
     }
 
+    /*
+     * Output
+     */
+
+    @Test
+    public void testOutputIsWrittenOnceACommandEnds() throws Exception {
+        final List<Integer> writes = new ArrayList<>();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writes.add(len);
+                super.write(b, off, len);
+            }
+        };
+        final List<Book> catalog = new ArrayList<>();
+        for(int i = 0; i < 2000; i++)
+            catalog.add(new Book(String.format("Title %04d", i), "Charles Dickens", 1860));
+        final Library<Book> library = new Library<>(catalog, Book.class);
+        final BibliotecaApp app = new BibliotecaApp(new Scanner(""), output, securityContext, library);
+
+        app.displayWelcomeMessage();
+        assertThat(output.size(), is(0));
+        app.selectMenuOption("List Books");
+
+        final StringBuilder expected = new StringBuilder("Welcome to Biblioteca!\n" + library.getCSVHeaders() + ", Available\n");
+        for(final Book book : catalog)
+            expected.append(book.getCSVRepresentation()).append(", 1/1\n");
+        assertThat(output.toString(), is(expected.toString()));
+        assertThat(writes.size(), is(expected.length() / BibliotecaApp.OUTPUT_BUFFER_SIZE + 1));
+    }
+
+    @Test
+    public void testOutputIsEncodedAsGetBytesWould() throws Exception {
+        final StringBuilder name = new StringBuilder();
+        for(int i = 0; i < 700; i++)
+            name.append("Zo\u00eb \uD83D\uDCDA ");
+        name.append('\uD800');
+        final Customer reader = new Customer(name.toString(), "Bront\u00eb", "reader@example.com", "Password1", "345-6789");
+        when(securityContext.getLoggedInCustomer()).thenReturn(reader);
+        when(bookLibrary.getLoans(reader)).thenReturn(new ArrayList<CatalogEntry<Book>>());
+        when(movieLibrary.getLoans(reader)).thenReturn(new ArrayList<CatalogEntry<Movie>>());
+
+        app.viewMyDetails();
+        app.flush();
+        assertThat(((ByteArrayOutputStream) outputStream).toByteArray(), is((reader.viewDetails() + "\n").getBytes()));
+    }
+
     /*
      * Helpers
      */
@@ -415,42 +788,61 @@ public class BibliotecaAppTests {
         assertThat(scanner.nextLine(), is("Please use one of the following options:"));
         assertThat(scanner.nextLine(), is("Login: <Library Number> <Password>"));
         assertThat(scanner.nextLine(), is("List Books"));
+        assertThat(scanner.nextLine(), is("Search Books: <Title>"));
+        assertThat(scanner.nextLine(), is("List Books by Author: <Author>"));
+        assertThat(scanner.nextLine(), is("Count Books: <Filter>"));
         assertThat(scanner.nextLine(), is("List Movies"));
+        assertThat(scanner.nextLine(), is("Search Movies: <Title>"));
+        assertThat(scanner.nextLine(), is("List Movies by Director: <Director>"));
+        assertThat(scanner.nextLine(), is("Count Movies: <Filter>"));
         assertThat(scanner.nextLine(), is("Quit"));
     }
 
     private void assertThatMainMenuIsDisplayed(Scanner scanner) {
         assertThat(scanner.nextLine(), is("Please use one of the following options:"));
         assertThat(scanner.nextLine(), is("List Books"));
+        assertThat(scanner.nextLine(), is("Search Books: <Title>"));
+        assertThat(scanner.nextLine(), is("List Books by Author: <Author>"));
+        assertThat(scanner.nextLine(), is("Count Books: <Filter>"));
         assertThat(scanner.nextLine(), is("Checkout Book: <Title>"));
         assertThat(scanner.nextLine(), is("Return Book: <Title>"));
+        assertThat(scanner.nextLine(), is("Checkout Books: <Title> | <Title>"));
+        assertThat(scanner.nextLine(), is("Return Books: <Title> | <Title>"));
+        assertThat(scanner.nextLine(), is("Hold Book: <Title>"));
         assertThat(scanner.nextLine(), is("List Movies"));
+        assertThat(scanner.nextLine(), is("Search Movies: <Title>"));
+        assertThat(scanner.nextLine(), is("List Movies by Director: <Director>"));
+        assertThat(scanner.nextLine(), is("Count Movies: <Filter>"));
         assertThat(scanner.nextLine(), is("Checkout Movie: <Title>"));
         assertThat(scanner.nextLine(), is("Return Movie: <Title>"));
+        assertThat(scanner.nextLine(), is("Checkout Movies: <Title> | <Title>"));
+        assertThat(scanner.nextLine(), is("Return Movies: <Title> | <Title>"));
+        assertThat(scanner.nextLine(), is("Hold Movie: <Title>"));
         assertThat(scanner.nextLine(), is("My Details"));
         assertThat(scanner.nextLine(), is("Logout"));
         assertThat(scanner.nextLine(), is("Quit"));
     }
 
-    private void assertThatBookListIsDisplayedWithAllBooks() {
+    private void assertThatBookListIsDisplayedWithAllBooks() throws IOException {
         final Scanner scanner = getOutputScanner();
         assertThatBookListIsDisplayedWithAllBooks(scanner);
         assertThat(scanner.hasNextLine(), is(false));
     }
 
     private void assertThatBookListIsDisplayedWithAllBooks(Scanner scanner) {
-        assertThat(scanner.nextLine(), is("Title, Author, Year"));
-        assertThat(scanner.nextLine(), is("Great Expectations, Charles Dickens, 1860"));
-        assertThat(scanner.nextLine(), is("The Pickwick Papers, Charles Dickens, 1837"));
+        assertThat(scanner.nextLine(), is("Title, Author, Year, Available"));
+        assertThat(scanner.nextLine(), is("Great Expectations, Charles Dickens, 1860, 1/1"));
+        assertThat(scanner.nextLine(), is("The Pickwick Papers, Charles Dickens, 1837, 2/2"));
     }
 
     private void assertThatMovieListIsDisplayedWithAllMovies(Scanner scanner) {
-        assertThat(scanner.nextLine(), is("Title, Director, Year, Rating"));
-        assertThat(scanner.nextLine(), is("Kill Bill, Quentin Tarantino, 2003, Unrated"));
-        assertThat(scanner.nextLine(), is("Pulp Fiction, Quentin Tarantino, 1994, 9"));
+        assertThat(scanner.nextLine(), is("Title, Director, Year, Rating, Available"));
+        assertThat(scanner.nextLine(), is("Kill Bill, Quentin Tarantino, 2003, Unrated, 1/1"));
+        assertThat(scanner.nextLine(), is("Pulp Fiction, Quentin Tarantino, 1994, 9, 1/1"));
     }
 
-    private Scanner getOutputScanner() {
+    private Scanner getOutputScanner() throws IOException {
+        app.flush();
         return getOutputScanner(outputStream);
     }
 
@@ -459,43 +851,43 @@ public class BibliotecaAppTests {
     }
 
 
-    private void assertThatCustomerSeesInvalidBookReturnMessage() {
+    private void assertThatCustomerSeesInvalidBookReturnMessage() throws IOException {
         final Scanner scanner = getOutputScanner();
         assertThat(scanner.nextLine(), is("That is not a valid book to return."));
         assertThat(scanner.hasNextLine(), is(false));
     }
 
-    private void assertThatCustomerSeesBookNotAvailableMessage() {
+    private void assertThatCustomerSeesBookNotAvailableMessage() throws IOException {
         final Scanner scanner = getOutputScanner();
         assertThat(scanner.nextLine(), is("That book is not available."));
         assertThat(scanner.hasNextLine(), is(false));
     }
 
-    private void assertThatCustomerSeesUnrecognisedOptionMessage() {
+    private void assertThatCustomerSeesUnrecognisedOptionMessage() throws IOException {
         final Scanner scanner = getOutputScanner();
         assertThat(scanner.nextLine(), is("Select a valid option!"));
         assertThat(scanner.hasNextLine(), is(false));
     }
 
-    private void assertThatCustomerSeesSuccessfulCheckoutBookMessage() {
+    private void assertThatCustomerSeesSuccessfulCheckoutBookMessage() throws IOException {
         final Scanner scanner = getOutputScanner();
         assertThat(scanner.nextLine(), is("Thank you! Enjoy the book."));
         assertThat(scanner.hasNextLine(), is(false));
     }
 
-    private void assertThatCustomerSeesAccessDeniedMessage() {
+    private void assertThatCustomerSeesAccessDeniedMessage() throws IOException {
         final Scanner scanner = getOutputScanner();
         assertThat(scanner.nextLine(), is("You must be logged in to perform that task."));
         assertThat(scanner.hasNextLine(), is(false));
     }
 
-    private void assertThatCustomerSeesReturnBookSuccessMessage() {
+    private void assertThatCustomerSeesReturnBookSuccessMessage() throws IOException {
         final Scanner scanner = getOutputScanner();
         assertThat(scanner.nextLine(), is("Thank you for returning the book."));
         assertThat(scanner.hasNextLine(), is(false));
     }
 
-    private void assertThatLoginSuccessMessageAndMainMenuIsDisplayed() {
+    private void assertThatLoginSuccessMessageAndMainMenuIsDisplayed() throws IOException {
         final Scanner scanner = getOutputScanner();
         assertThatLoginSuccessMessageAndMainMenuIsDisplayed(scanner);
         assertThat(scanner.hasNextLine(), is(false));
@@ -506,12 +898,12 @@ public class BibliotecaAppTests {
         assertThatMainMenuIsDisplayed(scanner);
     }
 
-    private void assertThatLogoutMessageIsDisplayed() {
+    private void assertThatLogoutMessageIsDisplayed() throws IOException {
         final Scanner scanner = getOutputScanner();
         assertThat(scanner.nextLine(), is("Logout Successful!"));
     }
 
-    private void assertThatCustomersDetailsAreDisplayed() {
+    private void assertThatCustomersDetailsAreDisplayed() throws IOException {
         final Scanner scanner = getOutputScanner();
         assertThat(scanner.nextLine(), is("Name: Charles Dickens"));
         assertThat(scanner.nextLine(), is("Email Address: charles@example.com"));
@@ -524,7 +916,7 @@ public class BibliotecaAppTests {
         when(securityContext.getLoggedInCustomer()).thenReturn(customer);
     }
 
-    private void assertThatLoginFailedMessageIsDisplayed() {
+    private void assertThatLoginFailedMessageIsDisplayed() throws IOException {
         final Scanner scanner = getOutputScanner();
         assertThat(scanner.nextLine(), is("Login Failed! Please try again."));
         assertThat(scanner.hasNextLine(), is(false));
@@ -0,0 +1,241 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.exceptions.CustomerRequiredException;
+import com.twu.biblioteca.exceptions.LibraryItemNotAvailableException;
+import com.twu.biblioteca.exceptions.LibraryItemNotCheckedOutException;
+import com.twu.biblioteca.helper.Concurrently;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class CatalogEntryTests {
+
+    private CatalogEntry<Book> entry;
+    @Mock
+    private Customer customer;
+    @Mock
+    private Customer otherCustomer;
+    @Mock
+    private CatalogEntry.AvailabilityListener<Book> listener;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+        entry = new CatalogEntry<>(new Book("Great Expectations", "Charles Dickens", 1860), 1, listener);
+    }
+
+    @Test
+    public void testEntryHasItemAndTitle() {
+        assertThat(entry.getTitle(), is("Great Expectations"));
+        assertThat(entry.getItem().getAuthor(), is("Charles Dickens"));
+    }
+
+    @Test
+    public void testNewEntryHasAllCopiesAvailable() {
+        assertThat(entry.getTotalCopies(), is(1));
+        assertThat(entry.getAvailableCopies(), is(1));
+        assertThat(entry.isAvailable(), is(true));
+    }
+
+    @Test
+    public void testEntryStandingInForATitleOnTheShelfHasItsOneCopyAvailable() {
+        final HeapCatalogStore<Book> store = new HeapCatalogStore<>();
+        store.add(new Book("Bleak House", "Charles Dickens", 1853));
+        final CatalogEntry<Book> onShelf = CatalogEntry.onShelf(store, 0);
+        assertThat(onShelf.getTitle(), is("Bleak House"));
+        assertThat(onShelf.getTotalCopies(), is(1));
+        assertThat(onShelf.getAvailableCopies(), is(1));
+        assertThat(onShelf.isCheckedOutBy(customer), is(false));
+        assertThat(onShelf.getHoldCount(), is(0));
+    }
+
+    @Test
+    public void testCopyCanBeCheckedOut() throws LibraryItemNotAvailableException, CustomerRequiredException {
+        final CatalogEntry.Copy copy = entry.checkOut(customer);
+        assertThat(copy.getBorrower(), is(customer));
+        assertThat(entry.isCheckedOutBy(customer), is(true));
+        assertThat(entry.getAvailableCopies(), is(0));
+        assertThat(entry.isAvailable(), is(false));
+    }
+
+    @Test
+    public void testLoanIsReportedWithItsBorrowerAndDueDateBeforeTheCopyIsHandedOver() throws Exception {
+        final HeapCatalogStore<Book> store = new HeapCatalogStore<>();
+        store.add(new Book("Bleak House", "Charles Dickens", 1853));
+        final List<String> reported = new ArrayList<>();
+        final CatalogEntry.LoanListener<Book> loanListener = new CatalogEntry.LoanListener<Book>() {
+            @Override
+            public void lent(CatalogEntry<Book> entry, CatalogEntry.Copy copy, Customer borrower, long dueTime) {
+                reported.add((borrower == customer) + " " + dueTime + " " + copy.getBorrower() + " " + entry.isCheckedOutBy(customer));
+            }
+            @Override
+            public void returned(CatalogEntry<Book> entry, CatalogEntry.Copy copy, Customer customer) {}
+            @Override
+            public void held(CatalogEntry<Book> entry, CatalogEntry.Hold hold) {}
+            @Override
+            public void expired(CatalogEntry<Book> entry, CatalogEntry.Hold hold) {}
+        };
+        final CatalogEntry<Book> bleakHouse = new CatalogEntry<>(store, 0, 1, listener, loanListener,
+                new CatalogEntry.DueDates() {
+                    @Override
+                    public long dueTime() {
+                        return 42;
+                    }
+                });
+        final CatalogEntry.Copy copy = bleakHouse.checkOut(customer);
+        assertThat(reported, is(Arrays.asList("true 42 null false")));
+        assertThat(copy.getBorrower(), is(customer));
+        assertThat(copy.getDueTime(), is(42L));
+    }
+
+    @Test(expected = LibraryItemNotAvailableException.class)
+    public void testCheckingOutWithNoFreeCopyThrowsAnException() throws LibraryItemNotAvailableException, CustomerRequiredException {
+        entry.checkOut(customer);
+        entry.checkOut(customer);
+    }
+
+    @Test(expected = CustomerRequiredException.class)
+    public void testCheckingOutWithNullCustomerThrowsAnException() throws LibraryItemNotAvailableException, CustomerRequiredException {
+        entry.checkOut(null);
+    }
+
+    @Test
+    public void testCopyCanBeCheckedIn() throws LibraryItemNotAvailableException, CustomerRequiredException, LibraryItemNotCheckedOutException {
+        entry.checkOut(customer);
+        entry.checkIn(customer);
+        assertThat(entry.isCheckedOutBy(customer), is(false));
+        assertThat(entry.getAvailableCopies(), is(1));
+    }
+
+    @Test(expected = LibraryItemNotCheckedOutException.class)
+    public void testCheckingInACopyThatHasntBeenCheckedOutThrowsAnException() throws LibraryItemNotCheckedOutException {
+        entry.checkIn(customer);
+    }
+
+    @Test(expected = LibraryItemNotCheckedOutException.class)
+    public void testCheckingInACopyHeldBySomeoneElseThrowsAnException() throws LibraryItemNotAvailableException, CustomerRequiredException, LibraryItemNotCheckedOutException {
+        entry.checkOut(otherCustomer);
+        entry.checkIn(customer);
+    }
+
+    @Test
+    public void testEachCheckoutTakesADifferentCopy() throws LibraryItemNotAvailableException, CustomerRequiredException {
+        entry.addCopies(2);
+        final Set<Integer> copies = new HashSet<>();
+        for(int i = 0; i < 3; i++)
+            copies.add(entry.checkOut(customer).getNumber());
+        assertThat(copies.size(), is(3));
+        assertThat(entry.getTotalCopies(), is(3));
+        assertThat(entry.getAvailableCopies(), is(0));
+    }
+
+    @Test
+    public void testReturnedCopyCanBeCheckedOutAgain() throws LibraryItemNotAvailableException, CustomerRequiredException, LibraryItemNotCheckedOutException {
+        final CatalogEntry.Copy copy = entry.checkOut(customer);
+        entry.checkIn(customer);
+        assertThat(entry.checkOut(otherCustomer), is(copy));
+    }
+
+    @Test
+    public void testListenerIsToldWhenTheLastCopyGoesAndTheFirstComesBack() throws LibraryItemNotAvailableException, CustomerRequiredException, LibraryItemNotCheckedOutException {
+        entry.addCopies(1);
+        entry.checkOut(customer);
+        entry.checkOut(otherCustomer);
+        entry.checkIn(customer);
+        entry.checkIn(otherCustomer);
+        verify(listener, times(3)).availabilityChanged(entry);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEntryCannotHaveNoCopies() {
+        new CatalogEntry<>(new Book("Great Expectations", "Charles Dickens", 1860), 0, listener);
+    }
+
+    @Test
+    public void testConcurrentCheckoutsNeverHandOutMoreCopiesThanExist() throws InterruptedException {
+        entry.addCopies(3);
+        final int successes = Concurrently.run(16, new Concurrently.Task() {
+            @Override
+            public void run(int thread) throws Exception {
+                entry.checkOut(customer);
+            }
+        });
+        assertThat(successes, is(4));
+        assertThat(entry.getAvailableCopies(), is(0));
+    }
+
+    @Test
+    public void testReturnedCopyGoesToTheFirstHolder() throws Exception {
+        entry.checkOut(customer);
+        final Customer thirdCustomer = mock(Customer.class);
+        assertThat(entry.placeHold(otherCustomer), is(0));
+        assertThat(entry.placeHold(thirdCustomer), is(1));
+        assertThat(entry.getHoldCount(), is(2));
+
+        entry.checkIn(customer);
+        assertThat(entry.isCheckedOutBy(otherCustomer), is(true));
+        assertThat(entry.isAvailable(), is(false));
+        entry.checkIn(otherCustomer);
+        assertThat(entry.isCheckedOutBy(thirdCustomer), is(true));
+        entry.checkIn(thirdCustomer);
+        assertThat(entry.isAvailable(), is(true));
+        assertThat(entry.getHoldCount(), is(0));
+        verify(listener, times(3)).availabilityChanged(entry);
+    }
+
+    @Test
+    public void testHoldOnACopyOnTheShelfIsFilledAtOnce() throws Exception {
+        assertThat(entry.placeHold(otherCustomer), is(0));
+        assertThat(entry.isCheckedOutBy(otherCustomer), is(true));
+        assertThat(entry.getHoldCount(), is(0));
+    }
+
+    @Test(expected = CustomerRequiredException.class)
+    public void testHoldNeedsACustomer() throws Exception {
+        entry.placeHold(null);
+    }
+
+    @Test
+    public void testConcurrentHoldsAndReturnsHandEveryHoldACopy() throws Exception {
+        entry.checkOut(customer);
+        final int threads = 4;
+        final int holdsPerThread = 1000;
+        final Customer[] holders = new Customer[threads + 1];
+        for(int i = 0; i < threads; i++)
+            holders[i] = mock(Customer.class);
+        holders[threads] = customer;
+        final Concurrently holding = Concurrently.start(threads, new Concurrently.Task() {
+            @Override
+            public void run(int thread) throws Exception {
+                for(int hold = 0; hold < holdsPerThread; hold++)
+                    entry.placeHold(holders[thread]);
+            }
+        });
+        int returned = 0;
+        while(returned < threads * holdsPerThread + 1) {
+            for(final Customer holder : holders) {
+                try {
+                    entry.checkIn(holder);
+                    returned++;
+                } catch (LibraryItemNotCheckedOutException e) {}
+            }
+        }
+        assertThat(holding.await(), is(threads));
+        assertThat(entry.isAvailable(), is(true));
+        assertThat(entry.getHoldCount(), is(0));
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Movie;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CatalogFileTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+
+    @Before
+    public void setup() throws IOException {
+        path = folder.newFile("books.catalog").toPath();
+    }
+
+    @Test
+    public void testWrittenCatalogIsMappedInTitleOrder() throws IOException {
+        CatalogFile.write(path, Book.getBooks(), Book.TYPE);
+        final CatalogStore<Book> store = CatalogFile.map(path, Book.TYPE).getStore();
+        assertThat(store.size(), is(3));
+        assertThat(store.get(0), is(new Book("Bleak House", "Charles Dickens", 1853)));
+        assertThat(store.get(1), is(new Book("Great Expectations", "Charles Dickens", 1860)));
+        assertThat(store.get(2), is(new Book("The Pickwick Papers", "Charles Dickens", 1837)));
+    }
+
+    @Test
+    public void testEqualTitlesAreWrittenAsCopies() throws IOException {
+        final List<Book> books = new ArrayList<>(Book.getBooks());
+        books.add(new Book("Bleak House", "Charles Dickens", 1853));
+        books.add(new Book("Bleak House", "Charles Dickens", 1853));
+        CatalogFile.write(path, books, Book.TYPE);
+        final CatalogFile<Book> catalog = CatalogFile.map(path, Book.TYPE);
+        assertThat(catalog.getStore().size(), is(3));
+        assertThat(catalog.getCopies(0), is(3));
+        assertThat(catalog.getCopies(1), is(1));
+    }
+
+    @Test
+    public void testMovieRatingsAreWritten() throws IOException {
+        CatalogFile.write(path, Movie.getMovies(), Movie.TYPE);
+        final CatalogStore<Movie> store = CatalogFile.map(path, Movie.TYPE).getStore();
+        assertThat(store.get(0).isRated(), is(false));
+        assertThat(store.get(1).getRating(), is((byte) 9));
+    }
+
+    @Test
+    public void testMappedCatalogCanStillBeAddedTo() throws IOException {
+        CatalogFile.write(path, Book.getBooks(), Book.TYPE);
+        final CatalogStore<Book> store = CatalogFile.map(path, Book.TYPE).getStore();
+        assertThat(store.add(new Book("Hard Times", "Charles Dickens", 1854)), is(3));
+        assertThat(store.get(3).getTitle(), is("Hard Times"));
+        assertThat(store.get(0).getTitle(), is("Bleak House"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMappingAFileThatIsNotACatalogThrowsAnException() throws IOException {
+        Files.write(path, "Title, Author, Year".getBytes());
+        CatalogFile.map(path, Book.TYPE);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMappingATruncatedCatalogThrowsAnException() throws IOException {
+        CatalogFile.write(path, Book.getBooks(), Book.TYPE);
+        final byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+        CatalogFile.map(path, Book.TYPE);
+    }
+
+}
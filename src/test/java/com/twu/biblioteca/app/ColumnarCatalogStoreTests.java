@@ -0,0 +1,97 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Movie;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ColumnarCatalogStoreTests {
+
+    private ColumnarCatalogStore<Book> store;
+    private Book greatExpectations;
+
+    @Before
+    public void setup() {
+        store = new ColumnarCatalogStore<>(Book.TYPE);
+        greatExpectations = new Book("Great Expectations", "Charles Dickens", 1860);
+        store.add(greatExpectations);
+    }
+
+    @Test
+    public void testStoredItemIsMadeAgain() {
+        final Book book = store.get(0);
+        assertThat(book, is(greatExpectations));
+        assertThat(book, is(not(sameInstance(greatExpectations))));
+        assertThat(store.getTitle(0), is("Great Expectations"));
+    }
+
+    @Test
+    public void testItemsAreAddedUnderConsecutiveIds() {
+        assertThat(store.add(new Book("Bleak House", "Charles Dickens", 1853)), is(1));
+        assertThat(store.size(), is(2));
+        assertThat(store.get(1).getTitle(), is("Bleak House"));
+    }
+
+    @Test
+    public void testColumnsGrowWithTheCatalog() {
+        for(int i = 1; i < 5000; i++)
+            store.add(new Book("Title " + i + " \u00e9dition", "Author " + (i % 7), 1800 + i % 200));
+        assertThat(store.size(), is(5000));
+        assertThat(store.get(0), is(greatExpectations));
+        assertThat(store.get(4999), is(new Book("Title 4999 \u00e9dition", "Author 1", 1999)));
+    }
+
+    @Test
+    public void testMovieRatingsAreKept() {
+        final ColumnarCatalogStore<Movie> movies = new ColumnarCatalogStore<>(Movie.TYPE);
+        movies.add(Movie.createRatedMovie("Pulp Fiction", 1994, "Quentin Tarantino", 9));
+        movies.add(Movie.createUnratedMovie("Kill Bill", 2003, "Quentin Tarantino"));
+        assertThat(movies.get(0).getRating(), is((byte) 9));
+        assertThat(movies.get(1).isRated(), is(false));
+    }
+
+    @Test
+    public void testStoreHoldsAnItemWithTheSameTitleUnderItsId() {
+        assertThat(store.holds(0, new Book("Great Expectations", "Charles Dickens", 1860)), is(true));
+        assertThat(store.holds(0, new Book("Bleak House", "Charles Dickens", 1853)), is(false));
+        assertThat(store.holds(1, greatExpectations), is(false));
+    }
+
+    @Test
+    public void testTitlesAreComparedAsTheirStringsWould() {
+        final String[] titles = {"Great Expectations", "great expectations", "Great", "Bleak House",
+                "\u00c9mile", "\u00e9mile", "Emile", "Great Expectations \u00e9dition", "[Untitled]", "_"};
+        for(int i = 1; i < titles.length; i++)
+            store.add(new Book(titles[i], "Charles Dickens", 1860));
+        for(int first = 0; first < titles.length; first++)
+            for(int second = 0; second < titles.length; second++) {
+                assertThat(Integer.signum(store.compareTitles(first, second)),
+                        is(Integer.signum(titles[first].compareTo(titles[second]))));
+                assertThat(Integer.signum(store.compareTitlesIgnoringCase(first, second)),
+                        is(Integer.signum(String.CASE_INSENSITIVE_ORDER.compare(titles[first], titles[second]))));
+            }
+    }
+
+    @Test
+    public void testStoreHasATitleOnlyUnderItsOwnId() {
+        store.add(new Book("\u00c9mile", "Jean-Jacques Rousseau", 1762));
+        assertThat(store.hasTitle(0, "Great Expectations"), is(true));
+        assertThat(store.hasTitle(0, "Great"), is(false));
+        assertThat(store.hasTitle(0, "Great Expectations Abridged"), is(false));
+        assertThat(store.hasTitle(1, "\u00c9mile"), is(true));
+        assertThat(store.hasTitle(1, "Emile"), is(false));
+        assertThat(store.hasTitle(2, "Great Expectations"), is(false));
+        assertThat(store.getYear(1), is((short) 1762));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGettingAnUnknownIdThrowsAnException() {
+        store.get(1);
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Movie;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CsvCatalogImporterTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+    private ForkJoinPool pool;
+    private CsvCatalogImporter<Book> importer;
+
+    @Before
+    public void setup() throws IOException {
+        path = folder.newFile("books.csv").toPath();
+        pool = new ForkJoinPool(4);
+        importer = new CsvCatalogImporter<>(Book.TYPE, Book.class, pool, 64, 2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testImportSkipsTheHeaderLine() throws IOException {
+        write("Title, Author, Year",
+              "Great Expectations, Charles Dickens, 1860",
+              "Bleak House, Charles Dickens, 1853");
+        final Library<Book> library = importer.importFrom(path);
+        assertThat(library.size(), is(2));
+        assertThat(library.findItemByTitle("Bleak House"), is(new Book("Bleak House", "Charles Dickens", 1853)));
+        assertThat(importer.getRowsImported(), is(2L));
+    }
+
+    @Test
+    public void testImportWithoutAHeaderLine() throws IOException {
+        write("Great Expectations, Charles Dickens, 1860");
+        assertThat(importer.importFrom(path).findItemByTitle("Great Expectations").getYear(), is((short) 1860));
+    }
+
+    @Test
+    public void testImporterWithoutAPoolImportsOnAPoolOfItsOwnEachTime() throws IOException {
+        write("Great Expectations, Charles Dickens, 1860");
+        final CsvCatalogImporter<Book> importer = new CsvCatalogImporter<>(Book.TYPE, Book.class);
+        assertThat(importer.importFrom(path).size(), is(1));
+        assertThat(importer.importFrom(path).size(), is(1));
+    }
+
+    @Test
+    public void testImportOfManyChunksKeepsEveryRow() throws IOException {
+        final String[] lines = new String[5000];
+        for(int i = 0; i < lines.length; i++)
+            lines[i] = "Title " + i + ", Author " + (i % 13) + ", " + (1800 + i % 200);
+        write(lines);
+        for(final int chunkSize : new int[] { 4096, CsvCatalogImporter.DEFAULT_CHUNK_SIZE }) {
+            final CsvCatalogImporter<Book> importer = new CsvCatalogImporter<>(Book.TYPE, Book.class, pool, chunkSize, 3);
+            final Library<Book> library = importer.importFrom(path);
+            assertThat(library.size(), is(5000));
+            assertThat(library.findItemByTitle("Title 4999").getAuthor(), is("Author 7"));
+            assertThat(importer.getRowsPerSecond() > 0, is(true));
+        }
+    }
+
+    @Test
+    public void testRepeatedTitlesAreImportedAsCopies() throws IOException {
+        write("Bleak House, Charles Dickens, 1853",
+              "Great Expectations, Charles Dickens, 1860",
+              "Bleak House, Charles Dickens, 1853");
+        final Library<Book> library = importer.importFrom(path);
+        assertThat(library.size(), is(2));
+        assertThat(library.findEntryByTitle("Bleak House").getTotalCopies(), is(2));
+        assertThat(importer.getRowsImported(), is(3L));
+    }
+
+    @Test
+    public void testImportOfMoviesWithAndWithoutRatings() throws IOException {
+        write("Title, Director, Year, Rating",
+              "Pulp Fiction, Quentin Tarantino, 1994, 9",
+              "Kill Bill, Quentin Tarantino, 2003, Unrated");
+        final Library<Movie> library = new CsvCatalogImporter<>(Movie.TYPE, Movie.class, pool, 64, 2).importFrom(path);
+        assertThat(library.findItemByTitle("Pulp Fiction").getRating(), is((byte) 9));
+        assertThat(library.findItemByTitle("Kill Bill").isRated(), is(false));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRowWithTheWrongNumberOfFieldsThrowsAnException() throws IOException {
+        write("Great Expectations, Charles Dickens");
+        importer.importFrom(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRowLongerThanTheChunkSizeThrowsAnException() throws IOException {
+        write("Great Expectations, Charles Dickens, 1860",
+              "A Title So Long That It Does Not Fit In A Single Chunk, Charles Dickens, 1860");
+        importer.importFrom(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void testFileWithNoRowsThrowsAnException() throws IOException {
+        write("Title, Author, Year");
+        importer.importFrom(path);
+    }
+
+    @Test
+    public void testQuotedFieldsCanHoldCommasAndQuotes() {
+        assertThat(CsvCatalogImporter.parseFields("\"Lock, Stock\", \"Guy \"\"Ritchie\"\"\", 1998"),
+                is(Arrays.asList("Lock, Stock", "Guy \"Ritchie\"", "1998")));
+    }
+
+    private void write(String... lines) throws IOException {
+        Files.write(path, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+}
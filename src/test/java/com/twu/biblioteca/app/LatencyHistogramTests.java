@@ -0,0 +1,136 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.helper.Concurrently;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LatencyHistogramTests {
+
+    private LatencyHistogram histogram;
+
+    @Before
+    public void setup() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void testEmptyHistogramReportsZero() {
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getMean(), is(0L));
+        assertThat(histogram.getMax(), is(0L));
+        assertThat(histogram.getValueAtPercentile(99), is(0L));
+    }
+
+    @Test
+    public void testValuesBelowTwoHundredAndFiftySixHaveABucketEach() {
+        for(int value = 0; value < 256; value++)
+            histogram.record(value);
+        assertThat(histogram.getValueAtPercentile(50), is(127L));
+        assertThat(histogram.getValueAtPercentile(99), is(253L));
+        assertThat(histogram.getValueAtPercentile(100), is(255L));
+    }
+
+    @Test
+    public void testBucketsAboveTwoHundredAndFiftySixWidenWithEachPowerOfTwo() {
+        histogram.record(255);
+        histogram.record(256);
+        histogram.record(512);
+        histogram.record(1000000);
+        assertThat(histogram.getValueAtPercentile(25), is(255L));
+        assertThat(histogram.getValueAtPercentile(50), is(257L));
+        assertThat(histogram.getValueAtPercentile(75), is(515L));
+    }
+
+    @Test
+    public void testValuesAreKeptToWithinOnePercent() {
+        for(long value = 300; value < Long.MAX_VALUE / 4; value = value * 3 + 7) {
+            final LatencyHistogram single = new LatencyHistogram();
+            single.record(value);
+            single.record(Long.MAX_VALUE);
+            final long reported = single.getValueAtPercentile(50);
+            assertThat(reported >= value, is(true));
+            assertThat(reported - value <= value / 100, is(true));
+        }
+    }
+
+    @Test
+    public void testPercentilesAreTheLeastValueThatManyAreNoGreaterThan() {
+        for(int value = 1; value <= 100; value++)
+            histogram.record(value);
+        assertThat(histogram.getValueAtPercentile(0), is(1L));
+        assertThat(histogram.getValueAtPercentile(50), is(50L));
+        assertThat(histogram.getValueAtPercentile(90), is(90L));
+        assertThat(histogram.getValueAtPercentile(99.9), is(100L));
+    }
+
+    @Test
+    public void testPercentilesNeverExceedTheLargestValueRecorded() {
+        histogram.record(1000001);
+        assertThat(histogram.getValueAtPercentile(100), is(1000001L));
+        assertThat(histogram.getMax(), is(1000001L));
+    }
+
+    @Test
+    public void testNegativeValuesAreRecordedAsZero() {
+        histogram.record(-5);
+        assertThat(histogram.getValueAtPercentile(100), is(0L));
+        assertThat(histogram.getMean(), is(0L));
+        assertThat(histogram.getCount(), is(1L));
+    }
+
+    @Test
+    public void testCountMeanAndMaxAreKeptAsValuesAreRecorded() {
+        histogram.record(10);
+        histogram.record(20);
+        histogram.record(60);
+        assertThat(histogram.getCount(), is(3L));
+        assertThat(histogram.getMean(), is(30L));
+        assertThat(histogram.getMax(), is(60L));
+    }
+
+    @Test
+    public void testAddingAHistogramMergesItsValues() {
+        final LatencyHistogram other = new LatencyHistogram();
+        for(int value = 1; value <= 50; value++)
+            histogram.record(value);
+        for(int value = 51; value <= 100; value++)
+            other.record(value);
+        histogram.add(other);
+        assertThat(histogram.getCount(), is(100L));
+        assertThat(histogram.getMean(), is(50L));
+        assertThat(histogram.getMax(), is(100L));
+        assertThat(histogram.getValueAtPercentile(75), is(75L));
+        assertThat(other.getCount(), is(50L));
+        assertThat(other.getValueAtPercentile(0), is(51L));
+    }
+
+    @Test
+    public void testAddingAHistogramKeepsTheLargerMax() {
+        final LatencyHistogram other = new LatencyHistogram();
+        histogram.record(500);
+        other.record(40);
+        histogram.add(other);
+        assertThat(histogram.getMax(), is(500L));
+        histogram.add(new LatencyHistogram());
+        assertThat(histogram.getCount(), is(2L));
+    }
+
+    @Test
+    public void testValuesRecordedByManyThreadsAreAllCounted() throws Exception {
+        final int threads = 4;
+        final int done = Concurrently.run(threads, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                for(int i = 0; i < 10000; i++)
+                    histogram.record(thread * 1000 + i % 1000);
+            }
+        });
+        assertThat(done, is(threads));
+        assertThat(histogram.getCount(), is(40000L));
+        assertThat(histogram.getMax(), is(3999L));
+    }
+
+}
@@ -2,23 +2,35 @@ package com.twu.biblioteca.app;
 
 import com.twu.biblioteca.app.Library;
 import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Movie;
 import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.exceptions.CommandNotFoundException;
+import com.twu.biblioteca.helper.Clock;
+import com.twu.biblioteca.helper.Concurrently;
 import com.twu.biblioteca.exceptions.CustomerRequiredException;
+import com.twu.biblioteca.exceptions.LibraryItemAvailableException;
 import com.twu.biblioteca.exceptions.LibraryItemNotAvailableException;
 import com.twu.biblioteca.exceptions.LibraryItemNotCheckedOutException;
 import com.twu.biblioteca.exceptions.LibraryItemNotFoundException;
+import com.twu.biblioteca.exceptions.LoanLimitExceededException;
 import org.hamcrest.CoreMatchers;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -27,6 +39,8 @@ import static org.mockito.MockitoAnnotations.initMocks;
  */
 public class LibraryTests {
 
+    private static final long START_OF_2015 = 1420070400000L;
+
     private Library<Book> library;
 
     @Mock
@@ -40,6 +54,8 @@ public class LibraryTests {
 
     @Mock
     private Customer customer;
+    @Mock
+    private Customer otherCustomer;
 
     @Before
     public void setup() {
@@ -47,9 +63,11 @@ public class LibraryTests {
 
         when(greatExpectations.getTitle()).thenReturn("Great Expectations");
         when(greatExpectations.compareTo(any(Book.class))).thenCallRealMethod();
+        when(greatExpectations.getCSVHeaders()).thenReturn("Title, Author, Year");
 
         when(pickwickPapers.getTitle()).thenReturn("The Pickwick Papers");
         when(pickwickPapers.compareTo(any(Book.class))).thenCallRealMethod();
+        when(pickwickPapers.getCSVHeaders()).thenReturn("Title, Author, Year");
 
         books = new HashSet<>();
         books.add(greatExpectations);
@@ -74,9 +92,12 @@ public class LibraryTests {
 
     @Test
     public void testGetListOfItems() {
-        when(greatExpectations.isAvailable()).thenReturn(true);
-        when(pickwickPapers.isAvailable()).thenReturn(true);
-        assertThat(library.getItems(), is(Arrays.asList(greatExpectations, pickwickPapers)));
+        assertThat(listedItems(), is(Arrays.asList(greatExpectations, pickwickPapers)));
+    }
+
+    @Test
+    public void testGetCSVHeaders() {
+        assertThat(library.getCSVHeaders(), is("Title, Author, Year"));
     }
 
     @Test
@@ -89,15 +110,34 @@ public class LibraryTests {
         library.verifyItemExists(mock(Book.class));
     }
 
+    @Test
+    public void testItemsAreGivenIdsInTitleOrder() {
+        assertThat(library.findEntryByTitle("Great Expectations").getId(), is(0));
+        assertThat(library.findEntryByTitle("The Pickwick Papers").getId(), is(1));
+    }
+
+    @Test
+    public void testItemAddedToTwoLibrariesIsHeldByBoth() throws LibraryItemNotFoundException {
+        final Library<Book> other = new Library<>(Arrays.asList(pickwickPapers), Book.class);
+        assertThat(other.verifyItemExists(pickwickPapers).getId(), is(0));
+        assertThat(library.verifyItemExists(pickwickPapers).getId(), is(1));
+    }
+
+    @Test(expected = LibraryItemNotFoundException.class)
+    public void testVerifyItemExistsThrowsExceptionForEqualItemFromAnotherLibrary() throws LibraryItemNotFoundException {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.verifyItemExists(new Book("Bleak House", "Charles Dickens", 1853));
+    }
+
     @Test
     public void testCheckoutItemThatExistsAndIsAvailable() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
         library.checkoutItem(greatExpectations, customer);
-        verify(greatExpectations, times(1)).checkOut(customer);
+        assertThat(library.findEntryByTitle("Great Expectations").isCheckedOutBy(customer), is(true));
     }
 
     @Test(expected = LibraryItemNotAvailableException.class)
     public void testCheckoutItemThatExistsButIsUnavailable() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
-        doThrow(new LibraryItemNotAvailableException()).when(greatExpectations).checkOut(customer);
+        library.checkoutItem(greatExpectations, customer);
         library.checkoutItem(greatExpectations, customer);
     }
 
@@ -114,7 +154,7 @@ public class LibraryTests {
     @Test
     public void testCheckoutItemByTitle() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
         library.checkoutItemByTitle("Great Expectations", customer);
-        verify(greatExpectations, times(1)).checkOut(customer);
+        assertThat(library.findEntryByTitle("Great Expectations").isCheckedOutBy(customer), is(true));
     }
 
     @Test(expected = LibraryItemNotFoundException.class)
@@ -124,22 +164,34 @@ public class LibraryTests {
 
     @Test(expected = LibraryItemNotAvailableException.class)
     public void testCheckOutItemByTitleThatIsntAvailable() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
-        doThrow(new LibraryItemNotAvailableException()).when(greatExpectations).checkOut(customer);
+        library.checkoutItemByTitle("Great Expectations", customer);
         library.checkoutItemByTitle("Great Expectations", customer);
     }
 
     @Test
     public void testCheckedOutItemDoesNotShowInItemList() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
-        when(greatExpectations.isAvailable()).thenReturn(false);
-        when(pickwickPapers.isAvailable()).thenReturn(true);
-        assertThat(library.getItems(), is(Arrays.asList(pickwickPapers)));
+        library.checkoutItem(greatExpectations, customer);
+        assertThat(listedItems(), is(Arrays.asList(pickwickPapers)));
+    }
+
+    @Test
+    public void testReturnedItemShowsInItemListAgain() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, LibraryItemNotCheckedOutException, CustomerRequiredException {
+        library.checkoutItem(greatExpectations, customer);
+        library.returnItem(greatExpectations, customer);
+        assertThat(listedItems(), is(Arrays.asList(greatExpectations, pickwickPapers)));
     }
 
     @Test
     public void testReturnItemThatExistsAndIsCheckedOut() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, LibraryItemNotCheckedOutException, CustomerRequiredException {
-        when(greatExpectations.isAvailable()).thenReturn(false);
-        library.returnItem(greatExpectations);
-        verify(greatExpectations, times(1)).checkIn();
+        library.checkoutItem(greatExpectations, customer);
+        library.returnItem(greatExpectations, customer);
+        assertThat(library.findEntryByTitle("Great Expectations").isCheckedOutBy(customer), is(false));
+    }
+
+    @Test(expected = LibraryItemNotCheckedOutException.class)
+    public void testReturnItemCheckedOutBySomeoneElse() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, LibraryItemNotCheckedOutException, CustomerRequiredException {
+        library.checkoutItem(greatExpectations, mock(Customer.class));
+        library.returnItem(greatExpectations, customer);
     }
 
     @Test(expected = LibraryItemNotFoundException.class)
@@ -149,29 +201,29 @@ public class LibraryTests {
 
     @Test(expected = LibraryItemNotFoundException.class)
     public void testReturnItemThatDoesntExist() throws LibraryItemNotFoundException, LibraryItemNotCheckedOutException {
-        library.returnItem(bleakHouse);
+        library.returnItem(bleakHouse, customer);
     }
 
     @Test(expected = LibraryItemNotFoundException.class)
     public void testReturnNullItemThrowsNotFoundException() throws LibraryItemNotFoundException, LibraryItemNotCheckedOutException {
-        library.returnItem(null);
+        library.returnItem(null, customer);
     }
 
     @Test
     public void testReturnItemByTitle() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, LibraryItemNotCheckedOutException, CustomerRequiredException {
-        library.returnItemByTitle("Great Expectations");
-        verify(greatExpectations, times(1)).checkIn();
+        library.checkoutItemByTitle("Great Expectations", customer);
+        library.returnItemByTitle("Great Expectations", customer);
+        assertThat(library.findEntryByTitle("Great Expectations").getAvailableCopies(), is(1));
     }
 
     @Test(expected = LibraryItemNotFoundException.class)
     public void testReturnItemByTitleThatDoesntExist() throws LibraryItemNotFoundException, LibraryItemNotCheckedOutException {
-        library.returnItemByTitle("Hard Times");
+        library.returnItemByTitle("Hard Times", customer);
     }
 
     @Test(expected = LibraryItemNotCheckedOutException.class)
     public void testReturnItemByTitleThatHasntBeenCheckedOut() throws LibraryItemNotFoundException, LibraryItemNotCheckedOutException {
-        doThrow(LibraryItemNotCheckedOutException.class).when(greatExpectations).checkIn();
-        library.returnItemByTitle("Great Expectations");
+        library.returnItemByTitle("Great Expectations", customer);
     }
 
     @Test
@@ -200,4 +252,740 @@ public class LibraryTests {
         assertThat(library.getItemsNameLowercase(), is("book"));
     }
 
+    @Test
+    public void testConcurrentCheckoutsOfTheSameTitleHaveOneWinner() throws InterruptedException {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        final int successes = Concurrently.run(8, new Concurrently.Task() {
+            @Override
+            public void run(int thread) throws Exception {
+                library.checkoutItemByTitle("Bleak House", customer);
+            }
+        });
+        assertThat(successes, is(1));
+        assertThat(library.findEntryByTitle("Bleak House").isCheckedOutBy(customer), is(true));
+    }
+
+    @Test
+    public void testDuplicateItemsBecomeCopiesOfOneTitle() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
+        final Library<Book> library = new Library<>(Arrays.asList(
+                new Book("Bleak House", "Charles Dickens", 1853),
+                new Book("Bleak House", "Charles Dickens", 1853)), Book.class);
+        assertThat(library.size(), is(1));
+        assertThat(library.findEntryByTitle("Bleak House").getTotalCopies(), is(2));
+        library.checkoutItemByTitle("Bleak House", customer);
+        library.checkoutItemByTitle("Bleak House", customer);
+        assertThat(library.getItems().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testAddingCopiesOfATitle() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
+        library.checkoutItemByTitle("Great Expectations", customer);
+        library.addItem(greatExpectations, 40);
+        final CatalogEntry<Book> entry = library.findEntryByTitle("Great Expectations");
+        assertThat(entry.getTotalCopies(), is(41));
+        assertThat(entry.getAvailableCopies(), is(40));
+        assertThat(listedItems(), is(Arrays.asList(greatExpectations, pickwickPapers)));
+    }
+
+    @Test
+    public void testAddingANewTitle() throws LibraryItemNotFoundException {
+        final Book hardTimes = new Book("Hard Times", "Charles Dickens", 1854);
+        library.addItem(hardTimes);
+        assertThat(library.size(), is(3));
+        assertThat(library.verifyItemExists(hardTimes).getTitle(), is("Hard Times"));
+        assertThat(listedItems(), is(Arrays.<Book>asList(greatExpectations, hardTimes, pickwickPapers)));
+    }
+
+    @Test
+    public void testSearchByTitlePrefixIgnoresCase() {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        assertThat(titles(library.searchByTitle("the pick", 10)), is(Arrays.asList("The Pickwick Papers")));
+        assertThat(titles(library.searchByTitle("B", 10)), is(Arrays.asList("Bleak House")));
+    }
+
+    @Test
+    public void testSearchByTitleReturnsMatchesInTitleOrderUpToTheLimit() {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.addItem(new Book("Great Expectations Abridged", "Charles Dickens", 1900));
+        library.addItem(new Book("Great Catsby", "F. Scott Fitzgerald", 1925));
+        assertThat(titles(library.searchByTitle("Great", 10)),
+                is(Arrays.asList("Great Catsby", "Great Expectations", "Great Expectations Abridged")));
+        assertThat(titles(library.searchByTitle("Great", 2)), is(Arrays.asList("Great Catsby", "Great Expectations")));
+    }
+
+    @Test
+    public void testSearchByTitleIncludesCheckedOutTitles() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.checkoutItemByTitle("Bleak House", customer);
+        assertThat(titles(library.searchByTitle("bleak", 10)), is(Arrays.asList("Bleak House")));
+    }
+
+    @Test
+    public void testSearchByTitleWithNoMatches() {
+        assertThat(library.searchByTitle("Hard", 10).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testFindByIndexedAttributeIgnoresCaseAndIsInTitleOrder() {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.addIndex(Book.AUTHOR);
+        library.addItem(new Book("Emma", "Jane Austen", 1815));
+        library.addItem(new Book("A Christmas Carol", "Charles Dickens", 1843));
+        assertThat(titles(library.findByAttribute(Book.AUTHOR, "charles dickens")),
+                is(Arrays.asList("A Christmas Carol", "Bleak House", "Great Expectations", "The Pickwick Papers")));
+        assertThat(titles(library.findByAttribute(Book.AUTHOR, "Jane Austen")), is(Arrays.asList("Emma")));
+        assertThat(library.findByAttribute(Book.AUTHOR, "Thomas Hardy").isEmpty(), is(true));
+        assertThat(library.getIndexes(), is(Arrays.asList(Book.AUTHOR)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindByAttributeThatIsNotIndexed() {
+        library.findByAttribute(Book.AUTHOR, "Charles Dickens");
+    }
+
+    @Test
+    public void testItemsArePagedInTitleOrderEitherSideOfATitle() {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.addItem(new Book("Hard Times", "Charles Dickens", 1854));
+        assertThat(titles(library.getItemsAfter(null, 2)), is(Arrays.asList("Bleak House", "Great Expectations")));
+        assertThat(titles(library.getItemsAfter("Great Expectations", 2)), is(Arrays.asList("Hard Times", "The Pickwick Papers")));
+        assertThat(titles(library.getItemsBefore("Hard Times", 2)), is(Arrays.asList("Bleak House", "Great Expectations")));
+        assertThat(titles(library.getItemsBefore(null, 3)), is(Arrays.asList("Great Expectations", "Hard Times", "The Pickwick Papers")));
+        assertThat(library.getItemsAfter("The Pickwick Papers", 2).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testPagingFromATitleThatHasSinceBeenCheckedOut() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.checkoutItemByTitle("Great Expectations", customer);
+        assertThat(titles(library.getItemsAfter("Great Expectations", 2)), is(Arrays.asList("The Pickwick Papers")));
+        assertThat(titles(library.getItemsBefore("Great Expectations", 2)), is(Arrays.asList("Bleak House")));
+    }
+
+    @Test
+    public void testLibraryBackedByAColumnarStore() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException, LibraryItemNotCheckedOutException {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class, new ColumnarCatalogStore<>(Book.TYPE));
+        library.addIndex(Book.AUTHOR);
+        library.addItem(new Book("Hard Times", "Charles Dickens", 1854), 2);
+        library.checkoutItemByTitle("Bleak House", customer);
+        assertThat(titles(new ArrayList<>(library.getItems())), is(Arrays.asList("Great Expectations", "Hard Times", "The Pickwick Papers")));
+        assertThat(titles(library.searchByTitle("hard", 10)), is(Arrays.asList("Hard Times")));
+        assertThat(library.findByAttribute(Book.AUTHOR, "Charles Dickens").size(), is(4));
+        assertThat(library.getCSVHeaders(), is("Title, Author, Year"));
+
+        final Book bleakHouse = library.findItemByTitle("Bleak House");
+        assertThat(bleakHouse, is(new Book("Bleak House", "Charles Dickens", 1853)));
+        library.returnItem(bleakHouse, customer);
+        assertThat(library.findEntryByTitle("Bleak House").isAvailable(), is(true));
+    }
+
+    @Test
+    public void testColumnarLibraryOrdersTitlesAddedOutOfOrder() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class, new ColumnarCatalogStore<>(Book.TYPE));
+        library.addItem(new Book("\u00c9mile", "Jean-Jacques Rousseau", 1762));
+        library.addItem(new Book("a Tale of Two Cities", "Charles Dickens", 1859));
+        library.addItem(new Book("Agnes Grey", "Anne Bront\u00eb", 1847));
+        library.addItem(new Book("bleak house", "Charles Dickens", 1853));
+        library.checkoutItemByTitle("Agnes Grey", customer);
+        assertThat(titles(library.getItemsAfter(null, 10)), is(Arrays.asList("Bleak House", "Great Expectations",
+                "The Pickwick Papers", "a Tale of Two Cities", "bleak house", "\u00c9mile")));
+        assertThat(titles(library.getItemsBefore("bleak house", 2)), is(Arrays.asList("The Pickwick Papers", "a Tale of Two Cities")));
+        assertThat(titles(library.searchByTitle("", 10)), is(Arrays.asList("a Tale of Two Cities", "Agnes Grey",
+                "Bleak House", "bleak house", "Great Expectations", "The Pickwick Papers", "\u00c9mile")));
+        assertThat(titles(library.searchByTitle("\u00e9", 10)), is(Arrays.asList("\u00c9mile")));
+        assertThat(library.findEntryByTitle("\u00c9mile").getId(), is(3));
+    }
+
+    @Test
+    public void testAvailableTitlesAreListedPastRunsOnLoanAndThroughAMerge() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, LibraryItemNotCheckedOutException, CustomerRequiredException {
+        final List<Book> items = new ArrayList<>();
+        for(int i = 0; i < 5000; i++)
+            items.add(new Book(String.format("Title %04d", i), "Author", 1900));
+        final Library<Book> library = new Library<>(items, Book.class);
+        for(int i = 0; i < 5000; i++)
+            if(i != 10 && i != 4000)
+                library.checkoutItemByTitle(String.format("Title %04d", i), customer);
+        assertThat(titles(library.getItemsAfter(null, 10)), is(Arrays.asList("Title 0010", "Title 4000")));
+        assertThat(titles(library.getItemsBefore("Title 4000", 10)), is(Arrays.asList("Title 0010")));
+
+        library.addItem(new Book("Title 2500a", "Author", 1900));
+        library.returnItemByTitle("Title 4999", customer);
+        assertThat(titles(library.getItemsAfter("Title 0010", 10)), is(Arrays.asList("Title 2500a", "Title 4000", "Title 4999")));
+        assertThat(titles(library.getItemsBefore(null, 2)), is(Arrays.asList("Title 4000", "Title 4999")));
+
+        library.checkoutItemByTitle("Title 4000", customer);
+        assertThat(titles(new ArrayList<>(library.getItems())), is(Arrays.asList("Title 0010", "Title 2500a", "Title 4999")));
+
+        final Library<Book> growing = new Library<>(Book.getBooks(), Book.class);
+        growing.checkoutItemByTitle("Great Expectations", customer);
+        for(int i = 0; i < 20; i++)
+            growing.addItem(new Book(String.format("Volume %02d", i), "Author", 1900));
+        assertThat(titles(growing.getItemsAfter("The Pickwick Papers", 2)), is(Arrays.asList("Volume 00", "Volume 01")));
+        assertThat(titles(growing.getItemsBefore("The Pickwick Papers", 2)), is(Arrays.asList("Bleak House")));
+    }
+
+    @Test
+    public void testTitlesOnlyGetAnEntryOnceLentOrGivenMoreCopies()throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.addItem(new Book("Hard Times", "Charles Dickens", 1854), 2);
+        assertThat(library.getItems().size(), is(4));
+        assertThat(library.searchByTitle("", 10).size(), is(4));
+        assertThat(library.countEntries(), is(1));
+
+        library.checkoutItemByTitle("Bleak House", customer);
+        assertThat(library.countEntries(), is(2));
+        assertThat(library.getItems().size(), is(3));
+        assertThat(library.findEntryByTitle("Bleak House"), is(library.getLoans(customer).get(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLibraryCannotShareAStore() {
+        final ColumnarCatalogStore<Book> store = new ColumnarCatalogStore<>(Book.TYPE);
+        new Library<>(Book.getBooks(), Book.class, store);
+        new Library<>(Book.getBooks(), Book.class, store);
+    }
+
+    @Test
+    public void testLibraryOpenedFromACatalogFile() throws Exception {
+        final Path path = Files.createTempFile("books", ".catalog");
+        try {
+            final List<Book> books = new ArrayList<>(Book.getBooks());
+            books.add(new Book("Bleak House", "Charles Dickens", 1853));
+            CatalogFile.write(path, books, Book.TYPE);
+            final Library<Book> library = new Library<>(path, Book.class, Book.TYPE);
+            library.addIndex(Book.AUTHOR);
+            library.checkoutItemByTitle("Great Expectations", customer);
+            library.addItem(new Book("Hard Times", "Charles Dickens", 1854));
+
+            assertThat(library.size(), is(4));
+            assertThat(library.findEntryByTitle("Bleak House").getTotalCopies(), is(2));
+            assertThat(titles(new ArrayList<>(library.getItems())), is(Arrays.asList("Bleak House", "Hard Times", "The Pickwick Papers")));
+            assertThat(library.findByAttribute(Book.AUTHOR, "Charles Dickens").size(), is(4));
+            assertThat(library.getCSVHeaders(), is("Title, Author, Year"));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testAddingAnIndexDoesNotIndexACatalogFile() throws Exception {
+        final Path path = Files.createTempFile("books", ".catalog");
+        try {
+            CatalogFile.write(path, Book.getBooks(), Book.TYPE);
+            final Library<Book> library = new Library<>(path, Book.class, Book.TYPE);
+            library.addIndex(Book.AUTHOR);
+            assertThat(library.isIndexed(), is(false));
+            assertThat(titles(library.findByAttribute(Book.AUTHOR, "charles dickens")),
+                    is(Arrays.asList("Bleak House", "Great Expectations", "The Pickwick Papers")));
+            assertThat(library.isIndexed(), is(true));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testIndexAddedToALibraryInUseIsFilledWhenFirstUsed() {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.addItem(new Book("Hard Times", "Charles Dickens", 1854));
+        library.addIndex(Book.AUTHOR);
+        library.addItem(new Book("Emma", "Jane Austen", 1815));
+        assertThat(library.findByAttribute(Book.AUTHOR, "Charles Dickens").size(), is(4));
+        assertThat(titles(library.findByAttribute(Book.AUTHOR, "jane austen")), is(Arrays.asList("Emma")));
+        library.addItem(new Book("Persuasion", "Jane Austen", 1817));
+        assertThat(library.findByAttribute(Book.AUTHOR, "Jane Austen").size(), is(2));
+    }
+
+    @Test
+    public void testFindByYearRangeIsInYearOrder() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.addItem(new Book("Hard Times", "Charles Dickens", 1854));
+        library.checkoutItemByTitle("Bleak House", customer);
+        assertThat(titles(library.findByYear(1840, 1860)), is(Arrays.asList("Bleak House", "Hard Times", "Great Expectations")));
+        assertThat(titles(library.findByYear(1837, 1837)), is(Arrays.asList("The Pickwick Papers")));
+        assertThat(library.findByYear(1900, 2000).isEmpty(), is(true));
+        assertThat(library.findByYear(1860, 1840).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testFindByMinimumRatingIsHighestRatedFirst() {
+        final Library<Movie> library = new Library<>(Movie.getMovies(), Movie.class);
+        library.addItem(Movie.createRatedMovie("Jackie Brown", 1997, "Quentin Tarantino", 8));
+        library.addItem(Movie.createRatedMovie("Death Proof", 2007, "Quentin Tarantino", 7));
+        assertThat(library.isRated(), is(true));
+        assertThat(movieTitles(library.findByRating(8)), is(Arrays.asList("Pulp Fiction", "Reservoir Dogs", "Jackie Brown")));
+        assertThat(movieTitles(library.findByRating(1)).size(), is(4));
+        assertThat(library.findByRating(10).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testHoldIsPlacedOnlyOnACheckedOutTitle() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.checkoutItemByTitle("Bleak House", customer);
+        assertThat(library.placeHoldByTitle("Bleak House", otherCustomer), is(0));
+        library.returnItemByTitle("Bleak House", customer);
+        assertThat(library.findEntryByTitle("Bleak House").isCheckedOutBy(otherCustomer), is(true));
+        assertThat(library.countAvailable(), is(2));
+    }
+
+    @Test(expected = LibraryItemAvailableException.class)
+    public void testHoldCannotBePlacedOnAnAvailableTitle() throws Exception {
+        new Library<>(Book.getBooks(), Book.class).placeHoldByTitle("Bleak House", customer);
+    }
+
+    @Test(expected = LibraryItemNotFoundException.class)
+    public void testHoldCannotBePlacedOnAMissingTitle() throws Exception {
+        new Library<>(Book.getBooks(), Book.class).placeHoldByTitle("Hard Times", customer);
+    }
+
+    @Test
+    public void testOverdueLoansAreSweptIntoNotices() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        final Clock clock = mock(Clock.class);
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015);
+        library.setLoanPolicy(clock, 21 * LoanTimer.DAY_MILLIS, 7 * LoanTimer.DAY_MILLIS);
+        library.checkoutItemByTitle("Bleak House", customer);
+        library.checkoutItemByTitle("Great Expectations", customer);
+        library.returnItemByTitle("Great Expectations", customer);
+        assertThat(library.sweepDueDates().isEmpty(), is(true));
+
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015 + 21 * LoanTimer.DAY_MILLIS - 1);
+        assertThat(library.sweepDueDates().isEmpty(), is(true));
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015 + 22 * LoanTimer.DAY_MILLIS);
+        final List<LoanNotice> notices = library.sweepDueDates();
+        assertThat(notices.size(), is(1));
+        assertThat(notices.get(0).getCustomer(), is(customer));
+        assertThat(notices.get(0).getMessage(), is("Bleak House was due back on 2015-01-22 and is overdue."));
+        assertThat(library.sweepDueDates().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testExpiredHoldsAreSkippedAndNoticed() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        final Customer thirdCustomer = mock(Customer.class);
+        final Clock clock = mock(Clock.class);
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015);
+        library.setLoanPolicy(clock, 21 * LoanTimer.DAY_MILLIS, 7 * LoanTimer.DAY_MILLIS);
+        library.checkoutItemByTitle("Bleak House", customer);
+        library.placeHoldByTitle("Bleak House", otherCustomer);
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015 + LoanTimer.DAY_MILLIS);
+        library.placeHoldByTitle("Bleak House", thirdCustomer);
+
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015 + 7 * LoanTimer.DAY_MILLIS);
+        final List<LoanNotice> notices = library.sweepDueDates();
+        assertThat(notices.size(), is(1));
+        assertThat(notices.get(0).getCustomer(), is(otherCustomer));
+        assertThat(notices.get(0).getMessage(), is("Your hold on Bleak House has expired."));
+        assertThat(library.findEntryByTitle("Bleak House").getHoldCount(), is(1));
+
+        library.returnItemByTitle("Bleak House", customer);
+        assertThat(library.findEntryByTitle("Bleak House").isCheckedOutBy(otherCustomer), is(false));
+        assertThat(library.findEntryByTitle("Bleak House").isCheckedOutBy(thirdCustomer), is(true));
+        assertThat(library.sweepDueDates().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testSweeperPostsNoticesToCustomers() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        final Customer borrower = new Customer("Charles", "Dickens", "charles@example.com", "Password1", "123-4567");
+        final Clock clock = mock(Clock.class);
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015);
+        library.setLoanPolicy(clock, LoanTimer.DAY_MILLIS, LoanTimer.DAY_MILLIS);
+        library.checkoutItemByTitle("Bleak House", borrower);
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015 + 2 * LoanTimer.DAY_MILLIS);
+        new LoanSweeper(library).run();
+        assertThat(borrower.takeNotices(), is(Arrays.asList("Bleak House was due back on 2015-01-02 and is overdue.")));
+    }
+
+    @Test
+    public void testBatchCheckoutTakesEveryTitle() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.addItem(new Book("Hard Times", "Charles Dickens", 1854), 2);
+        library.checkoutItemsByTitle(Arrays.asList("Hard Times", "Bleak House", "Hard Times"), customer);
+        assertThat(library.findEntryByTitle("Bleak House").isCheckedOutBy(customer), is(true));
+        assertThat(library.findEntryByTitle("Hard Times").getAvailableCopies(), is(0));
+        assertThat(titles(new ArrayList<>(library.getItems())), is(Arrays.asList("Great Expectations", "The Pickwick Papers")));
+    }
+
+    @Test
+    public void testBatchCheckoutTakesNothingIfATitleIsUnavailable() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.checkoutItemByTitle("Bleak House", otherCustomer);
+        try {
+            library.checkoutItemsByTitle(Arrays.asList("Great Expectations", "Bleak House", "The Pickwick Papers"), customer);
+            fail();
+        } catch (LibraryItemNotAvailableException e) {}
+        assertThat(library.findEntryByTitle("Great Expectations").isCheckedOutBy(customer), is(false));
+        assertThat(library.findEntryByTitle("The Pickwick Papers").isCheckedOutBy(customer), is(false));
+        assertThat(library.countAvailable(), is(2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatchCheckoutThatTakesNothingTellsListenersNothing() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.checkoutItemByTitle("The Pickwick Papers", otherCustomer);
+        final CatalogEntry.LoanListener<Book> listener = mock(CatalogEntry.LoanListener.class);
+        library.addLoanListener(listener);
+        try {
+            library.checkoutItemsByTitle(Arrays.asList("Great Expectations", "Bleak House", "The Pickwick Papers"), customer);
+            fail();
+        } catch (LibraryItemNotAvailableException e) {}
+        verifyZeroInteractions(listener);
+        assertThat(library.countLoans(customer), is(0));
+        assertThat(titles(new ArrayList<>(library.getItems())), is(Arrays.asList("Bleak House", "Great Expectations")));
+    }
+
+    @Test
+    public void testHoldPlacedOnATitleReservedByAFailedBatchIsFilled() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        final CatalogEntry<Book> bleakHouse = library.findEntryByTitle("Bleak House");
+        final CatalogEntry.Copy copy = bleakHouse.reserveCheckOut();
+        library.placeHoldByTitle("Bleak House", otherCustomer);
+        bleakHouse.cancelCheckOut(copy);
+        assertThat(bleakHouse.isCheckedOutBy(otherCustomer), is(true));
+        assertThat(library.countAvailable(), is(2));
+    }
+
+    @Test
+    public void testBatchCheckoutTakesNothingIfATitleIsMissing() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        try {
+            library.checkoutItemsByTitle(Arrays.asList("Great Expectations", "Hard Times"), customer);
+            fail();
+        } catch (LibraryItemNotFoundException e) {}
+        assertThat(library.countAvailable(), is(3));
+    }
+
+    @Test(expected = CustomerRequiredException.class)
+    public void testBatchCheckoutNeedsACustomer() throws Exception {
+        library.checkoutItemsByTitle(Arrays.asList("Great Expectations"), null);
+    }
+
+    @Test
+    public void testBatchReturnGivesBackEveryTitle() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.checkoutItemsByTitle(Arrays.asList("Great Expectations", "Bleak House"), customer);
+        library.returnItemsByTitle(Arrays.asList("Bleak House", "Great Expectations"), customer);
+        assertThat(library.countAvailable(), is(3));
+        assertThat(library.findEntryByTitle("Bleak House").isCheckedOutBy(customer), is(false));
+    }
+
+    @Test
+    public void testLoansAreIndexedByCustomerAsTheyAreMadeAndReturned() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.addItem(new Book("Hard Times", "Charles Dickens", 1854), 2);
+        library.checkoutItemByTitle("Hard Times", customer);
+        library.checkoutItemsByTitle(Arrays.asList("Bleak House", "Hard Times"), customer);
+        library.checkoutItemByTitle("Great Expectations", otherCustomer);
+        assertThat(titles(library.getLoans(customer)), is(Arrays.asList("Hard Times", "Bleak House", "Hard Times")));
+        assertThat(titles(library.getLoans(otherCustomer)), is(Arrays.asList("Great Expectations")));
+
+        library.returnItemByTitle("Hard Times", customer);
+        library.returnItemsByTitle(Arrays.asList("Bleak House"), customer);
+        assertThat(titles(library.getLoans(customer)), is(Arrays.asList("Hard Times")));
+        assertThat(library.getLoans(null).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testLoansIndexFollowsCopiesHandedToHolders() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.checkoutItemByTitle("Bleak House", customer);
+        library.placeHoldByTitle("Bleak House", otherCustomer);
+        library.returnItemByTitle("Bleak House", customer);
+        assertThat(library.getLoans(customer).isEmpty(), is(true));
+        assertThat(titles(library.getLoans(otherCustomer)), is(Arrays.asList("Bleak House")));
+    }
+
+    @Test
+    public void testLoansIndexIsUnchangedByAFailedBatch() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.checkoutItemByTitle("Bleak House", otherCustomer);
+        library.checkoutItemByTitle("Great Expectations", customer);
+        try {
+            library.checkoutItemsByTitle(Arrays.asList("The Pickwick Papers", "Bleak House"), customer);
+            fail();
+        } catch (LibraryItemNotAvailableException e) {}
+        try {
+            library.returnItemsByTitle(Arrays.asList("Great Expectations", "Bleak House"), customer);
+            fail();
+        } catch (LibraryItemNotCheckedOutException e) {}
+        assertThat(titles(library.getLoans(customer)), is(Arrays.asList("Great Expectations")));
+    }
+
+    @Test
+    public void testRestoredLoansAreIndexedByCustomer() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        final int bleakHouse = library.findEntryByTitle("Bleak House").getId();
+        final int greatExpectations = library.findEntryByTitle("Great Expectations").getId();
+        library.restoreLoan(bleakHouse, 0, customer, START_OF_2015);
+        library.restoreLoan(bleakHouse, 0, customer, START_OF_2015);
+        library.restoreLoan(greatExpectations, 0, customer, START_OF_2015);
+        library.restoreReturn(greatExpectations, 0, customer);
+        library.restoreLoan(greatExpectations, 0, otherCustomer, START_OF_2015);
+        library.finishRestore();
+        assertThat(titles(library.getLoans(customer)), is(Arrays.asList("Bleak House")));
+        assertThat(titles(library.getLoans(otherCustomer)), is(Arrays.asList("Great Expectations")));
+    }
+
+    @Test
+    public void testBatchReturnGivesBackNothingIfATitleWasNotCheckedOut() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.checkoutItemsByTitle(Arrays.asList("Great Expectations", "Bleak House"), customer);
+        try {
+            library.returnItemsByTitle(Arrays.asList("Great Expectations", "Bleak House", "The Pickwick Papers"), customer);
+            fail();
+        } catch (LibraryItemNotCheckedOutException e) {}
+        assertThat(library.findEntryByTitle("Great Expectations").isCheckedOutBy(customer), is(true));
+        assertThat(library.findEntryByTitle("Bleak House").isCheckedOutBy(customer), is(true));
+        assertThat(library.countAvailable(), is(1));
+    }
+
+    @Test
+    public void testConcurrentBatchCheckoutsNeverSplitABatch() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        final List<String> forwards = Arrays.asList("Bleak House", "Great Expectations", "The Pickwick Papers");
+        final List<String> backwards = Arrays.asList("The Pickwick Papers", "Great Expectations", "Bleak House");
+        final Customer[] customers = {customer, otherCustomer};
+        final int done = Concurrently.run(customers.length, new Concurrently.Task() {
+            @Override
+            public void run(int thread) throws Exception {
+                final Customer borrower = customers[thread];
+                final List<String> titles = thread == 0 ? forwards : backwards;
+                for(int i = 0; i < 2000; i++) {
+                    try {
+                        library.checkoutItemsByTitle(titles, borrower);
+                    } catch (LibraryItemNotAvailableException e) {
+                        continue;
+                    }
+                    for(final String title : titles)
+                        assertThat(library.findEntryByTitle(title).isCheckedOutBy(borrower), is(true));
+                    library.returnItemsByTitle(titles, borrower);
+                }
+            }
+        });
+        assertThat(done, is(customers.length));
+        assertThat(library.countAvailable(), is(3));
+    }
+
+    @Test
+    public void testLoanLimitStopsCheckoutsUntilACopyComesBack() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.setLoanLimit(2);
+        library.checkoutItemByTitle("Bleak House", customer);
+        library.checkoutItemByTitle("Great Expectations", customer);
+        try {
+            library.checkoutItemByTitle("The Pickwick Papers", customer);
+            fail();
+        } catch (LoanLimitExceededException e) {}
+        assertThat(library.findEntryByTitle("The Pickwick Papers").isAvailable(), is(true));
+        library.checkoutItemByTitle("The Pickwick Papers", otherCustomer);
+
+        library.returnItemByTitle("Bleak House", customer);
+        library.checkoutItemByTitle("Bleak House", customer);
+        assertThat(library.countLoans(customer), is(2));
+    }
+
+    @Test
+    public void testFailedCheckoutsGiveBackTheirAllowance() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.setLoanLimit(2);
+        library.checkoutItemByTitle("Bleak House", otherCustomer);
+        try {
+            library.checkoutItemByTitle("Bleak House", customer);
+            fail();
+        } catch (LibraryItemNotAvailableException e) {}
+        try {
+            library.checkoutItemsByTitle(Arrays.asList("Great Expectations", "Bleak House"), customer);
+            fail();
+        } catch (LibraryItemNotAvailableException e) {}
+        try {
+            library.checkoutItemsByTitle(Arrays.asList("Great Expectations", "The Pickwick Papers", "Great Expectations"), customer);
+            fail();
+        } catch (LoanLimitExceededException e) {}
+        assertThat(library.countLoans(customer), is(0));
+        library.checkoutItemsByTitle(Arrays.asList("Great Expectations", "The Pickwick Papers"), customer);
+        assertThat(library.countLoans(customer), is(2));
+    }
+
+    @Test
+    public void testHoldsCountAgainstTheLoanLimitUntilTheyExpire() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        final Clock clock = mock(Clock.class);
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015);
+        library.setLoanPolicy(clock, 21 * LoanTimer.DAY_MILLIS, 7 * LoanTimer.DAY_MILLIS);
+        library.setLoanLimit(1);
+        library.checkoutItemByTitle("Bleak House", customer);
+        library.placeHoldByTitle("Bleak House", otherCustomer);
+        try {
+            library.checkoutItemByTitle("Great Expectations", otherCustomer);
+            fail();
+        } catch (LoanLimitExceededException e) {}
+
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015 + 7 * LoanTimer.DAY_MILLIS);
+        library.sweepDueDates();
+        assertThat(library.countLoans(otherCustomer), is(0));
+        library.checkoutItemByTitle("Great Expectations", otherCustomer);
+    }
+
+    @Test
+    public void testFilledHoldIsTheHoldersLoan() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.setLoanLimit(1);
+        library.checkoutItemByTitle("Bleak House", customer);
+        library.placeHoldByTitle("Bleak House", otherCustomer);
+        library.returnItemByTitle("Bleak House", customer);
+        assertThat(library.countLoans(customer), is(0));
+        assertThat(library.countLoans(otherCustomer), is(1));
+        library.returnItemByTitle("Bleak House", otherCustomer);
+        assertThat(library.countLoans(otherCustomer), is(0));
+    }
+
+    @Test
+    public void testRestoredLoansCountAgainstTheLoanLimit() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.setLoanLimit(1);
+        final int bleakHouse = library.findEntryByTitle("Bleak House").getId();
+        library.restoreLoan(bleakHouse, 0, customer, START_OF_2015);
+        library.restoreLoan(bleakHouse, 0, customer, START_OF_2015);
+        library.finishRestore();
+        assertThat(library.countLoans(customer), is(1));
+        try {
+            library.checkoutItemByTitle("Great Expectations", customer);
+            fail();
+        } catch (LoanLimitExceededException e) {}
+    }
+
+    @Test
+    public void testConcurrentCheckoutsFromOneCustomerNeverPassTheLimit() throws Exception {
+        final List<Book> books = new ArrayList<>();
+        for(int i = 0; i < 100; i++)
+            books.add(new Book("Title " + i, "Charles Dickens", 1860));
+        final Library<Book> library = new Library<>(books, Book.class);
+        library.setLoanLimit(10);
+        final AtomicInteger lent = new AtomicInteger();
+        final int done = Concurrently.run(8, new Concurrently.Task() {
+            @Override
+            public void run(int thread) throws Exception {
+                for(int i = thread; i < 100; i += 8) {
+                    try {
+                        library.checkoutItemByTitle("Title " + i, customer);
+                        lent.incrementAndGet();
+                    } catch (LoanLimitExceededException e) {}
+                }
+            }
+        });
+        assertThat(done, is(8));
+        assertThat(lent.get(), is(10));
+        assertThat(library.countLoans(customer), is(10));
+        assertThat(library.getLoans(customer).size(), is(10));
+        assertThat(library.countAvailable(), is(90));
+    }
+
+    @Test
+    public void testSessionsOfOneCustomerReturningEachOthersCopiesKeepTheirLoansIndexed() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.addItem(new Book("Hard Times", "Charles Dickens", 1854), 4);
+        final int done = Concurrently.run(4, new Concurrently.Task() {
+            @Override
+            public void run(int thread) throws Exception {
+                for(int i = 0; i < 5000; i++) {
+                    library.checkoutItemByTitle("Hard Times", customer);
+                    library.returnItemByTitle("Hard Times", customer);
+                }
+            }
+        });
+        assertThat(done, is(4));
+        assertThat(library.getLoans(customer).isEmpty(), is(true));
+        assertThat(library.countLoans(customer), is(0));
+        assertThat(library.findEntryByTitle("Hard Times").getAvailableCopies(), is(4));
+    }
+
+    @Test
+    public void testAvailableTitlesAreCountedAsTheyComeAndGo() throws LibraryItemNotFoundException, LibraryItemNotAvailableException, CustomerRequiredException, LibraryItemNotCheckedOutException {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        assertThat(library.countAvailable(), is(3));
+        library.checkoutItemByTitle("Bleak House", customer);
+        assertThat(library.countAvailable(), is(2));
+        assertThat(library.selectAvailable().contains(library.findEntryByTitle("Bleak House").getId()), is(false));
+        library.returnItemByTitle("Bleak House", customer);
+        assertThat(library.countAvailable(), is(3));
+    }
+
+    @Test
+    public void testFiltersCombineClausesInTitleOrder() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.addIndex(Book.AUTHOR);
+        library.addItem(new Book("Emma", "Jane Austen", 1815));
+        library.addItem(new Book("Hard Times", "Charles Dickens", 1854));
+        library.checkoutItemByTitle("Bleak House", customer);
+
+        assertThat(titles(library.findMatching(ItemFilter.parse("author charles dickens and year 1800-1855", library))),
+                is(Arrays.asList("Bleak House", "Hard Times", "The Pickwick Papers")));
+        assertThat(titles(library.findMatching(ItemFilter.parse("Author Charles Dickens and year 1840-1860 and available", library))),
+                is(Arrays.asList("Great Expectations", "Hard Times")));
+        assertThat(titles(library.findMatching(ItemFilter.parse("author jane austen or year 1853", library))),
+                is(Arrays.asList("Bleak House", "Emma")));
+        assertThat(library.countMatching(ItemFilter.parse("available", library)), is(4));
+        assertThat(library.countMatching(ItemFilter.parse("year 1900 and available", library)), is(0));
+    }
+
+    @Test
+    public void testFilterValuesMayContainAndOrOr() throws Exception {
+        final Library<Book> library = new Library<>(Book.getBooks(), Book.class);
+        library.addIndex(Book.AUTHOR);
+        library.addItem(new Book("Classics Collection", "Barnes and Noble", 2004));
+        library.addItem(new Book("The Accidental Tourist", "Anne Tyler", 1985));
+        library.addItem(new Book("Either or Neither", "Either or Neither", 1990));
+
+        assertThat(titles(library.findMatching(ItemFilter.parse("author Barnes and Noble", library))),
+                is(Arrays.asList("Classics Collection")));
+        assertThat(titles(library.findMatching(ItemFilter.parse("author barnes and noble and available or author anne tyler", library))),
+                is(Arrays.asList("Classics Collection", "The Accidental Tourist")));
+        assertThat(titles(library.findMatching(ItemFilter.parse("author Either or Neither or year 1837", library))),
+                is(Arrays.asList("Either or Neither", "The Pickwick Papers")));
+    }
+
+    @Test
+    public void testMoviesCanBeFilteredByMinimumRating() throws Exception {
+        final Library<Movie> library = new Library<>(Movie.getMovies(), Movie.class);
+        assertThat(movieTitles(library.findMatching(ItemFilter.parse("rating >= 9 or year 2003", library))),
+                is(Arrays.asList("Kill Bill", "Pulp Fiction")));
+    }
+
+    @Test(expected = CommandNotFoundException.class)
+    public void testUnknownFilterClausesAreRejected() throws Exception {
+        ItemFilter.parse("publisher Chapman and Hall", new Library<>(Book.getBooks(), Book.class));
+    }
+
+    @Test(expected = CommandNotFoundException.class)
+    public void testBooksCannotBeFilteredByRating() throws Exception {
+        ItemFilter.parse("rating >= 5", new Library<>(Book.getBooks(), Book.class));
+    }
+
+    @Test
+    public void testBooksAreNotRated() {
+        assertThat(library.isRated(), is(false));
+    }
+
+    private List<String> movieTitles(List<CatalogEntry<Movie>> entries) {
+        final List<String> titles = new ArrayList<>();
+        for(final CatalogEntry<Movie> entry : entries)
+            titles.add(entry.getTitle());
+        return titles;
+    }
+
+    private List<String> titles(List<CatalogEntry<Book>> entries) {
+        final List<String> titles = new ArrayList<>();
+        for(final CatalogEntry<Book> entry : entries)
+            titles.add(entry.getTitle());
+        return titles;
+    }
+
+    private List<Book> listedItems() {
+        final List<Book> listed = new ArrayList<>();
+        for(final CatalogEntry<Book> entry : library.getItems())
+            listed.add(entry.getItem());
+        return listed;
+    }
+
 }
@@ -0,0 +1,464 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.domain.Movie;
+import com.twu.biblioteca.exceptions.LibraryItemNotAvailableException;
+import com.twu.biblioteca.helper.Clock;
+import com.twu.biblioteca.helper.Concurrently;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LoanJournalTests {
+
+    private static final long START_OF_2015 = 1420070400000L;
+    private static final int SMALL_SEGMENT_SIZE = 16 + 40 * 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private Clock clock;
+    private SecurityContext securityContext;
+    private Customer charles;
+    private Customer quentin;
+    private Library<Book> books;
+    private Library<Movie> movies;
+    private LoanJournal journal;
+
+    @Before
+    public void setup() throws IOException {
+        directory = folder.newFolder("journal").toPath();
+        clock = mock(Clock.class);
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015);
+        restart();
+    }
+
+    private LoanJournal restart() throws IOException {
+        return restart(LoanJournal.DEFAULT_SEGMENT_SIZE);
+    }
+
+    @After
+    public void teardown() {
+        journal.close();
+    }
+
+    private LoanJournal restart(int segmentSize) throws IOException {
+        return restart(segmentSize, LoanJournal.Durability.GROUP);
+    }
+
+    private LoanJournal restart(int segmentSize, LoanJournal.Durability durability) throws IOException {
+        if(journal != null)
+            journal.close();
+        securityContext = new SecurityContext(Customer.getCustomers());
+        charles = securityContext.getCustomer(0);
+        quentin = securityContext.getCustomer(1);
+        books = new Library<>(Book.getBooks(), Book.class);
+        books.setLoanPolicy(clock, 21 * LoanTimer.DAY_MILLIS, 7 * LoanTimer.DAY_MILLIS);
+        movies = new Library<>(Movie.getMovies(), Movie.class);
+        journal = new LoanJournal(directory, segmentSize, durability, LoanJournal.DEFAULT_MAX_LATENCY_MICROS, clock,
+                securityContext, books, movies);
+        return journal;
+    }
+
+    @Test
+    public void testCustomersAreNumberedByLibraryNumber() {
+        assertThat(charles.getLibraryNumber(), is("123-4567"));
+        assertThat(securityContext.getCustomerId(quentin), is(1));
+        assertThat(securityContext.getCustomerId(mock(Customer.class)), is(-1));
+    }
+
+    @Test
+    public void testLoansAndReturnsAreReplayed() throws Exception {
+        books.checkoutItemByTitle("Bleak House", charles);
+        books.checkoutItemByTitle("Great Expectations", charles);
+        books.returnItemByTitle("Great Expectations", charles);
+        movies.checkoutItemByTitle("Pulp Fiction", quentin);
+
+        final LoanJournal journal = restart();
+        assertThat(journal.getRecordsReplayed(), is(4L));
+        assertThat(books.findEntryByTitle("Bleak House").isCheckedOutBy(charles), is(true));
+        assertThat(books.findEntryByTitle("Great Expectations").isAvailable(), is(true));
+        assertThat(movies.findEntryByTitle("Pulp Fiction").isCheckedOutBy(quentin), is(true));
+        assertThat(books.countAvailable(), is(2));
+
+        books.returnItemByTitle("Bleak House", charles);
+        assertThat(books.countAvailable(), is(3));
+    }
+
+    @Test
+    public void testHandoffsToHoldersAndAbandonedBatchesAreReplayed() throws Exception {
+        books.checkoutItemByTitle("Bleak House", charles);
+        books.placeHoldByTitle("Bleak House", quentin);
+        books.returnItemByTitle("Bleak House", charles);
+        try {
+            books.checkoutItemsByTitle(Arrays.asList("Great Expectations", "Bleak House"), charles);
+            fail();
+        } catch (LibraryItemNotAvailableException e) {}
+
+        restart();
+        assertThat(books.findEntryByTitle("Bleak House").isCheckedOutBy(quentin), is(true));
+        assertThat(books.findEntryByTitle("Great Expectations").isAvailable(), is(true));
+    }
+
+    @Test
+    public void testLoginsAreJournaled() throws Exception {
+        final LoanJournal journal = restart();
+        securityContext.login("123-4567", "Password1");
+        assertThat(journal.getNextSequence(), is(2L));
+        assertThat(restart().getRecordsReplayed(), is(1L));
+    }
+
+    @Test
+    public void testDueDatesAreReplayed() throws Exception {
+        books.checkoutItemByTitle("Bleak House", charles);
+        restart();
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015 + 22 * LoanTimer.DAY_MILLIS);
+        final List<LoanNotice> notices = books.sweepDueDates();
+        assertThat(notices.size(), is(1));
+        assertThat(notices.get(0).getMessage(), is("Bleak House was due back on 2015-01-22 and is overdue."));
+    }
+
+    @Test
+    public void testJournalRollsOntoNewSegments() throws Exception {
+        restart(SMALL_SEGMENT_SIZE);
+        for(int i = 0; i < 5; i++) {
+            books.checkoutItemByTitle("Bleak House", charles);
+            books.returnItemByTitle("Bleak House", charles);
+        }
+        books.checkoutItemByTitle("The Pickwick Papers", quentin);
+        assertThat(segments().size(), is(3));
+
+        final LoanJournal journal = restart(SMALL_SEGMENT_SIZE);
+        assertThat(journal.getRecordsReplayed(), is(11L));
+        assertThat(books.findEntryByTitle("The Pickwick Papers").isCheckedOutBy(quentin), is(true));
+        assertThat(books.findEntryByTitle("Bleak House").isAvailable(), is(true));
+    }
+
+    @Test
+    public void testReplayPassesOverACorruptRecordAndKeepsTheRecordsAfterIt() throws Exception {
+        books.checkoutItemByTitle("Bleak House", charles);
+        books.checkoutItemByTitle("Great Expectations", charles);
+        books.checkoutItemByTitle("The Pickwick Papers", charles);
+        corruptRecord(segments().get(0), 1);
+
+        LoanJournal journal = restart();
+        assertThat(journal.getRecordsReplayed(), is(2L));
+        assertThat(journal.getNextSequence(), is(4L));
+        assertThat(books.findEntryByTitle("Great Expectations").isAvailable(), is(true));
+        assertThat(books.findEntryByTitle("The Pickwick Papers").isCheckedOutBy(charles), is(true));
+        books.checkoutItemByTitle("Great Expectations", quentin);
+
+        journal = restart();
+        assertThat(journal.getRecordsReplayed(), is(3L));
+        assertThat(books.findEntryByTitle("Bleak House").isCheckedOutBy(charles), is(true));
+        assertThat(books.findEntryByTitle("Great Expectations").isCheckedOutBy(quentin), is(true));
+        assertThat(books.findEntryByTitle("The Pickwick Papers").isCheckedOutBy(charles), is(true));
+    }
+
+    @Test
+    public void testRecordAfterAStalledAppendIsAcknowledgedOnlyOnceTheStalledOneIsWritten() throws Exception {
+        final Runnable stalled = journal.claimLogin(quentin);
+        final CountDownLatch acknowledged = new CountDownLatch(1);
+        final Thread appender = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    books.checkoutItemByTitle("Bleak House", charles);
+                    journal.awaitDurable();
+                    acknowledged.countDown();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        appender.start();
+        assertThat(acknowledged.await(200, TimeUnit.MILLISECONDS), is(false));
+        assertThat(journal.getWrittenUpTo(), is(0L));
+
+        stalled.run();
+        assertThat(acknowledged.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(journal.getWrittenUpTo(), is(2L));
+    }
+
+    @Test
+    public void testRecordsAfterOneThatWasNeverWrittenAreReplayed() throws Exception {
+        for(final LoanJournal.Durability durability : LoanJournal.Durability.values()) {
+            restart(LoanJournal.DEFAULT_SEGMENT_SIZE, durability);
+            final long first = journal.getNextSequence();
+            journal.claimLogin(quentin);
+            books.checkoutItemByTitle("Bleak House", charles);
+
+            final LoanJournal journal = restart();
+            assertThat(journal.getNextSequence(), is(first + 2));
+            assertThat(books.findEntryByTitle("Bleak House").isCheckedOutBy(charles), is(true));
+            books.returnItemByTitle("Bleak House", charles);
+        }
+        restart();
+        assertThat(books.findEntryByTitle("Bleak House").isAvailable(), is(true));
+    }
+
+    @Test
+    public void testManyRecordsAreReplayed() throws Exception {
+        books.addItem(new Book("Hard Times", "Charles Dickens", 1854), 4);
+        for(int i = 0; i < 50000; i++) {
+            books.checkoutItemByTitle("Hard Times", i % 2 == 0 ? charles : quentin);
+            books.returnItemByTitle("Hard Times", i % 2 == 0 ? charles : quentin);
+        }
+        books.checkoutItemByTitle("Hard Times", quentin);
+
+        securityContext = new SecurityContext(Customer.getCustomers());
+        books = new Library<>(Book.getBooks(), Book.class);
+        books.addItem(new Book("Hard Times", "Charles Dickens", 1854), 4);
+        journal.close();
+        journal = new LoanJournal(directory, clock, securityContext, books, movies);
+        assertThat(journal.getRecordsReplayed(), is(100001L));
+        assertThat(books.findEntryByTitle("Hard Times").getAvailableCopies(), is(3));
+    }
+
+    @Test
+    public void testPerOpDurabilityForcesEveryRecord() throws Exception {
+        final LoanJournal journal = restart(LoanJournal.DEFAULT_SEGMENT_SIZE, LoanJournal.Durability.PER_OP);
+        books.checkoutItemByTitle("Bleak House", charles);
+        books.returnItemByTitle("Bleak House", charles);
+        journal.awaitDurable();
+        assertThat(journal.getForces(), is(2L));
+    }
+
+    @Test
+    public void testGroupCommitForcesOnceForABatchOfWaitingThreads() throws Exception {
+        final LoanJournal journal = restart();
+        books.addItem(new Book("Hard Times", "Charles Dickens", 1854), 8);
+        final int threads = 8;
+        final int operations = 50;
+        final int done = Concurrently.run(threads, new Concurrently.Task() {
+            @Override
+            public void run(int thread) throws Exception {
+                final Customer customer = thread % 2 == 0 ? charles : quentin;
+                for(int i = 0; i < operations; i++) {
+                    books.checkoutItemByTitle("Hard Times", customer);
+                    journal.awaitDurable();
+                    books.returnItemByTitle("Hard Times", customer);
+                    journal.awaitDurable();
+                }
+            }
+        });
+        assertThat(done, is(threads));
+        assertThat(journal.getNextSequence(), is(1L + threads * operations * 2));
+        assertThat(journal.getForces() < threads * operations * 2, is(true));
+        assertThat(restart().getRecordsReplayed(), is((long) threads * operations * 2));
+    }
+
+    @Test
+    public void testEveryLoanIsJournaledOnceAndBeforeItsReturn() throws Exception {
+        final LoanJournal journal = restart();
+        books.addItem(new Book("Hard Times", "Charles Dickens", 1854), 8);
+        final int threads = 8;
+        final int operations = 500;
+        final AtomicInteger checkouts = new AtomicInteger();
+        final AtomicInteger returns = new AtomicInteger();
+        final int done = Concurrently.run(threads, new Concurrently.Task() {
+            @Override
+            public void run(int thread) throws Exception {
+                final Customer customer = thread % 2 == 0 ? charles : quentin;
+                for(int i = 0; i < operations; i++) {
+                    books.checkoutItemByTitle("Hard Times", customer);
+                    checkouts.incrementAndGet();
+                    books.returnItemByTitle("Hard Times", customer);
+                    returns.incrementAndGet();
+                }
+            }
+        });
+        assertThat(done, is(threads));
+        final int records = (int) (journal.getNextSequence() - 1);
+        final ByteBuffer buffer = ByteBuffer.allocate(records * LoanJournal.RECORD_SIZE);
+        assertThat(journal.readRecords(1, buffer), is(records));
+
+        final int[] borrowers = new int[8];
+        Arrays.fill(borrowers, -1);
+        int loans = 0;
+        for(int offset = 0; offset < buffer.position(); offset += LoanJournal.RECORD_SIZE) {
+            final byte type = buffer.get(offset + 4);
+            final int customer = buffer.getInt(offset + 24);
+            final int copy = buffer.getInt(offset + 32);
+            if(type == LoanJournal.LOAN) {
+                assertThat(borrowers[copy], is(-1));
+                borrowers[copy] = customer;
+                loans++;
+            } else if(type == LoanJournal.RETURN) {
+                assertThat(borrowers[copy], is(customer));
+                borrowers[copy] = -1;
+            }
+        }
+        assertThat(loans, is(checkouts.get()));
+        assertThat(records - loans, is(returns.get()));
+    }
+
+    @Test
+    public void testAwaitDurableReturnsAtOnceWithoutUnacknowledgedRecords() throws Exception {
+        journal.awaitDurable();
+        assertThat(journal.getForces(), is(0L));
+        books.checkoutItemByTitle("Bleak House", charles);
+        journal.awaitDurable();
+        journal.awaitDurable();
+        assertThat(journal.getForces(), is(1L));
+    }
+
+    @Test
+    public void testAsyncDurabilityForcesInTheBackground() throws Exception {
+        final LoanJournal journal = restart(LoanJournal.DEFAULT_SEGMENT_SIZE, LoanJournal.Durability.ASYNC);
+        books.checkoutItemByTitle("Bleak House", charles);
+        journal.awaitDurable();
+        final long deadline = System.currentTimeMillis() + 5000;
+        while(journal.getForces() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertThat(journal.getForces(), is(1L));
+    }
+
+    @Test
+    public void testSnapshotIsRestoredAndOnlyLaterRecordsReplayed() throws Exception {
+        books.checkoutItemByTitle("Bleak House", charles);
+        books.checkoutItemByTitle("Great Expectations", quentin);
+        journal.snapshot();
+        books.returnItemByTitle("Great Expectations", quentin);
+        movies.checkoutItemByTitle("Pulp Fiction", charles);
+
+        final LoanJournal journal = restart();
+        assertThat(journal.getRecordsReplayed(), is(2L));
+        assertThat(journal.getNextSequence(), is(5L));
+        assertThat(books.findEntryByTitle("Bleak House").isCheckedOutBy(charles), is(true));
+        assertThat(books.findEntryByTitle("Great Expectations").isAvailable(), is(true));
+        assertThat(movies.findEntryByTitle("Pulp Fiction").isCheckedOutBy(charles), is(true));
+        assertThat(books.countAvailable(), is(2));
+    }
+
+    @Test
+    public void testSnapshotKeepsDueDates() throws Exception {
+        books.checkoutItemByTitle("Bleak House", charles);
+        journal.snapshot();
+        assertThat(restart().getRecordsReplayed(), is(0L));
+        when(clock.currentTimeMillis()).thenReturn(START_OF_2015 + 22 * LoanTimer.DAY_MILLIS);
+        final List<LoanNotice> notices = books.sweepDueDates();
+        assertThat(notices.size(), is(1));
+        assertThat(notices.get(0).getMessage(), is("Bleak House was due back on 2015-01-22 and is overdue."));
+    }
+
+    @Test
+    public void testSnapshotsDeleteSegmentsNoLongerNeeded() throws Exception {
+        restart(SMALL_SEGMENT_SIZE);
+        for(int i = 0; i < 5; i++) {
+            books.checkoutItemByTitle("Bleak House", charles);
+            books.returnItemByTitle("Bleak House", charles);
+        }
+        journal.snapshot();
+        assertThat(segments().size(), is(3));
+        books.checkoutItemByTitle("The Pickwick Papers", quentin);
+        journal.snapshot();
+        assertThat(files(".snapshot").size(), is(2));
+        assertThat(segments().size(), is(1));
+        books.checkoutItemByTitle("Great Expectations", quentin);
+        journal.snapshot();
+        assertThat(files(".snapshot").size(), is(2));
+
+        restart(SMALL_SEGMENT_SIZE);
+        assertThat(books.findEntryByTitle("The Pickwick Papers").isCheckedOutBy(quentin), is(true));
+        assertThat(books.findEntryByTitle("Great Expectations").isCheckedOutBy(quentin), is(true));
+        assertThat(books.findEntryByTitle("Bleak House").isAvailable(), is(true));
+    }
+
+    @Test
+    public void testCorruptSnapshotFallsBackToTheOneBefore() throws Exception {
+        books.checkoutItemByTitle("Bleak House", charles);
+        journal.snapshot();
+        books.checkoutItemByTitle("Great Expectations", quentin);
+        journal.snapshot();
+        final List<Path> snapshots = files(".snapshot");
+        try (final FileChannel channel = FileChannel.open(snapshots.get(1), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), 22);
+        }
+
+        final LoanJournal journal = restart();
+        assertThat(journal.getRecordsReplayed(), is(1L));
+        assertThat(books.findEntryByTitle("Bleak House").isCheckedOutBy(charles), is(true));
+        assertThat(books.findEntryByTitle("Great Expectations").isCheckedOutBy(quentin), is(true));
+    }
+
+    @Test
+    public void testSnapshotTakenDuringLoansAndReturnsComesRightWithTheJournal() throws Exception {
+        books.addItem(new Book("Hard Times", "Charles Dickens", 1854), 4);
+        final AtomicInteger failures = new AtomicInteger();
+        final Thread lender = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for(int i = 0; i < 20000; i++) {
+                        books.checkoutItemByTitle("Hard Times", i % 2 == 0 ? charles : quentin);
+                        books.returnItemByTitle("Hard Times", i % 2 == 0 ? charles : quentin);
+                    }
+                    books.checkoutItemByTitle("Hard Times", quentin);
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                }
+            }
+        };
+        lender.start();
+        for(int i = 0; i < 20; i++)
+            journal.snapshot();
+        lender.join();
+        assertThat(failures.get(), is(0));
+
+        journal.close();
+        securityContext = new SecurityContext(Customer.getCustomers());
+        quentin = securityContext.getCustomer(1);
+        books = new Library<>(Book.getBooks(), Book.class);
+        books.addItem(new Book("Hard Times", "Charles Dickens", 1854), 4);
+        journal = new LoanJournal(directory, clock, securityContext, books, movies);
+        assertThat(books.findEntryByTitle("Hard Times").getAvailableCopies(), is(3));
+        assertThat(books.findEntryByTitle("Hard Times").isCheckedOutBy(quentin), is(true));
+    }
+
+    private List<Path> segments() throws IOException {
+        return files(".journal");
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for(final Path path : stream)
+                files.add(path);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static void corruptRecord(Path segment, int record) throws IOException {
+        try (final FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), 16 + record * 40 + 20);
+        }
+    }
+
+}
@@ -0,0 +1,228 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.exceptions.LibraryItemNotAvailableException;
+import com.twu.biblioteca.exceptions.LibraryItemNotCheckedOutException;
+import com.twu.biblioteca.exceptions.LibraryItemNotFoundException;
+import com.twu.biblioteca.helper.ConsistentHashRing;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PartitionTests {
+
+    private static final int BOOKS = 2000;
+    private static final List<String> NAMES = Arrays.asList("p0", "p1", "p2");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Book> books = new ArrayList<>();
+    private final Map<String, Library<Book>> libraries = new HashMap<>();
+    private final Map<String, SecurityContext> securityContexts = new HashMap<>();
+    private final List<PartitionServer<Book>> servers = new ArrayList<>();
+    private final List<Process> processes = new ArrayList<>();
+    private SecurityContext securityContext;
+    private Customer charles;
+    private PartitionRouter<Book> router;
+
+    @Before
+    public void setup() throws IOException {
+        for(int i = 0; i < BOOKS; i++)
+            books.add(new Book(String.format("Title %04d", i), "Charles Dickens", 1860));
+        securityContext = new SecurityContext(Customer.getCustomers());
+        charles = securityContext.getCustomer(0);
+    }
+
+    @After
+    public void teardown() {
+        if(router != null)
+            router.close();
+        for(final PartitionServer<Book> server : servers)
+            server.close();
+        for(final Process process : processes)
+            process.destroy();
+    }
+
+    private InetSocketAddress startPartition(String name, List<String> names) throws IOException {
+        final ConsistentHashRing ring = new ConsistentHashRing(ConsistentHashRing.DEFAULT_VIRTUAL_NODES, names);
+        final Library<Book> library = new Library<>(PartitionServer.owned(books, ring, name), Book.class);
+        final SecurityContext partitionSecurityContext = new SecurityContext(Customer.getCustomers());
+        final PartitionServer<Book> server = new PartitionServer<>(new ServerSocket(0, 50, InetAddress.getLoopbackAddress()),
+                name, ring, Book.TYPE, partitionSecurityContext, library);
+        libraries.put(name, library);
+        securityContexts.put(name, partitionSecurityContext);
+        servers.add(server);
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+    }
+
+    private void startPartitions() throws IOException {
+        final Map<String, InetSocketAddress> partitions = new LinkedHashMap<>();
+        for(final String name : NAMES)
+            partitions.put(name, startPartition(name, NAMES));
+        router = new PartitionRouter<>(Book.TYPE, securityContext, partitions);
+    }
+
+    private List<String> listTitles() throws IOException {
+        final List<String> titles = new ArrayList<>();
+        router.visitAvailable(new PartitionRouter.ItemVisitor<Book>() {
+            @Override
+            public void visit(Book item, int availableCopies, int totalCopies) {
+                assertThat(item.getAuthor(), is("Charles Dickens"));
+                assertThat(item.getYear(), is((short) 1860));
+                assertThat(availableCopies, is(totalCopies));
+                titles.add(item.getTitle());
+            }
+        });
+        return titles;
+    }
+
+    private List<String> allTitlesExcept(String... titles) {
+        final List<String> expected = new ArrayList<>();
+        for(final Book book : books)
+            expected.add(book.getTitle());
+        expected.removeAll(Arrays.asList(titles));
+        return expected;
+    }
+
+    @Test
+    public void testEachPartitionHoldsItsShareOfTitles() throws IOException {
+        startPartitions();
+        int total = 0;
+        for(final String name : NAMES) {
+            final int size = libraries.get(name).size();
+            assertThat(size > BOOKS / 3 * 0.7 && size < BOOKS / 3 * 1.3, is(true));
+            total += size;
+        }
+        assertThat(total, is(BOOKS));
+    }
+
+    @Test
+    public void testCheckoutAndReturnGoToTheOwningPartition() throws Exception {
+        startPartitions();
+        final String partition = router.getPartitionFor("Title 0042");
+        final Customer partitionCharles = securityContexts.get(partition).getCustomer(0);
+        router.checkoutItemByTitle("Title 0042", charles);
+        assertThat(libraries.get(partition).findEntryByTitle("Title 0042").isCheckedOutBy(partitionCharles), is(true));
+        for(final String name : NAMES)
+            assertThat(libraries.get(name).countAvailable(), is(libraries.get(name).size() - (name.equals(partition) ? 1 : 0)));
+
+        router.returnItemByTitle("Title 0042", charles);
+        assertThat(libraries.get(partition).findEntryByTitle("Title 0042").isAvailable(), is(true));
+    }
+
+    @Test(expected = LibraryItemNotAvailableException.class)
+    public void testCheckingOutACheckedOutTitleThrowsAnException() throws Exception {
+        startPartitions();
+        router.checkoutItemByTitle("Title 0042", charles);
+        router.checkoutItemByTitle("Title 0042", securityContext.getCustomer(1));
+    }
+
+    @Test(expected = LibraryItemNotCheckedOutException.class)
+    public void testReturningATitleNotCheckedOutThrowsAnException() throws Exception {
+        startPartitions();
+        router.returnItemByTitle("Title 0042", charles);
+    }
+
+    @Test(expected = LibraryItemNotFoundException.class)
+    public void testCheckingOutAnUnknownTitleThrowsAnException() throws Exception {
+        startPartitions();
+        router.checkoutItemByTitle("Bleak House", charles);
+    }
+
+    @Test
+    public void testListingMergesThePartitionsInTitleOrder() throws Exception {
+        startPartitions();
+        router.checkoutItemByTitle("Title 0000", charles);
+        router.checkoutItemByTitle("Title 1234", charles);
+        assertThat(listTitles(), is(allTitlesExcept("Title 0000", "Title 1234")));
+    }
+
+    @Test
+    public void testAddedPartitionTakesItsShareOfTitlesWithTheirLoans() throws Exception {
+        startPartitions();
+        for(int i = 0; i < BOOKS; i += 10)
+            router.checkoutItemByTitle(books.get(i).getTitle(), charles);
+
+        final List<String> names = new ArrayList<>(NAMES);
+        names.add("p3");
+        final InetSocketAddress address = startPartition("p3", names);
+        final int size = libraries.get("p3").size();
+        assertThat(size > BOOKS / 4 * 0.7 && size < BOOKS / 4 * 1.3, is(true));
+        final int handedOff = router.addPartition("p3", address);
+
+        int moved = 0;
+        for(int i = 0; i < BOOKS; i++) {
+            final String title = books.get(i).getTitle();
+            if(!router.getPartitionFor(title).equals("p3")) continue;
+            moved++;
+            if(i % 10 == 0)
+                assertThat(libraries.get("p3").findEntryByTitle(title).isAvailable(), is(false));
+        }
+        assertThat(moved, is(size));
+        assertThat(handedOff, is(size - libraries.get("p3").countAvailable()));
+
+        final List<String> lent = new ArrayList<>();
+        for(int i = 0; i < BOOKS; i += 10)
+            lent.add(books.get(i).getTitle());
+        assertThat(listTitles(), is(allTitlesExcept(lent.toArray(new String[lent.size()]))));
+        for(final String title : lent)
+            router.returnItemByTitle(title, charles);
+        assertThat(listTitles(), is(allTitlesExcept()));
+    }
+
+    @Test
+    public void testEveryPartitionCanRunAsALocalProcess() throws Exception {
+        final File catalog = folder.newFile("books.csv");
+        try (final PrintWriter writer = new PrintWriter(catalog, "UTF-8")) {
+            writer.println(Book.TYPE.getCSVHeaders());
+            for(final Book book : books)
+                writer.println(book.getCSVRepresentation());
+        }
+        final Map<String, InetSocketAddress> partitions = new LinkedHashMap<>();
+        for(final String name : NAMES)
+            partitions.put(name, startProcess(name, catalog));
+        router = new PartitionRouter<>(Book.TYPE, securityContext, partitions);
+
+        router.checkoutItemByTitle("Title 0042", charles);
+        assertThat(listTitles(), is(allTitlesExcept("Title 0042")));
+        router.returnItemByTitle("Title 0042", charles);
+        assertThat(listTitles(), is(allTitlesExcept()));
+    }
+
+    private InetSocketAddress startProcess(String name, File catalog) throws IOException {
+        final ProcessBuilder builder = new ProcessBuilder(
+                new File(new File(System.getProperty("java.home"), "bin"), "java").getPath(),
+                "-cp", System.getProperty("java.class.path"), PartitionServer.class.getName(),
+                "0", name, "p0,p1,p2", "books", catalog.getPath());
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        final Process process = builder.start();
+        processes.add(process);
+        final String line = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8")).readLine();
+        if(line == null) throw new IOException("partition " + name + " did not start");
+        final int port = Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1));
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+}
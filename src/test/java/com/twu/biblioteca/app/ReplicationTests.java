@@ -0,0 +1,192 @@
+package com.twu.biblioteca.app;
+
+import com.twu.biblioteca.domain.Book;
+import com.twu.biblioteca.domain.Customer;
+import com.twu.biblioteca.domain.Movie;
+import com.twu.biblioteca.helper.Clock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Scanner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ReplicationTests {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SecurityContext securityContext;
+    private Customer charles;
+    private Library<Book> books;
+    private Library<Movie> movies;
+    private LoanJournal journal;
+    private ReplicationServer server;
+
+    private SecurityContext followerSecurityContext;
+    private Library<Book> followerBooks;
+    private Library<Movie> followerMovies;
+    private ReplicationFollower follower;
+
+    @Before
+    public void setup() throws IOException {
+        securityContext = new SecurityContext(Customer.getCustomers());
+        charles = securityContext.getCustomer(0);
+        books = new Library<>(Book.getBooks(), Book.class);
+        movies = new Library<>(Movie.getMovies(), Movie.class);
+        journal = new LoanJournal(folder.newFolder("journal").toPath(), Clock.SYSTEM, securityContext, books, movies);
+        server = new ReplicationServer(new ServerSocket(0, 50, InetAddress.getLoopbackAddress()), journal, Clock.SYSTEM,
+                securityContext, books, movies);
+
+        followerSecurityContext = new SecurityContext(Customer.getCustomers());
+        followerBooks = new Library<>(Book.getBooks(), Book.class);
+        followerMovies = new Library<>(Movie.getMovies(), Movie.class);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        if(follower != null)
+            follower.close();
+        server.close();
+        journal.close();
+    }
+
+    private ReplicationFollower follow() throws IOException {
+        follower = new ReplicationFollower(new Socket(InetAddress.getLoopbackAddress(), server.getPort()), Clock.SYSTEM,
+                followerSecurityContext, followerBooks, followerMovies);
+        return follower;
+    }
+
+    private void startFollowing() throws IOException {
+        final Thread applier = new Thread(follow());
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    private void awaitFollower() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while(follower.getNextSequence() < journal.getNextSequence() && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertThat(follower.getNextSequence(), is(journal.getNextSequence()));
+    }
+
+    private Customer followerCharles() {
+        return followerSecurityContext.getCustomer(0);
+    }
+
+    @Test
+    public void testNewFollowerStartsFromThePrimarysLoans() throws Exception {
+        books.checkoutItemByTitle("Bleak House", charles);
+        movies.checkoutItemByTitle("Pulp Fiction", charles);
+
+        follow();
+        assertThat(follower.getNextSequence(), is(journal.getNextSequence()));
+        assertThat(followerBooks.findEntryByTitle("Bleak House").isCheckedOutBy(followerCharles()), is(true));
+        assertThat(followerMovies.findEntryByTitle("Pulp Fiction").isCheckedOutBy(followerCharles()), is(true));
+        assertThat(followerBooks.countAvailable(), is(2));
+    }
+
+    @Test
+    public void testFollowerAppliesThePrimarysChangesAsTheyHappen() throws Exception {
+        startFollowing();
+        books.checkoutItemByTitle("Bleak House", charles);
+        books.checkoutItemByTitle("Great Expectations", charles);
+        books.returnItemByTitle("Bleak House", charles);
+        awaitFollower();
+
+        assertThat(followerBooks.findEntryByTitle("Bleak House").isAvailable(), is(true));
+        assertThat(followerBooks.findEntryByTitle("Great Expectations").isCheckedOutBy(followerCharles()), is(true));
+        assertThat(followerBooks.countAvailable(), is(2));
+        assertThat(follower.getLagEvents(), is(0L));
+    }
+
+    @Test
+    public void testServerTellsIdleFollowersHowFarBehindTheyAre() throws Exception {
+        startFollowing();
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        final long bootstrapped = follower.getNextSequence();
+        while(follower.getLagMillis() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(ReplicationServer.HEARTBEAT_MILLIS);
+        assertThat(follower.isConnected(), is(true));
+        assertThat(follower.getNextSequence(), is(bootstrapped));
+        assertThat(follower.getLagEvents(), is(0L));
+        assertThat(follower.getLagMillis() < TIMEOUT_MILLIS, is(true));
+    }
+
+    @Test
+    public void testFollowerOpenedFromAnotherCatalogIsRefused() throws Exception {
+        followerBooks.addItem(new Book("Hard Times", "Charles Dickens", 1854));
+        try {
+            follow();
+            fail();
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("the primary's book catalog is not this one"));
+        }
+    }
+
+    @Test
+    public void testFollowerIsDisconnectedWhenThePrimaryGoes() throws Exception {
+        startFollowing();
+        server.close();
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while(follower.isConnected() && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertThat(follower.isConnected(), is(false));
+        assertThat(server.getFollowerCount(), is(0));
+    }
+
+    @Test
+    public void testFollowerAppOnlyReads() throws Exception {
+        startFollowing();
+        books.checkoutItemByTitle("Bleak House", charles);
+        awaitFollower();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final BibliotecaApp app = new BibliotecaApp(new Scanner(""), output, followerSecurityContext, follower,
+                followerBooks, followerMovies);
+        app.displayMenuOptions();
+        app.selectMenuOption("Checkout Book: Great Expectations");
+
+        final Scanner scanner = new Scanner(output.toString());
+        assertThat(scanner.nextLine(), is("Please use one of the following options:"));
+        assertThat(scanner.nextLine(), is("List Books"));
+        assertThat(scanner.nextLine(), is("Search Books: <Title>"));
+        assertThat(scanner.nextLine(), is("Count Books: <Filter>"));
+        assertThat(scanner.nextLine(), is("List Movies"));
+        assertThat(scanner.nextLine(), is("Search Movies: <Title>"));
+        assertThat(scanner.nextLine(), is("Count Movies: <Filter>"));
+        assertThat(scanner.nextLine(), is("Replication Status"));
+        assertThat(scanner.nextLine(), is("Quit"));
+        assertThat(scanner.nextLine(), is("Select a valid option!"));
+        assertThat(followerBooks.findEntryByTitle("Great Expectations").isAvailable(), is(true));
+    }
+
+    @Test
+    public void testFollowerAppShowsReplicationStatus() throws Exception {
+        startFollowing();
+        awaitFollower();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final BibliotecaApp app = new BibliotecaApp(new Scanner(""), output, followerSecurityContext, follower,
+                followerBooks, followerMovies);
+        app.selectMenuOption("Replication Status");
+        assertThat(output.toString().startsWith("Behind the primary by 0 changes, "), is(true));
+
+        output.reset();
+        follower.close();
+        app.selectMenuOption("Replication Status");
+        assertThat(output.toString(), is("Not connected to the primary. Showing changes up to " +
+                (journal.getNextSequence() - 1) + ".\n"));
+    }
+
+}
@@ -15,7 +15,7 @@ public class BookTests {
 
     @Before
     public void setup() {
-        book = new Book("Great Expectations", "Charles Dickens", "1860");
+        book = new Book("Great Expectations", "Charles Dickens", 1860);
     }
 
     @Test
@@ -25,37 +25,37 @@ public class BookTests {
 
     @Test(expected = IllegalArgumentException.class)
     public void testBookConstructorDisallowsNullTitle() {
-        new Book(null, "Charles Dickens", "1860");
+        new Book(null, "Charles Dickens", 1860);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testBookConstructorDisallowsEmptyTitle() {
-        new Book("", "Charles Dickens", "1860");
+        new Book("", "Charles Dickens", 1860);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testBookConstructorDisallowsNullAuthor() {
-        new Book("Great Expectations", null, "1860");
+        new Book("Great Expectations", null, 1860);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testBookConstructorDisallowsEmptyAuthor() {
-        new Book("Great Expectations", "", "1860");
+        new Book("Great Expectations", "", 1860);
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testBookConstructorDisallowsNullYear() {
-        new Book("Great Expectations", "Charles Dickens", null);
+    public void testBookConstructorDisallowsYearBeforeYearOne() {
+        new Book("Great Expectations", "Charles Dickens", 0);
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testBookConstructorDisallowsEmptyYear() {
-        new Book("Great Expectations", "Charles Dickens", "");
+    public void testBookConstructorDisallowsYearAfter9999() {
+        new Book("Great Expectations", "Charles Dickens", 10000);
     }
 
     @Test
     public void testBookEquality() {
-        final Book book = new Book("Great Expectations", "Charles Dickens", "1860");
+        final Book book = new Book("Great Expectations", "Charles Dickens", 1860);
         assertThat(book.equals(this.book), is(true));
         assertThat(book.hashCode(), is(this.book.hashCode()));
     }
@@ -70,4 +70,22 @@ public class BookTests {
         assertThat(book.getCSVHeaders(), is("Title, Author, Year"));
     }
 
+    @Test
+    public void testBookAuthorAttribute() {
+        assertThat(Book.AUTHOR.getName(), is("Author"));
+        assertThat(Book.AUTHOR.getValue(book), is("Charles Dickens"));
+    }
+
+    @Test
+    public void testBookTypeMakesAnEqualBook() {
+        assertThat(Book.TYPE.getCreator(book), is("Charles Dickens"));
+        assertThat(Book.TYPE.getRating(book), is(0));
+        assertThat(Book.TYPE.create(book.getTitle(), "Charles Dickens", book.getYear(), 0), is(book));
+    }
+
+    @Test
+    public void testBookTypeHasTheCSVHeaders() {
+        assertThat(Book.TYPE.getCSVHeaders(), is("Title, Author, Year"));
+    }
+
 }
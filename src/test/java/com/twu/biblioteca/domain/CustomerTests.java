@@ -4,6 +4,8 @@ import com.twu.biblioteca.exceptions.InvalidCredentialsException;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -114,6 +116,19 @@ public class CustomerTests {
         assertThat(customer.viewDetails(), is("Name: Charles Dickens\nEmail Address: charles@example.com\nPhone: 07712345678"));
     }
 
+    @Test
+    public void testNoticesAreTakenOnceInTheOrderPosted() {
+        customer.addNotice("first");
+        customer.addNotice("second");
+        assertThat(customer.takeNotices(), is(Arrays.asList("first", "second")));
+        assertThat(customer.takeNotices().isEmpty(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoticeCannotBeNull() {
+        customer.addNotice(null);
+    }
+
     @Test
     public void testViewCustomerDetailsForCustomerWithNoPhone() {
         customer = new Customer("Charles", "Dickens", "charles@example.com", "Password1", "123-4567");
@@ -4,7 +4,6 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.is;
-import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 /**
@@ -16,7 +15,7 @@ public class MovieTests {
 
     @Before
     public void setup() {
-        pulpFiction = new Movie("Pulp Fiction", "1994", "Quentin Tarantino", 9);
+        pulpFiction = new Movie("Pulp Fiction", 1994, "Quentin Tarantino", 9);
     }
 
     @Test
@@ -26,69 +25,70 @@ public class MovieTests {
 
     @Test
     public void testMovieHasARating() {
-        assertThat(pulpFiction.getRating(), is(9));
+        assertThat(pulpFiction.isRated(), is(true));
+        assertThat(pulpFiction.getRating(), is((byte) 9));
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testMovieCannotBeConstructedWithNullTitle() {
-        new Movie(null, "1994", "Quentin Tarantino", 9);
+        new Movie(null, 1994, "Quentin Tarantino", 9);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testMovieCannotBeConstructedWithEmptyTitle() {
-        new Movie("", "1994", "Quentin Tarantino", 9);
+        new Movie("", 1994, "Quentin Tarantino", 9);
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testMovieCannotBeConstructedWithNullYear() {
-        new Movie("Pulp Fiction", null, "Quentin Tarantino", 9);
+    public void testMovieCannotBeConstructedWithYearBeforeYearOne() {
+        new Movie("Pulp Fiction", 0, "Quentin Tarantino", 9);
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testMovieCannotBeConstructedWithEmptyYear() {
-        new Movie("Pulp Fiction", "", "Quentin Tarantino", 9);
+    public void testMovieCannotBeConstructedWithYearAfter9999() {
+        new Movie("Pulp Fiction", 10000, "Quentin Tarantino", 9);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testMovieCannotBeConstructedWithNullDirector() {
-        new Movie("Pulp Fiction", "1994", null, 9);
+        new Movie("Pulp Fiction", 1994, null, 9);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testMovieCannotBeConstructedWithEmptyDirector() {
-        new Movie("Pulp Fiction", "1994", "", 9);
+        new Movie("Pulp Fiction", 1994, "", 9);
     }
 
     @Test
-    public void testMovieCanBeConstructedWithNullRating() {
-        new Movie("Pulp Fiction", "1994", "Quentin Tarantino", null);
+    public void testMovieCanBeConstructedUnrated() {
+        assertThat(new Movie("Pulp Fiction", 1994, "Quentin Tarantino", Movie.UNRATED).isRated(), is(false));
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testMovieCannotBeConstructedWithRatingLessThan1() {
-        new Movie("Pulp Fiction", "1994", "Quentin Tarantino", -1);
+        new Movie("Pulp Fiction", 1994, "Quentin Tarantino", -1);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testMovieCannotBeConstructedWithRatingGreaterThan10() {
-        new Movie("Pulp Fiction", "1994", "Quentin Tarantino", 11);
+        new Movie("Pulp Fiction", 1994, "Quentin Tarantino", 11);
     }
 
     @Test
     public void testCreateUnratedMovie() {
-        final Movie movie = Movie.createUnratedMovie("Pulp Fiction", "1994", "Quentin Tarantino");
-        assertThat(movie.getRating(), is(nullValue()));
+        final Movie movie = Movie.createUnratedMovie("Pulp Fiction", 1994, "Quentin Tarantino");
+        assertThat(movie.isRated(), is(false));
     }
 
     @Test
     public void testCreateRatedMovie() {
-        final Movie movie = Movie.createRatedMovie("Pulp Fiction", "1994", "Quentin Tarantino", 9);
-        assertThat(movie.getRating(), is(9));
+        final Movie movie = Movie.createRatedMovie("Pulp Fiction", 1994, "Quentin Tarantino", 9);
+        assertThat(movie.getRating(), is((byte) 9));
     }
 
     @Test
     public void testMovieEquality() {
-        final Movie movie = new Movie("Pulp Fiction", "1994", "Quentin Tarantino", 9);
+        final Movie movie = new Movie("Pulp Fiction", 1994, "Quentin Tarantino", 9);
         assertThat(pulpFiction.equals(movie), is(true));
         assertThat(pulpFiction.hashCode(), is(movie.hashCode()));
     }
@@ -100,7 +100,7 @@ public class MovieTests {
 
     @Test
     public void testUnratedMovieHasCSVRepresentation() {
-        final Movie unratedMovie = Movie.createUnratedMovie("Kill Bill", "2003", "Quentin Tarantino");
+        final Movie unratedMovie = Movie.createUnratedMovie("Kill Bill", 2003, "Quentin Tarantino");
         assertThat(unratedMovie.getCSVRepresentation(), is("Kill Bill, Quentin Tarantino, 2003, Unrated"));
     }
 
@@ -109,4 +109,23 @@ public class MovieTests {
         assertThat(pulpFiction.getCSVHeaders(), is("Title, Director, Year, Rating"));
     }
 
+    @Test
+    public void testMovieDirectorAttribute() {
+        assertThat(Movie.DIRECTOR.getName(), is("Director"));
+        assertThat(Movie.DIRECTOR.getValue(pulpFiction), is("Quentin Tarantino"));
+    }
+
+    @Test
+    public void testMovieTypeMakesAnEqualMovie() {
+        assertThat(Movie.TYPE.getCreator(pulpFiction), is("Quentin Tarantino"));
+        assertThat(Movie.TYPE.getRating(pulpFiction), is(9));
+        assertThat(Movie.TYPE.create("Pulp Fiction", "Quentin Tarantino", 1994, 9), is(pulpFiction));
+        assertThat(Movie.TYPE.create("Kill Bill", "Quentin Tarantino", 2003, 0).isRated(), is(false));
+    }
+
+    @Test
+    public void testMovieTypeHasTheCSVHeaders() {
+        assertThat(Movie.TYPE.getCSVHeaders(), is("Title, Director, Year, Rating"));
+    }
+
 }
@@ -0,0 +1,61 @@
+package com.twu.biblioteca.helper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a task on a number of threads that are all released at once, for tests of callers racing one another. Each
+ * thread is told its number, and a thread whose task throws, including a failed assertion, is not counted as done.
+ */
+public final class Concurrently {
+
+    public interface Task {
+        void run(int thread) throws Exception;
+    }
+
+    private final Thread[] threads;
+    private final AtomicInteger done = new AtomicInteger();
+
+    private Concurrently(int count, final Task task) {
+        final CountDownLatch start = new CountDownLatch(1);
+        threads = new Thread[count];
+        for(int i = 0; i < count; i++) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        task.run(thread);
+                        done.incrementAndGet();
+                    } catch (Throwable e) {}
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+    }
+
+    /**
+     * Runs the task on every thread and returns how many finished it without throwing.
+     */
+    public static int run(int threads, Task task) throws InterruptedException {
+        return start(threads, task).await();
+    }
+
+    /**
+     * Releases the task on every thread without waiting, for a test that races them itself before calling await.
+     */
+    public static Concurrently start(int threads, Task task) {
+        if(threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        if(task == null) throw new IllegalArgumentException("task cannot be null");
+        return new Concurrently(threads, task);
+    }
+
+    public int await() throws InterruptedException {
+        for(final Thread thread : threads)
+            thread.join();
+        return done.get();
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.twu.biblioteca.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ConsistentHashRingTests {
+
+    private static final int KEYS = 100000;
+
+    private ConsistentHashRing ring;
+
+    @Before
+    public void setup() {
+        ring = new ConsistentHashRing(ConsistentHashRing.DEFAULT_VIRTUAL_NODES, Arrays.asList("a", "b", "c", "d"));
+    }
+
+    private Map<String, String> assignments() {
+        final Map<String, String> assignments = new HashMap<>();
+        for(int i = 0; i < KEYS; i++)
+            assignments.put("Title " + i, ring.nodeFor("Title " + i));
+        return assignments;
+    }
+
+    @Test
+    public void testKeysAreSpreadEvenlyOverTheNodes() {
+        final Map<String, Integer> counts = new HashMap<>();
+        for(final String node : assignments().values())
+            counts.put(node, counts.containsKey(node) ? counts.get(node) + 1 : 1);
+        assertThat(counts.size(), is(4));
+        for(final int count : counts.values())
+            assertThat(count > KEYS / 4 * 0.8 && count < KEYS / 4 * 1.2, is(true));
+    }
+
+    @Test
+    public void testAddingANodeOnlyMovesItsShareOfKeysToIt() {
+        final Map<String, String> before = assignments();
+        ring.add("e");
+        int moved = 0;
+        for(final Map.Entry<String, String> assignment : assignments().entrySet()) {
+            if(assignment.getValue().equals(before.get(assignment.getKey()))) continue;
+            assertThat(assignment.getValue(), is("e"));
+            moved++;
+        }
+        assertThat(moved > KEYS / 5 * 0.8 && moved < KEYS / 5 * 1.2, is(true));
+    }
+
+    @Test
+    public void testRemovingANodeGivesBackItsKeys() {
+        final Map<String, String> before = assignments();
+        ring.add("e");
+        ring.remove("e");
+        assertThat(assignments(), is(before));
+    }
+
+    @Test
+    public void testRingsOfTheSameNodesAgree() {
+        final ConsistentHashRing other =
+                new ConsistentHashRing(ConsistentHashRing.DEFAULT_VIRTUAL_NODES, Arrays.asList("d", "c", "b", "a"));
+        for(int i = 0; i < 1000; i++)
+            assertThat(other.nodeFor("Title " + i), is(ring.nodeFor("Title " + i)));
+        assertThat(other.getNodes(), is(Arrays.asList("a", "b", "c", "d")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEmptyRingHasNoNodeForAKey() {
+        new ConsistentHashRing(1).nodeFor("Title");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodeCannotBeAddedTwice() {
+        ring.add("a");
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.twu.biblioteca.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class IdBitSetTests {
+
+    private IdBitSet bits;
+
+    @Before
+    public void setup() {
+        bits = new IdBitSet();
+    }
+
+    @Test
+    public void testSetBitsAreReadBack() {
+        bits.set(3);
+        bits.set(1000);
+        assertThat(bits.get(3), is(true));
+        assertThat(bits.get(1000), is(true));
+        assertThat(bits.get(4), is(false));
+        assertThat(bits.get(5000), is(false));
+    }
+
+    @Test
+    public void testWordsHoldSixtyFourIdsEach() {
+        bits.set(64);
+        bits.set(127);
+        assertThat(bits.getWord(0), is(0L));
+        assertThat(bits.getWord(1), is(Long.MIN_VALUE | 1L));
+        assertThat(bits.getWord(99), is(0L));
+        assertThat(bits.getWordCount() >= 2, is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeIdsCannotBeSet() {
+        bits.set(-1);
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.twu.biblioteca.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class IntListTests {
+
+    private IntList list;
+
+    @Before
+    public void setup() {
+        list = new IntList(2);
+    }
+
+    @Test
+    public void testNewListIsEmpty() {
+        assertThat(list.isEmpty(), is(true));
+        assertThat(list.size(), is(0));
+    }
+
+    @Test
+    public void testListGrowsAsValuesAreAdded() {
+        for(int i = 0; i < 100; i++)
+            list.add(i * 3);
+        assertThat(list.size(), is(100));
+        for(int i = 0; i < 100; i++)
+            assertThat(list.get(i), is(i * 3));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGettingBeyondTheSizeThrowsAnException() {
+        list.add(1);
+        list.get(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testListCannotHaveZeroCapacity() {
+        new IntList(0);
+    }
+
+}
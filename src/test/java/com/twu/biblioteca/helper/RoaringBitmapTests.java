@@ -0,0 +1,120 @@
+package com.twu.biblioteca.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class RoaringBitmapTests {
+
+    private RoaringBitmap bitmap;
+
+    @Before
+    public void setup() {
+        bitmap = new RoaringBitmap();
+    }
+
+    @Test
+    public void testAddedIdsAreContained() {
+        assertThat(bitmap.add(3), is(true));
+        assertThat(bitmap.add(70000), is(true));
+        assertThat(bitmap.add(3), is(false));
+        assertThat(bitmap.contains(3), is(true));
+        assertThat(bitmap.contains(70000), is(true));
+        assertThat(bitmap.contains(4), is(false));
+        assertThat(bitmap.contains(1 << 30), is(false));
+        assertThat(bitmap.getCardinality(), is(2));
+    }
+
+    @Test
+    public void testRemovedIdsAreNotContained() {
+        bitmap.add(3);
+        bitmap.add(5);
+        assertThat(bitmap.remove(3), is(true));
+        assertThat(bitmap.remove(3), is(false));
+        assertThat(bitmap.remove(1 << 30), is(false));
+        assertThat(bitmap.contains(3), is(false));
+        assertThat(bitmap.getCardinality(), is(1));
+        bitmap.remove(5);
+        assertThat(bitmap.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testIdsAreListedInAscendingOrder() {
+        bitmap.add(70000);
+        bitmap.add(9);
+        bitmap.add(2);
+        assertThat(bitmap.toArray(), is(new int[]{2, 9, 70000}));
+    }
+
+    @Test
+    public void testLargeGroupsOfIdsAreStillCountedAndListed() {
+        for(int id = 0; id < 10000; id += 2)
+            bitmap.add(id);
+        bitmap.remove(4);
+        assertThat(bitmap.getCardinality(), is(4999));
+        assertThat(bitmap.contains(4), is(false));
+        assertThat(bitmap.contains(9998), is(true));
+        final int[] ids = bitmap.toArray();
+        assertThat(ids.length, is(4999));
+        assertThat(ids[2], is(6));
+        assertThat(ids[4998], is(9998));
+    }
+
+    @Test
+    public void testAndKeepsIdsInBoth() {
+        final RoaringBitmap other = new RoaringBitmap();
+        for(int id = 0; id < 10000; id += 2)
+            bitmap.add(id);
+        for(int id = 0; id < 10000; id += 3)
+            other.add(id);
+        other.add(100000);
+        final RoaringBitmap both = RoaringBitmap.and(bitmap, other);
+        assertThat(both.getCardinality(), is(1667));
+        assertThat(both.contains(6), is(true));
+        assertThat(both.contains(4), is(false));
+        assertThat(both.contains(100000), is(false));
+        assertThat(RoaringBitmap.and(bitmap, new RoaringBitmap()).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testOrKeepsIdsInEither() {
+        final RoaringBitmap other = new RoaringBitmap();
+        bitmap.add(1);
+        bitmap.add(2);
+        other.add(2);
+        other.add(100000);
+        final RoaringBitmap either = RoaringBitmap.or(bitmap, other);
+        assertThat(either.toArray(), is(new int[]{1, 2, 100000}));
+        assertThat(either.getCardinality(), is(3));
+        either.add(3);
+        assertThat(bitmap.contains(3), is(false));
+        assertThat(other.contains(3), is(false));
+    }
+
+    @Test
+    public void testConcurrentAddsAndRemovesAreAllCounted() throws InterruptedException {
+        final int threads = 4;
+        final int done = Concurrently.run(threads, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                for(int id = thread; id < 200000; id += threads)
+                    bitmap.add(id);
+                for(int id = thread; id < 200000; id += threads * 2)
+                    bitmap.remove(id);
+            }
+        });
+        assertThat(done, is(threads));
+        assertThat(bitmap.getCardinality(), is(100000));
+        assertThat(bitmap.toArray().length, is(100000));
+        assertThat(bitmap.contains(0), is(false));
+        assertThat(bitmap.contains(4), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeIdsCannotBeAdded() {
+        bitmap.add(-1);
+    }
+
+}
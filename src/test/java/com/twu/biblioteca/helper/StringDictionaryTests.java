@@ -0,0 +1,45 @@
+package com.twu.biblioteca.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StringDictionaryTests {
+
+    private StringDictionary dictionary;
+
+    @Before
+    public void setup() {
+        dictionary = new StringDictionary();
+    }
+
+    @Test
+    public void testEqualValuesShareACode() {
+        final int code = dictionary.encode("Charles Dickens");
+        assertThat(dictionary.encode(new String("Charles Dickens")), is(code));
+        assertThat(dictionary.encode("Quentin Tarantino"), is(not(code)));
+        assertThat(dictionary.size(), is(2));
+    }
+
+    @Test
+    public void testCodesDecodeToTheirValues() {
+        for(int i = 0; i < 100; i++)
+            assertThat(dictionary.encode("Author " + i), is(i));
+        for(int i = 0; i < 100; i++)
+            assertThat(dictionary.decode(i), is("Author " + i));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testDecodingAnUnknownCodeThrowsAnException() {
+        dictionary.decode(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullCannotBeEncoded() {
+        dictionary.encode(null);
+    }
+
+}
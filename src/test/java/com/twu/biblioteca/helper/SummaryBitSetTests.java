@@ -0,0 +1,102 @@
+package com.twu.biblioteca.helper;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SummaryBitSetTests {
+
+    @Test
+    public void testSetBitsAreReadBackAndClearedBitsAreNot() {
+        final SummaryBitSet bits = new SummaryBitSet(1000);
+        bits.set(3);
+        bits.set(999);
+        bits.set(64);
+        bits.clear(64);
+        assertThat(bits.get(3), is(true));
+        assertThat(bits.get(999), is(true));
+        assertThat(bits.get(64), is(false));
+        assertThat(bits.get(4), is(false));
+    }
+
+    @Test
+    public void testNextSetBitSkipsWholeEmptyRegions() {
+        final SummaryBitSet bits = new SummaryBitSet(1 << 20);
+        bits.set(5);
+        bits.set(300000);
+        bits.set((1 << 20) - 1);
+        assertThat(bits.nextSetBit(0), is(5));
+        assertThat(bits.nextSetBit(5), is(5));
+        assertThat(bits.nextSetBit(6), is(300000));
+        assertThat(bits.nextSetBit(300001), is((1 << 20) - 1));
+        assertThat(bits.nextSetBit(1 << 20), is(-1));
+    }
+
+    @Test
+    public void testPreviousSetBitSkipsWholeEmptyRegions() {
+        final SummaryBitSet bits = new SummaryBitSet(1 << 20);
+        bits.set(0);
+        bits.set(300000);
+        assertThat(bits.previousSetBit((1 << 20) - 1), is(300000));
+        assertThat(bits.previousSetBit(Integer.MAX_VALUE), is(300000));
+        assertThat(bits.previousSetBit(300000), is(300000));
+        assertThat(bits.previousSetBit(299999), is(0));
+        assertThat(bits.previousSetBit(-1), is(-1));
+    }
+
+    @Test
+    public void testClearingTheLastBitOfAWordHidesItFromSearches() {
+        final SummaryBitSet bits = new SummaryBitSet(1 << 16);
+        bits.set(100);
+        bits.set(40000);
+        bits.clear(40000);
+        assertThat(bits.nextSetBit(101), is(-1));
+        assertThat(bits.previousSetBit(50000), is(100));
+        bits.clear(100);
+        assertThat(bits.nextSetBit(0), is(-1));
+        assertThat(bits.previousSetBit(50000), is(-1));
+    }
+
+    @Test
+    public void testAnEmptySetHasNoBits() {
+        final SummaryBitSet bits = new SummaryBitSet(0);
+        assertThat(bits.nextSetBit(0), is(-1));
+        assertThat(bits.previousSetBit(10), is(-1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBitsBeyondTheCapacityCannotBeSet() {
+        new SummaryBitSet(64).set(64);
+    }
+
+    @Test
+    public void testBitsSetAndClearedByManyThreadsAreAllFound() throws Exception {
+        final int threads = 4;
+        final SummaryBitSet bits = new SummaryBitSet(threads * 4096);
+        final AtomicInteger failures = new AtomicInteger();
+        final int done = Concurrently.run(threads, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                for(int round = 0; round < 200; round++)
+                    for(int i = thread; i < 4096; i += threads) {
+                        bits.set(i);
+                        if(bits.nextSetBit(i) != i) failures.incrementAndGet();
+                        if(round < 199 || i % 2 == 0)
+                            bits.clear(i);
+                    }
+            }
+        });
+        assertThat(done, is(threads));
+        assertThat(failures.get(), is(0));
+        int found = 0;
+        for(int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            assertThat(i % 2, is(1));
+            found++;
+        }
+        assertThat(found, is(2048));
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.twu.biblioteca.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TimingWheelTests {
+
+    private static final long START = 1000000L;
+
+    private TimingWheel<String> wheel;
+
+    @Before
+    public void setup() {
+        wheel = new TimingWheel<>(10);
+        wheel.advance(START);
+    }
+
+    @Test
+    public void testEventFiresWhenItIsDueAndNotBefore() {
+        wheel.schedule("due", START + 55);
+        assertThat(wheel.advance(START + 54).isEmpty(), is(true));
+        assertThat(wheel.advance(START + 60), is(Arrays.asList("due")));
+        assertThat(wheel.advance(START + 1000).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testEventsAlreadyDueFireOnTheNextAdvance() {
+        wheel.schedule("late", START - 500);
+        assertThat(wheel.advance(START), is(Arrays.asList("late")));
+    }
+
+    @Test
+    public void testEventsOnEveryWheelFireInDueOrder() {
+        final long[] delays = {30, 700, 50000, 3000000, 150000000};
+        for(int i = delays.length - 1; i >= 0; i--)
+            wheel.schedule(String.valueOf(delays[i]), START + delays[i]);
+        final List<String> fired = new ArrayList<>();
+        for(long now = START; now <= START + 150000000; now += 25000)
+            fired.addAll(wheel.advance(now));
+        assertThat(fired, is(Arrays.asList("30", "700", "50000", "3000000", "150000000")));
+    }
+
+    @Test
+    public void testEventBeyondTheLastWheelStillFiresOnTime() {
+        final long due = START + 10L * (1L << 24) + 5;
+        wheel.schedule("far", due);
+        assertThat(wheel.advance(due - 10).isEmpty(), is(true));
+        assertThat(wheel.advance(due + 5), is(Arrays.asList("far")));
+    }
+
+    @Test
+    public void testCancelledEventsNeverFire() {
+        final TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", START + 100);
+        wheel.schedule("kept", START + 100);
+        wheel.advance(START + 50);
+        assertThat(cancelled.cancel(), is(true));
+        assertThat(cancelled.isCancelled(), is(true));
+        assertThat(wheel.advance(START + 100), is(Arrays.asList("kept")));
+    }
+
+    @Test
+    public void testFiredEventsCannotBeCancelled() {
+        final TimingWheel.Timeout<String> timeout = wheel.schedule("fired", START + 10);
+        wheel.advance(START + 10);
+        assertThat(timeout.cancel(), is(false));
+    }
+
+    @Test
+    public void testEventsScheduledFromManyThreadsAllFire() throws InterruptedException {
+        final int done = Concurrently.run(4, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                for(int i = 0; i < 1000; i++)
+                    wheel.schedule(thread + ":" + i, START + 10 * (i + 1));
+            }
+        });
+        assertThat(done, is(4));
+        final List<String> fired = wheel.advance(START + 10000);
+        assertThat(fired.size(), is(4000));
+        assertThat(Collections.frequency(fired, "3:999"), is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTickMustBePositive() {
+        new TimingWheel<String>(0);
+    }
+
+}